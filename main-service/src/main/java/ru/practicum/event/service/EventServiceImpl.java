@@ -23,7 +23,6 @@ import ru.practicum.event.model.mapper.LocationMapper;
 import ru.practicum.event.storage.EventRepository;
 import ru.practicum.event.storage.LocationRepository;
 import ru.practicum.model.DtoEndpointHit;
-import ru.practicum.model.DtoViewStats;
 import ru.practicum.request.model.Request;
 import ru.practicum.request.model.dto.ParticipationRequestDto;
 import ru.practicum.request.model.enums.RequestState;
@@ -598,25 +597,6 @@ public class EventServiceImpl implements EventService {
         statisticsClient.createHit(dtoEndpointHit);
     }
 
-    /**
-     * Получает статистику просмотров для списка событий.
-     *
-     * @param events Список событий.
-     * @return Список статистики просмотров.
-     */
-    private List<DtoViewStats> getStats(List<Event> events) {
-        List<String> uris = events.stream().map(event -> "/events/" + event.getId()).toList();
-        log.info("uris: {}", uris);
-        LocalDateTime start = LocalDateTime.now().minusYears(50);
-        LocalDateTime end = LocalDateTime.now();
-        List<DtoViewStats> stats = statisticsClient.getStats(start, end, uris, true);
-        log.info("stats: {}", stats);
-        if (stats.isEmpty()) {
-            return Collections.emptyList();
-        }
-        return stats;
-    }
-
     /**
      * Устанавливает количество просмотров для списка событий.
      *
@@ -627,12 +607,12 @@ public class EventServiceImpl implements EventService {
         if (events.isEmpty()) {
             return;
         }
-        Map<String, Long> mapUriAndHits = getStats(events).stream()
-                .collect(Collectors.toMap(DtoViewStats::getUri, DtoViewStats::getHits));
-        log.info("mapUriAndHits: {}", mapUriAndHits);
+        long[] eventIds = events.stream().mapToLong(Event::getId).toArray();
+        long[] views = statisticsClient.getEventViews(eventIds, true);
+        log.info("views: {}", Arrays.toString(views));
 
-        for (Event event : events) {
-            event.setViews(mapUriAndHits.getOrDefault("/events/" + event.getId(), 0L));
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setViews(views[i]);
         }
     }
 }
\ No newline at end of file
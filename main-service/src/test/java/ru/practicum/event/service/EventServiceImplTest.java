@@ -0,0 +1,136 @@
+package ru.practicum.event.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import ru.practicum.StatisticsClient;
+import ru.practicum.StatisticsClientProperties;
+import ru.practicum.category.service.CategoryService;
+import ru.practicum.codec.LongArrayCodec;
+import ru.practicum.event.model.Event;
+import ru.practicum.event.model.enums.State;
+import ru.practicum.event.model.mapper.EventMapper;
+import ru.practicum.event.model.mapper.LocationMapper;
+import ru.practicum.event.storage.EventRepository;
+import ru.practicum.event.storage.LocationRepository;
+import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.request.model.mapper.RequestMapper;
+import ru.practicum.request.storage.RequestRepository;
+import ru.practicum.user.service.UserService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Просмотры события с настройками клиента статистики по умолчанию; сервер статистики подменён
+ * HTTP-сервером, считающим уникальные ip по uri.
+ */
+@ExtendWith(MockitoExtension.class)
+class EventServiceImplTest {
+
+    @Mock
+    private EventRepository eventRepository;
+    @Mock
+    private LocationRepository locationRepository;
+    @Mock
+    private RequestRepository requestRepository;
+    @Mock
+    private CategoryService categoryService;
+    @Mock
+    private UserService userService;
+    @Mock
+    private EventMapper eventMapper;
+    @Mock
+    private LocationMapper locationMapper;
+    @Mock
+    private RequestMapper requestMapper;
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final Map<String, Set<String>> visitors = new ConcurrentHashMap<>();
+    private HttpServer statsServer;
+    private EventServiceImpl eventService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        statsServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        statsServer.createContext("/hits", this::saveHits);
+        statsServer.createContext("/stats/events/views", this::eventViews);
+        statsServer.start();
+        StatisticsClient statisticsClient = new StatisticsClient(
+                "http://localhost:" + statsServer.getAddress().getPort(), "json", new StatisticsClientProperties(),
+                new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        eventService = new EventServiceImpl(eventRepository, locationRepository, requestRepository, categoryService,
+                userService, eventMapper, locationMapper, requestMapper, statisticsClient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statsServer.stop(0);
+    }
+
+    @Test
+    void getEventByIdPublic_shouldCountOwnView() {
+        Event event = new Event();
+        event.setId(1L);
+        event.setState(State.PUBLISHED);
+        when(eventRepository.findById(1L)).thenReturn(Optional.of(event));
+
+        eventService.getEventByIdPublic(1, request("10.0.0.1"));
+        assertThat(event.getViews()).isEqualTo(1);
+
+        eventService.getEventByIdPublic(1, request("10.0.0.1"));
+        assertThat(event.getViews()).isEqualTo(1);
+
+        eventService.getEventByIdPublic(1, request("10.0.0.2"));
+        assertThat(event.getViews()).isEqualTo(2);
+    }
+
+    private static MockHttpServletRequest request(String ip) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/events/1");
+        request.setRemoteAddr(ip);
+        return request;
+    }
+
+    private void saveHits(HttpExchange exchange) throws IOException {
+        List<DtoEndpointHit> hits = json.readValue(exchange.getRequestBody(), new TypeReference<>() {
+        });
+        for (DtoEndpointHit hit : hits) {
+            visitors.computeIfAbsent(hit.getUri(), uri -> new HashSet<>()).add(hit.getIp());
+        }
+        exchange.sendResponseHeaders(201, -1);
+        exchange.close();
+    }
+
+    private void eventViews(HttpExchange exchange) throws IOException {
+        long[] eventIds = LongArrayCodec.decode(exchange.getRequestBody().readAllBytes());
+        long[] views = new long[eventIds.length];
+        for (int i = 0; i < eventIds.length; i++) {
+            views[i] = visitors.getOrDefault("/events/" + eventIds[i], Set.of()).size();
+        }
+        byte[] body = LongArrayCodec.encode(views);
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
@@ -0,0 +1,165 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Автоматический выключатель запросов к серверу статистики.
+ * <p>
+ * Результаты последних {@code windowSize} вызовов хранятся в кольцевом буфере; ответы 4xx ошибками не считаются.
+ * Когда вызовов в нём не меньше {@code minimumCalls}, а доля ошибок или доля вызовов дольше
+ * {@code slowCallDuration} достигает порога, выключатель размыкается: следующие {@code openDuration} вызовы
+ * сразу завершаются {@link CircuitBreakerOpenException}, не обращаясь к серверу. Затем пропускается один пробный
+ * вызов; если он быстрый и успешный, выключатель замыкается, иначе снова размыкается.
+ */
+@Slf4j
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final StatisticsClientProperties.Breaker properties;
+    private final long slowCallNanos;
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private final Counter rejected;
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+    private int calls;
+    private int next;
+    private int failureCount;
+    private int slowCount;
+    private long openUntil;
+    private boolean probing;
+
+    CircuitBreaker(String name, StatisticsClientProperties.Breaker properties, MeterRegistry meterRegistry) {
+        this(name, properties, meterRegistry, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime источник времени в наносекундах, как {@link System#nanoTime()}
+     */
+    CircuitBreaker(String name, StatisticsClientProperties.Breaker properties, MeterRegistry meterRegistry,
+                   LongSupplier nanoTime) {
+        this.name = name;
+        this.nanoTime = nanoTime;
+        this.properties = properties;
+        this.slowCallNanos = properties.getSlowCallDuration().toNanos();
+        this.failures = new boolean[properties.getWindowSize()];
+        this.slowCalls = new boolean[properties.getWindowSize()];
+        Gauge.builder("stats.client.breaker.state", this, breaker -> breaker.getState().ordinal())
+                .description("Состояние выключателя: 0 — замкнут, 1 — разомкнут, 2 — пробный вызов")
+                .tag("name", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("stats.client.breaker.rejected")
+                .description("Вызовы, отклонённые разомкнутым выключателем")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет вызов, если выключатель его пропускает, и учитывает его результат.
+     *
+     * @throws CircuitBreakerOpenException если выключатель разомкнут
+     */
+    <T> T call(Supplier<T> call) {
+        acquirePermission();
+        long start = nanoTime.getAsLong();
+        T result;
+        try {
+            result = call.get();
+        } catch (HttpClientErrorException e) {
+            onResult(false, nanoTime.getAsLong() - start);
+            throw e;
+        } catch (RuntimeException e) {
+            onResult(true, nanoTime.getAsLong() - start);
+            throw e;
+        }
+        onResult(false, nanoTime.getAsLong() - start);
+        return result;
+    }
+
+    synchronized State getState() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openUntil >= 0) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private synchronized void acquirePermission() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openUntil >= 0) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (state == State.HALF_OPEN && !probing) {
+            probing = true;
+            return;
+        }
+        rejected.increment();
+        throw new CircuitBreakerOpenException("Сервер статистики недоступен, выключатель " + name + " разомкнут");
+    }
+
+    private synchronized void onResult(boolean failed, long nanos) {
+        boolean slow = nanos > slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            probing = false;
+            if (failed || slow) {
+                open("пробный вызов " + (failed ? "завершился ошибкой" : "длился " + nanos / 1_000_000 + " мс"));
+            } else {
+                reset();
+                log.info("Выключатель {} замкнут", name);
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (calls == failures.length) {
+            failureCount -= failures[next] ? 1 : 0;
+            slowCount -= slowCalls[next] ? 1 : 0;
+        } else {
+            calls++;
+        }
+        failures[next] = failed;
+        slowCalls[next] = slow;
+        failureCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        next = (next + 1) % failures.length;
+        if (calls < properties.getMinimumCalls()) {
+            return;
+        }
+        if (failureCount * 100 >= properties.getFailureRateThreshold() * calls) {
+            open("ошибок " + failureCount + " из " + calls);
+        } else if (slowCount * 100 >= properties.getSlowCallRateThreshold() * calls) {
+            open("медленных вызовов " + slowCount + " из " + calls);
+        }
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openUntil = nanoTime.getAsLong() + properties.getOpenDuration().toNanos();
+        log.warn("Выключатель {} разомкнут на {}: {}", name, properties.getOpenDuration(), reason);
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        calls = 0;
+        next = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+}
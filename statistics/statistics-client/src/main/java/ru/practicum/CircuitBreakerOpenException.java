@@ -0,0 +1,13 @@
+package ru.practicum;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Запрос к серверу статистики не выполнялся, потому что {@link CircuitBreaker} разомкнут.
+ */
+public class CircuitBreakerOpenException extends RestClientException {
+
+    public CircuitBreakerOpenException(String message) {
+        super(message);
+    }
+}
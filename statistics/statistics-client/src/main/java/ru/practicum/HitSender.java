@@ -0,0 +1,428 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import ru.practicum.model.DtoEndpointHit;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Фоновая отправка посещений пакетами.
+ * <p>
+ * {@link #offer} не блокируется: посещение кладётся в {@link ConcurrentLinkedQueue}, а место в буфере
+ * резервируется через {@link AtomicInteger}. Отдельный поток собирает посещения в пакет по {@code batchSize}
+ * или раз в {@code flushPeriod} и передаёт его {@code sender}. Если сервер недоступен или перегружен, пакет
+ * повторяется до {@code maxRetries} раз с удвоением паузы, а буфер тем временем заполняется.
+ * Переполненный буфер обрабатывается по {@link StatisticsClientProperties.Overflow}; при {@code SPOOL} лишние
+ * посещения кладутся во второй буфер того же размера, и поток отправки записывает в очередь на диске сначала
+ * основной буфер, затем его, чтобы не задерживать вызывающего вводом-выводом и сохранить порядок.
+ * <p>
+ * С очередью на диске ({@link HitSpool}) пакет, который не удалось отправить, записывается в неё. Пока она
+ * не пуста, новые пакеты тоже дописываются в её конец, а отправка идёт с её головы, чтобы сохранить порядок.
+ * При ошибке отправка из очереди откладывается с удвоением паузы до {@link #MAX_REPLAY_PAUSE}. Испорченные
+ * записи очереди пропускаются и учитываются как отброшенные.
+ * При остановке оставшиеся посещения записываются в очередь и отправляются после перезапуска.
+ * <p>
+ * Если {@code sender} подтверждает пакеты позже, например {@link HitStreamSink}, при остановке неподтверждённые
+ * посещения берутся из {@code unconfirmed} и тоже записываются в очередь на диске.
+ */
+@Slf4j
+class HitSender {
+
+    private static final Duration MAX_REPLAY_PAUSE = Duration.ofSeconds(30);
+
+    private final Consumer<List<DtoEndpointHit>> sender;
+    private final Supplier<List<DtoEndpointHit>> unconfirmed;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushPeriod;
+    private final StatisticsClientProperties.Overflow overflow;
+    private final int maxRetries;
+    private final HitSpool spool;
+
+    private final Queue<DtoEndpointHit> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Queue<DtoEndpointHit> overflowBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger overflowSize = new AtomicInteger();
+
+    private final Counter sent;
+    private final Counter dropped;
+    private final Counter retried;
+    private final Counter spooled;
+
+    private final Thread senderThread;
+    private volatile boolean running = true;
+    private long replayAfter;
+    private long replayPauseNanos;
+
+    /**
+     * @param spool очередь на диске или {@code null}, если неотправленные посещения отбрасываются
+     */
+    HitSender(Consumer<List<DtoEndpointHit>> sender, StatisticsClientProperties.Hits properties, HitSpool spool,
+              MeterRegistry meterRegistry) {
+        this(sender, List::of, properties, spool, meterRegistry);
+    }
+
+    /**
+     * @param unconfirmed после остановки возвращает посещения, которые {@code sender} принял, но сервер
+     *                    не подтвердил
+     * @param spool       очередь на диске или {@code null}, если неотправленные посещения отбрасываются
+     */
+    HitSender(Consumer<List<DtoEndpointHit>> sender, Supplier<List<DtoEndpointHit>> unconfirmed,
+              StatisticsClientProperties.Hits properties, HitSpool spool, MeterRegistry meterRegistry) {
+        this.sender = sender;
+        this.unconfirmed = unconfirmed;
+        this.capacity = properties.getBufferSize();
+        this.batchSize = properties.getBatchSize();
+        this.flushPeriod = properties.getFlushPeriod();
+        this.overflow = properties.getOverflow();
+        this.maxRetries = properties.getMaxRetries();
+        this.spool = spool;
+        this.replayPauseNanos = flushPeriod.toNanos();
+        Gauge.builder("stats.client.hits.buffered", this, hits -> hits.size.get() + hits.overflowSize.get())
+                .description("Количество посещений, ожидающих отправки")
+                .register(meterRegistry);
+        if (spool != null) {
+            Gauge.builder("stats.client.spool.pending", spool, HitSpool::pending)
+                    .description("Количество посещений в очереди на диске")
+                    .register(meterRegistry);
+            Gauge.builder("stats.client.spool.size", spool, HitSpool::size)
+                    .description("Место, занимаемое очередью на диске")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        this.sent = Counter.builder("stats.client.hits.sent")
+                .description("Посещения, принятые сервером статистики")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("stats.client.hits.dropped")
+                .description("Посещения, отброшенные из-за переполнения буфера или ошибки отправки")
+                .register(meterRegistry);
+        this.retried = Counter.builder("stats.client.hits.retried")
+                .description("Посещения, отправленные повторно")
+                .register(meterRegistry);
+        this.spooled = Counter.builder("stats.client.hits.spooled")
+                .description("Посещения, записанные в очередь на диске")
+                .register(meterRegistry);
+        this.senderThread = new Thread(this::sendLoop, "stats-hit-sender");
+        this.senderThread.setDaemon(true);
+        this.senderThread.start();
+        log.info("Запущена фоновая отправка посещений: буфер {}, размер пакета {}, интервал {}, переполнение {}, "
+                + "очередь на диске {}", capacity, batchSize, flushPeriod, overflow, spool != null);
+    }
+
+    /**
+     * Кладёт посещение в буфер, не дожидаясь отправки.
+     *
+     * @return {@code false}, если посещение отброшено
+     */
+    boolean offer(DtoEndpointHit hit) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        boolean spoolOverflow = overflow == StatisticsClientProperties.Overflow.SPOOL && spool != null;
+        while (true) {
+            int current = size.get();
+            if (spoolOverflow && overflowSize.get() > 0) {
+                return offerOverflow(hit);
+            }
+            if (current < capacity) {
+                if (size.compareAndSet(current, current + 1)) {
+                    buffer.add(hit);
+                    if (current + 1 == batchSize) {
+                        LockSupport.unpark(senderThread);
+                    }
+                    return true;
+                }
+            } else if (spoolOverflow) {
+                return offerOverflow(hit);
+            } else if (overflow != StatisticsClientProperties.Overflow.DROP_OLDEST) {
+                dropped.increment();
+                log.debug("Буфер посещений заполнен, посещение отброшено: {}", hit);
+                return false;
+            } else if (buffer.poll() != null) {
+                buffer.add(hit);
+                dropped.increment();
+                log.debug("Буфер посещений заполнен, отброшено самое старое посещение");
+                return true;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private boolean offerOverflow(DtoEndpointHit hit) {
+        while (true) {
+            int current = overflowSize.get();
+            if (current >= capacity) {
+                dropped.increment();
+                log.debug("Буферы посещений заполнены, посещение отброшено: {}", hit);
+                return false;
+            }
+            if (overflowSize.compareAndSet(current, current + 1)) {
+                overflowBuffer.add(hit);
+                if (current == 0) {
+                    LockSupport.unpark(senderThread);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Останавливает поток отправки. Оставшиеся посещения записываются в очередь на диске, а без неё
+     * отправляются без повторов. Если поток не завершился за {@code timeout}, например ждёт ответа сервера,
+     * очередь на диске не закрывается: поток допишет в неё посещения, а файлы закроются вместе с процессом.
+     */
+    void close(Duration timeout) throws InterruptedException {
+        running = false;
+        LockSupport.unpark(senderThread);
+        senderThread.join(timeout.toMillis());
+        if (senderThread.isAlive()) {
+            log.warn("Фоновая отправка посещений не остановилась за {}, в буфере осталось: {}", timeout,
+                    size.get() + overflowSize.get());
+            return;
+        }
+        log.info("Фоновая отправка посещений остановлена");
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                log.warn("Не удалось закрыть очередь посещений на диске: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void sendLoop() {
+        long intervalNanos = flushPeriod.toNanos();
+        long deadline = System.nanoTime() + intervalNanos;
+        while (running) {
+            boolean replay = hasBacklog() && System.nanoTime() - replayAfter >= 0;
+            long remaining = deadline - System.nanoTime();
+            if (!replay && size.get() < batchSize && remaining > 0 && overflowSize.get() == 0) {
+                LockSupport.parkNanos(this, remaining);
+                continue;
+            }
+            if (overflowSize.get() > 0) {
+                spoolOverflow();
+                continue;
+            }
+            if (size.get() >= batchSize || remaining <= 0) {
+                List<DtoEndpointHit> batch = drain();
+                if (!batch.isEmpty()) {
+                    if (hasBacklog()) {
+                        spool(batch);
+                    } else {
+                        send(batch, maxRetries);
+                    }
+                }
+                deadline = System.nanoTime() + intervalNanos;
+            }
+            if (replay) {
+                replay();
+            }
+        }
+        for (List<DtoEndpointHit> batch = drain(); !batch.isEmpty(); batch = drain()) {
+            if (spool != null) {
+                spool(batch);
+            } else {
+                send(batch, 0);
+            }
+        }
+        for (List<DtoEndpointHit> batch = drainOverflow(); !batch.isEmpty(); batch = drainOverflow()) {
+            spool(batch);
+        }
+        List<DtoEndpointHit> lost = unconfirmed.get();
+        if (lost.isEmpty()) {
+            return;
+        }
+        if (spool != null) {
+            log.warn("Сервер статистики не подтвердил посещения, {} записано в очередь на диске", lost.size());
+            spool(lost);
+        } else {
+            dropped.increment(lost.size());
+            log.warn("Сервер статистики не подтвердил посещения, отброшено {}", lost.size());
+        }
+    }
+
+    /**
+     * Записывает в очередь на диске весь основной буфер, затем второй.
+     */
+    private void spoolOverflow() {
+        for (List<DtoEndpointHit> batch = drain(); !batch.isEmpty(); batch = drain()) {
+            spool(batch);
+        }
+        for (List<DtoEndpointHit> batch = drainOverflow(); !batch.isEmpty(); batch = drainOverflow()) {
+            spool(batch);
+        }
+    }
+
+    private List<DtoEndpointHit> drainOverflow() {
+        List<DtoEndpointHit> batch = new ArrayList<>(Math.min(batchSize, overflowSize.get()));
+        DtoEndpointHit hit;
+        while (batch.size() < batchSize && (hit = overflowBuffer.poll()) != null) {
+            batch.add(hit);
+        }
+        overflowSize.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private List<DtoEndpointHit> drain() {
+        List<DtoEndpointHit> batch = new ArrayList<>(Math.min(batchSize, size.get()));
+        DtoEndpointHit hit;
+        while (batch.size() < batchSize && (hit = buffer.poll()) != null) {
+            batch.add(hit);
+        }
+        size.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private void send(List<DtoEndpointHit> batch, int retries) {
+        long pauseMillis = flushPeriod.toMillis();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sender.accept(batch);
+                sent.increment(batch.size());
+                log.debug("Отправлен пакет посещений: {}", batch.size());
+                return;
+            } catch (RestClientException e) {
+                if (!isRetryable(e)) {
+                    dropped.increment(batch.size());
+                    log.warn("Сервер статистики отклонил пакет посещений, отброшено {}: {}", batch.size(),
+                            e.getMessage());
+                    return;
+                }
+                if (attempt >= retries || !running) {
+                    if (spool == null) {
+                        dropped.increment(batch.size());
+                        log.warn("Не удалось отправить пакет посещений, отброшено {}: {}", batch.size(),
+                                e.getMessage());
+                    } else {
+                        log.warn("Не удалось отправить пакет посещений, {} записано в очередь на диске: {}",
+                                batch.size(), e.getMessage());
+                        spool(batch);
+                    }
+                    return;
+                }
+                retried.increment(batch.size());
+                log.debug("Повтор отправки пакета посещений через {} мс: {}", pauseMillis, e.getMessage());
+            } catch (RuntimeException e) {
+                dropped.increment(batch.size());
+                log.error("Неизвестная ошибка при отправке пакета посещений, отброшено {}", batch.size(), e);
+                return;
+            }
+            pause(Duration.ofMillis(pauseMillis).toNanos());
+            pauseMillis *= 2;
+        }
+    }
+
+    /**
+     * Отправляет один пакет с головы очереди на диске.
+     */
+    private void replay() {
+        List<DtoEndpointHit> batch;
+        try {
+            HitSpool.Batch read = spool.peek(batchSize);
+            batch = read.hits();
+            if (read.skipped() > 0) {
+                dropped.increment(read.skipped());
+                log.warn("В очереди посещений на диске пропущено испорченных записей: {}", read.skipped());
+            }
+        } catch (IOException e) {
+            log.error("Не удалось прочитать очередь посещений на диске", e);
+            postponeReplay();
+            return;
+        }
+        if (batch.isEmpty()) {
+            commit();
+            return;
+        }
+        try {
+            sender.accept(batch);
+            sent.increment(batch.size());
+            replayPauseNanos = flushPeriod.toNanos();
+            log.debug("Отправлен пакет посещений из очереди на диске: {}", batch.size());
+        } catch (RestClientException e) {
+            if (isRetryable(e)) {
+                retried.increment(batch.size());
+                log.debug("Отправка из очереди на диске отложена на {} мс: {}",
+                        Duration.ofNanos(replayPauseNanos).toMillis(), e.getMessage());
+                postponeReplay();
+                return;
+            }
+            dropped.increment(batch.size());
+            log.warn("Сервер статистики отклонил пакет посещений из очереди на диске, отброшено {}: {}",
+                    batch.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            dropped.increment(batch.size());
+            log.error("Неизвестная ошибка при отправке пакета посещений из очереди на диске, отброшено {}",
+                    batch.size(), e);
+        }
+        commit();
+    }
+
+    private void commit() {
+        try {
+            spool.commit();
+        } catch (IOException e) {
+            log.error("Не удалось сдвинуть курсор очереди посещений на диске", e);
+        }
+    }
+
+    private void postponeReplay() {
+        replayAfter = System.nanoTime() + replayPauseNanos;
+        replayPauseNanos = Math.min(replayPauseNanos * 2, MAX_REPLAY_PAUSE.toNanos());
+    }
+
+    private boolean spool(List<DtoEndpointHit> batch) {
+        try {
+            long lost = spool.append(batch);
+            spooled.increment(batch.size());
+            if (lost > 0) {
+                dropped.increment(lost);
+                log.warn("Очередь посещений на диске заполнена, отброшено {}", lost);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            dropped.increment(batch.size());
+            log.error("Не удалось записать посещения в очередь на диске, отброшено {}", batch.size(), e);
+            return false;
+        }
+    }
+
+    private boolean hasBacklog() {
+        return spool != null && !spool.isEmpty();
+    }
+
+    /**
+     * Пауза перед повтором; {@link #offer} будит поток при наполнении пакета, поэтому ожидание продолжается
+     * до истечения срока или остановки.
+     */
+    private void pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0 && running; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Повторяются ошибки соединения, ответы 5xx и 429; остальные ошибки клиента при повторе не исчезнут.
+     */
+    private boolean isRetryable(RestClientException e) {
+        return !(e instanceof HttpClientErrorException clientError)
+                || clientError instanceof HttpClientErrorException.TooManyRequests;
+    }
+}
@@ -0,0 +1,347 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.codec.CborCodec;
+import ru.practicum.model.DtoEndpointHit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Очередь посещений на диске для отправки после восстановления сервера статистики.
+ * <p>
+ * Посещения дописываются в конец файлов сегментов {@code spool-N.seg} (длина и байты {@link CborCodec}).
+ * Сегмент закрывается, когда следующая запись не помещается в {@code segmentSize}. Чтение идёт с головы:
+ * {@link #peek} отдаёт пакет, {@link #commit} сдвигает курсор после успешной отправки. Положение курсора
+ * хранится в файле {@code cursor}, поэтому после перезапуска отправка продолжается с того же места; пакет,
+ * прерванный перезапуском, может уйти повторно. Прочитанные сегменты удаляются.
+ * <p>
+ * Если сегменты занимают больше {@code maxSize}, удаляется самый старый; если места нет и в единственном
+ * сегменте, новые посещения отбрасываются. Недописанная после сбоя последняя запись отбрасывается при открытии.
+ * Записи не сбрасываются на диск принудительно: после падения процесса они остаются в кеше страниц, а после
+ * падения системы могут оказаться испорчены. Запись, которую не удалось прочитать, пропускается и
+ * учитывается в {@link Batch#skipped()}.
+ */
+@Slf4j
+final class HitSpool implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxSize;
+    private final ObjectWriter writer = CborCodec.objectMapper().writerFor(DtoEndpointHit.class);
+    private final ObjectReader reader = CborCodec.objectMapper().readerFor(DtoEndpointHit.class);
+    private final FileChannel cursorChannel;
+    private final List<SpoolSegment> segments = new ArrayList<>();
+    private FileChannel active;
+
+    private long cursorOffset;
+    private long cursorRecords;
+    private long pendingOffset;
+    private long pendingRecords;
+
+    private HitSpool(Path directory, long segmentSize, long maxSize, FileChannel cursorChannel) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.cursorChannel = cursorChannel;
+    }
+
+    static HitSpool open(Path directory, long segmentSize, long maxSize) throws IOException {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE || maxSize < segmentSize) {
+            throw new IllegalArgumentException("Размер сегмента должен быть от 1 байта до 2 ГБ и не больше "
+                    + "размера очереди: " + segmentSize + ", " + maxSize);
+        }
+        Files.createDirectories(directory);
+        Path cursorPath = directory.resolve("cursor");
+        ByteBuffer cursor = ByteBuffer.wrap(Files.exists(cursorPath) ? Files.readAllBytes(cursorPath) : new byte[0]);
+        FileChannel cursorChannel = FileChannel.open(cursorPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        HitSpool spool = new HitSpool(directory, segmentSize, maxSize, cursorChannel);
+        if (cursor.remaining() >= 2 * Long.BYTES) {
+            spool.recover(cursor.getLong(), cursor.getLong());
+        } else {
+            spool.recover(1, 0);
+        }
+        return spool;
+    }
+
+    /**
+     * Дописывает посещения в конец очереди.
+     *
+     * @return количество посещений, отброшенных из-за ограничения размера: удалённых из головы очереди
+     * или не записанных
+     */
+    synchronized long append(List<DtoEndpointHit> hits) throws IOException {
+        ByteBuffer records = encode(hits);
+        long dropped = 0;
+        while (size() + records.remaining() > maxSize && segments.size() > 1) {
+            dropped += dropHead();
+        }
+        if (size() + records.remaining() > maxSize) {
+            return dropped + hits.size();
+        }
+        SpoolSegment last = segments.getLast();
+        if (last.size > 0 && last.size + records.remaining() > segmentSize) {
+            roll(last.number + 1);
+            last = segments.getLast();
+        }
+        while (records.hasRemaining()) {
+            last.size += active.write(records);
+        }
+        last.records += hits.size();
+        return dropped;
+    }
+
+    /**
+     * Первые неотправленные посещения, не больше {@code max} и не дальше конца головного сегмента.
+     * Повторный вызов без {@link #commit} возвращает те же посещения. Испорченные записи пропускаются;
+     * если испорчена длина записи, пропускается остаток сегмента.
+     */
+    synchronized Batch peek(int max) throws IOException {
+        SpoolSegment head = segments.getFirst();
+        if (cursorOffset == head.size && segments.size() > 1) {
+            deleteHead();
+            head = segments.getFirst();
+        }
+        List<DtoEndpointHit> hits = new ArrayList<>();
+        pendingOffset = cursorOffset;
+        pendingRecords = cursorRecords;
+        if (cursorOffset == head.size) {
+            return new Batch(hits, 0);
+        }
+        long skipped = 0;
+        try (FileChannel channel = FileChannel.open(head.path, StandardOpenOption.READ)) {
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, cursorOffset,
+                    head.size - cursorOffset);
+            while (hits.size() < max && content.hasRemaining()) {
+                int length = content.remaining() >= Integer.BYTES ? content.getInt() : -1;
+                if (length <= 0 || length > content.remaining()) {
+                    skipped = Math.max(skipped, head.records - cursorRecords - hits.size());
+                    log.warn("Испорчена длина записи в {} на позиции {}, пропущен остаток сегмента", head.path,
+                            cursorOffset + content.position());
+                    content.position(content.limit());
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                content.get(bytes);
+                try {
+                    hits.add(reader.readValue(bytes));
+                } catch (IOException e) {
+                    skipped++;
+                    log.warn("Испорчена запись в {}, пропущена: {}", head.path, e.getMessage());
+                }
+            }
+            pendingOffset = cursorOffset + content.position();
+            pendingRecords = cursorRecords + hits.size() + skipped;
+        }
+        return new Batch(hits, skipped);
+    }
+
+    /**
+     * Отмечает посещения последнего {@link #peek} отправленными.
+     */
+    synchronized void commit() throws IOException {
+        cursorOffset = pendingOffset;
+        cursorRecords = pendingRecords;
+        SpoolSegment head = segments.getFirst();
+        if (cursorOffset == head.size) {
+            if (segments.size() > 1) {
+                deleteHead();
+            } else if (head.size > 0) {
+                active.truncate(0);
+                head.size = 0;
+                head.records = 0;
+                cursorOffset = 0;
+                cursorRecords = 0;
+            }
+        }
+        writeCursor();
+    }
+
+    synchronized boolean isEmpty() {
+        return pending() == 0;
+    }
+
+    /**
+     * Количество неотправленных посещений.
+     */
+    synchronized long pending() {
+        return segments.stream().mapToLong(segment -> segment.records).sum() - cursorRecords;
+    }
+
+    /**
+     * Место, занимаемое сегментами на диске, в байтах.
+     */
+    synchronized long size() {
+        return segments.stream().mapToLong(segment -> segment.size).sum();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.close();
+        cursorChannel.close();
+    }
+
+    private void recover(long cursorNumber, long offset) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> segmentNumber(path) > 0)
+                    .sorted(Comparator.comparingLong(HitSpool::segmentNumber))
+                    .toList();
+        }
+        for (Path file : files) {
+            long number = segmentNumber(file);
+            if (number < cursorNumber) {
+                Files.delete(file);
+                continue;
+            }
+            SpoolSegment segment = scan(file, number);
+            if (number == cursorNumber && offset <= segment.size) {
+                cursorOffset = offset;
+                cursorRecords = countRecords(file, offset);
+            }
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            roll(cursorNumber);
+        } else {
+            SpoolSegment last = segments.getLast();
+            active = FileChannel.open(last.path, StandardOpenOption.WRITE);
+            active.truncate(last.size);
+            active.position(last.size);
+        }
+        writeCursor();
+        log.info("Открыта очередь посещений на диске {}: сегментов {}, неотправленных посещений {}",
+                directory.toAbsolutePath(), segments.size(), pending());
+    }
+
+    /**
+     * Читает записи сегмента до первой недописанной.
+     */
+    private SpoolSegment scan(Path file, long number) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        SpoolSegment segment = new SpoolSegment(number, file);
+        while (content.remaining() >= Integer.BYTES) {
+            int length = content.getInt(content.position());
+            if (length <= 0 || content.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            content.position(content.position() + Integer.BYTES + length);
+            segment.records++;
+        }
+        segment.size = content.position();
+        return segment;
+    }
+
+    private long countRecords(Path file, long offset) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        long records = 0;
+        while (content.position() < offset && content.remaining() >= Integer.BYTES) {
+            content.position(content.position() + Integer.BYTES + content.getInt(content.position()));
+            records++;
+        }
+        return records;
+    }
+
+    private ByteBuffer encode(List<DtoEndpointHit> hits) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(hits.size());
+        int length = 0;
+        for (DtoEndpointHit hit : hits) {
+            byte[] bytes = writer.writeValueAsBytes(hit);
+            encoded.add(bytes);
+            length += Integer.BYTES + bytes.length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(length);
+        for (byte[] bytes : encoded) {
+            records.putInt(bytes.length).put(bytes);
+        }
+        return records.flip();
+    }
+
+    private void roll(long number) throws IOException {
+        if (active != null) {
+            active.close();
+        }
+        Path file = directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        active = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.add(new SpoolSegment(number, file));
+    }
+
+    /**
+     * Удаляет головной сегмент, не дожидаясь отправки.
+     *
+     * @return количество неотправленных посещений в нём
+     */
+    private long dropHead() throws IOException {
+        SpoolSegment head = segments.getFirst();
+        long dropped = head.records - cursorRecords;
+        log.warn("Очередь посещений на диске заполнена, удалён сегмент {}: посещений {}", head.path, dropped);
+        deleteHead();
+        return dropped;
+    }
+
+    private void deleteHead() throws IOException {
+        SpoolSegment head = segments.removeFirst();
+        Files.deleteIfExists(head.path);
+        cursorOffset = 0;
+        cursorRecords = 0;
+        pendingOffset = 0;
+        pendingRecords = 0;
+        writeCursor();
+    }
+
+    private void writeCursor() throws IOException {
+        ByteBuffer cursor = ByteBuffer.allocate(2 * Long.BYTES)
+                .putLong(segments.getFirst().number)
+                .putLong(cursorOffset)
+                .flip();
+        while (cursor.hasRemaining()) {
+            cursorChannel.write(cursor, cursor.position());
+        }
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Прочитанные посещения и количество пропущенных испорченных записей.
+     */
+    record Batch(List<DtoEndpointHit> hits, long skipped) {
+    }
+
+    private static final class SpoolSegment {
+        private final long number;
+        private final Path path;
+        private long size;
+        private long records;
+
+        private SpoolSegment(long number, Path path) {
+            this.number = number;
+            this.path = path;
+        }
+    }
+}
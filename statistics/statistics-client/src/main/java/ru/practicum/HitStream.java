@@ -0,0 +1,447 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoHitStreamAck;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Долгий поток посещений на сервер статистики: один запрос {@code POST /hits/stream}, в тело которого
+ * посещения пишутся строками NDJSON по мере вызова {@link #send}. Строки копятся в буфере и уходят кусками
+ * {@code Transfer-Encoding: chunked} по {@code chunkSize} байт.
+ * <p>
+ * Подтверждения сервера читаются отдельным потоком, пока запрос ещё отправляется. HTTP/1.1-клиент JDK отдаёт
+ * ответ только после окончания тела, поэтому запрос пишется в сокет напрямую. Отправленные посещения хранятся,
+ * пока сервер их не подтвердит; если неподтверждённых {@code window}, {@link #send} ждёт подтверждения.
+ * {@link #finish} возвращает посещения, которые сервер так и не подтвердил, — их можно отправить повторно.
+ * Экземпляр потокобезопасен; ожидание идёт на {@link ReentrantLock}, а не на мониторе, чтобы не занимать
+ * поток-носитель виртуального потока.
+ */
+@Slf4j
+public class HitStream {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final ObjectWriter hitWriter;
+    private final ObjectReader ackReader;
+    private final int chunkSize;
+    private final int window;
+    private final Duration timeout;
+    private final Socket socket;
+    private final OutputStream out;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final Thread ackThread;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition acked = lock.newCondition();
+    private final ArrayDeque<DtoEndpointHit> unacked = new ArrayDeque<>();
+    private long sent;
+    private String failure;
+    private boolean ended;
+    private boolean closed;
+
+    /**
+     * Открывает соединение и отправляет заголовки запроса.
+     *
+     * @param window сколько посещений может ждать подтверждения сервера
+     * @throws IOException если не удалось соединиться с сервером
+     */
+    HitStream(URI uri, ObjectWriter hitWriter, ObjectReader ackReader, int chunkSize, int window,
+              Duration timeout) throws IOException {
+        this.hitWriter = hitWriter;
+        this.ackReader = ackReader;
+        this.chunkSize = chunkSize;
+        this.window = window;
+        this.timeout = timeout;
+        boolean https = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : https ? 443 : 80;
+        this.socket = (https ? SSLSocketFactory.getDefault() : SocketFactory.getDefault()).createSocket();
+        try {
+            socket.connect(new InetSocketAddress(uri.getHost(), port), (int) timeout.toMillis());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            out.write(("POST " + path + " HTTP/1.1\r\n"
+                    + "Host: " + uri.getHost() + ":" + port + "\r\n"
+                    + "Content-Type: application/x-ndjson\r\n"
+                    + "Accept: application/x-ndjson\r\n"
+                    + "Transfer-Encoding: chunked\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        this.ackThread = new Thread(this::readAcks, "stats-hit-stream-acks");
+        this.ackThread.setDaemon(true);
+        this.ackThread.start();
+    }
+
+    /**
+     * Количество посещений, переданных в поток.
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return sent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество посещений, которые сервер ещё не подтвердил.
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return unacked.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Можно ли отправлять посещения: поток не закрыт, а сервер не завершил ответ и не сообщил об ошибке.
+     */
+    public boolean isOpen() {
+        lock.lock();
+        try {
+            return !closed && !ended && failure == null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Передаёт посещение в поток. Если подтверждения ждут {@code window} посещений, накопленные строки
+     * отправляются и вызов ждёт подтверждения не дольше {@code timeout}.
+     *
+     * @throws IllegalStateException если поток закрыт, соединение прервано или сервер не подтвердил посещения
+     */
+    public void send(DtoEndpointHit hit) {
+        writeLock.lock();
+        try {
+            awaitWindow();
+            try {
+                buffer.write(hitWriter.writeValueAsBytes(hit));
+                buffer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            lock.lock();
+            try {
+                unacked.add(hit);
+                sent++;
+            } finally {
+                lock.unlock();
+            }
+            if (buffer.size() >= chunkSize) {
+                flush();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Отправляет накопленные строки, не дожидаясь заполнения куска.
+     *
+     * @throws IllegalStateException если соединение прервано
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            if (buffer.size() == 0) {
+                return;
+            }
+            out.write(Integer.toHexString(buffer.size()).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            buffer.writeTo(out);
+            out.write(CRLF);
+            out.flush();
+            buffer.reset();
+        } catch (IOException e) {
+            fail("Ошибка записи: " + e.getMessage());
+            throw new IllegalStateException("Поток посещений прерван: " + e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Завершает запрос и ждёт итоговое подтверждение сервера не дольше {@code timeout}.
+     *
+     * @return посещения, сохранение которых сервер не подтвердил, в порядке отправки
+     */
+    public List<DtoEndpointHit> finish() {
+        writeLock.lock();
+        try {
+            return finishLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private List<DtoEndpointHit> finishLocked() {
+        lock.lock();
+        try {
+            if (closed) {
+                return List.of();
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (isAlive()) {
+                flush();
+                out.write('0');
+                out.write(CRLF);
+                out.write(CRLF);
+                out.flush();
+            } else {
+                closeSocket();
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.warn("Ошибка завершения потока посещений: {}", e.getMessage());
+        }
+        try {
+            if (!ackThread.join(timeout)) {
+                log.warn("Сервер статистики не завершил поток посещений за {}", timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Ожидание подтверждения потока посещений прервано");
+        } finally {
+            closeSocket();
+        }
+        lock.lock();
+        try {
+            log.info("Поток посещений закрыт, отправлено {}, не подтверждено {}", sent, unacked.size());
+            return List.copyOf(unacked);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isAlive() {
+        lock.lock();
+        try {
+            return !ended && failure == null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт места в окне неподтверждённых посещений; перед ожиданием отправляет накопленные строки,
+     * иначе сервер их не получит и не подтвердит.
+     */
+    private void awaitWindow() {
+        lock.lock();
+        try {
+            checkOpen();
+            if (unacked.size() < window) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        lock.lock();
+        try {
+            long remaining = timeout.toNanos();
+            while (unacked.size() >= window) {
+                checkOpen();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Сервер статистики не подтвердил посещения за " + timeout);
+                }
+                remaining = acked.awaitNanos(remaining);
+            }
+            checkOpen();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание подтверждения потока посещений прервано", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Поток посещений закрыт");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Поток посещений прерван: " + failure);
+        }
+        if (ended) {
+            throw new IllegalStateException("Сервер статистики закрыл поток посещений");
+        }
+    }
+
+    /**
+     * Читает ответ: каждая строка {@link DtoHitStreamAck} освобождает подтверждённые посещения.
+     */
+    private void readAcks() {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String status = readLine(in);
+            String[] parts = status == null ? new String[0] : status.split(" ", 3);
+            if (parts.length < 2 || !parts[1].equals("200")) {
+                fail("Сервер статистики ответил: " + status);
+                return;
+            }
+            boolean chunked = false;
+            for (String header = readLine(in); header != null && !header.isEmpty(); header = readLine(in)) {
+                String lower = header.toLowerCase(Locale.ROOT);
+                chunked |= lower.startsWith("transfer-encoding:") && lower.contains("chunked");
+            }
+            BufferedReader lines = new BufferedReader(new InputStreamReader(
+                    chunked ? new ChunkedInputStream(in) : in, StandardCharsets.UTF_8));
+            for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                if (!line.isBlank()) {
+                    onAck(ackReader.readValue(line));
+                }
+            }
+            lock.lock();
+            try {
+                ended = true;
+                acked.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!socket.isClosed()) {
+                fail("Ошибка чтения подтверждений: " + e.getMessage());
+            }
+        }
+    }
+
+    private void onAck(DtoHitStreamAck ack) {
+        lock.lock();
+        try {
+            long first = sent - unacked.size();
+            for (long i = first; i < ack.getAcked() && !unacked.isEmpty(); i++) {
+                unacked.poll();
+            }
+            if (ack.getError() != null) {
+                log.warn("Сервер статистики закрыл поток посещений: {}", ack.getError());
+                failure = ack.getError();
+            }
+            acked.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(String message) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = message;
+                log.warn("Ошибка потока посещений на сервер статистики: {}", message);
+            }
+            acked.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug("Ошибка закрытия соединения потока посещений: {}", e.getMessage());
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int b = in.read(); b != -1; b = in.read()) {
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1)
+                        : line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.isEmpty() ? null : line.toString();
+    }
+
+    /**
+     * Тело ответа {@code Transfer-Encoding: chunked} без заголовков кусков.
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final InputStream in;
+        private int remaining;
+        private boolean last;
+
+        private ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining == 0 && !nextChunk()) {
+                return -1;
+            }
+            int read = in.read(bytes, offset, Math.min(length, remaining));
+            if (read == -1) {
+                throw new IOException("Ответ оборван посреди куска");
+            }
+            remaining -= read;
+            if (remaining == 0) {
+                readLine(in);
+            }
+            return read;
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (last) {
+                return false;
+            }
+            String header = readLine(in);
+            if (header == null) {
+                throw new IOException("Ответ оборван перед куском");
+            }
+            int extension = header.indexOf(';');
+            remaining = Integer.parseInt((extension < 0 ? header : header.substring(0, extension)).trim(), 16);
+            if (remaining == 0) {
+                last = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.ResourceAccessException;
+import ru.practicum.model.DtoEndpointHit;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Отправка пакетов {@link HitSender} через один долгий {@link HitStream} вместо запроса {@code POST /hits}
+ * на каждый пакет. Пакет считается отправленным, когда он записан в поток; сервер подтверждает его позже.
+ * <p>
+ * Если поток прерван, текущий пакет завершается {@link ResourceAccessException}, и {@link HitSender}
+ * повторяет его по своим правилам. Неподтверждённые посещения прошлых пакетов отправляются первыми
+ * в следующий открытый поток, а при остановке возвращаются {@link #close}.
+ * Вызывается только из потока отправки {@link HitSender}.
+ */
+@Slf4j
+class HitStreamSink implements Consumer<List<DtoEndpointHit>> {
+
+    private final Supplier<HitStream> opener;
+    private List<DtoEndpointHit> carried = new ArrayList<>();
+    private HitStream stream;
+
+    /**
+     * @param opener открывает новый поток; при ошибке соединения бросает {@link ResourceAccessException}
+     */
+    HitStreamSink(Supplier<HitStream> opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public void accept(List<DtoEndpointHit> batch) {
+        if (stream != null && !stream.isOpen()) {
+            retire(Long.MAX_VALUE, List.of());
+        }
+        if (stream == null) {
+            stream = opener.get();
+            log.debug("Открыт поток посещений, повторно отправляется {}", carried.size());
+        }
+        List<DtoEndpointHit> resend = carried;
+        carried = new ArrayList<>();
+        int resent = 0;
+        long batchStart = -1;
+        try {
+            for (; resent < resend.size(); resent++) {
+                stream.send(resend.get(resent));
+            }
+            batchStart = stream.size();
+            for (DtoEndpointHit hit : batch) {
+                stream.send(hit);
+            }
+            stream.flush();
+        } catch (IllegalStateException | UncheckedIOException e) {
+            if (batchStart < 0) {
+                retire(Long.MAX_VALUE, resend.subList(resent, resend.size()));
+            } else {
+                retire(batchStart, List.of());
+            }
+            throw new ResourceAccessException("Поток посещений прерван: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Завершает поток.
+     *
+     * @return посещения, которые сервер не подтвердил, в порядке отправки
+     */
+    List<DtoEndpointHit> close() {
+        if (stream != null) {
+            retire(Long.MAX_VALUE, List.of());
+        }
+        List<DtoEndpointHit> unconfirmed = carried;
+        carried = new ArrayList<>();
+        return unconfirmed;
+    }
+
+    /**
+     * Закрывает поток и сохраняет для повторной отправки неподтверждённые посещения, отправленные в него
+     * раньше {@code limit}, и затем {@code unsent}. Остальные посещения повторит {@link HitSender}.
+     */
+    private void retire(long limit, List<DtoEndpointHit> unsent) {
+        List<DtoEndpointHit> unconfirmed = stream.finish();
+        long first = stream.size() - unconfirmed.size();
+        int keep = (int) Math.max(0, Math.min(unconfirmed.size(), limit - first));
+        carried.addAll(unconfirmed.subList(0, keep));
+        carried.addAll(unsent);
+        stream = null;
+        log.debug("Поток посещений закрыт, ожидают повторной отправки: {}", carried.size());
+    }
+}
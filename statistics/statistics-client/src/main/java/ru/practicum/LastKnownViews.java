@@ -0,0 +1,106 @@
+package ru.practicum;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.practicum.model.DtoViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Последние успешно полученные с сервера статистики значения по uri и по событиям.
+ * Отдаются вместо нулей, пока сервер недоступен или выключатель разомкнут. Значения хранятся вместе с диапазоном
+ * дат запроса и отдаются только для запроса с тем же диапазоном; {@code end == null} означает «по текущий
+ * момент» — так сохраняются просмотры за всё время, которые с каждым ответом только растут.
+ */
+final class LastKnownViews {
+
+    private final Cache<StatsKey, List<DtoViewStats>> stats;
+    private final Cache<EventKey, Long> events;
+    private final Counter served;
+
+    LastKnownViews(long maximumSize, MeterRegistry meterRegistry) {
+        this.stats = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        this.events = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        this.served = Counter.builder("stats.client.fallback")
+                .description("Ответы, собранные из последних известных значений")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.fallback.size", this, snapshot -> snapshot.stats.estimatedSize()
+                        + snapshot.events.estimatedSize())
+                .description("Количество сохранённых последних известных значений")
+                .register(meterRegistry);
+    }
+
+    void rememberStats(LocalDateTime start, LocalDateTime end, List<DtoViewStats> result, boolean unique) {
+        Map<StatsKey, List<DtoViewStats>> rows = new HashMap<>();
+        for (DtoViewStats row : result) {
+            rows.computeIfAbsent(new StatsKey(row.getUri(), start, end, unique), key -> new ArrayList<>()).add(row);
+        }
+        stats.putAll(rows);
+    }
+
+    /**
+     * Последние известные строки статистики по uri за тот же диапазон дат; без {@code uris} — по всем
+     * сохранённым для него uri.
+     */
+    List<DtoViewStats> stats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        served.increment();
+        List<DtoViewStats> result = new ArrayList<>();
+        if (uris == null || uris.isEmpty()) {
+            StatsKey range = new StatsKey(null, start, end, unique);
+            stats.asMap().forEach((key, rows) -> {
+                if (key.sameRange(range)) {
+                    result.addAll(rows);
+                }
+            });
+        } else {
+            for (String uri : uris) {
+                List<DtoViewStats> rows = stats.getIfPresent(new StatsKey(uri, start, end, unique));
+                if (rows != null) {
+                    result.addAll(rows);
+                }
+            }
+        }
+        result.sort(Comparator.comparingLong(DtoViewStats::getHits).reversed());
+        return result;
+    }
+
+    void rememberViews(LocalDateTime start, LocalDateTime end, long[] eventIds, long[] views, boolean unique) {
+        Map<EventKey, Long> values = new HashMap<>();
+        for (int i = 0; i < eventIds.length; i++) {
+            values.put(new EventKey(eventIds[i], start, end, unique), views[i]);
+        }
+        events.putAll(values);
+    }
+
+    /**
+     * Последние известные просмотры событий за тот же диапазон дат; для неизвестных событий — ноль.
+     */
+    long[] views(LocalDateTime start, LocalDateTime end, long[] eventIds, boolean unique) {
+        served.increment();
+        long[] views = new long[eventIds.length];
+        for (int i = 0; i < eventIds.length; i++) {
+            Long value = events.getIfPresent(new EventKey(eventIds[i], start, end, unique));
+            views[i] = value == null ? 0 : value;
+        }
+        return views;
+    }
+
+    private record StatsKey(String uri, LocalDateTime start, LocalDateTime end, boolean unique) {
+
+        boolean sameRange(StatsKey other) {
+            return unique == other.unique && Objects.equals(start, other.start) && Objects.equals(end, other.end);
+        }
+    }
+
+    private record EventKey(long eventId, LocalDateTime start, LocalDateTime end, boolean unique) {
+    }
+}
@@ -0,0 +1,123 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Транспорт запросов {@link StatisticsClient} к серверу статистики.
+ * <p>
+ * По умолчанию — Apache HttpClient 5 с пулом соединений: до {@code maxPerRoute} соединений к серверу,
+ * соединения живут между запросами {@code keepAlive} (если сервер не прислал свой {@code Keep-Alive}),
+ * а соединение, простоявшее дольше {@code validateAfterInactivity}, проверяется перед выдачей. Ожидание
+ * свободного соединения ограничено {@code leaseTimeout}.
+ * <p>
+ * С {@code http2} используется HTTP/2-клиент JDK: запросы идут параллельными потоками одного соединения,
+ * поэтому пула и его метрик нет. Сервер должен поддерживать HTTP/2, иначе клиент останется на HTTP/1.1.
+ */
+@Slf4j
+final class PooledRequestFactory {
+
+    private PooledRequestFactory() {
+    }
+
+    static ClientHttpRequestFactory create(StatisticsClientProperties properties, MeterRegistry meterRegistry) {
+        StatisticsClientProperties.Pool pool = properties.getPool();
+        if (pool.isHttp2()) {
+            log.info("Запросы к серверу статистики идут через HTTP/2-клиент JDK");
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(properties.getConnectTimeout())
+                    .build());
+            factory.setReadTimeout(properties.getReadTimeout());
+            return factory;
+        }
+        TimedConnectionManager connectionManager = new TimedConnectionManager(
+                Timer.builder("stats.client.pool.lease")
+                        .description("Ожидание свободного соединения с сервером статистики")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+        connectionManager.setMaxTotal(pool.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(pool.getMaxPerRoute());
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                .setSocketTimeout(Timeout.of(properties.getReadTimeout()))
+                .setValidateAfterInactivity(TimeValue.of(pool.getValidateAfterInactivity()))
+                .build());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "stats", Tags.empty())
+                .bindTo(meterRegistry);
+        Gauge.builder("stats.client.pool.utilization", connectionManager,
+                        manager -> (double) manager.getTotalStats().getLeased() / manager.getMaxTotal())
+                .description("Доля соединений пула, занятых запросами")
+                .register(meterRegistry);
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(pool.getLeaseTimeout()))
+                        .setResponseTimeout(Timeout.of(properties.getReadTimeout()))
+                        .setConnectionKeepAlive(TimeValue.of(pool.getKeepAlive()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(pool.getKeepAlive()))
+                .build();
+        log.info("Пул соединений с сервером статистики: всего {}, к серверу {}, keep-alive {}",
+                pool.getMaxTotal(), pool.getMaxPerRoute(), pool.getKeepAlive());
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * Пул, измеряющий время ожидания соединения.
+     */
+    private static final class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        private final Timer leaseTimer;
+
+        private TimedConnectionManager(Timer leaseTimer) {
+            this.leaseTimer = leaseTimer;
+        }
+
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+            LeaseRequest request = super.lease(id, route, requestTimeout, state);
+            return new LeaseRequest() {
+
+                @Override
+                public ConnectionEndpoint get(Timeout timeout)
+                        throws InterruptedException, ExecutionException, TimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return request.get(timeout);
+                    } finally {
+                        leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+}
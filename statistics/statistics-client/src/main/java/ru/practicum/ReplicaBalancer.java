@@ -0,0 +1,296 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Распределение запросов между репликами сервера статистики.
+ * <p>
+ * Запрос уходит на реплику с наименьшим количеством незавершённых запросов. Реплика, на которой
+ * {@code ejectAfterFailures} запросов подряд завершились ошибкой (ответы 4xx ошибками не считаются), исключается
+ * на {@code ejectDuration}; после этого она снова получает запросы, и первая же ошибка исключает её снова. Если
+ * исключены все реплики, запрос уходит на ту, чьё исключение закончится раньше.
+ * <p>
+ * {@link #callHedged} ждёт ответа дольше перцентиля {@code hedgePercentile} времени последних ответов и тогда
+ * отправляет тот же запрос на другую исправную реплику; возвращается первый успешный ответ, второй отбрасывается.
+ */
+@Slf4j
+final class ReplicaBalancer {
+
+    private static final int LATENCY_WINDOW = 512;
+    private static final int LATENCY_MIN_SAMPLES = 20;
+
+    private final List<Replica> replicas;
+    private final StatisticsClientProperties.Replicas properties;
+    private final Executor executor;
+    private final LatencyWindow latencies;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter hedged;
+    private final LongSupplier nanoTime;
+
+    ReplicaBalancer(List<String> uris, RestClient.Builder restClient, StatisticsClientProperties.Replicas properties,
+                    Executor executor, MeterRegistry meterRegistry) {
+        this(uris, restClient, properties, executor, meterRegistry, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime источник времени в наносекундах, как {@link System#nanoTime()}
+     */
+    ReplicaBalancer(List<String> uris, RestClient.Builder restClient, StatisticsClientProperties.Replicas properties,
+                    Executor executor, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.properties = properties;
+        this.nanoTime = nanoTime;
+        this.executor = executor;
+        this.latencies = new LatencyWindow(LATENCY_WINDOW, properties.getHedgePercentile());
+        this.replicas = new ArrayList<>(uris.size());
+        for (String uri : uris) {
+            Replica replica = new Replica(uri, restClient.clone().baseUrl(uri).build(), meterRegistry);
+            Gauge.builder("stats.client.replica.outstanding", replica, r -> r.outstanding.get())
+                    .description("Незавершённые запросы к реплике сервера статистики")
+                    .tag("replica", uri)
+                    .register(meterRegistry);
+            Gauge.builder("stats.client.replica.ejected", replica, r -> r.isEjected(nanoTime.getAsLong()) ? 1 : 0)
+                    .description("Реплика исключена из распределения запросов: 1 — да, 0 — нет")
+                    .tag("replica", uri)
+                    .register(meterRegistry);
+            replicas.add(replica);
+        }
+        this.hedged = Counter.builder("stats.client.stats.hedged")
+                .description("Повторные запросы статистики к другой реплике после медленного ответа")
+                .register(meterRegistry);
+        log.info("Реплики сервера статистики: {}", uris);
+    }
+
+    /**
+     * Реплика для запроса, который выполняется в обход {@link #call}, например для потока посещений.
+     */
+    Replica choose() {
+        Replica replica = choose(null);
+        return replica != null ? replica : leastEjected();
+    }
+
+    /**
+     * Выполняет запрос на выбранной реплике.
+     */
+    <T> T call(Function<Replica, T> call) {
+        return call(choose(), call);
+    }
+
+    /**
+     * Выполняет запрос на выбранной реплике и повторяет его на другой реплике, если ответ задерживается.
+     * Запрос должен быть идемпотентным.
+     */
+    <T> T callHedged(Function<Replica, T> call) {
+        Replica primary = choose();
+        long delay = latencies.percentile();
+        if (!properties.isHedge() || delay < 0 || replicas.size() == 1) {
+            return timed(primary, call);
+        }
+        CompletableFuture<T> first = CompletableFuture.supplyAsync(() -> timed(primary, call), executor);
+        try {
+            return first.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Ответ реплики {} дольше {} мкс", primary.uri(), delay / 1_000);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestClientException("Запрос к серверу статистики прерван", e);
+        }
+        Replica backup = choose(primary);
+        if (backup == null) {
+            return join(first);
+        }
+        hedged.increment();
+        CompletableFuture<T> second = CompletableFuture.supplyAsync(() -> timed(backup, call), executor);
+        return join(firstSuccessful(first, second));
+    }
+
+    private <T> T timed(Replica replica, Function<Replica, T> call) {
+        long start = nanoTime.getAsLong();
+        T result = call(replica, call);
+        latencies.record(nanoTime.getAsLong() - start);
+        return result;
+    }
+
+    private <T> T call(Replica replica, Function<Replica, T> call) {
+        replica.outstanding.incrementAndGet();
+        try {
+            T result = call.apply(replica);
+            replica.onSuccess();
+            return result;
+        } catch (HttpClientErrorException e) {
+            replica.onSuccess();
+            throw e;
+        } catch (RuntimeException e) {
+            replica.onFailure(properties, nanoTime.getAsLong());
+            throw e;
+        } finally {
+            replica.outstanding.decrementAndGet();
+        }
+    }
+
+    private Replica choose(Replica exclude) {
+        long now = nanoTime.getAsLong();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        Replica best = null;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica == exclude || replica.isEjected(now)) {
+                continue;
+            }
+            if (best == null || replica.outstanding.get() < best.outstanding.get()) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    private Replica leastEjected() {
+        Replica best = replicas.get(0);
+        for (Replica replica : replicas) {
+            if (replica.ejectedUntil() - best.ejectedUntil() < 0) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : List.of(first, second)) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof RuntimeException runtime
+                ? runtime
+                : new RestClientException("Ошибка запроса к серверу статистики", error);
+    }
+
+    /**
+     * Реплика сервера статистики.
+     */
+    static final class Replica {
+
+        private final String uri;
+        private final RestClient restClient;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Counter ejections;
+        private int failures;
+        private long ejectedUntil;
+
+        private Replica(String uri, RestClient restClient, MeterRegistry meterRegistry) {
+            this.uri = uri;
+            this.restClient = restClient;
+            this.ejections = Counter.builder("stats.client.replica.ejections")
+                    .description("Исключения реплики сервера статистики после ошибок подряд")
+                    .tag("replica", uri)
+                    .register(meterRegistry);
+        }
+
+        String uri() {
+            return uri;
+        }
+
+        RestClient restClient() {
+            return restClient;
+        }
+
+        private synchronized long ejectedUntil() {
+            return ejectedUntil;
+        }
+
+        private synchronized boolean isEjected(long now) {
+            return failures > 0 && now - ejectedUntil < 0;
+        }
+
+        private synchronized void onSuccess() {
+            failures = 0;
+        }
+
+        private synchronized void onFailure(StatisticsClientProperties.Replicas properties, long now) {
+            if (++failures >= properties.getEjectAfterFailures() && !isEjected(now)) {
+                ejectedUntil = now + properties.getEjectDuration().toNanos();
+                ejections.increment();
+                log.warn("Реплика {} исключена на {} после {} ошибок подряд", uri, properties.getEjectDuration(),
+                        failures);
+            }
+        }
+    }
+
+    /**
+     * Перцентиль времени последних успешных ответов; пересчитывается раз в несколько ответов.
+     */
+    private static final class LatencyWindow {
+
+        private static final int RECALCULATE_EVERY = 32;
+
+        private final long[] samples;
+        private final double percentile;
+        private int count;
+        private int next;
+        private volatile long cached = -1;
+
+        private LatencyWindow(int size, double percentile) {
+            this.samples = new long[size];
+            this.percentile = percentile;
+        }
+
+        private synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (count >= LATENCY_MIN_SAMPLES && (count < samples.length || next % RECALCULATE_EVERY == 0)) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                cached = sorted[Math.max(0, (int) Math.ceil(percentile * count) - 1)];
+            }
+        }
+
+        /**
+         * Перцентиль в наносекундах или {@code -1}, пока ответов меньше {@code LATENCY_MIN_SAMPLES}.
+         */
+        private long percentile() {
+            return cached;
+        }
+    }
+}
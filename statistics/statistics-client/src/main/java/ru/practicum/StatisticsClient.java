@@ -1,74 +1,407 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.practicum.codec.CborCodec;
+import ru.practicum.codec.LongArrayCodec;
 import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoHitStreamAck;
+import ru.practicum.model.DtoStatsQuery;
 import ru.practicum.model.DtoViewStats;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 @Component
 @Slf4j
 public class StatisticsClient {
 
 
-    private final RestClient restClient;
+    private static final int HIT_STREAM_CHUNK_SIZE = 64 * 1024;
+    private static final Duration HIT_STREAM_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration HIT_SENDER_CLOSE_TIMEOUT = Duration.ofSeconds(5);
+    private static final LocalDateTime ALL_TIME_START = LocalDateTime.of(1970, 1, 1, 0, 0);
 
-    public StatisticsClient(@Value("${app.statsUri}") String statsUri) {
-        this.restClient = RestClient.builder()
-                .baseUrl(statsUri)
-                .build();
+    private final ClientHttpRequestFactory requestFactory;
+    private final ReplicaBalancer replicas;
+    private final ObjectMapper streamMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MediaType[] statsTypes;
+    private final HitSender hitSender;
+    private final ViewCache viewCache;
+    private final CircuitBreaker breaker;
+    private final LastKnownViews lastKnown;
+    private final StatisticsClientProperties.Uris uriProperties;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter longUrlRequests;
+    private final boolean asyncHits;
+    private volatile MediaType hitType;
+
+    /**
+     * @param statsUri   адреса реплик сервера статистики через запятую, см. {@link ReplicaBalancer}
+     * @param wireFormat {@code json} или {@code cbor} — двоичный формат {@link CborCodec} для посещений
+     *                   и статистики. Если сервер не принимает CBOR, клиент переходит на JSON.
+     */
+    public StatisticsClient(@Value("${app.statsUri}") String statsUri,
+                            @Value("${app.statsWireFormat:json}") String wireFormat,
+                            StatisticsClientProperties properties,
+                            ObjectProvider<MeterRegistry> meterRegistry) throws IOException {
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        this.requestFactory = PooledRequestFactory.create(properties, registry);
+        RestClient.Builder restClient = RestClient.builder()
+                .requestFactory(requestFactory)
+                .messageConverters(converters -> {
+                    converters.removeIf(MappingJackson2CborHttpMessageConverter.class::isInstance);
+                    converters.add(new MappingJackson2CborHttpMessageConverter(CborCodec.objectMapper()));
+                });
+        this.replicas = new ReplicaBalancer(
+                List.of(StringUtils.tokenizeToStringArray(statsUri, ",")), restClient, properties.getReplicas(),
+                executor, registry);
+        boolean cbor = "cbor".equalsIgnoreCase(wireFormat);
+        this.statsTypes = cbor
+                ? new MediaType[]{MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON}
+                : new MediaType[]{MediaType.APPLICATION_JSON};
+        this.hitType = cbor ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON;
+        StatisticsClientProperties.Spool spool = properties.getSpool();
+        HitSpool hitSpool = spool.getDirectory() == null ? null : HitSpool.open(spool.getDirectory(),
+                spool.getSegmentSize().toBytes(), spool.getMaxSize().toBytes());
+        this.breaker = new CircuitBreaker("stats", properties.getBreaker(), registry);
+        this.lastKnown = new LastKnownViews(properties.getLastKnownSize(), registry);
+        this.uriProperties = properties.getUris();
+        this.longUrlRequests = Counter.builder("stats.client.stats.long-url")
+                .description("Запросы статистики, отправленные через POST /stats/batch из-за длины URL")
+                .register(registry);
+        this.asyncHits = properties.getHits().isAsync();
+        StatisticsClientProperties.Hits hits = properties.getHits();
+        if (hits.isStream()) {
+            HitStreamSink sink = new HitStreamSink(() -> openHitStream(hits.getStreamWindow()));
+            this.hitSender = new HitSender(sink, sink::close, hits, hitSpool, registry);
+        } else {
+            this.hitSender = new HitSender(this::postHits, hits, hitSpool, registry);
+        }
+        this.viewCache = properties.getViewCache().isEnabled()
+                ? new ViewCache(this::fetchAllTimeViews, properties.getViewCache(), executor, registry)
+                : null;
     }
 
+    /**
+     * Отправляет посещение на сервер статистики. Если отправить не удалось, посещение ставится в очередь
+     * фоновой отправки, см. {@link HitSender}. С {@code app.stats-client.hits.async} посещение сразу ставится
+     * в очередь, и вызов не ждёт сервера.
+     */
     public void createHit(DtoEndpointHit dtoEndpointHit) {
-        log.debug("Отправка POST-запроса на сервер статистики с hit = {}", dtoEndpointHit);
+        if (asyncHits) {
+            log.debug("Постановка hit в очередь отправки на сервер статистики: {}", dtoEndpointHit);
+            hitSender.offer(dtoEndpointHit);
+            return;
+        }
+        log.debug("Отправка hit на сервер статистики: {}", dtoEndpointHit);
         try {
-            restClient.post()
-                    .uri("/hit")
-                    .accept(MediaType.APPLICATION_JSON)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(dtoEndpointHit)
-                    .retrieve()
-                    .toBodilessEntity();
+            postHits(List.of(dtoEndpointHit));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось отправить hit на сервер статистики, он будет отправлен в фоне: {}",
+                    e.getMessage());
+            hitSender.offer(dtoEndpointHit);
+        }
+    }
 
-            log.info("Hit отправлен успешно");
-        } catch (RestClientException e) {
-            log.warn("Ошибка при отправке hit на сервер статистики. Код ошибки: {}, Сообщение: {}",
-                    e.getClass().getSimpleName(), e.getMessage());
-        } catch (Exception e) {
-            log.error("Неизвестная ошибка при отправке hit на сервер статистики", e);
+    /**
+     * Останавливает фоновую отправку посещений и виртуальные потоки клиента: части {@link #getStats},
+     * повторные запросы к репликам и загрузку {@link ViewCache}.
+     */
+    @PreDestroy
+    void close() throws Exception {
+        hitSender.close(HIT_SENDER_CLOSE_TIMEOUT);
+        executor.close();
+        if (requestFactory instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    /**
+     * Открывает долгий поток посещений {@code POST /hits/stream}, см. {@link HitStream}.
+     *
+     * @param window сколько посещений может ждать подтверждения сервера
+     * @throws ResourceAccessException если не удалось соединиться с сервером
+     */
+    public HitStream openHitStream(int window) {
+        log.debug("Открытие потока посещений на сервер статистики");
+        URI hitStreamUri = UriComponentsBuilder.fromUriString(replicas.choose().uri()).path("/hits/stream").build()
+                .toUri();
+        try {
+            return new HitStream(hitStreamUri, streamMapper.writerFor(DtoEndpointHit.class),
+                    streamMapper.readerFor(DtoHitStreamAck.class), HIT_STREAM_CHUNK_SIZE, window,
+                    HIT_STREAM_TIMEOUT);
+        } catch (IOException e) {
+            throw new ResourceAccessException("Не удалось открыть поток посещений: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Статистика по посещениям. Список uri без повторов делится на части по {@code uris.chunk-size}, части
+     * запрашиваются параллельно в виртуальных потоках, а результаты объединяются по убыванию просмотров.
+     * Запрос, URL которого длиннее {@code uris.max-url-length}, отправляется телом {@code POST /stats/batch}.
+     * Медленный запрос повторяется на другой реплике, см. {@link ReplicaBalancer#callHedged}. Запросы идут через
+     * {@link CircuitBreaker}; при ошибке или разомкнутом выключателе для своей части возвращаются последние
+     * известные значения по uri, см. {@link LastKnownViews}.
+     */
     public List<DtoViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        List<List<String>> chunks = chunk(uris);
+        if (chunks.size() == 1) {
+            return getStatsChunk(start, end, chunks.get(0), unique);
+        }
+        log.info("Отправка запросов на сервер статистики: uri {}, запросов {}", uris.size(), chunks.size());
+        Semaphore permits = new Semaphore(uriProperties.getParallelism());
+        List<CompletableFuture<List<DtoViewStats>>> futures = chunks.stream()
+                .map(chunk -> CompletableFuture.supplyAsync(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        return getStatsChunk(start, end, chunk, unique);
+                    } finally {
+                        permits.release();
+                    }
+                }, executor))
+                .toList();
+        List<DtoViewStats> result = new ArrayList<>();
+        for (CompletableFuture<List<DtoViewStats>> future : futures) {
+            List<DtoViewStats> rows = future.join();
+            if (rows != null) {
+                result.addAll(rows);
+            }
+        }
+        result.sort(Comparator.comparingLong(DtoViewStats::getHits).reversed());
+        return result;
+    }
+
+    private List<List<String>> chunk(List<String> uris) {
+        int chunkSize = uriProperties.getChunkSize();
+        if (uris == null || uris.size() <= chunkSize) {
+            return Collections.singletonList(uris);
+        }
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(uris));
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+        }
+        return chunks;
+    }
 
-        log.info("Отправка GET-запроса на сервер статистики для uris = {}", uris);
+    private List<DtoViewStats> getStatsChunk(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             boolean unique) {
         try {
-            return restClient.get()
-                    .uri(
-                            uri -> uri.path("/stats")
-                                    .queryParam("start", formatAndEncodeDateTime(start))
-                                    .queryParam("end", formatAndEncodeDateTime(end))
-                                    .queryParam("uris", uris)
-                                    .queryParam("unique", unique)
-                                    .build()
-                    )
+            List<DtoViewStats> result = breaker.call(() -> replicas.callHedged(
+                    replica -> fetchStats(replica, start, end, uris, unique)));
+            if (result != null) {
+                lastKnown.rememberStats(start, end, result, unique);
+            }
+            return result;
+        } catch (CircuitBreakerOpenException e) {
+            log.debug("Статистика из последних известных значений: {}", e.getMessage());
+            return lastKnown.stats(start, end, uris, unique);
+        } catch (RestClientException e) {
+            log.warn("Ошибка при получении статистики с сервера статистики, причины : {}", e.getMessage());
+            return lastKnown.stats(start, end, uris, unique);
+        } catch (Exception e) {
+            log.error("Неизвестная ошибка при получении статистики", e);
+            return lastKnown.stats(start, end, uris, unique);
+        }
+    }
+
+    private List<DtoViewStats> fetchStats(ReplicaBalancer.Replica replica, LocalDateTime start, LocalDateTime end,
+                                          List<String> uris, boolean unique) {
+        URI uri = UriComponentsBuilder.fromUriString(replica.uri())
+                .path("/stats")
+                .queryParam("start", formatAndEncodeDateTime(start))
+                .queryParam("end", formatAndEncodeDateTime(end))
+                .queryParam("uris", uris)
+                .queryParam("unique", unique)
+                .encode()
+                .build()
+                .toUri();
+        if (uri.toString().length() <= uriProperties.getMaxUrlLength()) {
+            log.info("Отправка GET-запроса на сервер статистики для uris = {}", uris);
+            return replica.restClient().get()
+                    .uri(uri)
+                    .accept(statsTypes)
                     .retrieve()
-                    .body(new ParameterizedTypeReference<>() {
+                    .body(new ParameterizedTypeReference<List<DtoViewStats>>() {
                     });
+        }
+        log.info("Отправка запроса статистики телом POST /stats/batch, количество uri: {}", uris.size());
+        longUrlRequests.increment();
+        List<List<DtoViewStats>> results = replica.restClient().post()
+                .uri("/stats/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(List.of(new DtoStatsQuery(start, end, uris, unique)))
+                .retrieve()
+                .body(new ParameterizedTypeReference<List<List<DtoViewStats>>>() {
+                });
+        return results == null || results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * Количество просмотров событий: {@code result[i]} — просмотры события {@code eventIds[i]}.
+     * Идентификаторы и ответ передаются массивами чисел в двоичном виде, см. {@link LongArrayCodec}.
+     * При ошибке возвращает последние известные значения, для неизвестных событий — нули.
+     */
+    public long[] getEventViews(LocalDateTime start, LocalDateTime end, long[] eventIds, boolean unique) {
+        try {
+            long[] views = fetchEventViews(start, end, eventIds, unique);
+            lastKnown.rememberViews(start, end, eventIds, views, unique);
+            return views;
+        } catch (RuntimeException e) {
+            return eventViewsFallback(e, start, end, eventIds, unique);
+        }
+    }
+
+    /**
+     * Количество просмотров событий за всё время. Если включён {@code app.stats-client.view-cache},
+     * значения берутся из {@link ViewCache}. При ошибке возвращает последние известные значения.
+     */
+    public long[] getEventViews(long[] eventIds, boolean unique) {
+        try {
+            return viewCache == null
+                    ? fetchAllTimeViews(eventIds, unique)
+                    : viewCache.get(eventIds, unique);
+        } catch (RuntimeException e) {
+            return eventViewsFallback(e, ALL_TIME_START, null, eventIds, unique);
+        }
+    }
+
+    private long[] eventViewsFallback(RuntimeException e, LocalDateTime start, LocalDateTime end, long[] eventIds,
+                                      boolean unique) {
+        if (e instanceof CircuitBreakerOpenException) {
+            log.debug("Просмотры из последних известных значений: {}", e.getMessage());
+        } else if (e instanceof RestClientException) {
+            log.warn("Ошибка при получении просмотров с сервера статистики, причины : {}", e.getMessage());
+        } else {
+            log.error("Неизвестная ошибка при получении просмотров", e);
+        }
+        return lastKnown.views(start, end, eventIds, unique);
+    }
+
+    private long[] fetchAllTimeViews(long[] eventIds, boolean unique) {
+        long[] views = fetchEventViews(ALL_TIME_START, LocalDateTime.now(), eventIds, unique);
+        lastKnown.rememberViews(ALL_TIME_START, null, eventIds, views, unique);
+        return views;
+    }
+
+    private long[] fetchEventViews(LocalDateTime start, LocalDateTime end, long[] eventIds, boolean unique) {
+        log.info("Отправка запроса просмотров на сервер статистики, количество событий: {}", eventIds.length);
+        long[] views = breaker.call(() -> replicas.call(replica -> decodeEventViews(replica.restClient().post()
+                .uri(
+                        uri -> uri.path("/stats/events/views")
+                                .queryParam("start", formatAndEncodeDateTime(start))
+                                .queryParam("end", formatAndEncodeDateTime(end))
+                                .queryParam("unique", unique)
+                                .build()
+                )
+                .accept(MediaType.APPLICATION_OCTET_STREAM)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(LongArrayCodec.encode(eventIds))
+                .retrieve()
+                .body(byte[].class), eventIds.length)));
+        return views;
+    }
+
+    private long[] decodeEventViews(byte[] body, int expected) {
+        long[] views = LongArrayCodec.decode(body == null ? new byte[0] : body);
+        if (views.length != expected) {
+            throw new IllegalStateException("Сервер статистики вернул " + views.length + " значений вместо "
+                    + expected);
+        }
+        return views;
+    }
+
+    /**
+     * Несколько запросов статистики одним вызовом {@code POST /stats/batch}.
+     * При ошибке возвращает последние известные значения для каждого запроса.
+     */
+    public List<List<DtoViewStats>> getStatsBatch(List<DtoStatsQuery> queries) {
+
+        log.info("Отправка пакетного запроса на сервер статистики, количество запросов: {}", queries.size());
+        try {
+            List<List<DtoViewStats>> results = breaker.call(() -> replicas.call(replica -> replica.restClient().post()
+                    .uri("/stats/batch")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(queries)
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<List<List<DtoViewStats>>>() {
+                    })));
+            if (results != null) {
+                for (int i = 0; i < results.size() && i < queries.size(); i++) {
+                    DtoStatsQuery query = queries.get(i);
+                    lastKnown.rememberStats(query.getStart(), query.getEnd(), results.get(i), query.isUnique());
+                }
+            }
+            return results;
+        } catch (CircuitBreakerOpenException e) {
+            log.debug("Статистика из последних известных значений: {}", e.getMessage());
+            return lastKnownResults(queries);
         } catch (RestClientException e) {
             log.warn("Ошибка при получении статистики с сервера статистики, причины : {}", e.getMessage());
-            return List.of();
+            return lastKnownResults(queries);
         } catch (Exception e) {
             log.error("Неизвестная ошибка при получении статистики", e);
-            return List.of();
+            return lastKnownResults(queries);
+        }
+    }
+
+    private List<List<DtoViewStats>> lastKnownResults(List<DtoStatsQuery> queries) {
+        return queries.stream()
+                .map(query -> lastKnown.stats(query.getStart(), query.getEnd(), query.getUris(), query.isUnique()))
+                .toList();
+    }
+
+    private void postHits(List<DtoEndpointHit> hits) {
+        MediaType contentType = hitType;
+        try {
+            replicas.call(replica -> replica.restClient().post()
+                    .uri("/hits")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(contentType)
+                    .body(hits)
+                    .retrieve()
+                    .toBodilessEntity());
+        } catch (HttpClientErrorException.UnsupportedMediaType e) {
+            if (!MediaType.APPLICATION_CBOR.equals(contentType)) {
+                throw e;
+            }
+            log.warn("Сервер статистики не принимает CBOR, посещения отправляются в JSON");
+            hitType = MediaType.APPLICATION_JSON;
+            postHits(hits);
         }
     }
 
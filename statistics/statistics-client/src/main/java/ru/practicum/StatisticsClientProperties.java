@@ -0,0 +1,296 @@
+package ru.practicum;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Настройки клиента статистики (префикс {@code app.stats-client}).
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.stats-client")
+public class StatisticsClientProperties {
+
+    /**
+     * Время установки соединения с сервером статистики.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Время ожидания ответа сервера статистики.
+     */
+    private Duration readTimeout = Duration.ofSeconds(3);
+
+    /**
+     * Сколько последних известных значений по uri и по событиям хранится для ответа при недоступном сервере,
+     * см. {@code ru.practicum.LastKnownViews}.
+     */
+    private long lastKnownSize = 100_000;
+
+    private final Pool pool = new Pool();
+
+    private final Uris uris = new Uris();
+
+    private final Replicas replicas = new Replicas();
+
+    private final Breaker breaker = new Breaker();
+
+    private final Hits hits = new Hits();
+
+    private final Spool spool = new Spool();
+
+    private final ViewCache viewCache = new ViewCache();
+
+    /**
+     * Соединения с сервером статистики, см. {@link PooledRequestFactory}.
+     */
+    @Getter
+    @Setter
+    public static class Pool {
+
+        /**
+         * Максимальное количество соединений в пуле.
+         */
+        private int maxTotal = 100;
+
+        /**
+         * Максимальное количество соединений с одним сервером статистики.
+         */
+        private int maxPerRoute = 50;
+
+        /**
+         * Сколько соединение живёт без запросов, если сервер не прислал {@code Keep-Alive}.
+         */
+        private Duration keepAlive = Duration.ofSeconds(30);
+
+        /**
+         * Соединение, простоявшее дольше этого времени, проверяется перед выдачей.
+         */
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+        /**
+         * Сколько ждать свободного соединения из пула.
+         */
+        private Duration leaseTimeout = Duration.ofSeconds(1);
+
+        /**
+         * HTTP/2-клиент JDK вместо пула HTTP/1.1-соединений.
+         */
+        private boolean http2 = false;
+    }
+
+    /**
+     * Разбиение длинных списков uri в {@code getStats}, см. {@link StatisticsClient#getStats}.
+     */
+    @Getter
+    @Setter
+    public static class Uris {
+
+        /**
+         * Сколько uri уходит в одном запросе статистики.
+         */
+        private int chunkSize = 100;
+
+        /**
+         * Сколько запросов одного вызова выполняется одновременно.
+         */
+        private int parallelism = 8;
+
+        /**
+         * Наибольшая длина URL запроса {@code GET /stats}; более длинный запрос отправляется телом
+         * {@code POST /stats/batch}.
+         */
+        private int maxUrlLength = 4096;
+    }
+
+    /**
+     * Распределение запросов между репликами из {@code app.statsUri}, см. {@link ReplicaBalancer}.
+     */
+    @Getter
+    @Setter
+    public static class Replicas {
+
+        /**
+         * После скольких ошибок подряд реплика исключается.
+         */
+        private int ejectAfterFailures = 3;
+
+        /**
+         * На сколько исключается реплика.
+         */
+        private Duration ejectDuration = Duration.ofSeconds(30);
+
+        /**
+         * Повторять медленный запрос {@code getStats} на другой реплике.
+         */
+        private boolean hedge = true;
+
+        /**
+         * Перцентиль времени ответа, после которого запрос повторяется на другой реплике.
+         */
+        private double hedgePercentile = 0.95;
+    }
+
+    /**
+     * Выключатель запросов статистики, см. {@link CircuitBreaker}.
+     */
+    @Getter
+    @Setter
+    public static class Breaker {
+
+        /**
+         * Доля ошибок в процентах, при которой выключатель размыкается.
+         */
+        private int failureRateThreshold = 50;
+
+        /**
+         * Доля медленных вызовов в процентах, при которой выключатель размыкается.
+         */
+        private int slowCallRateThreshold = 50;
+
+        /**
+         * Вызов дольше этого времени считается медленным.
+         */
+        private Duration slowCallDuration = Duration.ofSeconds(1);
+
+        /**
+         * Количество последних вызовов, по которым считаются доли.
+         */
+        private int windowSize = 20;
+
+        /**
+         * Минимальное количество вызовов в окне, после которого проверяются пороги.
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * Сколько выключатель остаётся разомкнутым до пробного вызова.
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Фоновая отправка посещений, см. {@link HitSender}.
+     */
+    @Getter
+    @Setter
+    public static class Hits {
+
+        /**
+         * Ставить посещения в очередь фоновой отправки, не дожидаясь сервера. Посещение попадает в статистику
+         * с задержкой до {@code flushPeriod}, поэтому вызывающий может не увидеть собственный просмотр.
+         */
+        private boolean async = false;
+
+        /**
+         * Сколько посещений может ожидать отправки в памяти.
+         */
+        private int bufferSize = 10_000;
+
+        /**
+         * Сколько посещений отправляется одним запросом {@code POST /hits}.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Как долго посещение может ждать наполнения пакета.
+         */
+        private Duration flushPeriod = Duration.ofMillis(200);
+
+        /**
+         * Что делать с посещением, если буфер в памяти заполнен.
+         */
+        private Overflow overflow = Overflow.DROP_NEWEST;
+
+        /**
+         * Сколько раз повторять пакет, если сервер недоступен.
+         */
+        private int maxRetries = 3;
+
+        /**
+         * Отправлять пакеты через один долгий поток {@code POST /hits/stream} вместо запроса на каждый пакет,
+         * см. {@link HitStream}. Счётчик {@code stats.client.hits.sent} тогда учитывает посещения, записанные
+         * в поток; неподтверждённые сервером посещения отправляются повторно.
+         */
+        private boolean stream = false;
+
+        /**
+         * Сколько посещений в потоке может ждать подтверждения сервера, прежде чем отправка остановится.
+         */
+        private int streamWindow = 5_000;
+    }
+
+    /**
+     * Очередь посещений на диске, см. {@link HitSpool}.
+     */
+    @Getter
+    @Setter
+    public static class Spool {
+
+        /**
+         * Каталог файлов очереди; если не задан, неотправленные посещения отбрасываются.
+         */
+        private Path directory;
+
+        /**
+         * Сколько места на диске может занимать очередь.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Размер одного файла очереди.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(4);
+    }
+
+    /**
+     * Кеш просмотров событий за всё время, см. {@code ru.practicum.ViewCache}.
+     */
+    @Getter
+    @Setter
+    public static class ViewCache {
+
+        /**
+         * Включить кеш. Значение обновляется не чаще {@code refreshAfter}, поэтому вызывающий может не увидеть
+         * собственный просмотр.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Сколько хранится значение.
+         */
+        private Duration ttl = Duration.ofMinutes(1);
+
+        /**
+         * Через сколько значение обновляется в фоне при следующем чтении.
+         */
+        private Duration refreshAfter = Duration.ofSeconds(10);
+
+        /**
+         * Максимальное количество событий в кеше.
+         */
+        private long maximumSize = 100_000;
+    }
+
+    public enum Overflow {
+        /**
+         * Отбросить новое посещение.
+         */
+        DROP_NEWEST,
+        /**
+         * Отбросить самое старое посещение из буфера и положить новое.
+         */
+        DROP_OLDEST,
+        /**
+         * Записать новое посещение в очередь на диске; без {@code spool.directory} — отбросить.
+         */
+        SPOOL
+    }
+}
@@ -0,0 +1,114 @@
+package ru.practicum;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Кеш просмотров событий за всё время на стороне клиента.
+ * <p>
+ * Значение по событию хранится {@code ttl}. После {@code refreshAfter} чтение сразу возвращает сохранённое
+ * значение и запускает его обновление в фоне. Одновременные промахи по одному событию ждут один общий запрос,
+ * а промахи одного вызова {@link #get} загружаются одним запросом. Ошибки загрузки не кешируются; при ошибке
+ * фонового обновления остаётся прежнее значение. Загрузка идёт в {@code executor} клиента.
+ */
+final class ViewCache {
+
+    private final AsyncLoadingCache<Key, Long> cache;
+
+    ViewCache(Loader loader, StatisticsClientProperties.ViewCache properties, Executor executor,
+              MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .refreshAfterWrite(properties.getRefreshAfter())
+                .executor(executor)
+                .recordStats()
+                .buildAsync(new ViewLoader(loader));
+        FunctionCounter.builder("stats.client.views.cache.hits", cache, c -> c.synchronous().stats().hitCount())
+                .description("Просмотры событий, найденные в кеше клиента")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.views.cache.misses", cache,
+                        c -> c.synchronous().stats().missCount())
+                .description("Просмотры событий, загруженные с сервера статистики")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.views.cache.evictions", cache,
+                        c -> c.synchronous().stats().evictionCount())
+                .description("Просмотры, вытесненные из кеша по размеру или времени жизни")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.views.cache.size", cache, c -> c.synchronous().estimatedSize())
+                .description("Количество событий в кеше просмотров")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Просмотры событий: {@code result[i]} — просмотры события {@code eventIds[i]}.
+     *
+     * @throws RuntimeException ошибка загрузки промахов, как её выбросил {@link Loader}
+     */
+    long[] get(long[] eventIds, boolean unique) {
+        List<Key> keys = new ArrayList<>(eventIds.length);
+        for (long eventId : eventIds) {
+            keys.add(new Key(eventId, unique));
+        }
+        Map<Key, Long> views;
+        try {
+            views = cache.getAll(keys).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        long[] result = new long[eventIds.length];
+        for (int i = 0; i < eventIds.length; i++) {
+            result[i] = views.getOrDefault(keys.get(i), 0L);
+        }
+        return result;
+    }
+
+    /**
+     * Загрузка просмотров событий за всё время с сервера статистики.
+     */
+    interface Loader {
+        long[] load(long[] eventIds, boolean unique);
+    }
+
+    private record Key(long eventId, boolean unique) {
+    }
+
+    private record ViewLoader(Loader loader) implements CacheLoader<Key, Long> {
+
+        @Override
+        public Long load(Key key) {
+            return loader.load(new long[]{key.eventId()}, key.unique())[0];
+        }
+
+        @Override
+        public Map<Key, Long> loadAll(Set<? extends Key> keys) {
+            Map<Key, Long> views = new HashMap<>();
+            for (boolean unique : new boolean[]{false, true}) {
+                long[] eventIds = keys.stream()
+                        .filter(key -> key.unique() == unique)
+                        .mapToLong(Key::eventId)
+                        .toArray();
+                if (eventIds.length == 0) {
+                    continue;
+                }
+                long[] loaded = loader.load(eventIds, unique);
+                for (int i = 0; i < eventIds.length; i++) {
+                    views.put(new Key(eventIds[i], unique), loaded[i]);
+                }
+            }
+            return views;
+        }
+    }
+}
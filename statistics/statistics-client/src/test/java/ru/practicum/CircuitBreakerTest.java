@@ -0,0 +1,142 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        StatisticsClientProperties.Breaker properties = new StatisticsClientProperties.Breaker();
+        properties.setWindowSize(4);
+        properties.setMinimumCalls(4);
+        properties.setFailureRateThreshold(50);
+        properties.setSlowCallRateThreshold(50);
+        properties.setSlowCallDuration(Duration.ofSeconds(1));
+        properties.setOpenDuration(Duration.ofSeconds(10));
+        breaker = new CircuitBreaker("test", properties, meterRegistry, now::get);
+    }
+
+    @Test
+    void call_whenFailureRateBelowThreshold_shouldStayClosed() {
+        succeed(3);
+        fail(1);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void call_whenFailureRateReached_shouldOpenAndRejectCalls() {
+        succeed(2);
+        fail(2);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> breaker.call(calls::incrementAndGet))
+                .isInstanceOf(CircuitBreakerOpenException.class);
+        assertThat(calls).hasValue(0);
+        assertThat(meterRegistry.get("stats.client.breaker.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_whenClientError_shouldNotCountAsFailure() {
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> breaker.call(() -> {
+                throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null);
+            })).isInstanceOf(HttpClientErrorException.class);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void call_whenSlowCallRateReached_shouldOpen() {
+        succeed(2);
+        for (int i = 0; i < 2; i++) {
+            breaker.call(() -> now.addAndGet(Duration.ofSeconds(2).toNanos()));
+        }
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void call_afterOpenDuration_shouldLetSingleProbeThrough() {
+        fail(4);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        String result = breaker.call(() -> {
+            assertThatThrownBy(() -> breaker.call(() -> "второй"))
+                    .isInstanceOf(CircuitBreakerOpenException.class);
+            return "пробный";
+        });
+
+        assertThat(result).isEqualTo("пробный");
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void call_whenProbeFails_shouldOpenAgain() {
+        fail(4);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        fail(1);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void call_whenProbeIsSlow_shouldOpenAgain() {
+        fail(4);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        breaker.call(() -> now.addAndGet(Duration.ofSeconds(2).toNanos()));
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void call_afterClosing_shouldStartWithEmptyWindow() {
+        fail(4);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        succeed(1);
+
+        fail(3);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private void succeed(int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.call(() -> "ok");
+        }
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertThatThrownBy(() -> breaker.call(() -> {
+                throw new ResourceAccessException("Connection refused");
+            })).isInstanceOf(ResourceAccessException.class);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import ru.practicum.model.DtoEndpointHit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.HitSpoolTest.hit;
+import static ru.practicum.HitSpoolTest.hits;
+
+class HitSenderTest {
+
+    @TempDir
+    private Path directory;
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<DtoEndpointHit> received = new CopyOnWriteArrayList<>();
+    private HitSender hitSender;
+    private HitSpool spool;
+
+    @AfterEach
+    void tearDown() throws InterruptedException, IOException {
+        if (hitSender != null) {
+            hitSender.close(Duration.ofSeconds(1));
+        }
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    @Test
+    void offer_whenBatchIsFull_shouldSendWithoutWaitingForFlush() throws Exception {
+        List<List<DtoEndpointHit>> batches = new CopyOnWriteArrayList<>();
+        StatisticsClientProperties.Hits properties =
+                properties(100, 5, StatisticsClientProperties.Overflow.DROP_NEWEST);
+        properties.setFlushPeriod(Duration.ofMinutes(1));
+        hitSender = new HitSender(batches::add, properties, null, meterRegistry);
+
+        for (int i = 0; i < 10; i++) {
+            hitSender.offer(hit(i));
+        }
+
+        awaitUntil(() -> batches.size() == 2);
+        assertThat(batches).containsExactly(hits(0, 5), hits(5, 10));
+        assertThat(counter("stats.client.hits.sent")).isEqualTo(10);
+    }
+
+    @Test
+    void offer_whenBatchIsNotFull_shouldSendAfterFlushPeriod() throws Exception {
+        hitSender = new HitSender(received::addAll,
+                properties(100, 50, StatisticsClientProperties.Overflow.DROP_NEWEST), null, meterRegistry);
+
+        hitSender.offer(hit(0));
+
+        awaitUntil(() -> !received.isEmpty());
+        assertThat(received).containsExactly(hit(0));
+    }
+
+    @Test
+    void send_whenServerUnavailable_shouldRetry() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        hitSender = new HitSender(batch -> {
+            if (attempts.incrementAndGet() <= 2) {
+                throw new ResourceAccessException("Connection refused");
+            }
+            received.addAll(batch);
+        }, properties(100, 2, StatisticsClientProperties.Overflow.DROP_NEWEST), null, meterRegistry);
+
+        hitSender.offer(hit(0));
+
+        awaitUntil(() -> !received.isEmpty());
+        assertThat(received).containsExactly(hit(0));
+        assertThat(counter("stats.client.hits.retried")).isEqualTo(2);
+        assertThat(counter("stats.client.hits.dropped")).isZero();
+    }
+
+    @Test
+    void send_whenServerRejectsBatch_shouldDropWithoutRetry() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        hitSender = new HitSender(batch -> {
+            attempts.incrementAndGet();
+            throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null);
+        }, properties(100, 2, StatisticsClientProperties.Overflow.DROP_NEWEST), null, meterRegistry);
+
+        hitSender.offer(hit(0));
+
+        awaitUntil(() -> counter("stats.client.hits.dropped") == 1);
+        assertThat(attempts).hasValue(1);
+        assertThat(counter("stats.client.hits.retried")).isZero();
+    }
+
+    @Test
+    void offer_whenBufferIsFullAndDropOldest_shouldReplaceOldestHit() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hitSender = new HitSender(batch -> {
+            sending.countDown();
+            await(release);
+            received.addAll(batch);
+        }, properties(2, 2, StatisticsClientProperties.Overflow.DROP_OLDEST), null, meterRegistry);
+        hitSender.offer(hit(0));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(hitSender.offer(hit(1))).isTrue();
+        assertThat(hitSender.offer(hit(2))).isTrue();
+        assertThat(hitSender.offer(hit(3))).isTrue();
+        release.countDown();
+
+        awaitUntil(() -> received.size() == 3);
+        assertThat(received).containsExactly(hit(0), hit(2), hit(3));
+        assertThat(counter("stats.client.hits.dropped")).isEqualTo(1);
+    }
+
+    @Test
+    void offer_whenBufferIsFullAndDropNewest_shouldRejectHit() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hitSender = new HitSender(batch -> {
+            sending.countDown();
+            await(release);
+            received.addAll(batch);
+        }, properties(2, 2, StatisticsClientProperties.Overflow.DROP_NEWEST), null, meterRegistry);
+        hitSender.offer(hit(0));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        hitSender.offer(hit(1));
+        hitSender.offer(hit(2));
+        assertThat(hitSender.offer(hit(3))).isFalse();
+        release.countDown();
+
+        awaitUntil(() -> received.size() == 3);
+        assertThat(received).isEqualTo(hits(0, 3));
+        assertThat(counter("stats.client.hits.dropped")).isEqualTo(1);
+    }
+
+    @Test
+    void close_withoutSpool_shouldSendRemainingHits() throws Exception {
+        StatisticsClientProperties.Hits properties =
+                properties(100, 50, StatisticsClientProperties.Overflow.DROP_NEWEST);
+        properties.setFlushPeriod(Duration.ofMinutes(1));
+        HitSender closing = new HitSender(received::addAll, properties, null, meterRegistry);
+        closing.offer(hit(0));
+        closing.offer(hit(1));
+
+        closing.close(Duration.ofSeconds(5));
+
+        assertThat(received).isEqualTo(hits(0, 2));
+        assertThat(closing.offer(hit(2))).isFalse();
+    }
+
+    @Test
+    void offer_whenBuffersOverflowToSpool_shouldKeepOrder() throws Exception {
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hitSender = new HitSender(batch -> {
+            sending.countDown();
+            await(release);
+            received.addAll(batch);
+        }, properties(4, 2, StatisticsClientProperties.Overflow.SPOOL), spool, meterRegistry);
+
+        hitSender.offer(hit(0));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < 11; i++) {
+            hitSender.offer(hit(i));
+        }
+        release.countDown();
+
+        awaitUntil(() -> received.size() == 9);
+        assertThat(received).isEqualTo(hits(0, 9));
+        assertThat(counter("stats.client.hits.dropped")).isEqualTo(2);
+    }
+
+    @Test
+    void replay_whenSpoolRecordIsCorrupt_shouldSkipAndCountIt() throws Exception {
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        spool.append(hits(0, 3));
+        spool.close();
+        HitSpoolTest.corruptSecondRecord(directory.resolve("spool-1.seg"));
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+
+        hitSender = new HitSender(received::addAll,
+                properties(100, 10, StatisticsClientProperties.Overflow.SPOOL), spool, meterRegistry);
+
+        awaitUntil(spool::isEmpty);
+        assertThat(received).containsExactly(hit(0), hit(2));
+        assertThat(counter("stats.client.hits.dropped")).isEqualTo(1);
+    }
+
+    @Test
+    void replay_whenSenderThrowsUnexpectedError_shouldDropBatchAndContinue() throws Exception {
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        spool.append(hits(0, 3));
+        Consumer<List<DtoEndpointHit>> sender = batch -> {
+            if (batch.contains(hit(0))) {
+                throw new IllegalStateException("сбой отправки");
+            }
+            received.addAll(batch);
+        };
+        hitSender = new HitSender(sender, properties(100, 10, StatisticsClientProperties.Overflow.SPOOL), spool,
+                meterRegistry);
+
+        awaitUntil(spool::isEmpty);
+        hitSender.offer(hit(3));
+
+        awaitUntil(() -> !received.isEmpty());
+        assertThat(received).containsExactly(hit(3));
+        assertThat(counter("stats.client.hits.dropped")).isEqualTo(3);
+    }
+
+    @Test
+    void close_whenSenderIsStuck_shouldLeaveSpoolOpenForRemainingHits() throws Exception {
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HitSender stuck = new HitSender(batch -> {
+            sending.countDown();
+            await(release);
+            received.addAll(batch);
+        }, properties(100, 2, StatisticsClientProperties.Overflow.SPOOL), spool, meterRegistry);
+        stuck.offer(hit(0));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        stuck.offer(hit(1));
+        stuck.offer(hit(2));
+
+        stuck.close(Duration.ofMillis(100));
+        release.countDown();
+
+        awaitUntil(() -> spool.pending() == 2);
+        assertThat(received).containsExactly(hit(0));
+        assertThat(spool.peek(10).hits()).isEqualTo(hits(1, 3));
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    static StatisticsClientProperties.Hits properties(int bufferSize, int batchSize,
+                                                     StatisticsClientProperties.Overflow overflow) {
+        StatisticsClientProperties.Hits properties = new StatisticsClientProperties.Hits();
+        properties.setBufferSize(bufferSize);
+        properties.setBatchSize(batchSize);
+        properties.setFlushPeriod(Duration.ofMillis(10));
+        properties.setOverflow(overflow);
+        return properties;
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("условие не выполнилось за 5 с").isNegative();
+            Thread.sleep(5);
+        }
+    }
+}
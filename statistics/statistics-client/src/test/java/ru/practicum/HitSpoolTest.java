@@ -0,0 +1,137 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.model.DtoEndpointHit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitSpoolTest {
+
+    @TempDir
+    private Path directory;
+    private HitSpool spool;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    @Test
+    void peek_whenCommitted_shouldReturnNextHits() throws IOException {
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        spool.append(hits(0, 5));
+
+        assertThat(spool.peek(3).hits()).isEqualTo(hits(0, 3));
+        assertThat(spool.peek(3).hits()).isEqualTo(hits(0, 3));
+        spool.commit();
+
+        assertThat(spool.peek(3).hits()).isEqualTo(hits(3, 5));
+        spool.commit();
+        assertThat(spool.isEmpty()).isTrue();
+        assertThat(spool.size()).isZero();
+    }
+
+    @Test
+    void open_afterClose_shouldResumeFromCursor() throws IOException {
+        spool = HitSpool.open(directory, 512, 64 * 1024);
+        for (int i = 0; i < 20; i++) {
+            spool.append(hits(i, i + 1));
+        }
+        int sent = spool.peek(7).hits().size();
+        spool.commit();
+        spool.close();
+
+        spool = HitSpool.open(directory, 512, 64 * 1024);
+
+        assertThat(spool.pending()).isEqualTo(20 - sent);
+        List<DtoEndpointHit> replayed = new ArrayList<>();
+        while (!spool.isEmpty()) {
+            replayed.addAll(spool.peek(5).hits());
+            spool.commit();
+        }
+        assertThat(replayed).isEqualTo(hits(sent, 20));
+    }
+
+    @Test
+    void append_whenMaxSizeReached_shouldDropOldestSegment() throws IOException {
+        spool = HitSpool.open(directory, 256, 512);
+        long dropped = 0;
+        for (int i = 0; i < 40; i++) {
+            dropped += spool.append(hits(i, i + 1));
+        }
+
+        assertThat(spool.size()).isLessThanOrEqualTo(512);
+        assertThat(dropped).isPositive();
+        assertThat(spool.pending() + dropped).isEqualTo(40);
+        assertThat(spool.peek(1).hits().getFirst()).isEqualTo(hit((int) dropped));
+    }
+
+    @Test
+    void peek_whenRecordIsCorrupt_shouldSkipIt() throws IOException {
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        spool.append(hits(0, 3));
+        spool.close();
+        corruptSecondRecord(directory.resolve("spool-1.seg"));
+
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        HitSpool.Batch batch = spool.peek(10);
+        spool.commit();
+
+        assertThat(batch.hits()).containsExactly(hit(0), hit(2));
+        assertThat(batch.skipped()).isEqualTo(1);
+        assertThat(spool.isEmpty()).isTrue();
+    }
+
+    @Test
+    void open_whenLastRecordIsTruncated_shouldDropIt() throws IOException {
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+        spool.append(hits(0, 3));
+        long size = spool.size();
+        spool.close();
+        try (FileChannel file = FileChannel.open(directory.resolve("spool-1.seg"), StandardOpenOption.WRITE)) {
+            file.truncate(size - 3);
+        }
+
+        spool = HitSpool.open(directory, 4096, 64 * 1024);
+
+        assertThat(spool.pending()).isEqualTo(2);
+        assertThat(spool.peek(10).hits()).isEqualTo(hits(0, 2));
+    }
+
+    static void corruptSecondRecord(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, 0);
+            long second = Integer.BYTES + length.flip().getInt();
+            length.clear();
+            channel.read(length, second);
+            byte[] garbage = new byte[length.flip().getInt()];
+            Arrays.fill(garbage, (byte) 0xFF);
+            channel.write(ByteBuffer.wrap(garbage), second + Integer.BYTES);
+        }
+    }
+
+    static List<DtoEndpointHit> hits(int from, int to) {
+        return IntStream.range(from, to).mapToObj(HitSpoolTest::hit).toList();
+    }
+
+    static DtoEndpointHit hit(int i) {
+        return new DtoEndpointHit("ewm-main-service", "/events/" + i, "10.0.0." + i % 256,
+                LocalDateTime.of(2024, 2, 1, 12, 0).plusSeconds(i));
+    }
+}
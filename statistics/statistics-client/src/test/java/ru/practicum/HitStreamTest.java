@@ -0,0 +1,215 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.ResourceAccessException;
+import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoHitStreamAck;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.practicum.HitSenderTest.await;
+import static ru.practicum.HitSenderTest.awaitUntil;
+import static ru.practicum.HitSpoolTest.hit;
+import static ru.practicum.HitSpoolTest.hits;
+
+/**
+ * Сервер повторяет протокол {@code HitStreamSession}: подтверждение после каждых {@code ackEvery} записей
+ * и итоговое подтверждение в конце тела, а при ошибке — подтверждение с причиной и закрытие потока.
+ */
+class HitStreamTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<DtoEndpointHit> saved = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private int ackEvery = 2;
+    private int failingConnection;
+    private int failAfter;
+    private CountDownLatch release = new CountDownLatch(0);
+    private HttpServer statsServer;
+    private HitStream stream;
+    private HitSender hitSender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        statsServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        statsServer.createContext("/hits/stream", this::stream);
+        statsServer.setExecutor(Executors.newCachedThreadPool());
+        statsServer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (hitSender != null) {
+            hitSender.close(Duration.ofSeconds(1));
+        }
+        if (stream != null) {
+            stream.finish();
+        }
+        statsServer.stop(0);
+    }
+
+    @Test
+    void send_whenServerAcksWhileStreaming_shouldKeepOnlyUnackedHits() throws IOException {
+        stream = open(2);
+
+        for (int i = 0; i < 10; i++) {
+            stream.send(hit(i));
+        }
+
+        assertThat(stream.pending()).isLessThanOrEqualTo(2);
+        assertThat(stream.finish()).isEmpty();
+        assertThat(stream.size()).isEqualTo(10);
+        assertThat(saved).isEqualTo(hits(0, 10));
+    }
+
+    @Test
+    void send_whenWindowIsFull_shouldWaitForServerAck() throws Exception {
+        release = new CountDownLatch(1);
+        stream = open(2);
+        stream.send(hit(0));
+        stream.send(hit(1));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> third = executor.submit(() -> stream.send(hit(2)));
+            assertThatThrownBy(() -> third.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            release.countDown();
+            third.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(stream.pending()).isEqualTo(1);
+        assertThat(stream.finish()).isEmpty();
+        assertThat(saved).isEqualTo(hits(0, 3));
+    }
+
+    @Test
+    void finish_whenServerReportsError_shouldReturnUnackedHits() throws IOException {
+        failingConnection = 1;
+        failAfter = 3;
+        stream = open(10);
+        for (int i = 0; i < 4; i++) {
+            stream.send(hit(i));
+        }
+        stream.flush();
+
+        assertThat(stream.finish()).isEqualTo(hits(2, 4));
+        assertThat(stream.isOpen()).isFalse();
+        assertThatThrownBy(() -> stream.send(hit(4))).isInstanceOf(IllegalStateException.class);
+        assertThat(saved).isEqualTo(hits(0, 2));
+    }
+
+    @Test
+    void hitSender_whenStreamBreaks_shouldResendUnackedHitsThroughNewStream() throws Exception {
+        ackEvery = 1;
+        failingConnection = 1;
+        failAfter = 3;
+        HitStreamSink sink = new HitStreamSink(() -> {
+            try {
+                return open(3);
+            } catch (IOException e) {
+                throw new ResourceAccessException(e.getMessage());
+            }
+        });
+        hitSender = new HitSender(sink, sink::close,
+                HitSenderTest.properties(100, 2, StatisticsClientProperties.Overflow.DROP_NEWEST), null,
+                meterRegistry);
+
+        for (int i = 0; i < 6; i++) {
+            hitSender.offer(hit(i));
+        }
+        awaitUntil(() -> saved.size() == 6);
+        hitSender.close(TIMEOUT);
+
+        assertThat(saved).isEqualTo(hits(0, 6));
+        assertThat(connections).hasValue(2);
+        assertThat(meterRegistry.get("stats.client.hits.dropped").counter().count()).isZero();
+    }
+
+    @Test
+    void close_whenServerDidNotAck_shouldReturnUnconfirmedHitsToHitSender() throws Exception {
+        ackEvery = Integer.MAX_VALUE;
+        failingConnection = 1;
+        failAfter = 2;
+        HitStreamSink sink = new HitStreamSink(() -> {
+            try {
+                return open(10);
+            } catch (IOException e) {
+                throw new ResourceAccessException(e.getMessage());
+            }
+        });
+        sink.accept(hits(0, 2));
+
+        assertThat(sink.close()).isEqualTo(hits(0, 2));
+        assertThat(saved).isEmpty();
+    }
+
+    private HitStream open(int window) throws IOException {
+        return new HitStream(URI.create("http://localhost:" + statsServer.getAddress().getPort() + "/hits/stream"),
+                objectMapper.writerFor(DtoEndpointHit.class), objectMapper.readerFor(DtoHitStreamAck.class), 64,
+                window, TIMEOUT);
+    }
+
+    private void stream(HttpExchange exchange) throws IOException {
+        int connection = connections.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        List<DtoEndpointHit> received = new ArrayList<>();
+        long acked = 0;
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+             OutputStream out = exchange.getResponseBody()) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                received.add(objectMapper.readValue(line, DtoEndpointHit.class));
+                if (connection == failingConnection && received.size() == failAfter) {
+                    ack(out, acked, "Некорректная запись NDJSON №" + failAfter);
+                    return;
+                }
+                if (received.size() % ackEvery == 0) {
+                    await(release);
+                    saved.addAll(received.subList((int) acked, received.size()));
+                    acked = received.size();
+                    ack(out, acked, null);
+                }
+            }
+            saved.addAll(received.subList((int) acked, received.size()));
+            ack(out, received.size(), null);
+        }
+    }
+
+    private void ack(OutputStream out, long acked, String error) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(new DtoHitStreamAck(acked, error)));
+        out.write('\n');
+        out.flush();
+    }
+}
@@ -0,0 +1,84 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка {@code GET /stats} при 64 параллельных потоках: Apache HttpClient с настройками по умолчанию
+ * (5 соединений к серверу) против {@link PooledRequestFactory} с настройками по умолчанию.
+ * Нужен запущенный сервер статистики, адрес — {@code -Dstats.uri}, по умолчанию {@code http://localhost:9090}.
+ * <p>
+ * Запуск из каталога {@code statistics/statistics-client}: {@code mvn test-compile exec:exec
+ * -Dexec.executable=java -Dexec.classpathScope=test
+ * "-Dexec.args=-cp %classpath ru.practicum.HttpTransportBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(64)
+@Fork(1)
+public class HttpTransportBenchmark {
+
+    @Param({"default", "pooled"})
+    private String transport;
+
+    private ClientHttpRequestFactory requestFactory;
+    private RestClient restClient;
+
+    @Setup
+    public void setUp() {
+        requestFactory = "pooled".equals(transport)
+                ? PooledRequestFactory.create(new StatisticsClientProperties(), new SimpleMeterRegistry())
+                : new HttpComponentsClientHttpRequestFactory();
+        restClient = RestClient.builder()
+                .baseUrl(System.getProperty("stats.uri", "http://localhost:9090"))
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (requestFactory instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    @Benchmark
+    public String getStats() {
+        return restClient.get()
+                .uri("/stats?start={start}&end={end}&uris={uri}",
+                        "2020-01-01 00:00:00", "2035-01-01 00:00:00", "/events/3")
+                .retrieve()
+                .body(String.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HttpTransportBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.DtoViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LastKnownViewsTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 2, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 2, 2, 0, 0);
+
+    private final LastKnownViews lastKnown = new LastKnownViews(100, new SimpleMeterRegistry());
+
+    @Test
+    void stats_whenSameQuery_shouldReturnRememberedRowsSortedByHits() {
+        lastKnown.rememberStats(START, END, List.of(row("/events/1", 3), row("/events/2", 7)), false);
+
+        assertThat(lastKnown.stats(START, END, List.of("/events/1", "/events/2", "/events/3"), false))
+                .containsExactly(row("/events/2", 7), row("/events/1", 3));
+        assertThat(lastKnown.stats(START, END, null, false))
+                .containsExactly(row("/events/2", 7), row("/events/1", 3));
+    }
+
+    @Test
+    void stats_whenDateRangeDiffers_shouldReturnEmpty() {
+        lastKnown.rememberStats(START, END, List.of(row("/events/1", 3)), false);
+
+        assertThat(lastKnown.stats(START, END.plusDays(1), List.of("/events/1"), false)).isEmpty();
+        assertThat(lastKnown.stats(START.minusDays(1), END, null, false)).isEmpty();
+    }
+
+    @Test
+    void stats_whenUniqueDiffers_shouldReturnEmpty() {
+        lastKnown.rememberStats(START, END, List.of(row("/events/1", 3)), false);
+
+        assertThat(lastKnown.stats(START, END, List.of("/events/1"), true)).isEmpty();
+    }
+
+    @Test
+    void views_whenSameRange_shouldReturnRememberedViewsAndZeroForUnknown() {
+        lastKnown.rememberViews(START, null, new long[]{1, 2}, new long[]{5, 8}, true);
+
+        assertThat(lastKnown.views(START, null, new long[]{2, 3, 1}, true)).containsExactly(8, 0, 5);
+        assertThat(lastKnown.views(START, END, new long[]{1, 2}, true)).containsExactly(0, 0);
+        assertThat(lastKnown.views(START, null, new long[]{1, 2}, false)).containsExactly(0, 0);
+    }
+
+    private static DtoViewStats row(String uri, long hits) {
+        return new DtoViewStats("ewm-main-service", uri, hits);
+    }
+}
@@ -0,0 +1,240 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplicaBalancerTest {
+
+    private static final String FIRST = "http://stats-1";
+    private static final String SECOND = "http://stats-2";
+
+    private final AtomicLong now = new AtomicLong();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final StatisticsClientProperties.Replicas properties = new StatisticsClientProperties.Replicas();
+    private final List<String> called = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void call_whenReplicaFailsInARow_shouldEjectItUntilDurationPasses() {
+        ReplicaBalancer balancer = balancer(now::get);
+        for (int i = 0; i < 6; i++) {
+            callFailingFirst(balancer);
+        }
+        assertThat(called).filteredOn(FIRST::equals).hasSize(3);
+        assertThat(meterRegistry.get("stats.client.replica.ejected").tag("replica", FIRST).gauge().value())
+                .isEqualTo(1);
+
+        called.clear();
+        for (int i = 0; i < 4; i++) {
+            callFailingFirst(balancer);
+        }
+        assertThat(called).containsOnly(SECOND);
+
+        now.addAndGet(properties.getEjectDuration().toNanos());
+        called.clear();
+        for (int i = 0; i < 4; i++) {
+            callFailingFirst(balancer);
+        }
+        assertThat(called).filteredOn(FIRST::equals).hasSize(1);
+        assertThat(meterRegistry.get("stats.client.replica.ejections").tag("replica", FIRST).counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void call_whenReplicaRecovers_shouldResetFailures() {
+        ReplicaBalancer balancer = balancer(now::get);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 12; i++) {
+            try {
+                balancer.call(replica -> {
+                    called.add(replica.uri());
+                    if (replica.uri().equals(FIRST) && calls.incrementAndGet() % 2 == 1) {
+                        throw new ResourceAccessException("Connection refused");
+                    }
+                    return replica.uri();
+                });
+            } catch (ResourceAccessException ignored) {
+                // ошибка каждого второго вызова первой реплики
+            }
+        }
+
+        assertThat(called).filteredOn(FIRST::equals).hasSize(6);
+        assertThat(meterRegistry.get("stats.client.replica.ejections").tag("replica", FIRST).counter().count())
+                .isZero();
+    }
+
+    @Test
+    void call_whenClientError_shouldNotEjectReplica() {
+        ReplicaBalancer balancer = balancer(now::get);
+        for (int i = 0; i < 6; i++) {
+            assertThatThrownBy(() -> balancer.call(replica -> {
+                throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null);
+            })).isInstanceOf(HttpClientErrorException.class);
+        }
+
+        assertThat(meterRegistry.get("stats.client.replica.ejections").counter().count()).isZero();
+    }
+
+    @Test
+    void choose_whenAllReplicasEjected_shouldReturnEarliestReadmitted() {
+        ReplicaBalancer balancer = balancer(now::get);
+        for (int i = 0; i < 6; i++) {
+            now.addAndGet(1_000);
+            assertThatThrownBy(() -> balancer.call(replica -> {
+                throw new ResourceAccessException("Connection refused");
+            })).isInstanceOf(ResourceAccessException.class);
+        }
+
+        assertThat(balancer.choose().uri()).isEqualTo(FIRST);
+    }
+
+    @Test
+    void choose_whenReplicaBusy_shouldPreferLeastOutstanding() throws Exception {
+        ReplicaBalancer balancer = balancer(now::get);
+        CountDownLatch calling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> busy = CompletableFuture.supplyAsync(() -> balancer.call(replica -> {
+            calling.countDown();
+            HitSenderTest.await(release);
+            return replica.uri();
+        }), executor);
+        assertThat(calling.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<String> chosen = List.of(balancer.choose().uri(), balancer.choose().uri(), balancer.choose().uri());
+        release.countDown();
+
+        assertThat(chosen).doesNotContain(busy.get(5, TimeUnit.SECONDS)).hasSize(3);
+        assertThat(meterRegistry.get("stats.client.replica.outstanding").gauges())
+                .allSatisfy(gauge -> assertThat(gauge.value()).isZero());
+    }
+
+    @Test
+    void callHedged_whenPrimarySlow_shouldReturnBackupResult() throws Exception {
+        ReplicaBalancer balancer = warmedUp();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = balancer.callHedged(replica -> {
+            if (attempts.incrementAndGet() == 1) {
+                HitSenderTest.await(release);
+                return "медленный " + replica.uri();
+            }
+            return "быстрый " + replica.uri();
+        });
+        release.countDown();
+
+        assertThat(result).startsWith("быстрый");
+        assertThat(attempts).hasValue(2);
+        assertThat(meterRegistry.get("stats.client.stats.hedged").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void callHedged_whenBackupFails_shouldWaitForPrimary() {
+        ReplicaBalancer balancer = warmedUp();
+        CountDownLatch backupFailed = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = balancer.callHedged(replica -> {
+            if (attempts.incrementAndGet() == 1) {
+                HitSenderTest.await(backupFailed);
+                return "медленный";
+            }
+            backupFailed.countDown();
+            throw new ResourceAccessException("Connection refused");
+        });
+
+        assertThat(result).isEqualTo("медленный");
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void callHedged_whenBothFail_shouldThrow() {
+        ReplicaBalancer balancer = warmedUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> balancer.callHedged(replica -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(Duration.ofMillis(200));
+            }
+            throw new ResourceAccessException("Connection refused");
+        })).isInstanceOf(ResourceAccessException.class);
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void callHedged_whenTooFewSamples_shouldNotHedge() {
+        ReplicaBalancer balancer = balancer(System::nanoTime);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = balancer.callHedged(replica -> {
+            attempts.incrementAndGet();
+            sleep(Duration.ofMillis(50));
+            return replica.uri();
+        });
+
+        assertThat(result).isIn(FIRST, SECOND);
+        assertThat(attempts).hasValue(1);
+        assertThat(meterRegistry.get("stats.client.stats.hedged").counter().count()).isZero();
+    }
+
+    private ReplicaBalancer balancer(LongSupplier nanoTime) {
+        return new ReplicaBalancer(List.of(FIRST, SECOND), RestClient.builder(), properties, executor,
+                meterRegistry, nanoTime);
+    }
+
+    private ReplicaBalancer warmedUp() {
+        ReplicaBalancer balancer = balancer(System::nanoTime);
+        for (int i = 0; i < 20; i++) {
+            balancer.callHedged(ReplicaBalancer.Replica::uri);
+        }
+        return balancer;
+    }
+
+    private void callFailingFirst(ReplicaBalancer balancer) {
+        try {
+            balancer.call(replica -> {
+                called.add(replica.uri());
+                if (replica.uri().equals(FIRST)) {
+                    throw new ResourceAccessException("Connection refused");
+                }
+                return replica.uri();
+            });
+        } catch (ResourceAccessException ignored) {
+            // первая реплика недоступна
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
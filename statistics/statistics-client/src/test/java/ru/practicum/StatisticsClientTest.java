@@ -0,0 +1,166 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.model.DtoStatsQuery;
+import ru.practicum.model.DtoViewStats;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Запросы статистики по частям; сервер статистики подменён HTTP-сервером, который для uri
+ * {@code /events/N} возвращает N просмотров.
+ */
+class StatisticsClientTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 2, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 2, 2, 0, 0);
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> getRequests = new CopyOnWriteArrayList<>();
+    private final List<List<String>> batchRequests = new CopyOnWriteArrayList<>();
+    private final StatisticsClientProperties properties = new StatisticsClientProperties();
+    private HttpServer statsServer;
+    private StatisticsClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        statsServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        statsServer.createContext("/stats/batch", this::statsBatch);
+        statsServer.createContext("/stats", this::stats);
+        statsServer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        statsServer.stop(0);
+    }
+
+    @Test
+    void getStats_whenUrisFitOneChunk_shouldSendSingleRequest() throws IOException {
+        client = client();
+
+        List<DtoViewStats> stats = client.getStats(START, END, uris(1, 4), false);
+
+        assertThat(getRequests).containsExactly(uris(1, 4));
+        assertThat(stats).extracting(DtoViewStats::getHits).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    void getStats_whenUrisExceedChunkSize_shouldSplitAndMergeSortedByHits() throws IOException {
+        properties.getUris().setChunkSize(100);
+        client = client();
+        List<String> uris = new ArrayList<>(uris(1, 241));
+        uris.addAll(uris(1, 11));
+
+        List<DtoViewStats> stats = client.getStats(START, END, uris, false);
+
+        assertThat(getRequests).hasSize(3);
+        assertThat(getRequests).extracting(List::size).containsExactlyInAnyOrder(100, 100, 40);
+        assertThat(getRequests.stream().flatMap(List::stream)).containsExactlyInAnyOrderElementsOf(uris(1, 241));
+        assertThat(stats).hasSize(240);
+        assertThat(stats).extracting(DtoViewStats::getHits)
+                .containsExactlyElementsOf(IntStream.iterate(240, i -> i - 1).limit(240).mapToObj(i -> (long) i)
+                        .toList());
+    }
+
+    @Test
+    void getStats_whenOneChunkFails_shouldReturnOtherChunks() throws IOException {
+        properties.getUris().setChunkSize(2);
+        client = client();
+
+        List<DtoViewStats> stats = client.getStats(START, END, List.of("/events/1", "/events/2", "/broken",
+                "/events/3"), false);
+
+        assertThat(stats).extracting(DtoViewStats::getUri).containsExactly("/events/2", "/events/1");
+    }
+
+    @Test
+    void getStats_whenUrlTooLong_shouldSendPostBatch() throws IOException {
+        properties.getUris().setMaxUrlLength(200);
+        client = client();
+
+        List<DtoViewStats> stats = client.getStats(START, END, uris(1, 30), true);
+
+        assertThat(getRequests).isEmpty();
+        assertThat(batchRequests).containsExactly(uris(1, 30));
+        assertThat(stats).hasSize(29);
+        assertThat(meterRegistry.get("stats.client.stats.long-url").counter().count()).isEqualTo(1);
+    }
+
+    private StatisticsClient client() throws IOException {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", meterRegistry);
+        return new StatisticsClient("http://localhost:" + statsServer.getAddress().getPort(), "json", properties,
+                beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    private static List<String> uris(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "/events/" + i).toList();
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        List<String> uris = Arrays.stream(exchange.getRequestURI().getRawQuery().split("&"))
+                .filter(param -> param.startsWith("uris="))
+                .map(param -> URLDecoder.decode(param.substring("uris=".length()), StandardCharsets.UTF_8))
+                .toList();
+        getRequests.add(uris);
+        if (uris.contains("/broken")) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, rows(uris));
+    }
+
+    private void statsBatch(HttpExchange exchange) throws IOException {
+        List<DtoStatsQuery> queries = json.readValue(exchange.getRequestBody(), new TypeReference<>() {
+        });
+        List<List<DtoViewStats>> results = new ArrayList<>();
+        for (DtoStatsQuery query : queries) {
+            batchRequests.add(query.getUris());
+            results.add(rows(query.getUris()));
+        }
+        respond(exchange, results);
+    }
+
+    private static List<DtoViewStats> rows(List<String> uris) {
+        return uris.stream()
+                .map(uri -> new DtoViewStats("ewm-main-service", uri,
+                        Long.parseLong(uri.substring("/events/".length()))))
+                .sorted((first, second) -> Long.compare(second.getHits(), first.getHits()))
+                .toList();
+    }
+
+    private void respond(HttpExchange exchange, Object body) throws IOException {
+        byte[] bytes = json.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
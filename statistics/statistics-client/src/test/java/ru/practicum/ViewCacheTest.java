@@ -0,0 +1,111 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ViewCacheTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<long[]> loads = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void get_whenConcurrentMissesForSameEvent_shouldLoadOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ViewCache cache = cache((eventIds, unique) -> {
+            loads.add(eventIds);
+            loading.countDown();
+            HitSenderTest.await(release);
+            return views(eventIds);
+        });
+
+        CompletableFuture<long[]> first =
+                CompletableFuture.supplyAsync(() -> cache.get(new long[]{1}, true), executor);
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<long[]> second =
+                CompletableFuture.supplyAsync(() -> cache.get(new long[]{1}, true), executor);
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsExactly(10);
+        assertThat(second.get(5, TimeUnit.SECONDS)).containsExactly(10);
+        assertThat(loads).hasSize(1);
+    }
+
+    @Test
+    void get_whenSeveralMisses_shouldLoadThemInOneCall() {
+        ViewCache cache = cache(this::record);
+
+        assertThat(cache.get(new long[]{3, 1, 2}, false)).containsExactly(30, 10, 20);
+
+        assertThat(loads).hasSize(1);
+        assertThat(loads.get(0)).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    @Test
+    void get_whenPartlyCached_shouldLoadOnlyMisses() {
+        ViewCache cache = cache(this::record);
+        cache.get(new long[]{1, 2}, false);
+
+        assertThat(cache.get(new long[]{2, 3, 1}, false)).containsExactly(20, 30, 10);
+
+        assertThat(loads).hasSize(2);
+        assertThat(loads.get(1)).containsExactly(3);
+    }
+
+    @Test
+    void get_whenUniqueDiffers_shouldLoadSeparately() {
+        ViewCache cache = cache(this::record);
+        cache.get(new long[]{1}, false);
+
+        cache.get(new long[]{1}, true);
+
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    void get_whenLoaderFails_shouldThrowAndNotCacheError() {
+        ViewCache cache = cache((eventIds, unique) -> {
+            loads.add(eventIds);
+            if (loads.size() == 1) {
+                throw new IllegalStateException("сервер недоступен");
+            }
+            return views(eventIds);
+        });
+
+        assertThatThrownBy(() -> cache.get(new long[]{1}, false)).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.get(new long[]{1}, false)).containsExactly(10);
+    }
+
+    private ViewCache cache(ViewCache.Loader loader) {
+        StatisticsClientProperties.ViewCache properties = new StatisticsClientProperties.ViewCache();
+        properties.setEnabled(true);
+        return new ViewCache(loader, properties, executor, new SimpleMeterRegistry());
+    }
+
+    private long[] record(long[] eventIds, boolean unique) {
+        loads.add(eventIds);
+        return views(eventIds);
+    }
+
+    private static long[] views(long[] eventIds) {
+        return LongStream.of(eventIds).map(eventId -> eventId * 10).toArray();
+    }
+}
@@ -0,0 +1,67 @@
+package ru.practicum.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Двоичный формат обмена между клиентом и сервером статистики, {@code application/cbor}.
+ * Поля те же, что в JSON, но дата и время передаются числом миллисекунд, а не строкой по шаблону
+ * {@code @JsonFormat}: {@link LocalDateTime} переводится в число как время UTC, поэтому значение
+ * восстанавливается без изменений независимо от часового пояса сторон. Как и в JSON, время передаётся
+ * с точностью до секунды: доли секунды отбрасываются при записи и при чтении.
+ */
+public final class CborCodec {
+
+    private CborCodec() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        SimpleModule dateTimeAsMillis = new SimpleModule("LocalDateTimeAsEpochMillis")
+                .addSerializer(LocalDateTime.class, new EpochMillisSerializer())
+                .addDeserializer(LocalDateTime.class, new EpochMillisDeserializer());
+        return CBORMapper.builder()
+                .addModule(dateTimeAsMillis)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+    }
+
+    private static final class EpochMillisSerializer extends StdSerializer<LocalDateTime> {
+
+        EpochMillisSerializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeNumber(value.truncatedTo(ChronoUnit.SECONDS).toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    private static final class EpochMillisDeserializer extends StdDeserializer<LocalDateTime> {
+
+        EpochMillisDeserializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(parser.getLongValue()), ZoneOffset.UTC)
+                    .truncatedTo(ChronoUnit.SECONDS);
+        }
+    }
+}
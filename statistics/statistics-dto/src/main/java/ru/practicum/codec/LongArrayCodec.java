@@ -0,0 +1,34 @@
+package ru.practicum.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Двоичное представление массива {@code long} для тела {@code application/octet-stream}:
+ * значения подряд по 8 байт в порядке big-endian, без заголовка. Длина массива равна длине тела, делённой на 8.
+ */
+public final class LongArrayCodec {
+
+    private LongArrayCodec() {
+    }
+
+    public static byte[] encode(long[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Long.BYTES);
+        buffer.asLongBuffer().put(values);
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException если длина не кратна 8 байтам
+     */
+    public static long[] decode(byte[] bytes) {
+        if (bytes.length % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Длина тела должна быть кратна " + Long.BYTES + " байтам: "
+                    + bytes.length);
+        }
+        LongBuffer buffer = ByteBuffer.wrap(bytes).asLongBuffer();
+        long[] values = new long[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+}
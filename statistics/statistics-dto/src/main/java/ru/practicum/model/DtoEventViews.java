@@ -0,0 +1,23 @@
+package ru.practicum.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Просмотры событий в столбцовом виде: {@code views[i]} — количество просмотров события {@code eventIds[i]}.
+ * В запросе передаются только {@code eventIds}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DtoEventViews {
+
+    @NotNull(message = "Список идентификаторов событий не может быть пустым.")
+    private long[] eventIds;
+
+    private long[] views;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Подтверждение в ответе {@code POST /hits/stream}: первые {@code acked} записей потока сохранены.
+ * Строка с {@code error} — последняя в ответе: записи после {@code acked} не сохранены, поток закрыт.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DtoHitStreamAck {
+    private long acked;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Количество посещений uri сервиса app по корзинам времени. Корзины без посещений не передаются.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DtoTimeSeries {
+    private String app;
+    private String uri;
+    private List<DtoTimeBucket> buckets;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Популярность uri сервиса app: сумма посещений, каждое из которых весит {@code 2^(-возраст / halfLife)}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DtoTrendingStats {
+    private String app;
+    private String uri;
+    private double score;
+}
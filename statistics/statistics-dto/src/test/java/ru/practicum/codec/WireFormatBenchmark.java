@@ -0,0 +1,143 @@
+package ru.practicum.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoViewStats;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение JSON и CBOR ({@link CborCodec}) на теле {@code POST /hits} и ответе {@code GET /stats}.
+ * JSON-маппер настроен так же, как в Spring Boot. Размеры тел печатаются перед запуском.
+ * <p>
+ * Запуск из каталога {@code statistics/statistics-dto}: {@code mvn test-compile exec:exec -Dexec.executable=java
+ * -Dexec.classpathScope=test "-Dexec.args=-cp %classpath ru.practicum.codec.WireFormatBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<DtoEndpointHit>> HITS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<DtoViewStats>> STATS = new TypeReference<>() {
+    };
+
+    @Param({"500"})
+    private int size;
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cbor = CborCodec.objectMapper();
+
+    private List<DtoEndpointHit> hits;
+    private List<DtoViewStats> stats;
+    private byte[] hitsJson;
+    private byte[] hitsCbor;
+    private byte[] statsJson;
+    private byte[] statsCbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        hits = hits(size);
+        stats = stats(size);
+        hitsJson = json.writeValueAsBytes(hits);
+        hitsCbor = cbor.writeValueAsBytes(hits);
+        statsJson = json.writeValueAsBytes(stats);
+        statsCbor = cbor.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public byte[] writeHitsJson() throws IOException {
+        return json.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public byte[] writeHitsCbor() throws IOException {
+        return cbor.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public List<DtoEndpointHit> readHitsJson() throws IOException {
+        return json.readValue(hitsJson, HITS);
+    }
+
+    @Benchmark
+    public List<DtoEndpointHit> readHitsCbor() throws IOException {
+        return cbor.readValue(hitsCbor, HITS);
+    }
+
+    @Benchmark
+    public byte[] writeStatsJson() throws IOException {
+        return json.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public byte[] writeStatsCbor() throws IOException {
+        return cbor.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public List<DtoViewStats> readStatsJson() throws IOException {
+        return json.readValue(statsJson, STATS);
+    }
+
+    @Benchmark
+    public List<DtoViewStats> readStatsCbor() throws IOException {
+        return cbor.readValue(statsCbor, STATS);
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        WireFormatBenchmark benchmark = new WireFormatBenchmark();
+        benchmark.size = 500;
+        benchmark.setUp();
+        System.out.printf("Посещений %d: JSON %d байт, CBOR %d байт%n", benchmark.size,
+                benchmark.hitsJson.length, benchmark.hitsCbor.length);
+        System.out.printf("Строк статистики %d: JSON %d байт, CBOR %d байт%n", benchmark.size,
+                benchmark.statsJson.length, benchmark.statsCbor.length);
+        new Runner(new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    private static List<DtoEndpointHit> hits(int size) {
+        List<DtoEndpointHit> hits = new ArrayList<>(size);
+        LocalDateTime timestamp = LocalDateTime.of(2024, 2, 1, 12, 0);
+        for (int i = 0; i < size; i++) {
+            hits.add(new DtoEndpointHit("ewm-main-service", "/events/" + i % 100,
+                    "192.168." + i / 256 % 256 + "." + i % 256, timestamp.plusSeconds(i)));
+        }
+        return hits;
+    }
+
+    private static List<DtoViewStats> stats(int size) {
+        List<DtoViewStats> stats = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            stats.add(new DtoViewStats("ewm-main-service", "/events/" + i, 100_000L - i * 7L));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки пакетных запросов статистики {@code POST /stats/batch} (префикс {@code stats.batch}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.batch")
+public class BatchProperties {
+
+    /**
+     * Наибольшее количество запросов в одном пакете.
+     */
+    private int maxQueries = 100;
+
+    /**
+     * Сколько запросов из всех пакетов выполняется одновременно. Каждый занимает соединение с базой данных,
+     * поэтому значение должно быть меньше размера пула соединений.
+     */
+    private int parallelism = 4;
+}
@@ -0,0 +1,28 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки точного подсчёта уникальных посещений по битовым множествам (префикс {@code stats.bitmap}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.bitmap")
+public class BitmapProperties {
+
+    /**
+     * Вести по каждому uri и дню множество идентификаторов посетителей и считать по ним уникальные посещения
+     * вместо {@code count(distinct ip)}.
+     * Выключено по умолчанию: запись каждого пакета посещений в той же транзакции пополняет словарь ip
+     * и перезаписывает множества его дней. Множества ведутся с момента включения, поэтому включать
+     * стоит на пустом хранилище.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Сколько множеств «uri, день» держать в памяти.
+     */
+    private int cacheSize = 10_000;
+}
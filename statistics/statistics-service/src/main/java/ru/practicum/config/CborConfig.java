@@ -0,0 +1,23 @@
+package ru.practicum.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.codec.CborCodec;
+
+import java.util.List;
+
+/**
+ * Подключает формат {@code application/cbor} с настройками {@link CborCodec}. Конвертер добавляется
+ * в конец списка, поэтому без явного {@code Accept: application/cbor} ответы по-прежнему в JSON.
+ */
+@Configuration
+public class CborConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(MappingJackson2CborHttpMessageConverter.class::isInstance);
+        converters.add(new MappingJackson2CborHttpMessageConverter(CborCodec.objectMapper()));
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.lang.annotation.*;
+
+/**
+ * Компонент нужен только при хранении посещений в базе данных ({@code stats.store.type=jpa}).
+ * Агрегаты, словари и секции живут в той же базе, поэтому со встроенным хранилищем они не создаются.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@ConditionalOnProperty(prefix = "stats.store", name = "type", havingValue = "jpa", matchIfMissing = true)
+public @interface ConditionalOnJpaStore {
+}
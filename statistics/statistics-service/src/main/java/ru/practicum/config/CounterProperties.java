@@ -0,0 +1,19 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки счётчиков посещений за всё время (префикс {@code stats.counter}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.counter")
+public class CounterProperties {
+
+    /**
+     * Вести счётчики по каждому uri и отвечать по ним на запросы, интервал которых покрывает всю историю uri.
+     */
+    private boolean enabled = true;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки словарей сервисов, uri и ip (префикс {@code stats.dictionary}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.dictionary")
+public class DictionaryProperties {
+
+    /**
+     * Сколько соответствий «значение — идентификатор» держать в памяти для каждого словаря.
+     */
+    private int cacheSize = 1_000_000;
+}
@@ -0,0 +1,25 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки запроса просмотров по идентификаторам событий {@code POST /stats/events/views}
+ * (префикс {@code stats.event-views}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.event-views")
+public class EventViewsProperties {
+
+    /**
+     * Начало uri события: к нему дописывается идентификатор.
+     */
+    private String uriPrefix = "/events/";
+
+    /**
+     * Наибольшее количество событий в одном запросе.
+     */
+    private int maxEvents = 10_000;
+}
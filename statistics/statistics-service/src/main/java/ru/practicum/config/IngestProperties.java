@@ -0,0 +1,79 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки приёма посещений (префикс {@code stats.ingest}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.ingest")
+public class IngestProperties {
+
+    /**
+     * Размер пакета JDBC при вставке посещений.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Режим записи: синхронно в потоке запроса или через очередь с групповой фиксацией.
+     */
+    private Mode mode = Mode.SYNC;
+
+    /**
+     * Момент подтверждения клиенту в асинхронном режиме.
+     */
+    private Durability durability = Durability.ACK_ON_ENQUEUE;
+
+    /**
+     * Максимальное количество посещений, ожидающих записи в очереди.
+     */
+    private int queueCapacity = 100_000;
+
+    /**
+     * Максимальное время ожидания перед сбросом неполного пакета.
+     */
+    private Duration flushInterval = Duration.ofMillis(50);
+
+    /**
+     * Количество посещений, при накоплении которого пакет сбрасывается немедленно.
+     */
+    private int flushSize = 1_000;
+
+    /**
+     * Сколько ждать фиксации в режиме {@link Durability#ACK_ON_COMMIT}.
+     */
+    private Duration ackTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Сколько при остановке сервиса ждать записи посещений, оставшихся в очереди. Не записанные за это время
+     * посещения теряются и учитываются в {@code stats.ingest.failed}.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Как часто поток {@code POST /hits/stream} сохраняет накопленные посещения и подтверждает их клиенту.
+     */
+    private Duration streamAckInterval = Duration.ofSeconds(1);
+
+    public enum Mode {
+        SYNC,
+        ASYNC
+    }
+
+    public enum Durability {
+        /**
+         * Ответ отправляется сразу после помещения в очередь: минимальная задержка,
+         * но при падении сервиса неподтверждённые пакеты теряются.
+         */
+        ACK_ON_ENQUEUE,
+        /**
+         * Ответ отправляется после фиксации транзакции, в которую попало посещение.
+         */
+        ACK_ON_COMMIT
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.lang.Nullable;
+import ru.practicum.model.Granularity;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+
+/**
+ * Настройки секционирования таблицы посещений по времени (префикс {@code stats.partition}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.partition")
+public class PartitionProperties {
+
+    /**
+     * Создавать секции и удалять устаревшие по расписанию.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Размер секции: {@code DAY} или {@code MONTH}.
+     */
+    private Granularity granularity = Granularity.MONTH;
+
+    /**
+     * Сколько секций создавать заранее, не считая текущей.
+     */
+    private int premake = 3;
+
+    /**
+     * Срок хранения исходных посещений. Секции, целиком вышедшие за этот срок, удаляются.
+     * Агрегаты, оценки и счётчики при этом сохраняются. Если не задан, посещения хранятся бессрочно.
+     */
+    private Period retention;
+
+    /**
+     * Расписание обслуживания секций в формате cron.
+     */
+    private String cron = "0 5 * * * *";
+
+    /**
+     * Начало самой ранней секции, которая ещё хранится на момент {@code now}: посещения раньше этого времени
+     * попали бы в удаляемую секцию. {@code null}, если секции не обслуживаются или срок хранения не задан.
+     */
+    @Nullable
+    public LocalDateTime retentionHorizon(LocalDateTime now) {
+        if (!enabled || retention == null) {
+            return null;
+        }
+        return granularity.truncate(now.minus(retention));
+    }
+}
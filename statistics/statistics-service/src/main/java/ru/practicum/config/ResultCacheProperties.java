@@ -0,0 +1,37 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки кеша результатов запросов статистики (префикс {@code stats.result-cache}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.result-cache")
+public class ResultCacheProperties {
+
+    /**
+     * Кешировать результаты запросов статистики.
+     */
+    private boolean enabled = true;
+
+    /**
+     * До какой границы округляется вниз кешируемый конец интервала. Запросы с концом «сейчас» в пределах одного
+     * шага получают один ключ; посещения за последний неполный шаг читаются из хранилища при каждом запросе.
+     */
+    private Duration granularity = Duration.ofSeconds(1);
+
+    /**
+     * Сколько результатов по отдельным uri держать в кеше.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Сколько хранить результат после вычисления.
+     */
+    private Duration ttl = Duration.ofMinutes(1);
+}
@@ -0,0 +1,19 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки предварительно агрегированной статистики (префикс {@code stats.rollup}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.rollup")
+public class RollupProperties {
+
+    /**
+     * Вести поминутные, почасовые и посуточные агрегаты и отвечать по ним на запросы без уникальности.
+     */
+    private boolean enabled = true;
+}
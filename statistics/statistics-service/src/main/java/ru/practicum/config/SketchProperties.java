@@ -0,0 +1,34 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.practicum.model.HyperLogLog;
+
+/**
+ * Настройки приближённого подсчёта уникальных посещений (префикс {@code stats.sketch}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.sketch")
+public class SketchProperties {
+
+    /**
+     * Вести оценки HyperLogLog по корзинам и отвечать по ним на запросы с {@code unique=approx}.
+     * Выключено по умолчанию: запись каждого пакета посещений в той же транзакции блокирует и перезаписывает
+     * оценки его корзин за час, день и месяц, что заметно снижает скорость приёма. Пока выключено,
+     * {@code unique=approx} считается точно по исходным посещениям. Оценки ведутся с момента включения.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Допустимая относительная стандартная ошибка оценки. По ней выбирается точность HyperLogLog:
+     * 0.02 даёт 4096 регистров (до 4 КБ на корзину) и фактическую ошибку около 1,6%,
+     * 0.01 — 16384 регистра и около 0,8%. Примерно в 95% случаев отклонение не превышает удвоенной ошибки.
+     */
+    private double relativeError = 0.02;
+
+    public int getPrecision() {
+        return HyperLogLog.precisionFor(relativeError);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки хранилища исходных посещений (префикс {@code stats.store}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.store")
+public class StoreProperties {
+
+    /**
+     * Где хранить посещения.
+     */
+    private Type type = Type.JPA;
+
+    /**
+     * Каталог файлов сегментов для {@link Type#SEGMENT}.
+     */
+    private Path directory = Path.of("data", "segments");
+
+    /**
+     * Сколько посещений помещается в один сегмент; файл сегмента занимает 32 байта на посещение.
+     */
+    private int segmentCapacity = 2_097_152;
+
+    public enum Type {
+        /**
+         * Таблица {@code endpoint_hit} в базе данных.
+         */
+        JPA,
+        /**
+         * Отображаемые в память файлы сегментов на локальном диске; база данных не нужна.
+         */
+        SEGMENT
+    }
+}
@@ -0,0 +1,19 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки запросов статистики по корзинам времени (префикс {@code stats.timeseries}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.timeseries")
+public class TimeSeriesProperties {
+
+    /**
+     * Наибольшее количество корзин в интервале запроса, например 10 000 минут — около недели.
+     */
+    private int maxBuckets = 10_000;
+}
@@ -0,0 +1,43 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки популярности uri по затухающим счётчикам (префикс {@code stats.trending}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.trending")
+public class TrendingProperties {
+
+    /**
+     * Вести затухающие счётчики посещений и отвечать на запросы популярных uri.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Периоды полураспада, для которых ведутся счётчики. Первый используется по умолчанию.
+     */
+    private List<Duration> halfLives = List.of(Duration.ofHours(1), Duration.ofDays(1));
+
+    /**
+     * Как часто пересчитывается упорядоченный список, по которому отвечают запросы.
+     */
+    private Duration refreshInterval = Duration.ofSeconds(5);
+
+    /**
+     * Как часто счётчики переносятся к новой опорной точке и сохраняются в базу данных.
+     * Посещения после последнего сохранения теряются при перезапуске.
+     */
+    private Duration checkpointInterval = Duration.ofMinutes(1);
+
+    /**
+     * Счётчики, значение которых по всем периодам опустилось ниже этого порога, удаляются.
+     */
+    private double minScore = 0.01;
+}
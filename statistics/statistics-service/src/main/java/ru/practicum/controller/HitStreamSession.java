@@ -0,0 +1,158 @@
+package ru.practicum.controller;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.config.IngestProperties;
+import ru.practicum.error.exception.IngestOverloadException;
+import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoHitStreamAck;
+import ru.practicum.service.StatisticsService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Один поток посещений {@code POST /hits/stream}.
+ * <p>
+ * Поток запроса разбирает записи и передаёт их через ограниченную очередь отдельному потоку, который
+ * сохраняет их пакетами по {@code batch-size} или раз в {@code stream-ack-interval} и после каждого
+ * сохранения отправляет клиенту {@link DtoHitStreamAck} с количеством сохранённых записей.
+ * Пока очередь заполнена, тело запроса не читается и клиента сдерживает TCP.
+ * Если очередь асинхронной записи переполнена, пакет повторяется, пока не пройдёт {@code ack-timeout}.
+ */
+@Slf4j
+class HitStreamSession {
+
+    private static final DtoEndpointHit END = new DtoEndpointHit();
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final StatisticsService statisticsService;
+    private final IngestProperties properties;
+    private final ObjectWriter ackWriter;
+    private final OutputStream out;
+    private final BlockingQueue<DtoEndpointHit> queue;
+    private final Thread writerThread;
+
+    private volatile String error;
+    private volatile boolean failed;
+    private long acked;
+
+    HitStreamSession(StatisticsService statisticsService, IngestProperties properties, ObjectWriter ackWriter,
+                     OutputStream out) {
+        this.statisticsService = statisticsService;
+        this.properties = properties;
+        this.ackWriter = ackWriter;
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<>(properties.getBatchSize());
+        this.writerThread = new Thread(this::writeLoop, "stats-hit-stream-" + THREAD_NUMBER.incrementAndGet());
+        this.writerThread.setDaemon(true);
+    }
+
+    void start() {
+        writerThread.start();
+    }
+
+    /**
+     * Передаёт запись на сохранение, ожидая места в очереди.
+     *
+     * @return {@code false}, если сохранение остановлено из-за ошибки и чтение нужно прекратить
+     */
+    boolean accept(DtoEndpointHit hit) throws InterruptedException {
+        while (!failed) {
+            if (queue.offer(hit, properties.getStreamAckInterval().toMillis(), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Сохраняет оставшиеся записи, отправляет последнее подтверждение и дожидается окончания.
+     *
+     * @param error причина остановки, если поток закрывается из-за некорректной записи, иначе {@code null}
+     * @return количество сохранённых записей
+     */
+    long finish(String error) throws InterruptedException {
+        this.error = error;
+        accept(END);
+        writerThread.join();
+        return acked;
+    }
+
+    private void writeLoop() {
+        int batchSize = properties.getBatchSize();
+        long intervalNanos = properties.getStreamAckInterval().toNanos();
+        List<DtoEndpointHit> batch = new ArrayList<>(batchSize);
+        long deadline = System.nanoTime() + intervalNanos;
+        try {
+            while (true) {
+                DtoEndpointHit hit = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (hit == END) {
+                    save(batch);
+                    sendAck(error);
+                    return;
+                }
+                if (hit != null) {
+                    batch.add(hit);
+                }
+                if (batch.size() >= batchSize || System.nanoTime() >= deadline) {
+                    if (!batch.isEmpty()) {
+                        save(batch);
+                        batch = new ArrayList<>(batchSize);
+                        sendAck(null);
+                    }
+                    deadline = System.nanoTime() + intervalNanos;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail("Поток посещений прерван.");
+        } catch (IOException e) {
+            log.warn("Клиент закрыл поток посещений, сохранено {}: {}", acked, e.getMessage());
+            failed = true;
+        } catch (RuntimeException e) {
+            log.error("Ошибка сохранения потока посещений, сохранено {}", acked, e);
+            fail(e.getMessage());
+        }
+    }
+
+    private void save(List<DtoEndpointHit> batch) throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + properties.getAckTimeout().toNanos();
+        while (true) {
+            try {
+                statisticsService.createHits(batch);
+                acked += batch.size();
+                return;
+            } catch (IngestOverloadException e) {
+                if (System.nanoTime() >= deadline) {
+                    throw e;
+                }
+                Thread.sleep(properties.getFlushInterval().toMillis());
+            }
+        }
+    }
+
+    private void sendAck(String message) throws IOException {
+        out.write(ackWriter.writeValueAsBytes(new DtoHitStreamAck(acked, message)));
+        out.write('\n');
+        out.flush();
+    }
+
+    private void fail(String message) {
+        failed = true;
+        try {
+            sendAck(message);
+        } catch (IOException e) {
+            log.warn("Не удалось отправить ошибку потока посещений: {}", e.getMessage());
+        }
+    }
+}
@@ -1,17 +1,44 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.codec.LongArrayCodec;
+import ru.practicum.config.IngestProperties;
+import ru.practicum.error.exception.HitsPartiallySavedException;
+import ru.practicum.error.exception.ValidationException;
 import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoEventViews;
+import ru.practicum.model.DtoHitStreamAck;
+import ru.practicum.model.DtoStatsQuery;
+import ru.practicum.model.DtoTimeSeries;
+import ru.practicum.model.DtoTrendingStats;
 import ru.practicum.model.DtoViewStats;
+import ru.practicum.model.Granularity;
 import ru.practicum.service.StatisticsService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @CrossOrigin(origins = "*")
 @RestController
@@ -19,7 +46,13 @@ import java.util.List;
 @Slf4j
 @RequiredArgsConstructor
 public class StatsController {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final String UNIQUE_APPROX = "approx";
+
     private final StatisticsService statisticsServiceImpl;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final IngestProperties ingestProperties;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -28,6 +61,92 @@ public class StatsController {
         statisticsServiceImpl.createHit(dtoEndpointHit);
     }
 
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public void createHits(@RequestBody @Valid List<@Valid DtoEndpointHit> dtoEndpointHits) {
+        log.info("Запрос на пакетное создание статистики, количество посещений: {}", dtoEndpointHits.size());
+        statisticsServiceImpl.createHits(dtoEndpointHits);
+    }
+
+    /**
+     * Потоковая загрузка посещений в формате NDJSON: по одному {@link DtoEndpointHit} на строку.
+     * Тело читается построчно и сохраняется пакетами, поэтому размер запроса не ограничен памятью.
+     * Пакеты до некорректной записи уже сохранены: ответ 400 содержит их количество в поле {@code saved},
+     * и повторять загрузку нужно с записи {@code saved + 1}.
+     */
+    @PostMapping(value = "/hits", consumes = APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public void createHitsNdjson(InputStream body) throws IOException {
+        log.info("Запрос на потоковое создание статистики (NDJSON)");
+        int batchSize = ingestProperties.getBatchSize();
+        List<DtoEndpointHit> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        int saved = 0;
+        try (MappingIterator<DtoEndpointHit> iterator = objectMapper.readerFor(DtoEndpointHit.class)
+                .readValues(body)) {
+            while (iterator.hasNextValue()) {
+                DtoEndpointHit dtoEndpointHit = iterator.nextValue();
+                count++;
+                validate(dtoEndpointHit, count);
+                batch.add(dtoEndpointHit);
+                if (batch.size() >= batchSize) {
+                    statisticsServiceImpl.createHits(batch);
+                    saved += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw partiallySaved("Некорректная запись NDJSON №" + (count + 1) + ": " + e.getOriginalMessage(),
+                    saved);
+        } catch (ValidationException e) {
+            throw partiallySaved(e.getMessage(), saved);
+        }
+        if (!batch.isEmpty()) {
+            statisticsServiceImpl.createHits(batch);
+        }
+        log.info("Потоковая загрузка завершена, количество посещений: {}", count);
+    }
+
+    /**
+     * Долгий поток посещений в формате NDJSON. Записи сохраняются пакетами по мере чтения, а в ответ
+     * периодически пишутся строки {@link DtoHitStreamAck} с количеством сохранённых записей, см. {@link HitStreamSession}.
+     * Некорректная запись завершает поток: предыдущие сохраняются, последняя строка ответа содержит ошибку.
+     */
+    @PostMapping(value = "/hits/stream", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public void streamHits(InputStream body, HttpServletResponse response) throws IOException, InterruptedException {
+        log.info("Открыт поток посещений");
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.flushBuffer();
+        HitStreamSession session = new HitStreamSession(statisticsServiceImpl, ingestProperties,
+                objectMapper.writerFor(DtoHitStreamAck.class), response.getOutputStream());
+        session.start();
+        String error = null;
+        int count = 0;
+        try (MappingIterator<DtoEndpointHit> iterator = objectMapper.readerFor(DtoEndpointHit.class)
+                .readValues(body)) {
+            while (iterator.hasNextValue()) {
+                DtoEndpointHit dtoEndpointHit = iterator.nextValue();
+                count++;
+                validate(dtoEndpointHit, count);
+                if (!session.accept(dtoEndpointHit)) {
+                    break;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            error = "Некорректная запись NDJSON №" + (count + 1) + ": " + e.getOriginalMessage();
+        } catch (ValidationException e) {
+            error = e.getMessage();
+        } catch (IOException e) {
+            error = "Ошибка чтения потока: " + e.getMessage();
+        }
+        long acked = session.finish(error);
+        log.info("Поток посещений закрыт, получено {}, сохранено {}", count, acked);
+    }
+
+    /**
+     * Статистика по посещениям. Параметр {@code unique} принимает значения {@code true}, {@code false}
+     * и {@code approx} — приближённое количество уникальных посещений по оценкам HyperLogLog.
+     */
     @GetMapping("/stats")
     @ResponseStatus(HttpStatus.OK)
     public List<DtoViewStats> getStats(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
@@ -36,12 +155,209 @@ public class StatsController {
                                        LocalDateTime end,
                                        @RequestParam(required = false) List<String> uris,
                                        @RequestParam(defaultValue = "false", required = false)
-                                       boolean unique) {
+                                       String unique) {
         log.info("""
                 Запрос на получение статистики по посещениям:
                 Диапазон даты и времени: {} - {}
                 Список uri: {}
                 Уникальные посещения: {}""", start, end, uris, unique);
-        return statisticsServiceImpl.getStats(start, end, uris, unique);
+        if (UNIQUE_APPROX.equalsIgnoreCase(unique)) {
+            return statisticsServiceImpl.getApproxUniqueStats(start, end, uris);
+        }
+        return statisticsServiceImpl.getStats(start, end, uris, parseUnique(unique));
+    }
+
+    /**
+     * Несколько запросов статистики за один вызов. Результаты возвращаются списками в порядке запросов.
+     */
+    @PostMapping("/stats/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public List<List<DtoViewStats>> getStatsBatch(@RequestBody @Valid List<@Valid DtoStatsQuery> queries) {
+        log.info("Пакетный запрос статистики, количество запросов: {}", queries.size());
+        return statisticsServiceImpl.getStatsBatch(queries);
+    }
+
+    /**
+     * Просмотры событий по идентификаторам. Тело запроса — идентификаторы, тело ответа — количества просмотров
+     * в том же порядке, оба в формате {@link LongArrayCodec}.
+     */
+    @PostMapping(value = "/stats/events/views", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public byte[] getEventViews(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                LocalDateTime start,
+                                @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                LocalDateTime end,
+                                @RequestParam(defaultValue = "false") boolean unique,
+                                @RequestBody(required = false) byte[] body) {
+        long[] eventIds;
+        try {
+            eventIds = body == null ? new long[0] : LongArrayCodec.decode(body);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException(e.getMessage());
+        }
+        log.info("Запрос просмотров событий, количество событий: {}", eventIds.length);
+        return LongArrayCodec.encode(statisticsServiceImpl.getEventViews(start, end, eventIds, unique));
+    }
+
+    /**
+     * То же, что {@link #getEventViews}, в JSON: в запросе {@code eventIds}, в ответе {@code eventIds} и {@code views}.
+     */
+    @PostMapping(value = "/stats/events/views", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public DtoEventViews getEventViewsJson(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                           LocalDateTime start,
+                                           @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                           LocalDateTime end,
+                                           @RequestParam(defaultValue = "false") boolean unique,
+                                           @RequestBody @Valid DtoEventViews body) {
+        log.info("Запрос просмотров событий, количество событий: {}", body.getEventIds().length);
+        return new DtoEventViews(body.getEventIds(),
+                statisticsServiceImpl.getEventViews(start, end, body.getEventIds(), unique));
+    }
+
+    /**
+     * {@code n} самых посещаемых uri за интервал. Параметр {@code prefix} отбирает uri по началу,
+     * например {@code /events/}.
+     */
+    @GetMapping("/stats/top")
+    @ResponseStatus(HttpStatus.OK)
+    public List<DtoViewStats> getTopStats(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                          LocalDateTime start,
+                                          @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                          LocalDateTime end,
+                                          @RequestParam(defaultValue = "10") int n,
+                                          @RequestParam(defaultValue = "false") boolean unique,
+                                          @RequestParam(required = false) String prefix) {
+        log.info("""
+                Запрос на получение самых посещаемых uri:
+                Диапазон даты и времени: {} - {}
+                Количество: {}, префикс: {}
+                Уникальные посещения: {}""", start, end, n, prefix, unique);
+        String uriPrefix = prefix == null || prefix.isEmpty() ? null : prefix;
+        return statisticsServiceImpl.getTopStats(start, end, n, unique, uriPrefix);
+    }
+
+    /**
+     * Количество посещений по корзинам времени для каждого uri, например для графика просмотров.
+     * Параметр {@code bucket} принимает значения {@code minute}, {@code hour} и {@code day}.
+     */
+    @GetMapping("/stats/timeseries")
+    @ResponseStatus(HttpStatus.OK)
+    public List<DtoTimeSeries> getTimeSeries(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                             LocalDateTime start,
+                                             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                             LocalDateTime end,
+                                             @RequestParam(required = false) List<String> uris,
+                                             @RequestParam(defaultValue = "hour") String bucket,
+                                             @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("""
+                Запрос на получение статистики по корзинам времени:
+                Диапазон даты и времени: {} - {}
+                Список uri: {}
+                Корзина: {}, уникальные посещения: {}""", start, end, uris, bucket, unique);
+        return statisticsServiceImpl.getTimeSeries(start, end, uris, parseBucket(bucket), unique);
+    }
+
+    /**
+     * {@code n} популярных сейчас uri по счётчикам, в которых вес посещения уменьшается вдвое
+     * за {@code halfLife} (например {@code 1h} или {@code PT1H}; допустимые значения задаются в настройках).
+     */
+    @GetMapping("/stats/trending")
+    @ResponseStatus(HttpStatus.OK)
+    public List<DtoTrendingStats> getTrending(@RequestParam(defaultValue = "10") int n,
+                                              @RequestParam(required = false) String halfLife,
+                                              @RequestParam(required = false) String prefix) {
+        log.info("Запрос популярных uri: количество {}, период полураспада {}, префикс {}", n, halfLife, prefix);
+        String uriPrefix = prefix == null || prefix.isEmpty() ? null : prefix;
+        return statisticsServiceImpl.getTrending(n, parseHalfLife(halfLife), uriPrefix);
+    }
+
+    /**
+     * Статистика в формате NDJSON, выбирается заголовком {@code Accept: application/x-ndjson}.
+     * Строки читаются из хранилища курсором и сразу пишутся в ответ, поэтому память не зависит от размера
+     * результата. Ошибки параметров возвращаются до начала выдачи.
+     */
+    @GetMapping(value = "/stats", produces = APPLICATION_NDJSON_VALUE)
+    public void getStatsNdjson(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                               LocalDateTime start,
+                               @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                               LocalDateTime end,
+                               @RequestParam(required = false) List<String> uris,
+                               @RequestParam(defaultValue = "false", required = false)
+                               String unique,
+                               HttpServletResponse response) throws IOException {
+        log.info("""
+                Запрос на потоковое получение статистики (NDJSON):
+                Диапазон даты и времени: {} - {}
+                Список uri: {}
+                Уникальные посещения: {}""", start, end, uris, unique);
+        boolean approx = UNIQUE_APPROX.equalsIgnoreCase(unique);
+        boolean uniqueIps = approx || parseUnique(unique);
+        ObjectWriter writer = objectMapper.writerFor(DtoViewStats.class);
+        OutputStream out = response.getOutputStream();
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        int[] count = new int[1];
+        Consumer<DtoViewStats> sink = dtoViewStats -> {
+            try {
+                out.write(writer.writeValueAsBytes(dtoViewStats));
+                out.write('\n');
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        if (approx) {
+            statisticsServiceImpl.getApproxUniqueStats(start, end, uris).forEach(sink);
+        } else {
+            statisticsServiceImpl.streamStats(start, end, uris, uniqueIps, sink);
+        }
+        out.flush();
+        log.info("Потоковая выдача статистики завершена, количество строк: {}", count[0]);
+    }
+
+    private Duration parseHalfLife(String halfLife) {
+        if (halfLife == null || halfLife.isEmpty()) {
+            return null;
+        }
+        try {
+            return DurationStyle.detectAndParse(halfLife);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный период полураспада: " + halfLife);
+        }
+    }
+
+    private Granularity parseBucket(String bucket) {
+        return switch (bucket.toLowerCase()) {
+            case "minute" -> Granularity.MINUTE;
+            case "hour" -> Granularity.HOUR;
+            case "day" -> Granularity.DAY;
+            default -> throw new ValidationException("Параметр bucket должен быть minute, hour или day: " + bucket);
+        };
+    }
+
+    private boolean parseUnique(String unique) {
+        if (!"true".equalsIgnoreCase(unique) && !"false".equalsIgnoreCase(unique)) {
+            throw new ValidationException("Параметр unique должен быть true, false или " + UNIQUE_APPROX + ": "
+                    + unique);
+        }
+        return Boolean.parseBoolean(unique);
+    }
+
+    private static ValidationException partiallySaved(String message, int saved) {
+        if (saved == 0) {
+            return new ValidationException(message);
+        }
+        return new HitsPartiallySavedException(message + ". Сохранено записей: " + saved + ", повторите загрузку "
+                + "с записи №" + (saved + 1), saved);
+    }
+
+    private void validate(DtoEndpointHit dtoEndpointHit, int number) {
+        Set<ConstraintViolation<DtoEndpointHit>> violations = validator.validate(dtoEndpointHit);
+        if (!violations.isEmpty()) {
+            throw new ValidationException("Некорректная запись NDJSON №" + number + ": "
+                    + violations.iterator().next().getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package ru.practicum.error.exception;
+
+import lombok.Getter;
+
+/**
+ * Ошибка в потоковой загрузке посещений после того, как часть записей уже сохранена.
+ * Сохранены первые {@code saved} записей; повторять загрузку нужно со следующей.
+ */
+@Getter
+public class HitsPartiallySavedException extends ValidationException {
+
+    private final long saved;
+
+    /**
+     * Конструктор исключения.
+     *
+     * @param message Сообщение об ошибке, которое будет передано вместе с исключением.
+     * @param saved   Количество сохранённых записей с начала запроса.
+     */
+    public HitsPartiallySavedException(String message, long saved) {
+        super(message);
+        this.saved = saved;
+    }
+}
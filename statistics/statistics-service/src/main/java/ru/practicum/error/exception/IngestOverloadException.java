@@ -0,0 +1,18 @@
+package ru.practicum.error.exception;
+
+/**
+ * Исключение, выбрасываемое, когда очередь приёма посещений переполнена
+ * или запись не была подтверждена за отведённое время.
+ * Клиенту следует повторить запрос позже.
+ */
+public class IngestOverloadException extends RuntimeException {
+
+    /**
+     * Конструктор исключения.
+     *
+     * @param message Сообщение об ошибке, которое будет передано вместе с исключением.
+     */
+    public IngestOverloadException(String message) {
+        super(message);
+    }
+}
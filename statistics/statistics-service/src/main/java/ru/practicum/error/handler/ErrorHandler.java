@@ -2,9 +2,13 @@ package ru.practicum.error.handler;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.practicum.error.exception.HitsPartiallySavedException;
+import ru.practicum.error.exception.IngestOverloadException;
 import ru.practicum.error.exception.ValidationException;
 import ru.practicum.error.model.ApiError;
 
@@ -14,16 +18,34 @@ import java.time.LocalDateTime;
 @Slf4j
 public class ErrorHandler {
 
+    /**
+     * Тип содержимого задаётся явно: ошибка может возникнуть в запросе с {@code Accept: application/x-ndjson},
+     * для которого ответ в JSON иначе не прошёл бы согласование формата. Для {@link HitsPartiallySavedException}
+     * в ответ добавляется количество сохранённых записей.
+     */
     @ExceptionHandler({ValidationException.class})
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public ApiError handleValidationException(final ValidationException exception) {
+    public ResponseEntity<ApiError> handleValidationException(final ValidationException exception) {
         log.warn(exception.getMessage(), exception);
-        return ApiError.builder()
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ApiError.builder()
                 .errors("Ошибка")
                 .message(exception.getMessage())
                 .reason("ValidationException")
                 .status(HttpStatus.BAD_REQUEST.value() + "_" + HttpStatus.BAD_REQUEST.name())
                 .timestamp(LocalDateTime.now())
+                .saved(exception instanceof HitsPartiallySavedException partial ? partial.getSaved() : null)
+                .build());
+    }
+
+    @ExceptionHandler({IngestOverloadException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ApiError handleIngestOverloadException(final IngestOverloadException exception) {
+        log.warn(exception.getMessage());
+        return ApiError.builder()
+                .errors("Ошибка")
+                .message(exception.getMessage())
+                .reason("IngestOverloadException")
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value() + "_" + HttpStatus.SERVICE_UNAVAILABLE.name())
+                .timestamp(LocalDateTime.now())
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package ru.practicum.error.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -17,4 +18,9 @@ public class ApiError {
     private String status;
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime timestamp;
+    /**
+     * Сколько записей потоковой загрузки сохранено до ошибки, см. {@code HitsPartiallySavedException}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long saved;
 }
@@ -1,11 +1,23 @@
 package ru.practicum.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.practicum.model.DtoEndpointHit;
 import ru.practicum.model.EndpointHit;
+import ru.practicum.model.IpAddresses;
 
-@Mapper
+import java.time.temporal.ChronoUnit;
+
+@Mapper(imports = {IpAddresses.class, ChronoUnit.class})
 public interface EndpointHitMapper {
+    /**
+     * ip приводится к нормализованной записи, чтобы один адрес в разных записях считался одним посетителем.
+     * Время посещения хранится с точностью до секунды, как его передаёт JSON: на этом основаны
+     * границы интервалов в агрегатах, см. {@code TimeSegment#exclusiveEnd}.
+     */
+    @Mapping(target = "ip", expression = "java(IpAddresses.normalize(dtoEndpointHit.getIp()))")
+    @Mapping(target = "timestamp", expression = "java(dtoEndpointHit.getTimestamp() == null ? null "
+            + ": dtoEndpointHit.getTimestamp().truncatedTo(ChronoUnit.SECONDS))")
     EndpointHit toStats(DtoEndpointHit dtoEndpointHit);
 
     DtoEndpointHit toDtoStats(EndpointHit endpointHit);
@@ -0,0 +1,20 @@
+package ru.practicum.model;
+
+import java.util.Comparator;
+
+/**
+ * Ключ статистики: uri сервиса app. Упорядочивается по uri, затем по app — в порядке первичных ключей таблиц.
+ */
+public record AppUri(String app, String uri) implements Comparable<AppUri> {
+    private static final Comparator<AppUri> ORDER = Comparator.comparing(AppUri::uri)
+            .thenComparing(AppUri::app);
+
+    public static AppUri of(ViewStats stats) {
+        return new AppUri(stats.getApp(), stats.getUri());
+    }
+
+    @Override
+    public int compareTo(AppUri other) {
+        return ORDER.compare(this, other);
+    }
+}
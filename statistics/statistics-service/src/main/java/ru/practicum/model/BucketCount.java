@@ -0,0 +1,9 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Количество посещений uri сервиса app в корзине, начинающейся в момент bucket.
+ */
+public record BucketCount(String app, String uri, LocalDateTime bucket, long hits) {
+}
@@ -0,0 +1,19 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Корзина времени bucket для uri сервиса app. Упорядочивается в порядке первичных ключей таблиц агрегатов,
+ * чтобы параллельные пакеты блокировали строки в одном и том же порядке.
+ */
+public record BucketKey(LocalDateTime bucket, String uri, String app) implements Comparable<BucketKey> {
+    private static final Comparator<BucketKey> ORDER = Comparator.comparing(BucketKey::bucket)
+            .thenComparing(BucketKey::uri)
+            .thenComparing(BucketKey::app);
+
+    @Override
+    public int compareTo(BucketKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.model;
+
+/**
+ * Оценка уникальных посетителей uri в корзине времени.
+ */
+public record BucketSketch(BucketKey key, HyperLogLog sketch) {
+}
@@ -0,0 +1,26 @@
+package ru.practicum.model;
+
+/**
+ * Словари, которые выдают строкам плотные целые идентификаторы.
+ */
+public enum DictionaryType {
+    APP("hit_app", "name"),
+    URI("hit_uri", "name"),
+    VISITOR_IP("visitor_ip", "ip");
+
+    private final String table;
+    private final String column;
+
+    DictionaryType(String table, String column) {
+        this.table = table;
+        this.column = column;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+}
@@ -4,12 +4,20 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Immutable;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
 
+/**
+ * Посещение. Читается через представление {@code endpoint_hit_view}, которое подставляет имена сервиса и uri
+ * из словарей; ip и время в таблице хранятся в двоичном виде и в миллисекундах.
+ * Запись выполняется пакетами через {@link ru.practicum.storage.JdbcStatisticsRepository},
+ * агрегирующие запросы — через {@link ru.practicum.storage.HitQueryRepository}.
+ */
 @Entity
-@Table
+@Immutable
+@Table(name = "endpoint_hit_view")
 @Getter
 @Setter
 @ToString
@@ -23,8 +31,10 @@ public class EndpointHit {
 
     private String uri;
 
+    @Convert(converter = IpAddressConverter.class)
     private String ip;
 
+    @Convert(converter = EpochMillisConverter.class)
     private LocalDateTime timestamp;
 
     @Override
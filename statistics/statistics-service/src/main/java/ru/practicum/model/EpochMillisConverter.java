@@ -0,0 +1,33 @@
+package ru.practicum.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Хранит время посещения как количество миллисекунд от начала эпохи. Время посещений считается заданным в UTC.
+ */
+@Converter
+public class EpochMillisConverter implements AttributeConverter<LocalDateTime, Long> {
+
+    public static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    @Override
+    public Long convertToDatabaseColumn(LocalDateTime dateTime) {
+        return dateTime == null ? null : toMillis(dateTime);
+    }
+
+    @Override
+    public LocalDateTime convertToEntityAttribute(Long millis) {
+        return millis == null ? null : fromMillis(millis);
+    }
+}
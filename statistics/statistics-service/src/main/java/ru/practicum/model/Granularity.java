@@ -0,0 +1,55 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Размер временного интервала (корзины), по которому агрегируются посещения.
+ */
+public enum Granularity {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS),
+    MONTH(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    Granularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Начало корзины, в которую попадает момент времени.
+     */
+    public LocalDateTime truncate(LocalDateTime dateTime) {
+        if (unit == ChronoUnit.MONTHS) {
+            return dateTime.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        }
+        return dateTime.truncatedTo(unit);
+    }
+
+    /**
+     * Начало корзины, следующей за корзиной с началом {@code bucket}.
+     */
+    public LocalDateTime next(LocalDateTime bucket) {
+        return bucket.plus(1, unit);
+    }
+
+    /**
+     * Длительность корзины в миллисекундах. Для месяцев не определена.
+     */
+    public long millis() {
+        if (unit == ChronoUnit.MONTHS) {
+            throw new UnsupportedOperationException("Длительность месяца не постоянна");
+        }
+        return unit.getDuration().toMillis();
+    }
+
+    /**
+     * Ближайшая граница корзины не раньше указанного момента.
+     */
+    public LocalDateTime ceil(LocalDateTime dateTime) {
+        LocalDateTime bucket = truncate(dateTime);
+        return bucket.equals(dateTime) ? bucket : next(bucket);
+    }
+}
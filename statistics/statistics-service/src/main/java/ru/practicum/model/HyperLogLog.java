@@ -0,0 +1,254 @@
+package ru.practicum.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Вероятностная оценка количества различных значений (HyperLogLog).
+ * <p>
+ * Значение хешируется 64-битным MurmurHash3: первые {@code precision} бит выбирают регистр,
+ * в регистре хранится максимальная позиция первой единицы в оставшихся битах.
+ * Относительная стандартная ошибка оценки — {@code 1.04 / sqrt(2^precision)}.
+ * Оценки объединяются взятием максимума по регистрам, поэтому оценку за любой интервал
+ * можно получить из оценок за корзины, на которые он разбит.
+ * Количество считается улучшенным оценщиком О. Эртля (2017), который не требует таблиц поправок
+ * и одинаково точен на малых и больших количествах.
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final int SPARSE_ENTRY_SIZE = Integer.BYTES + 1;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Точность HyperLogLog должна быть от " + MIN_PRECISION + " до "
+                    + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Наименьшая точность, при которой относительная стандартная ошибка не больше {@code relativeError}.
+     */
+    public static int precisionFor(double relativeError) {
+        if (!(relativeError > 0 && relativeError < 1)) {
+            throw new IllegalArgumentException("Относительная ошибка должна быть в интервале (0, 1): "
+                    + relativeError);
+        }
+        double registers = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(registers) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    /**
+     * Относительная стандартная ошибка оценки при указанной точности.
+     */
+    public static double relativeError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(String value) {
+        long hash = murmur3(value.getBytes(StandardCharsets.UTF_8));
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int maxRank = Long.SIZE - precision + 1;
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision) + 1, maxRank);
+        if (registers[index] < rank) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        checkPrecision(other.precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Объединяет с оценкой, сохранённой через {@link #toBytes()}, без создания промежуточного объекта.
+     * Пустой массив соответствует пустой оценке.
+     */
+    public void merge(byte[] bytes) {
+        if (bytes.length == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        checkPrecision(buffer.get());
+        byte format = buffer.get();
+        if (format == DENSE) {
+            for (int i = 0; i < registers.length; i++) {
+                byte rank = buffer.get();
+                if (registers[i] < rank) {
+                    registers[i] = rank;
+                }
+            }
+        } else {
+            while (buffer.hasRemaining()) {
+                int index = buffer.getInt();
+                byte rank = buffer.get();
+                if (registers[index] < rank) {
+                    registers[index] = rank;
+                }
+            }
+        }
+    }
+
+    /**
+     * Сериализует оценку: пока заполнено мало регистров, хранятся только они, иначе — все регистры подряд.
+     */
+    public byte[] toBytes() {
+        int filled = 0;
+        for (byte rank : registers) {
+            if (rank != 0) {
+                filled++;
+            }
+        }
+        if (filled * SPARSE_ENTRY_SIZE < registers.length) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 + filled * SPARSE_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put((byte) precision).put(SPARSE);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    buffer.putInt(i).put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2 + registers.length);
+        buffer.put((byte) precision).put(DENSE).put(registers);
+        return buffer.array();
+    }
+
+    /**
+     * Оценка количества различных добавленных значений.
+     */
+    public long estimate() {
+        int q = Long.SIZE - precision;
+        int m = registers.length;
+        int[] histogram = new int[q + 2];
+        for (byte rank : registers) {
+            histogram[rank]++;
+        }
+        double z = m * tau(1.0 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(m * (m / (2 * Math.log(2) * z)));
+    }
+
+    private void checkPrecision(int other) {
+        if (other != precision) {
+            throw new IllegalArgumentException("Нельзя объединить оценки HyperLogLog с точностью " + precision
+                    + " и " + other);
+        }
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0;
+        double z = 1.0 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1.0 - x, 2) * y;
+        } while (z != previous);
+        return z / 3.0;
+    }
+
+    /**
+     * Младшие 64 бита MurmurHash3 x64 128 с нулевым seed.
+     */
+    static long murmur3(byte[] data) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = buffer.getLong(i * 16);
+            long k2 = buffer.getLong(i * 16 + 8);
+            h1 ^= mixK1(k1, c1, c2);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2, c1, c2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int tail = blocks * 16;
+        int remainder = data.length & 15;
+        if (remainder > 8) {
+            long k2 = 0;
+            for (int i = remainder - 1; i >= 8; i--) {
+                k2 ^= (long) (data[tail + i] & 0xff) << ((i - 8) * 8);
+            }
+            h2 ^= mixK2(k2, c1, c2);
+        }
+        if (remainder > 0) {
+            long k1 = 0;
+            for (int i = Math.min(remainder, 8) - 1; i >= 0; i--) {
+                k1 ^= (long) (data[tail + i] & 0xff) << (i * 8);
+            }
+            h1 ^= mixK1(k1, c1, c2);
+        }
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        return h1 + h2;
+    }
+
+    private static long mixK1(long k1, long c1, long c2) {
+        return Long.rotateLeft(k1 * c1, 31) * c2;
+    }
+
+    private static long mixK2(long k2, long c1, long c2) {
+        return Long.rotateLeft(k2 * c2, 33) * c1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
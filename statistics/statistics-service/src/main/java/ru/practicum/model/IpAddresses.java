@@ -0,0 +1,124 @@
+package ru.practicum.model;
+
+import ru.practicum.error.exception.ValidationException;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Преобразование ip между текстом и 16-байтовым двоичным видом.
+ * Адреса IPv4 хранятся как IPv4-отображённые адреса IPv6 ({@code ::ffff:a.b.c.d}).
+ * Текстовый вид нормализуется: IPv4 — четыре десятичных числа, IPv6 — сокращённая запись по RFC 5952.
+ */
+public final class IpAddresses {
+
+    public static final int LENGTH = 16;
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Нормализованная запись ip.
+     *
+     * @throws ValidationException если строка не является адресом IPv4 или IPv6
+     */
+    public static String normalize(String ip) {
+        return ip == null ? null : toString(toBytes(ip));
+    }
+
+    /**
+     * @throws ValidationException если строка не является адресом IPv4 или IPv6
+     */
+    public static byte[] toBytes(String ip) {
+        byte[] bytes = new byte[LENGTH];
+        if (ip.indexOf(':') < 0) {
+            parseIpv4(ip, bytes);
+            return bytes;
+        }
+        if (!ip.matches("[0-9A-Fa-f:.]+")) {
+            throw invalid(ip);
+        }
+        try {
+            // Строка из шестнадцатеричных цифр и двоеточий разбирается как литерал IPv6, без обращения к DNS.
+            InetAddress address = InetAddress.getByName(ip);
+            if (address instanceof Inet4Address) {
+                bytes[10] = (byte) 0xff;
+                bytes[11] = (byte) 0xff;
+                System.arraycopy(address.getAddress(), 0, bytes, 12, 4);
+                return bytes;
+            }
+            return address.getAddress();
+        } catch (UnknownHostException e) {
+            throw invalid(ip);
+        }
+    }
+
+    public static String toString(byte[] bytes) {
+        if (isIpv4Mapped(bytes)) {
+            return (bytes[12] & 0xff) + "." + (bytes[13] & 0xff) + "." + (bytes[14] & 0xff) + "." + (bytes[15] & 0xff);
+        }
+        int[] groups = new int[8];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = ((bytes[2 * i] & 0xff) << 8) | (bytes[2 * i + 1] & 0xff);
+        }
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < groups.length; ) {
+            int j = i;
+            while (j < groups.length && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = j == i ? i + 1 : j;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < groups.length; i++) {
+            if (i == bestStart) {
+                text.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (!text.isEmpty() && text.charAt(text.length() - 1) != ':') {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(groups[i]));
+        }
+        return text.toString();
+    }
+
+    private static boolean isIpv4Mapped(byte[] bytes) {
+        for (int i = 0; i < 10; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return bytes[10] == (byte) 0xff && bytes[11] == (byte) 0xff;
+    }
+
+    private static void parseIpv4(String ip, byte[] bytes) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            throw invalid(ip);
+        }
+        bytes[10] = (byte) 0xff;
+        bytes[11] = (byte) 0xff;
+        for (int i = 0; i < 4; i++) {
+            if (!parts[i].matches("\\d{1,3}")) {
+                throw invalid(ip);
+            }
+            int octet = Integer.parseInt(parts[i]);
+            if (octet > 255) {
+                throw invalid(ip);
+            }
+            bytes[12 + i] = (byte) octet;
+        }
+    }
+
+    private static ValidationException invalid(String ip) {
+        return new ValidationException("Некорректный ip: " + ip);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Полуоткрытый интервал [from, to), который читается либо из агрегатов указанной гранулярности,
+ * либо из исходных посещений, если {@code granularity == null}.
+ */
+public record TimeSegment(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+
+    /**
+     * Правая граница полуоткрытого интервала для включающей границы {@code end}.
+     * Время посещений хранится с точностью до секунды, поэтому [start, end] совпадает с [start, end + 1 с),
+     * и запрос «до 23:59:59» целиком покрывает последние сутки.
+     */
+    public static LocalDateTime exclusiveEnd(LocalDateTime end) {
+        return end.plusSeconds(1);
+    }
+
+    /**
+     * Раскладывает полуоткрытый интервал [from, to) на корзины: сначала самые крупные,
+     * затем более мелкие на краях, и в последнюю очередь исходные посещения.
+     *
+     * @param granularities доступные гранулярности в порядке от мелкой к крупной
+     */
+    public static List<TimeSegment> plan(LocalDateTime from, LocalDateTime to, List<Granularity> granularities) {
+        List<TimeSegment> segments = new ArrayList<>();
+        plan(from, to, granularities, granularities.size() - 1, segments);
+        return segments;
+    }
+
+    private static void plan(LocalDateTime from, LocalDateTime to, List<Granularity> granularities, int level,
+                             List<TimeSegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level < 0) {
+            segments.add(new TimeSegment(null, from, to));
+            return;
+        }
+        Granularity granularity = granularities.get(level);
+        LocalDateTime first = granularity.ceil(from);
+        LocalDateTime last = granularity.truncate(to);
+        if (!first.isBefore(last)) {
+            plan(from, to, granularities, level - 1, segments);
+            return;
+        }
+        plan(from, first, granularities, level - 1, segments);
+        segments.add(new TimeSegment(granularity, first, last));
+        plan(last, to, granularities, level - 1, segments);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отбирает не более {@code limit} записей с наибольшим количеством посещений среди uri, начинающихся
+ * с {@code prefix}. Записи хранятся в куче с наименьшей записью в вершине, поэтому память ограничена
+ * {@code limit}, а не количеством uri. При равном количестве выше стоит запись с меньшим uri.
+ */
+public final class TopStats {
+
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+    private static final Comparator<ViewStats> ORDER = Comparator.comparingLong(ViewStats::getHits)
+            .thenComparing(AppUri::of, Comparator.reverseOrder());
+
+    private final int limit;
+    private final String prefix;
+    private final PriorityQueue<ViewStats> heap;
+
+    /**
+     * @param limit  количество записей, больше нуля
+     * @param prefix начало uri или {@code null}, если подходят все uri
+     */
+    public TopStats(int limit, String prefix) {
+        this.limit = limit;
+        this.prefix = prefix;
+        this.heap = new PriorityQueue<>(Math.min(limit, MAX_INITIAL_CAPACITY), ORDER);
+    }
+
+    public void add(ViewStats stats) {
+        if (prefix != null && !stats.getUri().startsWith(prefix)) {
+            return;
+        }
+        if (heap.size() < limit) {
+            heap.add(stats);
+        } else if (ORDER.compare(stats, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(stats);
+        }
+    }
+
+    /**
+     * Отобранные записи по убыванию количества посещений.
+     */
+    public List<ViewStats> toList() {
+        List<ViewStats> top = new ArrayList<>(heap);
+        top.sort(ORDER.reversed());
+        return top;
+    }
+}
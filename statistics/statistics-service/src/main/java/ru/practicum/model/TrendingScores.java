@@ -0,0 +1,136 @@
+package ru.practicum.model;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Экспоненциально затухающие счётчики посещений по uri для нескольких периодов полураспада.
+ * <p>
+ * Используется прямое затухание: посещение в момент {@code t} добавляет к счётчику
+ * {@code 2^((t - landmark) / halfLife)}, а значение на момент {@code now} получается умножением суммы
+ * на {@code 2^((landmark - now) / halfLife)}. Так запись не трогает остальные счётчики и сводится к сложению
+ * в {@link DoubleAdder} без блокировок. Чтобы веса не переполнялись, {@link #rescale} периодически переносит
+ * счётчики к новой опорной точке.
+ * <p>
+ * Счётчики хранятся в двух поколениях: запись идёт в текущее, а предыдущее переносится в новое поколение
+ * только при следующем {@link #rescale}, когда запоздавшие записи в него уже завершились.
+ * Все моменты времени — миллисекунды, как в {@link EpochMillisConverter}.
+ */
+public final class TrendingScores {
+
+    private final double[] halfLives;
+    private volatile Generations generations;
+
+    public TrendingScores(List<Duration> halfLives, long landmark) {
+        this.halfLives = halfLives.stream().mapToDouble(Duration::toMillis).toArray();
+        this.generations = new Generations(new Generation(landmark), new Generation(landmark));
+    }
+
+    public void add(AppUri key, long timestamp) {
+        Generation current = generations.current();
+        DoubleAdder[] adders = current.adders(key, halfLives.length);
+        for (int i = 0; i < halfLives.length; i++) {
+            adders[i].add(decay(timestamp, current.landmark(), i));
+        }
+    }
+
+    /**
+     * Добавляет значения, сохранённые на момент {@code at}, например при восстановлении после перезапуска.
+     *
+     * @param scores значения по периодам полураспада в порядке конструктора
+     */
+    public void restore(AppUri key, double[] scores, long at) {
+        Generation current = generations.current();
+        DoubleAdder[] adders = current.adders(key, halfLives.length);
+        for (int i = 0; i < halfLives.length; i++) {
+            adders[i].add(scores[i] * decay(at, current.landmark(), i));
+        }
+    }
+
+    /**
+     * Значения всех счётчиков на момент {@code now} по периодам полураспада в порядке конструктора.
+     */
+    public Map<AppUri, double[]> snapshot(long now) {
+        Generations state = generations;
+        Map<AppUri, double[]> scores = new HashMap<>();
+        addTo(scores, state.previous(), now);
+        addTo(scores, state.current(), now);
+        return scores;
+    }
+
+    /**
+     * Начинает новое поколение с опорной точкой {@code now} и переносит в него предыдущее.
+     * Счётчики, значение которых по всем периодам меньше {@code minScore}, отбрасываются.
+     * Вызывается из одного потока.
+     */
+    public void rescale(long now, double minScore) {
+        Generations state = generations;
+        Generation next = new Generation(now);
+        state.previous().scores().forEach((key, adders) -> {
+            double[] values = new double[halfLives.length];
+            boolean keep = false;
+            for (int i = 0; i < halfLives.length; i++) {
+                values[i] = adders[i].sum() * decay(state.previous().landmark(), now, i);
+                keep |= values[i] >= minScore;
+            }
+            if (keep) {
+                DoubleAdder[] target = next.adders(key, halfLives.length);
+                for (int i = 0; i < halfLives.length; i++) {
+                    target[i].add(values[i]);
+                }
+            }
+        });
+        generations = new Generations(next, state.current());
+    }
+
+    /**
+     * Количество счётчиков в обоих поколениях; uri, встречающийся в обоих, учитывается дважды.
+     */
+    public int size() {
+        Generations state = generations;
+        return state.current().scores().size() + state.previous().scores().size();
+    }
+
+    private void addTo(Map<AppUri, double[]> scores, Generation generation, long now) {
+        generation.scores().forEach((key, adders) -> {
+            double[] values = scores.computeIfAbsent(key, k -> new double[halfLives.length]);
+            for (int i = 0; i < halfLives.length; i++) {
+                values[i] += adders[i].sum() * decay(generation.landmark(), now, i);
+            }
+        });
+    }
+
+    /**
+     * Множитель, переводящий значение на момент {@code from} в значение на момент {@code to}.
+     */
+    private double decay(long from, long to, int halfLife) {
+        return Math.pow(2, (from - to) / halfLives[halfLife]);
+    }
+
+    private record Generation(long landmark, ConcurrentHashMap<AppUri, DoubleAdder[]> scores) {
+
+        Generation(long landmark) {
+            this(landmark, new ConcurrentHashMap<>());
+        }
+
+        DoubleAdder[] adders(AppUri key, int count) {
+            DoubleAdder[] adders = scores.get(key);
+            return adders != null ? adders : scores.computeIfAbsent(key, k -> newAdders(count));
+        }
+
+        private static DoubleAdder[] newAdders(int count) {
+            DoubleAdder[] adders = new DoubleAdder[count];
+            for (int i = 0; i < count; i++) {
+                adders[i] = new DoubleAdder();
+            }
+            return adders;
+        }
+    }
+
+    private record Generations(Generation current, Generation previous) {
+    }
+}
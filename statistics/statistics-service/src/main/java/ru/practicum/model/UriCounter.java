@@ -0,0 +1,17 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Счётчик посещений uri сервиса app за всё время хранения статистики.
+ */
+public record UriCounter(String app, String uri, long hits, long uniqueIps,
+                         LocalDateTime firstHit, LocalDateTime lastHit) {
+
+    /**
+     * Попадают ли все посещения uri в интервал [start, end].
+     */
+    public boolean isCoveredBy(LocalDateTime start, LocalDateTime end) {
+        return !firstHit.isBefore(start) && !lastHit.isAfter(end);
+    }
+}
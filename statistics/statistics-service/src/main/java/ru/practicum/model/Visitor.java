@@ -0,0 +1,7 @@
+package ru.practicum.model;
+
+/**
+ * Посетитель ip uri сервиса app.
+ */
+public record Visitor(String app, String uri, String ip) {
+}
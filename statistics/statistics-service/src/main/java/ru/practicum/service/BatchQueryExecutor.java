@@ -0,0 +1,66 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.BatchProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул потоков для запросов из пакетов {@code POST /stats/batch}. Пул общий для всех пакетов,
+ * поэтому одновременно к хранилищу обращается не больше {@code stats.batch.parallelism} запросов.
+ */
+@Component
+public class BatchQueryExecutor {
+
+    private final ExecutorService executor;
+
+    public BatchQueryExecutor(BatchProperties properties) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getParallelism(), task -> {
+            Thread thread = new Thread(task, "stats-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Выполняет задачи параллельно и возвращает результаты в том же порядке.
+     * Первое исключение задачи пробрасывается, остальные задачи при этом отменяются.
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание пакетного запроса прервано.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+}
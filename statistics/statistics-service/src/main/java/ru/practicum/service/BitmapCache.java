@@ -0,0 +1,63 @@
+package ru.practicum.service;
+
+import org.roaringbitmap.RoaringBitmap;
+import ru.practicum.model.BucketKey;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кеш множеств посетителей «uri, день» с вытеснением давно не использованных.
+ * <p>
+ * Чтобы запрос, прочитавший множество до фиксации записи, не положил в кеш устаревшее значение,
+ * у каждой группы ключей есть номер поколения: запись увеличивает его после фиксации,
+ * а значение из базы попадает в кеш, только если поколение за время чтения не изменилось.
+ */
+class BitmapCache {
+
+    private static final int STRIPES = 1024;
+
+    private final Map<BucketKey, RoaringBitmap> bitmaps;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    BitmapCache(int size) {
+        this.bitmaps = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BucketKey, RoaringBitmap> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    synchronized RoaringBitmap get(BucketKey key) {
+        return bitmaps.get(key);
+    }
+
+    long generation(BucketKey key) {
+        return generations.get(stripe(key));
+    }
+
+    /**
+     * Кладёт множество в кеш, если с момента получения {@code generation} ключ не менялся.
+     */
+    synchronized void put(BucketKey key, RoaringBitmap bitmap, long generation) {
+        if (generations.get(stripe(key)) == generation) {
+            bitmaps.put(key, bitmap);
+        }
+    }
+
+    void invalidate(Collection<BucketKey> keys) {
+        for (BucketKey key : keys) {
+            generations.incrementAndGet(stripe(key));
+        }
+        synchronized (this) {
+            keys.forEach(bitmaps::remove);
+        }
+    }
+
+    private static int stripe(BucketKey key) {
+        return Math.floorMod(key.hashCode(), STRIPES);
+    }
+}
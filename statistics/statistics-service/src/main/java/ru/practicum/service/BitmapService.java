@@ -0,0 +1,167 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.model.*;
+import ru.practicum.storage.BitmapRepository;
+import ru.practicum.storage.DictionaryCache;
+import ru.practicum.storage.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Точный подсчёт уникальных посещений по битовым множествам.
+ * <p>
+ * Каждому ip выдаётся плотный целый идентификатор (словарь {@link DictionaryType#VISITOR_IP}), а для каждого uri
+ * и дня хранится сжатое множество идентификаторов посетителей (RoaringBitmap). Количество уникальных посетителей
+ * за интервал — мощность объединения множеств за полные дни; для неполных дней на краях интервала читаются
+ * исходные посещения. Чтение словарь не пополняет: ip из исходных посещений, которым идентификатор не выдан,
+ * получают временные идентификаторы на время запроса.
+ * Множества кешируются в памяти.
+ */
+@Service
+@ConditionalOnJpaStore
+@Slf4j
+public class BitmapService implements HitListener {
+
+    private static final List<Granularity> GRANULARITIES = List.of(Granularity.DAY);
+
+    private final BitmapRepository bitmapRepository;
+    private final HitStore hitStore;
+    private final DictionaryCache dictionaryCache;
+    private final BitmapProperties bitmapProperties;
+    private final BitmapCache cache;
+
+    public BitmapService(BitmapRepository bitmapRepository, HitStore hitStore,
+                         DictionaryCache dictionaryCache, BitmapProperties bitmapProperties) {
+        this.bitmapRepository = bitmapRepository;
+        this.hitStore = hitStore;
+        this.dictionaryCache = dictionaryCache;
+        this.bitmapProperties = bitmapProperties;
+        this.cache = new BitmapCache(bitmapProperties.getCacheSize());
+    }
+
+    public boolean isEnabled() {
+        return bitmapProperties.isEnabled();
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!isEnabled() || hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> ids = dictionaryCache.getOrCreate(DictionaryType.VISITOR_IP,
+                hits.stream().map(EndpointHit::getIp).toList());
+        Map<BucketKey, RoaringBitmap> bitmaps = new TreeMap<>();
+        for (EndpointHit hit : hits) {
+            BucketKey key = new BucketKey(Granularity.DAY.truncate(hit.getTimestamp()), hit.getUri(), hit.getApp());
+            bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).add(ids.get(hit.getIp()));
+        }
+        bitmapRepository.merge(bitmaps);
+        invalidateAfterCommit(bitmaps.keySet());
+    }
+
+    /**
+     * Точное количество уникальных посетителей за интервал [start, end].
+     *
+     * @param uris список uri или {@code null}/пустой список для всех uri
+     * @return статистика, отсортированная по убыванию количества посещений
+     */
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return collectVisitors(start, end, uris).entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(),
+                        entry.getValue().getLongCardinality()))
+                .sorted(Comparator.comparingLong(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    /**
+     * Не более {@code limit} uri с наибольшим количеством уникальных посетителей за интервал [start, end].
+     *
+     * @param prefix начало uri или {@code null}, если подходят все uri
+     */
+    public List<ViewStats> getTopStats(LocalDateTime start, LocalDateTime end, int limit, String prefix) {
+        TopStats top = new TopStats(limit, prefix);
+        collectVisitors(start, end, null).forEach((key, visitors) ->
+                top.add(new ViewStats(key.app(), key.uri(), visitors.getLongCardinality())));
+        return top.toList();
+    }
+
+    private Map<AppUri, RoaringBitmap> collectVisitors(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        Map<AppUri, RoaringBitmap> visitors = new HashMap<>();
+        Map<String, Integer> unregistered = new HashMap<>();
+        for (TimeSegment segment : TimeSegment.plan(start, TimeSegment.exclusiveEnd(end), GRANULARITIES)) {
+            if (segment.isRaw()) {
+                addRaw(segment, filter, visitors, unregistered);
+            } else {
+                addDays(segment, filter, visitors);
+            }
+        }
+        return visitors;
+    }
+
+    /**
+     * @param unregistered временные идентификаторы ip, которых нет в словаре: начинаются с
+     *                     {@link Integer#MIN_VALUE} и не пересекаются с выданными базой положительными
+     */
+    private void addRaw(TimeSegment segment, List<String> filter, Map<AppUri, RoaringBitmap> visitors,
+                        Map<String, Integer> unregistered) {
+        List<Visitor> raw = hitStore.findVisitors(segment.from(), segment.to(), filter);
+        Map<String, Integer> ids = dictionaryCache.find(DictionaryType.VISITOR_IP,
+                raw.stream().map(Visitor::ip).toList());
+        for (Visitor visitor : raw) {
+            Integer id = ids.get(visitor.ip());
+            if (id == null) {
+                id = unregistered.computeIfAbsent(visitor.ip(), ip -> Integer.MIN_VALUE + unregistered.size());
+            }
+            visitors.computeIfAbsent(new AppUri(visitor.app(), visitor.uri()), key -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    private void addDays(TimeSegment segment, List<String> filter, Map<AppUri, RoaringBitmap> visitors) {
+        List<BucketKey> missing = new ArrayList<>();
+        Map<BucketKey, Long> generations = new HashMap<>();
+        int cachedCount = 0;
+        for (BucketKey key : bitmapRepository.findKeys(segment.from(), segment.to(), filter)) {
+            RoaringBitmap cached = cache.get(key);
+            if (cached != null) {
+                or(visitors, key, cached);
+                cachedCount++;
+            } else {
+                generations.put(key, cache.generation(key));
+                missing.add(key);
+            }
+        }
+        bitmapRepository.find(missing, (key, bitmap) -> {
+            cache.put(key, bitmap, generations.get(key));
+            or(visitors, key, bitmap);
+        });
+        log.debug("Множества посетителей за [{}, {}): из кеша {}, из базы {}", segment.from(), segment.to(),
+                cachedCount, missing.size());
+    }
+
+    private static void or(Map<AppUri, RoaringBitmap> visitors, BucketKey key, RoaringBitmap bitmap) {
+        visitors.computeIfAbsent(new AppUri(key.app(), key.uri()), k -> new RoaringBitmap()).or(bitmap);
+    }
+
+    private void invalidateAfterCommit(Collection<BucketKey> keys) {
+        List<BucketKey> changed = List.copyOf(keys);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(changed);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidate(changed);
+            }
+        });
+    }
+}
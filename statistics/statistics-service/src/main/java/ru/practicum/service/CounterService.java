@@ -0,0 +1,112 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.CounterProperties;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.UriCounter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.storage.CounterRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Ведёт счётчики посещений каждого uri за всё время и отвечает по ним на запросы статистики.
+ * <p>
+ * Счётчик хранит количество посещений, количество уникальных ip и время первого и последнего посещения.
+ * Если интервал запроса покрывает всю историю uri (например, запрос «за всё время»),
+ * ответ по этому uri берётся из счётчика без чтения исходных посещений — как с уникальностью, так и без.
+ */
+@Service
+@ConditionalOnJpaStore
+@Slf4j
+@RequiredArgsConstructor
+public class CounterService implements HitListener {
+
+    private final CounterRepository counterRepository;
+    private final CounterProperties counterProperties;
+
+    public boolean isEnabled() {
+        return counterProperties.isEnabled();
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!isEnabled() || hits.isEmpty()) {
+            return;
+        }
+        // Ключи упорядочены, чтобы параллельные пакеты блокировали строки в одном и том же порядке.
+        Map<AppUri, Batch> batches = new TreeMap<>();
+        for (EndpointHit hit : hits) {
+            batches.computeIfAbsent(new AppUri(hit.getApp(), hit.getUri()), key -> new Batch()).add(hit);
+        }
+        List<UriCounter> counters = batches.entrySet().stream()
+                .map(entry -> entry.getValue().toCounter(entry.getKey(), 0))
+                .toList();
+        int[] newIps = counterRepository.addVisitors(counters,
+                batches.values().stream().map(batch -> (Collection<String>) batch.ips).toList());
+        List<UriCounter> increments = new ArrayList<>(counters.size());
+        int i = 0;
+        for (Map.Entry<AppUri, Batch> entry : batches.entrySet()) {
+            increments.add(entry.getValue().toCounter(entry.getKey(), newIps[i++]));
+        }
+        counterRepository.increment(increments);
+    }
+
+    /**
+     * Статистика по uri, вся история которых попадает в интервал [start, end].
+     *
+     * @param uris список uri или {@code null}/пустой список для всех uri
+     * @return статистика по таким uri и список остальных uri, которые нужно досчитать по посещениям
+     */
+    public Lookup lookup(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        List<UriCounter> counters = counterRepository.find(uris == null || uris.isEmpty() ? null : uris);
+        List<ViewStats> covered = new ArrayList<>();
+        Set<String> remaining = new LinkedHashSet<>();
+        for (UriCounter counter : counters) {
+            if (counter.isCoveredBy(start, end)) {
+                covered.add(new ViewStats(counter.app(), counter.uri(), unique ? counter.uniqueIps() : counter.hits()));
+            } else {
+                remaining.add(counter.uri());
+            }
+        }
+        log.debug("По счётчикам получена статистика для {} uri, досчитать по посещениям: {}", covered.size(),
+                remaining.size());
+        return new Lookup(covered, List.copyOf(remaining));
+    }
+
+    /**
+     * Результат поиска по счётчикам.
+     *
+     * @param covered       статистика по uri, полностью покрытым интервалом запроса
+     * @param remainingUris uri, у которых есть посещения за пределами интервала
+     */
+    public record Lookup(List<ViewStats> covered, List<String> remainingUris) {
+    }
+
+    private static final class Batch {
+        private final Set<String> ips = new TreeSet<>();
+        private long hits;
+        private LocalDateTime first;
+        private LocalDateTime last;
+
+        private void add(EndpointHit hit) {
+            ips.add(hit.getIp());
+            hits++;
+            if (first == null || hit.getTimestamp().isBefore(first)) {
+                first = hit.getTimestamp();
+            }
+            if (last == null || hit.getTimestamp().isAfter(last)) {
+                last = hit.getTimestamp();
+            }
+        }
+
+        private UriCounter toCounter(AppUri key, long uniqueIps) {
+            return new UriCounter(key.app(), key.uri(), hits, uniqueIps, first, last);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.IngestProperties;
+import ru.practicum.error.exception.IngestOverloadException;
+import ru.practicum.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь приёма посещений с групповой фиксацией.
+ * <p>
+ * В режиме {@link IngestProperties.Mode#ASYNC} посещения складываются в ограниченную очередь,
+ * а отдельный поток собирает их в пакеты и записывает через {@link HitWriter} каждые
+ * {@code flushInterval} или по накоплении {@code flushSize} посещений.
+ * Если места в очереди нет, запрос отклоняется с {@link IngestOverloadException}.
+ * <p>
+ * Если пакет не записался из-за данных, он делится пополам и записывается по частям, пока в части остаются
+ * посещения разных запросов; ошибку получают только запросы, посещения которых так и не записались.
+ * При недоступности базы данных пакет не делится.
+ * <p>
+ * При остановке новые посещения не принимаются, а оставшиеся в очереди записываются не дольше
+ * {@code shutdownTimeout}; не записанные за это время посещения считаются потерянными.
+ */
+@Component
+@Slf4j
+public class HitIngestionQueue {
+
+    private final HitWriter hitWriter;
+    private final IngestProperties properties;
+
+    private final BlockingQueue<PendingHit> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+
+    private final Timer flushLatency;
+    private final DistributionSummary flushSize;
+    private final Counter rejected;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public HitIngestionQueue(HitWriter hitWriter, IngestProperties properties, MeterRegistry meterRegistry) {
+        this.hitWriter = hitWriter;
+        this.properties = properties;
+        this.capacity = new Semaphore(properties.getQueueCapacity());
+        Gauge.builder("stats.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Количество посещений, ожидающих записи")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("stats.ingest.flush.latency")
+                .description("Время записи одного пакета")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("stats.ingest.flush.size")
+                .description("Количество посещений в записанном пакете")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("stats.ingest.rejected")
+                .description("Посещения, отклонённые из-за переполнения очереди")
+                .register(meterRegistry);
+        this.failed = Counter.builder("stats.ingest.failed")
+                .description("Посещения, которые не удалось записать")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isAsync()) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::drainLoop, "stats-ingest-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Запущена асинхронная запись посещений: ёмкость очереди {}, интервал {}, размер пакета {}, "
+                        + "подтверждение {}", properties.getQueueCapacity(), properties.getFlushInterval(),
+                properties.getFlushSize(), properties.getDurability());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.join(properties.getShutdownTimeout().toMillis());
+        int abandoned = abandon();
+        if (abandoned > 0) {
+            log.error("Асинхронная запись посещений остановлена, не записано за {}: {}",
+                    properties.getShutdownTimeout(), abandoned);
+        } else {
+            log.info("Асинхронная запись посещений остановлена");
+        }
+    }
+
+    /**
+     * Снимает с очереди посещения, которые поток записи не успел взять, и завершает их запросы ошибкой.
+     *
+     * @return количество потерянных посещений, не считая уже отменённых запросов
+     */
+    private int abandon() {
+        List<PendingHit> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        IngestOverloadException error = new IngestOverloadException("Сервис останавливается, посещения не записаны.");
+        int lost = 0;
+        for (PendingHit pendingHit : rest) {
+            if (pendingHit.ack().take()) {
+                pendingHit.ack().future.completeExceptionally(error);
+                lost++;
+            }
+        }
+        failed.increment(lost);
+        capacity.release(rest.size());
+        return lost;
+    }
+
+    public boolean isAsync() {
+        return properties.getMode() == IngestProperties.Mode.ASYNC;
+    }
+
+    /**
+     * Помещает посещения в очередь. В режиме {@link IngestProperties.Durability#ACK_ON_COMMIT}
+     * дожидается фиксации пакета, в который они попали.
+     *
+     * @param hits список посещений
+     * @throws IngestOverloadException если в очереди нет места или фиксация не дождалась тайм-аута
+     */
+    public void submit(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        if (!running || !capacity.tryAcquire(hits.size())) {
+            rejected.increment(hits.size());
+            throw new IngestOverloadException("Очередь приёма посещений переполнена, повторите запрос позже.");
+        }
+        Ack ack = new Ack(hits.size());
+        for (EndpointHit hit : hits) {
+            queue.add(new PendingHit(hit, ack));
+        }
+        if (properties.getDurability() == IngestProperties.Durability.ACK_ON_COMMIT) {
+            awaitCommit(ack, hits.size());
+        }
+    }
+
+    /**
+     * Ждёт фиксации не дольше {@code ackTimeout}. Если за это время запись посещений не началась, они снимаются
+     * с очереди и запрос отклоняется: повтор не создаст дублей. Если запись уже началась, ожидание продолжается
+     * до её результата.
+     */
+    private void awaitCommit(Ack ack, int size) {
+        try {
+            try {
+                ack.future.get(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (ack.cancel()) {
+                    rejected.increment(size);
+                    throw new IngestOverloadException("Запись посещений не началась за "
+                            + properties.getAckTimeout() + ", повторите запрос позже.");
+                }
+                log.debug("Запись посещений не подтверждена за {}, но уже началась", properties.getAckTimeout());
+                ack.future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestOverloadException("Ожидание записи посещений прервано.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingHit> batch = new ArrayList<>(properties.getFlushSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                if (running) {
+                    collect(batch);
+                } else {
+                    queue.drainTo(batch, properties.getFlushSize());
+                }
+            } catch (InterruptedException e) {
+                // Флаг прерывания не восстанавливается: очередь дописывается без ожидания, и поток завершается.
+                log.warn("Поток записи посещений прерван, оставшиеся в очереди посещения записываются: {}",
+                        queue.size());
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingHit> batch) throws InterruptedException {
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        PendingHit first = queue.poll(intervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + intervalNanos;
+        while (batch.size() < properties.getFlushSize()) {
+            if (queue.drainTo(batch, properties.getFlushSize() - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            PendingHit next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingHit> batch) {
+        List<PendingHit> taken = new ArrayList<>(batch.size());
+        for (PendingHit pendingHit : batch) {
+            if (pendingHit.ack().take()) {
+                taken.add(pendingHit);
+            }
+        }
+        try {
+            if (!taken.isEmpty()) {
+                write(taken);
+            }
+        } finally {
+            capacity.release(batch.size());
+        }
+    }
+
+    private void write(List<PendingHit> batch) {
+        List<EndpointHit> hits = batch.stream().map(PendingHit::hit).toList();
+        try {
+            flushLatency.record(() -> hitWriter.write(hits));
+            flushSize.record(hits.size());
+            batch.forEach(pendingHit -> pendingHit.ack().confirm());
+            log.debug("Записан пакет посещений: {}", hits.size());
+        } catch (RuntimeException e) {
+            if (!isResourceFailure(e) && batch.stream().map(PendingHit::ack).distinct().count() > 1) {
+                log.warn("Не удалось записать пакет посещений, количество: {}, запись по частям: {}", hits.size(),
+                        e.getMessage());
+                write(batch.subList(0, batch.size() / 2));
+                write(batch.subList(batch.size() / 2, batch.size()));
+                return;
+            }
+            failed.increment(hits.size());
+            log.error("Не удалось записать пакет посещений, количество: {}", hits.size(), e);
+            batch.forEach(pendingHit -> pendingHit.ack().future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Ошибка соединения или тайм-аут: запись по частям завершится так же.
+     */
+    private static boolean isResourceFailure(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof NonTransientDataAccessResourceException;
+    }
+
+    private record PendingHit(EndpointHit hit, Ack ack) {
+    }
+
+    /**
+     * Подтверждение одного вызова {@link #submit}: завершается, когда записаны все его посещения,
+     * даже если они попали в разные пакеты. Вызов можно отменить, пока ни одно его посещение не взято в запись.
+     */
+    private static final class Ack {
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private boolean taken;
+        private boolean cancelled;
+
+        private Ack(int size) {
+            this.remaining = new AtomicInteger(size);
+        }
+
+        /**
+         * @return {@code false}, если вызов отменён и посещение записывать не нужно
+         */
+        private synchronized boolean take() {
+            taken = !cancelled;
+            return taken;
+        }
+
+        /**
+         * @return {@code false}, если запись посещений уже началась
+         */
+        private synchronized boolean cancel() {
+            cancelled = !taken;
+            return cancelled;
+        }
+
+        private void confirm() {
+            if (remaining.decrementAndGet() == 0) {
+                future.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.service;
+
+import ru.practicum.model.EndpointHit;
+
+import java.util.List;
+
+/**
+ * Обработчик записанных посещений. Вызывается {@link HitWriter} в той же транзакции,
+ * что и вставка исходных посещений, поэтому производные данные не расходятся с ними.
+ */
+public interface HitListener {
+
+    void onHits(List<EndpointHit> hits);
+}
@@ -0,0 +1,34 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.storage.HitStore;
+
+import java.util.List;
+
+/**
+ * Единая точка записи посещений в хранилище.
+ * Используется как синхронным путём, так и фоновым потоком очереди приёма.
+ * Без базы данных (встроенное хранилище) нет транзакций, а из обработчиков остаются только те,
+ * что хранят данные в памяти.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+
+    private final HitStore hitStore;
+    private final List<HitListener> hitListeners;
+
+    /**
+     * Записывает пакет посещений и обновляет производные данные в одной транзакции.
+     *
+     * @param hits список посещений
+     */
+    @Transactional
+    public void write(List<EndpointHit> hits) {
+        hitStore.saveAll(hits);
+        hitListeners.forEach(listener -> listener.onHits(hits));
+    }
+}
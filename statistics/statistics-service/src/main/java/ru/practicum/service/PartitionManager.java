@@ -0,0 +1,133 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.PartitionProperties;
+import ru.practicum.model.Granularity;
+import ru.practicum.storage.PartitionRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Обслуживает секции таблицы посещений.
+ * <p>
+ * По расписанию заранее создаёт секции на {@code premake} интервалов вперёд, выносит из секции по умолчанию
+ * посещения, пришедшие с временем вне существующих секций, и удаляет секции старше срока хранения
+ * целиком, без {@code DELETE}. Для интервалов старше срока хранения секции не создаются: такие посещения
+ * в исходную таблицу не пишутся (см. {@link PartitionProperties#retentionHorizon}), а попавшие в секцию
+ * по умолчанию раньше удаляются из неё. Запросы статистики фильтруют по {@code timestamp}, поэтому
+ * PostgreSQL читает только секции, пересекающиеся с интервалом запроса.
+ */
+@Component
+@ConditionalOnJpaStore
+@Slf4j
+@RequiredArgsConstructor
+public class PartitionManager {
+
+    private final PartitionRepository partitionRepository;
+    private final PartitionProperties partitionProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${stats.partition.cron:0 5 * * * *}")
+    public void maintain() {
+        if (partitionProperties.isEnabled()) {
+            maintain(LocalDateTime.now());
+        }
+    }
+
+    void maintain(LocalDateTime now) {
+        Granularity granularity = partitionProperties.getGranularity();
+        if (granularity != Granularity.DAY && granularity != Granularity.MONTH) {
+            throw new IllegalStateException("Секции таблицы посещений могут быть только DAY или MONTH: "
+                    + granularity);
+        }
+        Set<String> existing = new HashSet<>(partitionRepository.findPartitions());
+        SortedSet<LocalDateTime> wanted = new TreeSet<>(partitionRepository.findDefaultPartitionTimes(
+                granularity.name().toLowerCase()));
+        LocalDateTime current = granularity.truncate(now);
+        for (int i = 0; i <= partitionProperties.getPremake(); i++) {
+            wanted.add(current);
+            current = granularity.next(current);
+        }
+        LocalDateTime horizon = partitionProperties.retentionHorizon(now);
+        if (horizon != null && !wanted.headSet(horizon).isEmpty()) {
+            wanted.headSet(horizon).clear();
+            run(() -> partitionRepository.deleteDefaultBefore(horizon),
+                    "Из секции по умолчанию удалены посещения раньше " + horizon + ", срок хранения "
+                            + partitionProperties.getRetention() + " истёк");
+        }
+        for (LocalDateTime from : wanted) {
+            Partition partition = Partition.of(granularity, from);
+            if (existing.add(partition.name())) {
+                run(() -> partitionRepository.createPartition(partition.name(), partition.from(), partition.to()),
+                        "Создана секция посещений " + partition);
+            }
+        }
+        if (partitionProperties.getRetention() == null) {
+            return;
+        }
+        LocalDateTime cutoff = now.minus(partitionProperties.getRetention());
+        existing.stream()
+                .map(Partition::parse)
+                .flatMap(Optional::stream)
+                .filter(partition -> !partition.to().isAfter(cutoff))
+                .forEach(partition -> run(() -> partitionRepository.dropPartition(partition.name()),
+                        "Удалена секция посещений " + partition + ", срок хранения "
+                                + partitionProperties.getRetention() + " истёк"));
+    }
+
+    private void run(Runnable action, String message) {
+        try {
+            action.run();
+            log.info(message);
+        } catch (RuntimeException e) {
+            log.error("Ошибка обслуживания секций посещений, действие не выполнено: {}", message, e);
+        }
+    }
+
+    /**
+     * Секция {@code endpoint_hit_pГГГГММ} (месяц) или {@code endpoint_hit_pГГГГММДД} (день) для интервала [from, to).
+     */
+    record Partition(String name, LocalDateTime from, LocalDateTime to) {
+        private static final String PREFIX = PartitionRepository.TABLE + "_p";
+        private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+        private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+        static Partition of(Granularity granularity, LocalDateTime from) {
+            DateTimeFormatter format = granularity == Granularity.MONTH ? MONTH : DAY;
+            return new Partition(PREFIX + format.format(from), from, granularity.next(from));
+        }
+
+        static Optional<Partition> parse(String name) {
+            if (!name.startsWith(PREFIX)) {
+                return Optional.empty();
+            }
+            String suffix = name.substring(PREFIX.length());
+            try {
+                if (suffix.length() == 6) {
+                    return Optional.of(of(Granularity.MONTH, LocalDate.parse(suffix + "01", DAY).atStartOfDay()));
+                }
+                if (suffix.length() == 8) {
+                    return Optional.of(of(Granularity.DAY, LocalDate.parse(suffix, DAY).atStartOfDay()));
+                }
+            } catch (DateTimeParseException e) {
+                log.warn("Секция посещений {} не соответствует шаблону имени и не обслуживается", name);
+            }
+            return Optional.empty();
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + from + ", " + to + ")";
+        }
+    }
+}
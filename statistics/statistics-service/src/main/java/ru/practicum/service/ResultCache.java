@@ -0,0 +1,240 @@
+package ru.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.ResultCacheProperties;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.EpochMillisConverter;
+import ru.practicum.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Кеш результатов запросов статистики.
+ * <p>
+ * Кешируется часть интервала до конца, округлённого вниз до {@code granularity}, поэтому запросы с концом
+ * «сейчас» от разных узлов в пределах одного шага получают одинаковые ключи. Посещения после округлённого конца
+ * каждый раз читаются из хранилища и прибавляются к закешированным. Результат хранится отдельно по каждому uri,
+ * и запрос с пересекающимся списком uri читает из базы только недостающие. Запрос без списка uri кешируется
+ * целиком.
+ * <p>
+ * Уникальные посещения за две части интервала не складываются: один ip попал бы в обе. Поэтому запрос
+ * уникальных посещений кешируется, только если его конец уже кратен {@code granularity}, а иначе целиком
+ * читается из хранилища.
+ * <p>
+ * Посещение меняет только результаты, в интервал которых попадает его время. Посещения с текущим временем
+ * обычно позже округлённого конца всех закешированных интервалов и кеш не трогают; более ранние увеличивают
+ * номер поколения своей группы uri, и записи, прочитанные в прошлом поколении, считаются устаревшими.
+ */
+@Component
+public class ResultCache implements HitListener {
+
+    private static final int STRIPES = 1024;
+
+    private final ResultCacheProperties properties;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final AtomicLong allUrisGeneration = new AtomicLong();
+    private final AtomicLong maxEnd = new AtomicLong(Long.MIN_VALUE);
+    private final Counter hits;
+    private final Counter misses;
+
+    public ResultCache(ResultCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        this.hits = Counter.builder("stats.result.cache.hits")
+                .description("Результаты по uri, найденные в кеше")
+                .register(meterRegistry);
+        this.misses = Counter.builder("stats.result.cache.misses")
+                .description("Результаты по uri, прочитанные из хранилища")
+                .register(meterRegistry);
+        Gauge.builder("stats.result.cache.hit.ratio", this, ResultCache::hitRatio)
+                .description("Доля результатов по uri, найденных в кеше")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.result.cache.evictions", cache, c -> c.stats().evictionCount())
+                .description("Результаты, вытесненные из кеша по размеру или времени жизни")
+                .register(meterRegistry);
+        Gauge.builder("stats.result.cache.size", cache, Cache::estimatedSize)
+                .description("Количество результатов в кеше")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Статистика за интервал [start, end]. Часть до конца, округлённого вниз до {@code granularity}, берётся
+     * из кеша, недостающие в кеше результаты запрашиваются у {@code loader} одним вызовом; остаток интервала
+     * запрашивается отдельным вызовом без кеширования. Если после округления конец раньше начала или запрос
+     * уникальных посещений не кратен шагу, интервал не кешируется.
+     */
+    public List<ViewStats> get(LocalDateTime start, LocalDateTime end, @Nullable List<String> uris, boolean unique,
+                               Loader loader) {
+        long step = properties.getGranularity().toMillis();
+        long to = Math.floorDiv(EpochMillisConverter.toMillis(end), step) * step;
+        LocalDateTime alignedEnd = EpochMillisConverter.fromMillis(to);
+        boolean aligned = to == EpochMillisConverter.toMillis(end);
+        if (alignedEnd.isBefore(start) || unique && !aligned) {
+            return loader.load(start, end, uris);
+        }
+        // Граница поднимается до чтения поколений: посещение, зафиксированное после этого, её увидит
+        // и сбросит поколение, а зафиксированное раньше попадёт в результат запроса к хранилищу.
+        maxEnd.accumulateAndGet(to, Math::max);
+        List<ViewStats> stats = uris == null || uris.isEmpty()
+                ? getAllUris(start, alignedEnd, unique, loader)
+                : getUris(start, alignedEnd, uris, unique, loader);
+        if (aligned) {
+            return stats;
+        }
+        return merge(stats, loader.load(EpochMillisConverter.fromMillis(to + 1), end, uris));
+    }
+
+    private List<ViewStats> getUris(LocalDateTime start, LocalDateTime alignedEnd, List<String> uris,
+                                    boolean unique, Loader loader) {
+        List<ViewStats> stats = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        List<Long> missingGenerations = new ArrayList<>();
+        Set<String> distinctUris = new LinkedHashSet<>(uris);
+        for (String uri : distinctUris) {
+            long generation = generations.get(stripe(uri));
+            Entry entry = cache.getIfPresent(new Key(start, alignedEnd, unique, uri));
+            if (entry != null && entry.generation() == generation) {
+                stats.addAll(entry.stats());
+            } else {
+                missing.add(uri);
+                missingGenerations.add(generation);
+            }
+        }
+        hits.increment(distinctUris.size() - missing.size());
+        misses.increment(missing.size());
+        if (!missing.isEmpty()) {
+            Map<String, List<ViewStats>> loaded = loader.load(start, alignedEnd, missing).stream()
+                    .collect(Collectors.groupingBy(ViewStats::getUri));
+            for (int i = 0; i < missing.size(); i++) {
+                List<ViewStats> uriStats = List.copyOf(loaded.getOrDefault(missing.get(i), List.of()));
+                cache.put(new Key(start, alignedEnd, unique, missing.get(i)),
+                        new Entry(uriStats, missingGenerations.get(i)));
+                stats.addAll(uriStats);
+            }
+        }
+        stats.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+        return stats;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!isEnabled() || hits.isEmpty()) {
+            return;
+        }
+        // Поколения сбрасываются после фиксации, иначе запрос между сбросом и фиксацией закеширует старые данные.
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(hits);
+            }
+        });
+    }
+
+    /**
+     * Складывает посещения по каждой паре app и uri.
+     */
+    private static List<ViewStats> merge(List<ViewStats> cached, List<ViewStats> tail) {
+        if (tail.isEmpty()) {
+            return cached;
+        }
+        Map<AppUri, Long> merged = new LinkedHashMap<>();
+        for (ViewStats stats : cached) {
+            merged.merge(AppUri.of(stats), stats.getHits(), Long::sum);
+        }
+        for (ViewStats stats : tail) {
+            merged.merge(AppUri.of(stats), stats.getHits(), Long::sum);
+        }
+        List<ViewStats> result = new ArrayList<>(merged.size());
+        merged.forEach((key, hits) -> result.add(new ViewStats(key.app(), key.uri(), hits)));
+        result.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    private List<ViewStats> getAllUris(LocalDateTime start, LocalDateTime alignedEnd, boolean unique,
+                                       Loader loader) {
+        Key key = new Key(start, alignedEnd, unique, null);
+        long generation = allUrisGeneration.get();
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.generation() == generation) {
+            hits.increment();
+            return entry.stats();
+        }
+        misses.increment();
+        List<ViewStats> stats = List.copyOf(loader.load(start, alignedEnd, null));
+        cache.put(key, new Entry(stats, generation));
+        return stats;
+    }
+
+    private void invalidate(List<EndpointHit> endpointHits) {
+        long limit = maxEnd.get();
+        boolean changed = false;
+        for (EndpointHit hit : endpointHits) {
+            if (EpochMillisConverter.toMillis(hit.getTimestamp()) <= limit) {
+                generations.incrementAndGet(stripe(hit.getUri()));
+                changed = true;
+            }
+        }
+        if (changed) {
+            allUrisGeneration.incrementAndGet();
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static int stripe(String uri) {
+        return Math.floorMod(uri.hashCode(), STRIPES);
+    }
+
+    /**
+     * Запрос статистики за интервал [start, end] по списку uri, {@code null} — по всем uri.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        List<ViewStats> load(LocalDateTime start, LocalDateTime end, @Nullable List<String> uris);
+    }
+
+    /**
+     * @param uri uri или {@code null} для запроса по всем uri
+     */
+    private record Key(LocalDateTime start, LocalDateTime end, boolean unique, @Nullable String uri) {
+    }
+
+    private record Entry(List<ViewStats> stats, long generation) {
+    }
+}
@@ -0,0 +1,145 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.model.*;
+import ru.practicum.storage.HitStore;
+import ru.practicum.storage.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Поддерживает агрегаты посещений по минутам, часам и суткам и отвечает по ним на запросы статистики.
+ * <p>
+ * Интервал запроса раскладывается на самые крупные корзины, целиком в него попадающие;
+ * исходные посещения читаются только для неполных минут на краях интервала.
+ * Так время ответа зависит от длины интервала, а не от общего количества посещений.
+ * Уникальные посещения по корзинам не складываются, поэтому агрегаты используются только без уникальности.
+ */
+@Service
+@ConditionalOnJpaStore
+@Slf4j
+@RequiredArgsConstructor
+public class RollupService implements HitListener {
+
+    private static final List<Granularity> GRANULARITIES = List.of(Granularity.MINUTE, Granularity.HOUR,
+            Granularity.DAY);
+
+    private final RollupRepository rollupRepository;
+    private final HitStore hitStore;
+    private final RollupProperties rollupProperties;
+
+    public boolean isEnabled() {
+        return rollupProperties.isEnabled();
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!isEnabled() || hits.isEmpty()) {
+            return;
+        }
+        for (Granularity granularity : GRANULARITIES) {
+            // Ключи упорядочены, чтобы параллельные пакеты блокировали строки агрегатов
+            // в одном и том же порядке и не попадали во взаимоблокировку.
+            Map<BucketKey, Long> counts = new TreeMap<>();
+            for (EndpointHit hit : hits) {
+                BucketKey key = new BucketKey(granularity.truncate(hit.getTimestamp()), hit.getUri(), hit.getApp());
+                counts.merge(key, 1L, Long::sum);
+            }
+            rollupRepository.increment(granularity, counts.entrySet().stream()
+                    .map(entry -> new BucketCount(entry.getKey().app(), entry.getKey().uri(),
+                            entry.getKey().bucket(), entry.getValue()))
+                    .toList());
+        }
+    }
+
+    /**
+     * Количество посещений (без уникальности) за интервал [start, end].
+     * Правая граница включается, см. {@link TimeSegment#exclusiveEnd}.
+     *
+     * @param uris список uri или {@code null}/пустой список для всех uri
+     * @return статистика, отсортированная по убыванию количества посещений
+     */
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return sumHits(start, end, uris).entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparingLong(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    /**
+     * Не более {@code limit} uri с наибольшим количеством посещений за интервал [start, end].
+     * Суммы по корзинам складываются для всех uri, а в результат отбираются кучей без полной сортировки.
+     *
+     * @param prefix начало uri или {@code null}, если подходят все uri
+     */
+    public List<ViewStats> getTopStats(LocalDateTime start, LocalDateTime end, int limit, String prefix) {
+        TopStats top = new TopStats(limit, prefix);
+        sumHits(start, end, null).forEach((key, hits) -> top.add(new ViewStats(key.app(), key.uri(), hits)));
+        return top.toList();
+    }
+
+    /**
+     * Количество посещений по корзинам {@code bucket} за интервал [start, end].
+     * Середина интервала читается из агрегатов той же гранулярности по корзинам, а неполные корзины на краях
+     * складываются из более мелких агрегатов и исходных посещений.
+     *
+     * @param bucket минута, час или сутки
+     * @return корзины с посещениями, отсортированные по uri, сервису и началу корзины
+     */
+    public List<BucketCount> getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                           Granularity bucket) {
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        List<Granularity> granularities = GRANULARITIES.subList(0, GRANULARITIES.indexOf(bucket) + 1);
+        Map<BucketKey, Long> hits = new TreeMap<>(Comparator.comparing(BucketKey::uri)
+                .thenComparing(BucketKey::app)
+                .thenComparing(BucketKey::bucket));
+        for (TimeSegment segment : TimeSegment.plan(start, TimeSegment.exclusiveEnd(end), granularities)) {
+            if (segment.granularity() == bucket) {
+                rollupRepository.findBuckets(bucket, segment.from(), segment.to(), filter).forEach(count ->
+                        hits.merge(new BucketKey(count.bucket(), count.uri(), count.app()), count.hits(), Long::sum));
+                continue;
+            }
+            // Сегмент мельче корзины лежит на краю интервала и целиком попадает в одну корзину.
+            LocalDateTime bucketStart = bucket.truncate(segment.from());
+            List<ViewStats> part = segment.isRaw()
+                    ? hitStore.countHits(segment.from(), segment.to(), filter)
+                    : rollupRepository.sumHits(segment.granularity(), segment.from(), segment.to(), filter);
+            part.forEach(stats -> hits.merge(new BucketKey(bucketStart, stats.getUri(), stats.getApp()),
+                    stats.getHits(), Long::sum));
+        }
+        return hits.entrySet().stream()
+                .map(entry -> new BucketCount(entry.getKey().app(), entry.getKey().uri(), entry.getKey().bucket(),
+                        entry.getValue()))
+                .toList();
+    }
+
+    private Map<AppUri, Long> sumHits(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        Map<AppUri, Long> hits = new HashMap<>();
+        for (TimeSegment segment : plan(start, TimeSegment.exclusiveEnd(end))) {
+            List<ViewStats> part;
+            if (segment.isRaw()) {
+                part = hitStore.countHits(segment.from(), segment.to(), filter);
+            } else {
+                part = rollupRepository.sumHits(segment.granularity(), segment.from(), segment.to(), filter);
+            }
+            part.forEach(stats -> hits.merge(AppUri.of(stats), stats.getHits(), Long::sum));
+        }
+        return hits;
+    }
+
+    /**
+     * Раскладывает полуоткрытый интервал [from, to) на корзины: сначала самые крупные,
+     * затем более мелкие на краях, и в последнюю очередь исходные посещения.
+     */
+    List<TimeSegment> plan(LocalDateTime from, LocalDateTime to) {
+        List<TimeSegment> segments = TimeSegment.plan(from, to, GRANULARITIES);
+        log.debug("План запроса по агрегатам для [{}, {}): {}", from, to, segments);
+        return segments;
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.SketchProperties;
+import ru.practicum.model.*;
+import ru.practicum.storage.HitStore;
+import ru.practicum.storage.SketchRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Поддерживает оценки HyperLogLog уникальных посетителей по часам, суткам и месяцам
+ * и отвечает по ним на запросы с {@code unique=approx}.
+ * <p>
+ * Интервал запроса раскладывается на корзины так же, как для агрегатов посещений;
+ * оценки корзин объединяются, а для неполных часов на краях интервала читаются исходные посещения.
+ * Точность задаётся настройкой {@code stats.sketch.relative-error}.
+ */
+@Service
+@ConditionalOnJpaStore
+@Slf4j
+@RequiredArgsConstructor
+public class SketchService implements HitListener {
+
+    private static final List<Granularity> GRANULARITIES = List.of(Granularity.HOUR, Granularity.DAY,
+            Granularity.MONTH);
+
+    private final SketchRepository sketchRepository;
+    private final HitStore hitStore;
+    private final SketchProperties sketchProperties;
+
+    public boolean isEnabled() {
+        return sketchProperties.isEnabled();
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!isEnabled() || hits.isEmpty()) {
+            return;
+        }
+        int precision = sketchProperties.getPrecision();
+        for (Granularity granularity : GRANULARITIES) {
+            Map<BucketKey, HyperLogLog> sketches = new TreeMap<>();
+            for (EndpointHit hit : hits) {
+                BucketKey key = new BucketKey(granularity.truncate(hit.getTimestamp()), hit.getUri(), hit.getApp());
+                sketches.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(hit.getIp());
+            }
+            sketchRepository.merge(granularity, sketches.entrySet().stream()
+                    .map(entry -> new BucketSketch(entry.getKey(), entry.getValue()))
+                    .toList());
+        }
+    }
+
+    /**
+     * Приближённое количество уникальных посетителей за интервал [start, end].
+     *
+     * @param uris список uri или {@code null}/пустой список для всех uri
+     * @return статистика, отсортированная по убыванию количества посещений
+     */
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        int precision = sketchProperties.getPrecision();
+        Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+        List<TimeSegment> plan = TimeSegment.plan(start, TimeSegment.exclusiveEnd(end), GRANULARITIES);
+        log.debug("План запроса по оценкам HyperLogLog для [{}, {}]: {}", start, end, plan);
+        for (TimeSegment segment : plan) {
+            if (segment.isRaw()) {
+                List<Visitor> visitors = hitStore.findVisitors(segment.from(), segment.to(), filter);
+                visitors.forEach(visitor -> sketches.computeIfAbsent(new AppUri(visitor.app(), visitor.uri()),
+                        key -> new HyperLogLog(precision)).add(visitor.ip()));
+            } else {
+                sketchRepository.forEach(segment.granularity(), segment.from(), segment.to(), filter,
+                        (app, uri, registers) -> sketches.computeIfAbsent(new AppUri(app, uri),
+                                key -> new HyperLogLog(precision)).merge(registers));
+            }
+        }
+        return sketches.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue().estimate()))
+                .sorted(Comparator.comparingLong(ViewStats::getHits).reversed())
+                .toList();
+    }
+}
@@ -1,14 +1,69 @@
 package ru.practicum.service;
 
 import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoStatsQuery;
+import ru.practicum.model.DtoTimeSeries;
+import ru.practicum.model.DtoTrendingStats;
 import ru.practicum.model.DtoViewStats;
+import ru.practicum.model.Granularity;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatisticsService {
 
     void createHit(DtoEndpointHit dtoEndpointHit);
 
+    void createHits(List<DtoEndpointHit> dtoEndpointHits);
+
     List<DtoViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
-}
\ No newline at end of file
+
+    /**
+     * Результаты нескольких запросов статистики в порядке запросов.
+     */
+    List<List<DtoViewStats>> getStatsBatch(List<DtoStatsQuery> queries);
+
+    /**
+     * Количество просмотров событий: {@code result[i]} — просмотры uri события {@code eventIds[i]}
+     * по всем сервисам.
+     */
+    long[] getEventViews(LocalDateTime start, LocalDateTime end, long[] eventIds, boolean unique);
+
+    /**
+     * Статистика с приближённым количеством уникальных посещений (оценки HyperLogLog).
+     */
+    List<DtoViewStats> getApproxUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    /**
+     * Не более {@code limit} uri с наибольшим количеством посещений, отсортированных по убыванию.
+     *
+     * @param prefix начало uri или {@code null}, если подходят все uri
+     */
+    List<DtoViewStats> getTopStats(LocalDateTime start, LocalDateTime end, int limit, boolean unique,
+                                   String prefix);
+
+    /**
+     * Количество посещений по корзинам {@code bucket} за интервал [start, end] отдельно для каждого uri.
+     *
+     * @param bucket минута, час или сутки
+     */
+    List<DtoTimeSeries> getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                      Granularity bucket, boolean unique);
+
+    /**
+     * Не более {@code limit} популярных сейчас uri по затухающим счётчикам посещений.
+     *
+     * @param halfLife период полураспада или {@code null} для периода по умолчанию
+     * @param prefix   начало uri или {@code null}, если подходят все uri
+     */
+    List<DtoTrendingStats> getTrending(int limit, Duration halfLife, String prefix);
+
+    /**
+     * Точная статистика, передаваемая {@code consumer} построчно по мере чтения из хранилища.
+     * Параметры проверяются до передачи первой строки.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                     Consumer<DtoViewStats> consumer);
+}
@@ -2,57 +2,344 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import ru.practicum.config.BatchProperties;
+import ru.practicum.config.EventViewsProperties;
+import ru.practicum.config.TimeSeriesProperties;
 import ru.practicum.error.exception.ValidationException;
 import ru.practicum.mapper.EndpointHitMapper;
 import ru.practicum.mapper.ViewStatsMapper;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.BucketCount;
 import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoStatsQuery;
+import ru.practicum.model.DtoTimeBucket;
+import ru.practicum.model.DtoTimeSeries;
+import ru.practicum.model.DtoTrendingStats;
 import ru.practicum.model.DtoViewStats;
 import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
 import ru.practicum.model.ViewStats;
-import ru.practicum.storage.JpaStatisticsRepository;
+import ru.practicum.storage.HitStore;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * Сервис статистики. Агрегаты (сервисы с {@code @Nullable}) хранятся в базе данных
+ * и отсутствуют, если посещения хранятся во встроенном хранилище, см. {@link HitStore}.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final JpaStatisticsRepository jpaStatisticsRepository;
+    private final HitStore hitStore;
+    private final HitWriter hitWriter;
+    private final HitIngestionQueue hitIngestionQueue;
+    @Nullable
+    private final RollupService rollupService;
+    @Nullable
+    private final CounterService counterService;
+    @Nullable
+    private final SketchService sketchService;
+    @Nullable
+    private final BitmapService bitmapService;
     private final EndpointHitMapper endpointHitMapper;
     private final ViewStatsMapper viewStatsMapper;
+    private final TimeSeriesProperties timeSeriesProperties;
+    private final TrendingService trendingService;
+    private final ResultCache resultCache;
+    private final BatchQueryExecutor batchQueryExecutor;
+    private final BatchProperties batchProperties;
+    private final EventViewsProperties eventViewsProperties;
 
     @Override
     public void createHit(DtoEndpointHit dtoEndpointHit) {
         EndpointHit endpointHit = endpointHitMapper.toStats(dtoEndpointHit);
-        EndpointHit createEndpointHit = jpaStatisticsRepository.save(endpointHit);
-        log.info("Создана статистика:\n{}", createEndpointHit);
+        write(List.of(endpointHit));
+        log.info("Создана статистика:\n{}", endpointHit);
     }
 
+    @Override
+    public void createHits(List<DtoEndpointHit> dtoEndpointHits) {
+        List<EndpointHit> endpointHits = dtoEndpointHits.stream()
+                .map(endpointHitMapper::toStats)
+                .toList();
+        write(endpointHits);
+        log.info("Создана статистика, количество посещений: {}", endpointHits.size());
+    }
+
+    /**
+     * Если кеш результатов включён, конец интервала округляется, см. {@link ResultCache}.
+     */
     @Override
     public List<DtoViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
-        List<ViewStats> viewStats;
-        if (end.isBefore(start)) {
-            throw new ValidationException("Время конца не может быть раньше времени начала.");
+        validateRange(start, end);
+        List<ViewStats> viewStats = findStats(start, end, uris, unique);
+        log.info("Получена статистика:\n{}", viewStats);
+        return toDto(viewStats);
+    }
+
+    /**
+     * Запросы с одинаковыми интервалом и уникальностью объединяются в один запрос по объединению uri,
+     * и его результат делится между ними. Объединённые запросы выполняются параллельно.
+     */
+    @Override
+    public List<List<DtoViewStats>> getStatsBatch(List<DtoStatsQuery> queries) {
+        if (queries.size() > batchProperties.getMaxQueries()) {
+            throw new ValidationException("Слишком много запросов в пакете: " + queries.size()
+                    + ", допустимо не более " + batchProperties.getMaxQueries() + ".");
         }
-        if (uris == null || uris.isEmpty()) {
-            if (unique) {
-                viewStats = jpaStatisticsRepository.findStatsAllUniqueIp(start, end);
-            } else {
-                viewStats = jpaStatisticsRepository.findStatsAllNotUniqueIp(start, end);
+        Map<BatchKey, Set<String>> groups = new LinkedHashMap<>();
+        for (DtoStatsQuery query : queries) {
+            validateRange(query.getStart(), query.getEnd());
+            BatchKey key = BatchKey.of(query);
+            Set<String> uris = groups.get(key);
+            if (isAllUris(query)) {
+                // Пустое множество означает все uri и поглощает списки остальных запросов группы.
+                groups.put(key, Set.of());
+            } else if (uris == null) {
+                groups.put(key, new LinkedHashSet<>(query.getUris()));
+            } else if (!uris.isEmpty()) {
+                uris.addAll(query.getUris());
             }
+        }
+        List<BatchKey> keys = new ArrayList<>(groups.keySet());
+        List<List<ViewStats>> results = batchQueryExecutor.invokeAll(keys.stream()
+                .<Callable<List<ViewStats>>>map(key -> () -> findStats(key.start(), key.end(),
+                        List.copyOf(groups.get(key)), key.unique()))
+                .toList());
+        Map<BatchKey, List<ViewStats>> resultsByKey = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            resultsByKey.put(keys.get(i), results.get(i));
+        }
+        log.info("Выполнен пакет запросов статистики: запросов {}, после объединения {}", queries.size(),
+                keys.size());
+        return queries.stream()
+                .map(query -> {
+                    List<ViewStats> viewStats = resultsByKey.get(BatchKey.of(query));
+                    if (isAllUris(query)) {
+                        return toDto(viewStats);
+                    }
+                    Set<String> uris = Set.copyOf(query.getUris());
+                    return toDto(viewStats.stream()
+                            .filter(stats -> uris.contains(stats.getUri()))
+                            .toList());
+                })
+                .toList();
+    }
+
+    /**
+     * Uri событий строятся здесь, поэтому клиент передаёт только идентификаторы и получает массив чисел.
+     */
+    @Override
+    public long[] getEventViews(LocalDateTime start, LocalDateTime end, long[] eventIds, boolean unique) {
+        validateRange(start, end);
+        if (eventIds.length > eventViewsProperties.getMaxEvents()) {
+            throw new ValidationException("Слишком много событий в запросе: " + eventIds.length
+                    + ", допустимо не более " + eventViewsProperties.getMaxEvents() + ".");
+        }
+        long[] views = new long[eventIds.length];
+        if (eventIds.length == 0) {
+            return views;
+        }
+        List<String> uris = new ArrayList<>(eventIds.length);
+        for (long eventId : eventIds) {
+            uris.add(eventViewsProperties.getUriPrefix() + eventId);
+        }
+        Map<String, Long> hits = new HashMap<>();
+        for (ViewStats viewStats : findStats(start, end, uris, unique)) {
+            hits.merge(viewStats.getUri(), viewStats.getHits(), Long::sum);
+        }
+        for (int i = 0; i < views.length; i++) {
+            views[i] = hits.getOrDefault(uris.get(i), 0L);
+        }
+        log.info("Получены просмотры событий, количество событий: {}", eventIds.length);
+        return views;
+    }
+
+    @Override
+    public List<DtoViewStats> getApproxUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        validateRange(start, end);
+        StatsQuery query = sketchService != null && sketchService.isEnabled()
+                ? sketchService::getStats
+                : (from, to, rest) -> find(from, to, rest, true);
+        List<ViewStats> viewStats = findWithCounters(start, end, uris, true, query);
+        log.info("Получена приближённая статистика уникальных посещений:\n{}", viewStats);
+        return toDto(viewStats);
+    }
+
+    /**
+     * Использует агрегаты, если они включены, иначе ограничение передаётся в запрос к хранилищу.
+     */
+    @Override
+    public List<DtoViewStats> getTopStats(LocalDateTime start, LocalDateTime end, int limit, boolean unique,
+                                          String prefix) {
+        validateRange(start, end);
+        if (limit < 1) {
+            throw new ValidationException("Количество uri должно быть больше нуля: " + limit);
+        }
+        List<ViewStats> viewStats;
+        if (!unique && rollupService != null && rollupService.isEnabled()) {
+            viewStats = rollupService.getTopStats(start, end, limit, prefix);
+        } else if (unique && bitmapService != null && bitmapService.isEnabled()) {
+            viewStats = bitmapService.getTopStats(start, end, limit, prefix);
         } else {
-            if (unique) {
-                viewStats = jpaStatisticsRepository.findUniqueIpByUris(start, end, uris);
-            } else {
-                viewStats = jpaStatisticsRepository.findNotUniqueIpByUris(start, end, uris);
-            }
+            viewStats = hitStore.findTop(start, end, limit, unique, prefix);
         }
-        log.info("Получена статистика:\n{}", viewStats);
+        log.info("Получены самые посещаемые uri:\n{}", viewStats);
+        return toDto(viewStats);
+    }
+
+    /**
+     * Без уникальности корзины читаются из агрегатов, если они включены, иначе — одним запросом к хранилищу.
+     */
+    @Override
+    public List<DtoTimeSeries> getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             Granularity bucket, boolean unique) {
+        validateRange(start, end);
+        if (bucket == Granularity.MONTH) {
+            throw new ValidationException("Корзина должна быть минутой, часом или сутками.");
+        }
+        long buckets = Duration.between(bucket.truncate(start), end).toMillis() / bucket.millis() + 1;
+        if (buckets > timeSeriesProperties.getMaxBuckets()) {
+            throw new ValidationException("Слишком много корзин в интервале: " + buckets + ", допустимо не более "
+                    + timeSeriesProperties.getMaxBuckets() + ".");
+        }
+        List<BucketCount> counts = !unique && rollupService != null && rollupService.isEnabled()
+                ? rollupService.getTimeSeries(start, end, uris, bucket)
+                : hitStore.countBuckets(start, end, uris, bucket, unique);
+        log.info("Получена статистика по корзинам {}, количество непустых корзин: {}", bucket, counts.size());
+        return toTimeSeries(counts);
+    }
+
+    /**
+     * Отвечает по счётчикам в памяти; если они выключены, список пуст.
+     */
+    @Override
+    public List<DtoTrendingStats> getTrending(int limit, Duration halfLife, String prefix) {
+        if (limit < 1) {
+            throw new ValidationException("Количество uri должно быть больше нуля: " + limit);
+        }
+        if (!trendingService.isEnabled()) {
+            log.info("Счётчики популярности выключены");
+            return List.of();
+        }
+        return trendingService.getTrending(limit, halfLife, prefix);
+    }
+
+    /**
+     * Читает исходные посещения напрямую из {@link HitStore}: агрегаты собирают результат в памяти
+     * и для потоковой выдачи не используются.
+     */
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<DtoViewStats> consumer) {
+        validateRange(start, end);
+        hitStore.streamStats(start, end, uris, unique,
+                viewStats -> consumer.accept(viewStatsMapper.toDtoViewStats(viewStats)));
+    }
+
+    private List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        ResultCache.Loader loader = (from, to, rest) -> findWithCounters(from, to, rest, unique,
+                (queryFrom, queryTo, queryUris) -> find(queryFrom, queryTo, queryUris, unique));
+        return resultCache.isEnabled()
+                ? resultCache.get(start, end, uris, unique, loader)
+                : loader.load(start, end, uris);
+    }
+
+    private static boolean isAllUris(DtoStatsQuery query) {
+        return query.getUris() == null || query.getUris().isEmpty();
+    }
+
+    private void validateRange(LocalDateTime start, LocalDateTime end) {
+        if (end.isBefore(start)) {
+            throw new ValidationException("Время конца не может быть раньше времени начала.");
+        }
+    }
+
+    private List<DtoViewStats> toDto(List<ViewStats> viewStats) {
         return viewStats.stream()
                 .map(viewStatsMapper::toDtoViewStats)
                 .toList();
     }
-}
\ No newline at end of file
+
+    /**
+     * Группирует корзины по uri и сервису, сохраняя порядок корзин.
+     */
+    private static List<DtoTimeSeries> toTimeSeries(List<BucketCount> counts) {
+        Map<AppUri, List<DtoTimeBucket>> series = new LinkedHashMap<>();
+        for (BucketCount count : counts) {
+            series.computeIfAbsent(new AppUri(count.app(), count.uri()), key -> new ArrayList<>())
+                    .add(new DtoTimeBucket(count.bucket(), count.hits()));
+        }
+        return series.entrySet().stream()
+                .map(entry -> new DtoTimeSeries(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * Статистика по счётчикам для uri, вся история которых попадает в интервал,
+     * и запросом {@code query} для остальных.
+     */
+    private List<ViewStats> findWithCounters(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             boolean unique, StatsQuery query) {
+        if (counterService == null || !counterService.isEnabled()) {
+            return query.find(start, end, uris);
+        }
+        CounterService.Lookup lookup = counterService.lookup(start, end, uris, unique);
+        List<ViewStats> viewStats = new ArrayList<>(lookup.covered());
+        if (!lookup.remainingUris().isEmpty()) {
+            Set<AppUri> covered = lookup.covered().stream()
+                    .map(AppUri::of)
+                    .collect(Collectors.toSet());
+            query.find(start, end, lookup.remainingUris()).stream()
+                    .filter(stats -> !covered.contains(AppUri.of(stats)))
+                    .forEach(viewStats::add);
+        }
+        viewStats.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+        return viewStats;
+    }
+
+    private List<ViewStats> find(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        if (!unique && rollupService != null && rollupService.isEnabled()) {
+            return rollupService.getStats(start, end, uris);
+        } else if (unique && bitmapService != null && bitmapService.isEnabled()) {
+            return bitmapService.getStats(start, end, uris);
+        }
+        return hitStore.findStats(start, end, uris, unique);
+    }
+
+    private void write(List<EndpointHit> endpointHits) {
+        if (hitIngestionQueue.isAsync()) {
+            hitIngestionQueue.submit(endpointHits);
+        } else {
+            hitWriter.write(endpointHits);
+        }
+    }
+
+    private record BatchKey(LocalDateTime start, LocalDateTime end, boolean unique) {
+
+        static BatchKey of(DtoStatsQuery query) {
+            return new BatchKey(query.getStart(), query.getEnd(), query.isUnique());
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatsQuery {
+        List<ViewStats> find(LocalDateTime start, LocalDateTime end, List<String> uris);
+    }
+}
@@ -0,0 +1,194 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.TrendingProperties;
+import ru.practicum.error.exception.ValidationException;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.DtoTrendingStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.EpochMillisConverter;
+import ru.practicum.model.TrendingScores;
+import ru.practicum.storage.TrendingRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Популярные сейчас uri по экспоненциально затухающим счётчикам посещений, см. {@link TrendingScores}.
+ * <p>
+ * Счётчики обновляются в памяти после фиксации каждого пакета посещений. Запросы отвечают по упорядоченному
+ * списку, который пересчитывается раз в {@code refresh-interval}: затухание одинаково для всех uri, поэтому
+ * порядок меняется только с новыми посещениями, а значения приводятся к моменту запроса одним множителем.
+ * Раз в {@code checkpoint-interval} счётчики переносятся к новой опорной точке и, если посещения хранятся
+ * в базе данных, сохраняются в неё; при запуске сохранённые значения восстанавливаются.
+ */
+@Service
+@Slf4j
+public class TrendingService implements HitListener {
+
+    private final TrendingProperties trendingProperties;
+    @Nullable
+    private final TrendingRepository trendingRepository;
+    private final TaskScheduler taskScheduler;
+    private final List<Duration> halfLives;
+    private final TrendingScores scores;
+    private volatile List<Ranking> rankings;
+    private volatile boolean started;
+
+    public TrendingService(TrendingProperties trendingProperties, @Nullable TrendingRepository trendingRepository,
+                           TaskScheduler taskScheduler) {
+        this.trendingProperties = trendingProperties;
+        this.trendingRepository = trendingRepository;
+        this.taskScheduler = taskScheduler;
+        this.halfLives = List.copyOf(trendingProperties.getHalfLives());
+        if (halfLives.isEmpty() || halfLives.stream().anyMatch(halfLife -> halfLife.toSeconds() < 1)) {
+            throw new IllegalStateException("Периоды полураспада должны быть заданы и быть не короче секунды: "
+                    + halfLives);
+        }
+        this.scores = new TrendingScores(halfLives, now());
+        this.rankings = halfLives.stream().map(halfLife -> Ranking.EMPTY).toList();
+    }
+
+    public boolean isEnabled() {
+        return trendingProperties.isEnabled();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (trendingRepository != null) {
+            List<TrendingRepository.Saved> saved = trendingRepository.findAll(halfLives);
+            saved.forEach(entry -> scores.restore(entry.key(), entry.scores(),
+                    EpochMillisConverter.toMillis(entry.savedAt())));
+            log.info("Восстановлены счётчики популярности: {}", saved.size());
+        }
+        refresh(now());
+        taskScheduler.scheduleWithFixedDelay(() -> refresh(now()), trendingProperties.getRefreshInterval());
+        taskScheduler.scheduleWithFixedDelay(() -> checkpoint(now()), trendingProperties.getCheckpointInterval());
+        started = true;
+    }
+
+    /**
+     * Сохраняет счётчики при остановке. Если запуск не завершился, сохранённые значения не восстанавливались
+     * и не перезаписываются.
+     */
+    @PreDestroy
+    public void stop() {
+        if (started && trendingRepository != null) {
+            checkpoint(now());
+        }
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!isEnabled() || hits.isEmpty()) {
+            return;
+        }
+        // Счётчики в памяти не откатываются вместе с транзакцией, поэтому обновляются только после фиксации.
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(hits);
+            }
+        });
+    }
+
+    /**
+     * Не более {@code limit} самых популярных uri на текущий момент.
+     *
+     * @param halfLife период полураспада из настроек или {@code null} для первого из них
+     * @param prefix   начало uri или {@code null}, если подходят все uri
+     */
+    public List<DtoTrendingStats> getTrending(int limit, @Nullable Duration halfLife, @Nullable String prefix) {
+        return getTrending(limit, halfLife, prefix, now());
+    }
+
+    List<DtoTrendingStats> getTrending(int limit, Duration halfLife, String prefix, long now) {
+        int index = halfLife == null ? 0 : halfLives.indexOf(halfLife);
+        if (index < 0) {
+            throw new ValidationException("Счётчики ведутся только для периодов полураспада " + halfLives + ": "
+                    + halfLife);
+        }
+        Ranking ranking = rankings.get(index);
+        double decay = Math.pow(2, (ranking.at() - now) / (double) halfLives.get(index).toMillis());
+        List<DtoTrendingStats> trending = new ArrayList<>(Math.min(limit, ranking.keys().length));
+        for (int i = 0; i < ranking.keys().length && trending.size() < limit; i++) {
+            AppUri key = ranking.keys()[i];
+            if (prefix == null || key.uri().startsWith(prefix)) {
+                trending.add(new DtoTrendingStats(key.app(), key.uri(), ranking.scores()[i] * decay));
+            }
+        }
+        return trending;
+    }
+
+    /**
+     * Пересчитывает упорядоченные списки по всем периодам полураспада.
+     */
+    void refresh(long now) {
+        List<Map.Entry<AppUri, double[]>> entries = new ArrayList<>(scores.snapshot(now).entrySet());
+        List<Ranking> updated = new ArrayList<>(halfLives.size());
+        for (int i = 0; i < halfLives.size(); i++) {
+            int index = i;
+            entries.sort(Comparator.<Map.Entry<AppUri, double[]>>comparingDouble(entry -> -entry.getValue()[index])
+                    .thenComparing(Map.Entry::getKey));
+            AppUri[] keys = new AppUri[entries.size()];
+            double[] values = new double[entries.size()];
+            for (int j = 0; j < keys.length; j++) {
+                keys[j] = entries.get(j).getKey();
+                values[j] = entries.get(j).getValue()[index];
+            }
+            updated.add(new Ranking(now, keys, values));
+        }
+        rankings = updated;
+    }
+
+    /**
+     * Переносит счётчики к новой опорной точке и сохраняет их значения.
+     */
+    void checkpoint(long now) {
+        scores.rescale(now, trendingProperties.getMinScore());
+        if (trendingRepository != null) {
+            Map<AppUri, double[]> snapshot = scores.snapshot(now);
+            trendingRepository.replace(EpochMillisConverter.fromMillis(now), halfLives, snapshot);
+            log.debug("Сохранены счётчики популярности: {}", snapshot.size());
+        }
+    }
+
+    private void add(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            scores.add(new AppUri(hit.getApp(), hit.getUri()), EpochMillisConverter.toMillis(hit.getTimestamp()));
+        }
+    }
+
+    /**
+     * Время посещений — местное время клиента без зоны, поэтому «сейчас» берётся в том же представлении.
+     */
+    private static long now() {
+        return EpochMillisConverter.toMillis(LocalDateTime.now());
+    }
+
+    /**
+     * Uri по убыванию значения счётчика на момент {@code at}.
+     */
+    private record Ranking(long at, AppUri[] keys, double[] scores) {
+        static final Ranking EMPTY = new Ranking(0, new AppUri[0], new double[0]);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.model.BucketKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Репозиторий множеств посетителей по дням (таблица {@code visitor_bitmap}).
+ * Множество хранит идентификаторы ip из словаря {@code visitor_ip} в формате RoaringBitmap.
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class BitmapRepository {
+
+    private static final String CREATE_EMPTY = """
+            INSERT INTO visitor_bitmap (app, uri, day, bitmap)
+            SELECT k.app, k.uri, k.day, ''::bytea
+            FROM unnest(?::date[], ?::varchar[], ?::varchar[]) AS k(day, uri, app)
+            ORDER BY k.day, k.uri, k.app
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String LOCK = """
+            SELECT b.app, b.uri, b.day, b.bitmap
+            FROM visitor_bitmap b
+            JOIN unnest(?::date[], ?::varchar[], ?::varchar[]) AS k(day, uri, app)
+                ON b.day = k.day AND b.uri = k.uri AND b.app = k.app
+            ORDER BY b.day, b.uri, b.app
+            FOR UPDATE OF b
+            """;
+
+    private static final String UPDATE = """
+            UPDATE visitor_bitmap b SET bitmap = k.bitmap
+            FROM unnest(?::date[], ?::varchar[], ?::varchar[], ?::bytea[]) AS k(day, uri, app, bitmap)
+            WHERE b.day = k.day AND b.uri = k.uri AND b.app = k.app
+            """;
+
+    private static final String FIND_KEYS = """
+            SELECT app, uri, day
+            FROM visitor_bitmap
+            WHERE day >= ? AND day < ?
+            """;
+
+    private static final String FIND = """
+            SELECT b.app, b.uri, b.day, b.bitmap
+            FROM visitor_bitmap b
+            JOIN unnest(?::date[], ?::varchar[], ?::varchar[]) AS k(day, uri, app)
+                ON b.day = k.day AND b.uri = k.uri AND b.app = k.app
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Добавляет идентификаторы посетителей к сохранённым множествам: недостающие строки создаются пустыми,
+     * затем все строки блокируются в порядке ключей, объединяются в памяти и записываются обратно.
+     *
+     * @param bitmaps новые множества, упорядоченные по ключу; объединённый результат записывается в них же
+     */
+    public void merge(Map<BucketKey, RoaringBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return;
+        }
+        List<BucketKey> keys = List.copyOf(bitmaps.keySet());
+        jdbcTemplate.update(CREATE_EMPTY, ps -> setKeys(ps, keys));
+        jdbcTemplate.query(LOCK, ps -> setKeys(ps, keys), (RowCallbackHandler) rs ->
+                bitmaps.get(toKey(rs.getString("app"), rs.getString("uri"), rs.getDate("day")))
+                        .or(deserialize(rs.getBytes("bitmap"))));
+        byte[][] serialized = keys.stream()
+                .map(key -> serialize(bitmaps.get(key)))
+                .toArray(byte[][]::new);
+        jdbcTemplate.update(UPDATE, ps -> {
+            setKeys(ps, keys);
+            ps.setArray(4, ps.getConnection().createArrayOf("bytea", serialized));
+        });
+    }
+
+    /**
+     * Ключи множеств за дни из интервала [from, to), без чтения самих множеств.
+     *
+     * @param uris список uri для фильтрации или {@code null}, если нужны все uri
+     */
+    public List<BucketKey> findKeys(LocalDateTime from, LocalDateTime to, Collection<String> uris) {
+        String sql = uris == null ? FIND_KEYS : FIND_KEYS + " AND uri = ANY(?::varchar[])";
+        return jdbcTemplate.query(sql, ps -> {
+            ps.setDate(1, Date.valueOf(from.toLocalDate()));
+            ps.setDate(2, Date.valueOf(to.toLocalDate()));
+            if (uris != null) {
+                ps.setArray(3, ps.getConnection().createArrayOf("varchar", uris.toArray()));
+            }
+        }, (rs, rowNum) -> toKey(rs.getString("app"), rs.getString("uri"), rs.getDate("day")));
+    }
+
+    /**
+     * Множества по ключам.
+     */
+    public void find(List<BucketKey> keys, BitmapHandler handler) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query(FIND, ps -> setKeys(ps, keys), (RowCallbackHandler) rs ->
+                handler.handle(toKey(rs.getString("app"), rs.getString("uri"), rs.getDate("day")),
+                        deserialize(rs.getBytes("bitmap"))));
+    }
+
+    private static void setKeys(PreparedStatement ps, List<BucketKey> keys) throws SQLException {
+        ps.setArray(1, ps.getConnection().createArrayOf("date",
+                keys.stream().map(key -> Date.valueOf(key.bucket().toLocalDate())).toArray()));
+        ps.setArray(2, ps.getConnection().createArrayOf("varchar", keys.stream().map(BucketKey::uri).toArray()));
+        ps.setArray(3, ps.getConnection().createArrayOf("varchar", keys.stream().map(BucketKey::app).toArray()));
+    }
+
+    private static BucketKey toKey(String app, String uri, Date day) {
+        return new BucketKey(day.toLocalDate().atStartOfDay(), uri, app);
+    }
+
+    private static byte[] serialize(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private static RoaringBitmap deserialize(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        if (bytes.length == 0) {
+            return bitmap;
+        }
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bitmap;
+    }
+
+    @FunctionalInterface
+    public interface BitmapHandler {
+        void handle(BucketKey key, RoaringBitmap bitmap);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.model.UriCounter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий счётчиков посещений за всё время (таблицы {@code uri_counter} и {@code uri_visitor}).
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class CounterRepository {
+
+    private static final String ADD_VISITORS = """
+            INSERT INTO uri_visitor (app, uri, ip)
+            SELECT ?, ?, unnest(?::varchar[])
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String INCREMENT = """
+            INSERT INTO uri_counter (app, uri, hits, unique_ips, first_hit, last_hit)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (uri, app) DO UPDATE SET
+                hits = uri_counter.hits + EXCLUDED.hits,
+                unique_ips = uri_counter.unique_ips + EXCLUDED.unique_ips,
+                first_hit = LEAST(uri_counter.first_hit, EXCLUDED.first_hit),
+                last_hit = GREATEST(uri_counter.last_hit, EXCLUDED.last_hit)
+            """;
+
+    private static final String FIND = """
+            SELECT app, uri, hits, unique_ips, first_hit, last_hit
+            FROM uri_counter
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Запоминает ip посетителей uri и возвращает, сколько из них не встречалось раньше.
+     * Для каждого элемента {@code counters} берутся app и uri, ip — из соответствующего элемента {@code ips}.
+     *
+     * @return количество новых ip для каждого счётчика
+     */
+    public int[] addVisitors(List<UriCounter> counters, List<Collection<String>> ips) {
+        return jdbcTemplate.getJdbcTemplate().batchUpdate(ADD_VISITORS, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, counters.get(i).app());
+                ps.setString(2, counters.get(i).uri());
+                ps.setArray(3, ps.getConnection().createArrayOf("varchar", ips.get(i).toArray()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return counters.size();
+            }
+        });
+    }
+
+    /**
+     * Прибавляет к счётчикам количество посещений и новых ip, расширяет интервал первого и последнего посещения.
+     */
+    public void increment(List<UriCounter> counters) {
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INCREMENT, counters, counters.size(), (ps, counter) -> {
+            ps.setString(1, counter.app());
+            ps.setString(2, counter.uri());
+            ps.setLong(3, counter.hits());
+            ps.setLong(4, counter.uniqueIps());
+            ps.setTimestamp(5, Timestamp.valueOf(counter.firstHit()));
+            ps.setTimestamp(6, Timestamp.valueOf(counter.lastHit()));
+        });
+    }
+
+    /**
+     * Счётчики указанных uri или всех uri, если {@code uris == null}.
+     */
+    public List<UriCounter> find(Collection<String> uris) {
+        if (uris == null) {
+            return jdbcTemplate.query(FIND, this::mapRow);
+        }
+        return jdbcTemplate.query(FIND + " WHERE uri IN (:uris)", new MapSqlParameterSource("uris", uris),
+                this::mapRow);
+    }
+
+    private UriCounter mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new UriCounter(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"),
+                rs.getLong("unique_ips"), rs.getTimestamp("first_hit").toLocalDateTime(),
+                rs.getTimestamp("last_hit").toLocalDateTime());
+    }
+}
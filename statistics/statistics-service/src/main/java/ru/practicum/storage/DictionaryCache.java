@@ -0,0 +1,104 @@
+package ru.practicum.storage;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.DictionaryProperties;
+import ru.practicum.model.DictionaryType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словари с кешем в памяти. Идентификаторы выдаются базой данных и не меняются,
+ * поэтому кеш не требует инвалидации; при заполнении новые значения просто перестают в него попадать.
+ * Новые идентификаторы попадают в кеш только после фиксации транзакции, в которой они созданы.
+ */
+@Component
+@ConditionalOnJpaStore
+public class DictionaryCache {
+
+    private final DictionaryRepository dictionaryRepository;
+    private final DictionaryProperties dictionaryProperties;
+    private final Map<DictionaryType, Map<String, Integer>> caches = new EnumMap<>(DictionaryType.class);
+
+    public DictionaryCache(DictionaryRepository dictionaryRepository, DictionaryProperties dictionaryProperties) {
+        this.dictionaryRepository = dictionaryRepository;
+        this.dictionaryProperties = dictionaryProperties;
+        for (DictionaryType dictionary : DictionaryType.values()) {
+            caches.put(dictionary, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Идентификаторы значений; отсутствующие в словаре значения добавляются.
+     */
+    public Map<String, Integer> getOrCreate(DictionaryType dictionary, Collection<String> values) {
+        Map<String, Integer> cache = caches.get(dictionary);
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = new TreeSet<>();
+        for (String value : values) {
+            Integer id = cache.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+        dictionaryRepository.createMissing(dictionary, missing);
+        Map<String, Integer> found = dictionaryRepository.find(dictionary, missing);
+        ids.putAll(found);
+        rememberAfterCommit(cache, found);
+        return ids;
+    }
+
+    /**
+     * Идентификаторы значений, уже имеющихся в словаре; отсутствующих значений в результате нет,
+     * и в словарь они не добавляются.
+     */
+    public Map<String, Integer> find(DictionaryType dictionary, Collection<String> values) {
+        Map<String, Integer> cache = caches.get(dictionary);
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = new TreeSet<>();
+        for (String value : values) {
+            Integer id = cache.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+        Map<String, Integer> found = dictionaryRepository.find(dictionary, missing);
+        ids.putAll(found);
+        rememberAfterCommit(cache, found);
+        return ids;
+    }
+
+    private void rememberAfterCommit(Map<String, Integer> cache, Map<String, Integer> found) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(cache, found);
+                }
+            });
+        } else {
+            remember(cache, found);
+        }
+    }
+
+    private void remember(Map<String, Integer> cache, Map<String, Integer> ids) {
+        ids.forEach((value, id) -> {
+            if (cache.size() < dictionaryProperties.getCacheSize()) {
+                cache.put(value, id);
+            }
+        });
+    }
+}
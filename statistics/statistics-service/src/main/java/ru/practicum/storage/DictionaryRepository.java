@@ -0,0 +1,61 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.model.DictionaryType;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Репозиторий словарей (см. {@link DictionaryType}): каждому значению выдаётся плотный целый идентификатор.
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class DictionaryRepository {
+
+    private static final String CREATE = """
+            INSERT INTO %1$s (%2$s)
+            SELECT v.value
+            FROM unnest(?::varchar[]) AS v(value)
+            WHERE NOT EXISTS (SELECT 1 FROM %1$s d WHERE d.%2$s = v.value)
+            ORDER BY v.value
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String FIND = """
+            SELECT id, %2$s AS value
+            FROM %1$s
+            WHERE %2$s = ANY(?::varchar[])
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Добавляет в словарь недостающие значения.
+     */
+    public void createMissing(DictionaryType dictionary, Collection<String> values) {
+        jdbcTemplate.update(sql(CREATE, dictionary),
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", values.toArray())));
+    }
+
+    /**
+     * Идентификаторы значений, которые есть в словаре.
+     */
+    public Map<String, Integer> find(DictionaryType dictionary, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query(sql(FIND, dictionary),
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", values.toArray())),
+                (RowCallbackHandler) rs -> ids.put(rs.getString("value"), rs.getInt("id")));
+        return ids;
+    }
+
+    private static String sql(String template, DictionaryType dictionary) {
+        return template.formatted(dictionary.getTable(), dictionary.getColumn());
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.storage;
+
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.Visitor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Агрегирующие запросы к посещениям. Посещения хранятся с идентификаторами сервиса и uri из словарей,
+ * поэтому запросы группируют по идентификаторам и подставляют имена только в результат.
+ * Методы с {@code start}/{@code end} включают обе границы, с {@code from}/{@code to} — только левую.
+ */
+public interface HitQueryRepository {
+
+    List<ViewStats> findStatsAllUniqueIp(LocalDateTime start, LocalDateTime end);
+
+    List<ViewStats> findStatsAllNotUniqueIp(LocalDateTime start, LocalDateTime end);
+
+    List<ViewStats> findUniqueIpByUris(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    List<ViewStats> findNotUniqueIpByUris(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    /**
+     * Статистика за [start, end] в порядке убывания количества, передаваемая {@code consumer} по мере чтения
+     * курсором. Должна вызываться в транзакции: вне её драйвер Postgres читает результат целиком.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                     Consumer<ViewStats> consumer);
+
+    /**
+     * Не более {@code limit} записей с наибольшим количеством за [start, end]. Сортировка с ограничением
+     * выполняется в базе по идентификаторам, имена подставляются только для отобранных строк.
+     */
+    List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique, String prefix);
+
+    List<BucketCount> countBuckets(LocalDateTime start, LocalDateTime end, List<String> uris, Granularity bucket,
+                                   boolean unique);
+
+    List<ViewStats> countHitsInRange(LocalDateTime from, LocalDateTime to);
+
+    List<ViewStats> countHitsInRangeByUris(LocalDateTime from, LocalDateTime to, List<String> uris);
+
+    List<Visitor> findVisitorsInRange(LocalDateTime from, LocalDateTime to);
+
+    List<Visitor> findVisitorsInRangeByUris(LocalDateTime from, LocalDateTime to, List<String> uris);
+}
@@ -0,0 +1,183 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.EpochMillisConverter;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.IpAddresses;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.Visitor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Реализация {@link HitQueryRepository} через JDBC. Postgres соединяет таблицы раньше, чем группирует строки,
+ * поэтому группировка по идентификаторам вынесена в подзапрос: со словарями соединяется уже результат.
+ */
+@RequiredArgsConstructor
+public class HitQueryRepositoryImpl implements HitQueryRepository {
+
+    private static final String STATS = """
+            SELECT a.name AS app, u.name AS uri, g.hits
+            FROM (SELECT app_id, uri_id, %s AS hits
+                  FROM endpoint_hit
+                  WHERE %s
+                  GROUP BY app_id, uri_id) g
+            JOIN hit_app a ON a.id = g.app_id
+            JOIN hit_uri u ON u.id = g.uri_id
+            """;
+
+    private static final String VISITORS = """
+            SELECT a.name AS app, u.name AS uri, v.ip
+            FROM (SELECT DISTINCT app_id, uri_id, ip
+                  FROM endpoint_hit
+                  WHERE %s) v
+            JOIN hit_app a ON a.id = v.app_id
+            JOIN hit_uri u ON u.id = v.uri_id
+            """;
+
+    private static final String TOP = """
+            SELECT a.name AS app, u.name AS uri, g.hits
+            FROM (SELECT app_id, uri_id, %s AS hits
+                  FROM endpoint_hit
+                  WHERE %s
+                  GROUP BY app_id, uri_id
+                  ORDER BY hits DESC
+                  LIMIT ?) g
+            JOIN hit_app a ON a.id = g.app_id
+            JOIN hit_uri u ON u.id = g.uri_id
+            ORDER BY g.hits DESC, u.name, a.name
+            """;
+
+    // Длительность корзины подставляется в текст запроса: это константа перечисления, а не ввод клиента.
+    // Начало корзины вычисляется с округлением вниз и для моментов до 1970 года.
+    private static final String BUCKETS = """
+            SELECT a.name AS app, u.name AS uri, g.bucket, g.hits
+            FROM (SELECT app_id, uri_id, ts - mod(mod(ts, %1$d) + %1$d, %1$d) AS bucket, %2$s AS hits
+                  FROM endpoint_hit
+                  WHERE %3$s
+                  GROUP BY app_id, uri_id, bucket) g
+            JOIN hit_app a ON a.id = g.app_id
+            JOIN hit_uri u ON u.id = g.uri_id
+            ORDER BY u.name, a.name, g.bucket
+            """;
+
+    private static final String HITS = "count(*)";
+    private static final String UNIQUE_IPS = "count(DISTINCT ip)";
+    private static final String BETWEEN = "ts BETWEEN ? AND ?";
+    private static final String HALF_OPEN = "ts >= ? AND ts < ?";
+    private static final String BY_URIS = " AND uri_id IN (SELECT id FROM hit_uri WHERE name = ANY(?::varchar[]))";
+    private static final String BY_PREFIX = " AND uri_id IN (SELECT id FROM hit_uri WHERE name LIKE ? ESCAPE '\\')";
+    private static final String ORDER_BY_HITS = "ORDER BY g.hits DESC";
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
+    private static final RowMapper<ViewStats> VIEW_STATS = (rs, rowNum) ->
+            new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"));
+    private static final RowMapper<BucketCount> BUCKET_COUNT = (rs, rowNum) -> new BucketCount(rs.getString("app"),
+            rs.getString("uri"), EpochMillisConverter.fromMillis(rs.getLong("bucket")), rs.getLong("hits"));
+    private static final RowMapper<Visitor> VISITOR = (rs, rowNum) ->
+            new Visitor(rs.getString("app"), rs.getString("uri"), IpAddresses.toString(rs.getBytes("ip")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ViewStats> findStatsAllUniqueIp(LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(STATS.formatted(UNIQUE_IPS, BETWEEN) + ORDER_BY_HITS,
+                params(start, end, null), VIEW_STATS);
+    }
+
+    @Override
+    public List<ViewStats> findStatsAllNotUniqueIp(LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(STATS.formatted(HITS, BETWEEN) + ORDER_BY_HITS,
+                params(start, end, null), VIEW_STATS);
+    }
+
+    @Override
+    public List<ViewStats> findUniqueIpByUris(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return jdbcTemplate.query(STATS.formatted(UNIQUE_IPS, BETWEEN + BY_URIS) + ORDER_BY_HITS,
+                params(start, end, uris), VIEW_STATS);
+    }
+
+    @Override
+    public List<ViewStats> findNotUniqueIpByUris(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return jdbcTemplate.query(STATS.formatted(HITS, BETWEEN + BY_URIS) + ORDER_BY_HITS,
+                params(start, end, uris), VIEW_STATS);
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<ViewStats> consumer) {
+        boolean all = uris == null || uris.isEmpty();
+        String sql = STATS.formatted(unique ? UNIQUE_IPS : HITS, all ? BETWEEN : BETWEEN + BY_URIS) + ORDER_BY_HITS;
+        PreparedStatementSetter params = params(start, end, all ? null : uris);
+        jdbcTemplate.query(connection -> {
+            var ps = connection.prepareStatement(sql);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            params.setValues(ps);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(VIEW_STATS.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique,
+                                   String prefix) {
+        String sql = TOP.formatted(unique ? UNIQUE_IPS : HITS, prefix == null ? BETWEEN : BETWEEN + BY_PREFIX);
+        return jdbcTemplate.query(sql, ps -> {
+            int index = 1;
+            ps.setLong(index++, EpochMillisConverter.toMillis(start));
+            ps.setLong(index++, EpochMillisConverter.toMillis(end));
+            if (prefix != null) {
+                ps.setString(index++, likePrefix(prefix));
+            }
+            ps.setInt(index, limit);
+        }, VIEW_STATS);
+    }
+
+    @Override
+    public List<BucketCount> countBuckets(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                          Granularity bucket, boolean unique) {
+        boolean all = uris == null || uris.isEmpty();
+        String sql = BUCKETS.formatted(bucket.millis(), unique ? UNIQUE_IPS : HITS, all ? BETWEEN : BETWEEN + BY_URIS);
+        return jdbcTemplate.query(sql, params(start, end, all ? null : uris), BUCKET_COUNT);
+    }
+
+    @Override
+    public List<ViewStats> countHitsInRange(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(STATS.formatted(HITS, HALF_OPEN), params(from, to, null), VIEW_STATS);
+    }
+
+    @Override
+    public List<ViewStats> countHitsInRangeByUris(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return jdbcTemplate.query(STATS.formatted(HITS, HALF_OPEN + BY_URIS), params(from, to, uris), VIEW_STATS);
+    }
+
+    @Override
+    public List<Visitor> findVisitorsInRange(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(VISITORS.formatted(HALF_OPEN), params(from, to, null), VISITOR);
+    }
+
+    @Override
+    public List<Visitor> findVisitorsInRangeByUris(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return jdbcTemplate.query(VISITORS.formatted(HALF_OPEN + BY_URIS), params(from, to, uris), VISITOR);
+    }
+
+    private static String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private static PreparedStatementSetter params(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return ps -> {
+            ps.setLong(1, EpochMillisConverter.toMillis(from));
+            ps.setLong(2, EpochMillisConverter.toMillis(to));
+            if (uris != null) {
+                ps.setArray(3, ps.getConnection().createArrayOf("varchar", uris.toArray()));
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.storage;
+
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.Visitor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище исходных посещений. Реализация выбирается настройкой {@code stats.store.type}:
+ * {@link JpaHitStore} — таблица в базе данных, {@link ru.practicum.storage.segment.SegmentHitStore} —
+ * файлы сегментов на локальном диске.
+ * <p>
+ * Список {@code uris}, равный {@code null} или пустой, означает все uri.
+ */
+public interface HitStore {
+
+    void saveAll(List<EndpointHit> hits);
+
+    /**
+     * Количество посещений или уникальных ip за интервал [start, end],
+     * отсортированное по убыванию количества.
+     */
+    List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    /**
+     * То же, что {@link #findStats}, но строки передаются {@code consumer} по мере чтения, а не собираются в список.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                     Consumer<ViewStats> consumer);
+
+    /**
+     * Не более {@code limit} записей с наибольшим количеством посещений или уникальных ip за интервал
+     * [start, end], отсортированных по убыванию количества.
+     *
+     * @param prefix начало uri или {@code null}, если подходят все uri
+     */
+    List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique, String prefix);
+
+    /**
+     * Количество посещений или уникальных ip по корзинам {@code bucket} за интервал [start, end],
+     * отсортированное по uri, сервису и началу корзины. Корзины без посещений не возвращаются.
+     */
+    List<BucketCount> countBuckets(LocalDateTime start, LocalDateTime end, List<String> uris, Granularity bucket,
+                                   boolean unique);
+
+    /**
+     * Количество посещений за интервал [from, to) без сортировки.
+     */
+    List<ViewStats> countHits(LocalDateTime from, LocalDateTime to, List<String> uris);
+
+    /**
+     * Различные тройки «сервис, uri, ip» за интервал [from, to).
+     */
+    List<Visitor> findVisitors(LocalDateTime from, LocalDateTime to, List<String> uris);
+}
@@ -0,0 +1,57 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.IngestProperties;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.EpochMillisConverter;
+import ru.practicum.model.IpAddresses;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Репозиторий для пакетной записи статистики через JDBC.
+ * Hibernate не умеет группировать INSERT для сущностей с IDENTITY-ключом,
+ * поэтому пакетная вставка выполняется напрямую через {@link JdbcTemplate}.
+ * Сервис и uri заменяются идентификаторами из словарей, ip и время записываются в компактном виде
+ * (см. {@link IpAddresses}, {@link EpochMillisConverter}).
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class JdbcStatisticsRepository {
+
+    private static final String INSERT_HIT = """
+            INSERT INTO endpoint_hit (ts, uri_id, app_id, ip)
+            VALUES (?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DictionaryCache dictionaryCache;
+    private final IngestProperties ingestProperties;
+
+    /**
+     * Сохраняет список посещений пакетами JDBC.
+     *
+     * @param hits список посещений
+     */
+    public void saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> apps = dictionaryCache.getOrCreate(DictionaryType.APP,
+                hits.stream().map(EndpointHit::getApp).toList());
+        Map<String, Integer> uris = dictionaryCache.getOrCreate(DictionaryType.URI,
+                hits.stream().map(EndpointHit::getUri).toList());
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, ingestProperties.getBatchSize(), (ps, hit) -> {
+            ps.setLong(1, EpochMillisConverter.toMillis(hit.getTimestamp()));
+            ps.setInt(2, uris.get(hit.getUri()));
+            ps.setShort(3, apps.get(hit.getApp()).shortValue());
+            ps.setBytes(4, IpAddresses.toBytes(hit.getIp()));
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.PartitionProperties;
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.Visitor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище посещений в таблице {@code endpoint_hit}.
+ */
+@Repository
+@ConditionalOnJpaStore
+@Slf4j
+@RequiredArgsConstructor
+public class JpaHitStore implements HitStore {
+
+    private final JdbcStatisticsRepository jdbcStatisticsRepository;
+    private final JpaStatisticsRepository jpaStatisticsRepository;
+    private final PartitionProperties partitionProperties;
+
+    /**
+     * Посещения старше срока хранения в таблицу не пишутся: их секция уже удалена, и вставка попала бы
+     * в секцию по умолчанию, а обслуживание секций создало бы удалённую секцию заново.
+     * Агрегаты, оценки и счётчики такие посещения по-прежнему учитывают.
+     */
+    @Override
+    public void saveAll(List<EndpointHit> hits) {
+        LocalDateTime horizon = partitionProperties.retentionHorizon(LocalDateTime.now());
+        if (horizon != null) {
+            List<EndpointHit> kept = hits.stream()
+                    .filter(hit -> !hit.getTimestamp().isBefore(horizon))
+                    .toList();
+            if (kept.size() < hits.size()) {
+                log.debug("Посещения раньше {} не записаны в таблицу: {}", horizon, hits.size() - kept.size());
+                hits = kept;
+            }
+        }
+        jdbcStatisticsRepository.saveAll(hits);
+    }
+
+    @Override
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        if (uris == null || uris.isEmpty()) {
+            return unique
+                    ? jpaStatisticsRepository.findStatsAllUniqueIp(start, end)
+                    : jpaStatisticsRepository.findStatsAllNotUniqueIp(start, end);
+        }
+        return unique
+                ? jpaStatisticsRepository.findUniqueIpByUris(start, end, uris)
+                : jpaStatisticsRepository.findNotUniqueIpByUris(start, end, uris);
+    }
+
+    /**
+     * Строки читаются курсором порциями, поэтому память не зависит от размера результата.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<ViewStats> consumer) {
+        jpaStatisticsRepository.streamStats(start, end, uris, unique, consumer);
+    }
+
+    @Override
+    public List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique,
+                                   String prefix) {
+        return jpaStatisticsRepository.findTop(start, end, limit, unique, prefix);
+    }
+
+    @Override
+    public List<BucketCount> countBuckets(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                          Granularity bucket, boolean unique) {
+        return jpaStatisticsRepository.countBuckets(start, end, uris, bucket, unique);
+    }
+
+    @Override
+    public List<ViewStats> countHits(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return uris == null || uris.isEmpty()
+                ? jpaStatisticsRepository.countHitsInRange(from, to)
+                : jpaStatisticsRepository.countHitsInRangeByUris(from, to, uris);
+    }
+
+    @Override
+    public List<Visitor> findVisitors(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return uris == null || uris.isEmpty()
+                ? jpaStatisticsRepository.findVisitorsInRange(from, to)
+                : jpaStatisticsRepository.findVisitorsInRangeByUris(from, to, uris);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.model.EpochMillisConverter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Управление секциями таблицы {@code endpoint_hit}, секционированной по диапазонам {@code ts}
+ * (миллисекунды от начала эпохи, UTC).
+ * Посещения, для времени которых нет секции, попадают в секцию по умолчанию {@code endpoint_hit_default}.
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class PartitionRepository {
+
+    public static final String TABLE = "endpoint_hit";
+    public static final String DEFAULT_PARTITION = TABLE + "_default";
+
+    private static final String FIND_PARTITIONS = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'endpoint_hit'::regclass
+            """;
+
+    private static final String FIND_DEFAULT_TIMES = """
+            SELECT DISTINCT date_trunc(?, to_timestamp(ts / 1000.0) AT TIME ZONE 'UTC')
+            FROM endpoint_hit_default
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Имена всех секций, кроме секции по умолчанию.
+     */
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList(FIND_PARTITIONS, String.class).stream()
+                .filter(name -> !DEFAULT_PARTITION.equals(name))
+                .toList();
+    }
+
+    /**
+     * Начала интервалов (день или месяц, см. {@code date_trunc}), посещения из которых лежат в секции по умолчанию.
+     */
+    public List<LocalDateTime> findDefaultPartitionTimes(String unit) {
+        return jdbcTemplate.queryForList(FIND_DEFAULT_TIMES, Timestamp.class, unit).stream()
+                .map(Timestamp::toLocalDateTime)
+                .toList();
+    }
+
+    /**
+     * Создаёт секцию для [from, to) и переносит в неё посещения этого интервала из секции по умолчанию.
+     * На время переноса блокируется запись в таблицу: иначе вставка, начатая до присоединения секции,
+     * направит посещение этого интервала в секцию по умолчанию и завершится ошибкой ограничения секции.
+     */
+    @Transactional
+    public void createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        long fromMillis = EpochMillisConverter.toMillis(from);
+        long toMillis = EpochMillisConverter.toMillis(to);
+        String bounds = "FROM (" + fromMillis + ") TO (" + toMillis + ")";
+        jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN SHARE ROW EXCLUSIVE MODE");
+        jdbcTemplate.execute("LOCK TABLE " + DEFAULT_PARTITION + " IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + TABLE + " INCLUDING DEFAULTS)");
+        jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                + " WHERE ts >= ? AND ts < ? RETURNING *) INSERT INTO " + name
+                + " SELECT * FROM moved", fromMillis, toMillis);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + name + " FOR VALUES " + bounds);
+    }
+
+    /**
+     * Удаляет из секции по умолчанию посещения раньше {@code before}.
+     *
+     * @return количество удалённых посещений
+     */
+    public int deleteDefaultBefore(LocalDateTime before) {
+        return jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE ts < ?",
+                EpochMillisConverter.toMillis(before));
+    }
+
+    /**
+     * Удаляет секцию вместе с посещениями.
+     */
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name);
+    }
+}
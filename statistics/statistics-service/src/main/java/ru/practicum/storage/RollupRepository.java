@@ -0,0 +1,103 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.config.IngestProperties;
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.ViewStats;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий агрегатов посещений по корзинам времени (таблица {@code hit_rollup}).
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class RollupRepository {
+
+    private static final String INCREMENT = """
+            INSERT INTO hit_rollup (granularity, app, uri, bucket, hits)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (granularity, bucket, uri, app) DO UPDATE SET hits = hit_rollup.hits + EXCLUDED.hits
+            """;
+
+    private static final String SUM_HITS = """
+            SELECT app, uri, SUM(hits) AS hits
+            FROM hit_rollup
+            WHERE granularity = :granularity AND bucket >= :from AND bucket < :to
+            """;
+
+    private static final String FIND_BUCKETS = """
+            SELECT app, uri, bucket, hits
+            FROM hit_rollup
+            WHERE granularity = :granularity AND bucket >= :from AND bucket < :to
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final IngestProperties ingestProperties;
+
+    /**
+     * Увеличивает счётчики корзин. Ключи должны быть уникальны в пределах вызова.
+     *
+     * @param granularity гранулярность корзин
+     * @param counts      приращения по корзинам
+     */
+    public void increment(Granularity granularity, List<BucketCount> counts) {
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INCREMENT, counts, ingestProperties.getBatchSize(), (ps, count) -> {
+            ps.setString(1, granularity.name());
+            ps.setString(2, count.app());
+            ps.setString(3, count.uri());
+            ps.setTimestamp(4, Timestamp.valueOf(count.bucket()));
+            ps.setLong(5, count.hits());
+        });
+    }
+
+    /**
+     * Суммирует посещения по корзинам из интервала [from, to).
+     *
+     * @param uris список uri для фильтрации или {@code null}, если нужны все uri
+     */
+    public List<ViewStats> sumHits(Granularity granularity, LocalDateTime from, LocalDateTime to,
+                                   Collection<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = SUM_HITS;
+        if (uris != null) {
+            sql += " AND uri IN (:uris)";
+            params.addValue("uris", uris);
+        }
+        sql += " GROUP BY app, uri";
+        return jdbcTemplate.query(sql, params,
+                (rs, rowNum) -> new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    /**
+     * Корзины из интервала [from, to) без суммирования.
+     *
+     * @param uris список uri для фильтрации или {@code null}, если нужны все uri
+     */
+    public List<BucketCount> findBuckets(Granularity granularity, LocalDateTime from, LocalDateTime to,
+                                         Collection<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = FIND_BUCKETS;
+        if (uris != null) {
+            sql += " AND uri IN (:uris)";
+            params.addValue("uris", uris);
+        }
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new BucketCount(rs.getString("app"),
+                rs.getString("uri"), rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+    }
+}
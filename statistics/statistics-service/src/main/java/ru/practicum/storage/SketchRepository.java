@@ -0,0 +1,138 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.BucketSketch;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.HyperLogLog;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Репозиторий оценок HyperLogLog по корзинам времени (таблица {@code hit_sketch}).
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class SketchRepository {
+
+    private static final String CREATE_EMPTY = """
+            INSERT INTO hit_sketch (granularity, app, uri, bucket, registers)
+            SELECT ?, k.app, k.uri, k.bucket, ''::bytea
+            FROM unnest(?::timestamp[], ?::varchar[], ?::varchar[]) AS k(bucket, uri, app)
+            ORDER BY k.bucket, k.uri, k.app
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String LOCK = """
+            SELECT s.app, s.uri, s.bucket, s.registers
+            FROM hit_sketch s
+            JOIN unnest(?::timestamp[], ?::varchar[], ?::varchar[]) AS k(bucket, uri, app)
+                ON s.bucket = k.bucket AND s.uri = k.uri AND s.app = k.app
+            WHERE s.granularity = ?
+            ORDER BY s.bucket, s.uri, s.app
+            FOR UPDATE OF s
+            """;
+
+    private static final String UPDATE = """
+            UPDATE hit_sketch s SET registers = k.registers
+            FROM unnest(?::timestamp[], ?::varchar[], ?::varchar[], ?::bytea[]) AS k(bucket, uri, app, registers)
+            WHERE s.granularity = ? AND s.bucket = k.bucket AND s.uri = k.uri AND s.app = k.app
+            """;
+
+    private static final String FIND = """
+            SELECT app, uri, registers
+            FROM hit_sketch
+            WHERE granularity = :granularity AND bucket >= :from AND bucket < :to
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Объединяет сохранённые оценки корзин с новыми: недостающие строки создаются пустыми, затем все строки
+     * блокируются в порядке ключей, объединяются в памяти и записываются обратно. Поэтому параллельные пакеты
+     * не теряют обновления и не попадают во взаимоблокировку. Каждый шаг — один запрос с массивами ключей.
+     *
+     * @param sketches новые оценки, упорядоченные по ключу; объединённый результат записывается в них же
+     */
+    public void merge(Granularity granularity, List<BucketSketch> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        Timestamp[] buckets = new Timestamp[sketches.size()];
+        String[] uris = new String[sketches.size()];
+        String[] apps = new String[sketches.size()];
+        Map<BucketKey, HyperLogLog> byKey = new HashMap<>();
+        for (int i = 0; i < sketches.size(); i++) {
+            BucketKey key = sketches.get(i).key();
+            buckets[i] = Timestamp.valueOf(key.bucket());
+            uris[i] = key.uri();
+            apps[i] = key.app();
+            byKey.put(key, sketches.get(i).sketch());
+        }
+        JdbcTemplate jdbc = jdbcTemplate.getJdbcTemplate();
+        jdbc.update(CREATE_EMPTY, ps -> {
+            ps.setString(1, granularity.name());
+            setKeys(ps, 2, buckets, uris, apps);
+        });
+        jdbc.query(LOCK, ps -> {
+            setKeys(ps, 1, buckets, uris, apps);
+            ps.setString(4, granularity.name());
+        }, (RowCallbackHandler) rs -> {
+            BucketKey key = new BucketKey(rs.getTimestamp("bucket").toLocalDateTime(), rs.getString("uri"),
+                    rs.getString("app"));
+            byKey.get(key).merge(rs.getBytes("registers"));
+        });
+        byte[][] registers = sketches.stream()
+                .map(sketch -> sketch.sketch().toBytes())
+                .toArray(byte[][]::new);
+        jdbc.update(UPDATE, ps -> {
+            setKeys(ps, 1, buckets, uris, apps);
+            ps.setArray(4, ps.getConnection().createArrayOf("bytea", registers));
+            ps.setString(5, granularity.name());
+        });
+    }
+
+    private static void setKeys(PreparedStatement ps, int from, Timestamp[] buckets, String[] uris, String[] apps)
+            throws SQLException {
+        ps.setArray(from, ps.getConnection().createArrayOf("timestamp", buckets));
+        ps.setArray(from + 1, ps.getConnection().createArrayOf("varchar", uris));
+        ps.setArray(from + 2, ps.getConnection().createArrayOf("varchar", apps));
+    }
+
+    /**
+     * Передаёт обработчику сохранённые оценки корзин из интервала [from, to).
+     *
+     * @param uris список uri для фильтрации или {@code null}, если нужны все uri
+     */
+    public void forEach(Granularity granularity, LocalDateTime from, LocalDateTime to, Collection<String> uris,
+                        SketchHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = FIND;
+        if (uris != null) {
+            sql += " AND uri IN (:uris)";
+            params.addValue("uris", uris);
+        }
+        RowCallbackHandler rowHandler = rs -> handler.handle(rs.getString("app"), rs.getString("uri"),
+                rs.getBytes("registers"));
+        jdbcTemplate.query(sql, params, rowHandler);
+    }
+
+    @FunctionalInterface
+    public interface SketchHandler {
+        void handle(String app, String uri, byte[] registers);
+    }
+}
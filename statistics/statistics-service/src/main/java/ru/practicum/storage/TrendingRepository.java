@@ -0,0 +1,96 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.config.ConditionalOnJpaStore;
+import ru.practicum.model.AppUri;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Репозиторий сохранённых значений затухающих счётчиков (таблица {@code trending_score}).
+ * Значения хранятся на момент сохранения отдельно для каждого периода полураспада.
+ */
+@Repository
+@ConditionalOnJpaStore
+@RequiredArgsConstructor
+public class TrendingRepository {
+
+    private static final String DELETE_ALL = "DELETE FROM trending_score";
+
+    private static final String INSERT = """
+            INSERT INTO trending_score (half_life, app, uri, score, saved_at)
+            SELECT k.half_life, k.app, k.uri, k.score, ?
+            FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::float8[]) AS k(half_life, app, uri, score)
+            """;
+
+    private static final String FIND_ALL = "SELECT half_life, app, uri, score, saved_at FROM trending_score";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Заменяет сохранённые значения новыми.
+     *
+     * @param halfLives периоды полураспада в порядке значений
+     * @param scores    значения счётчиков на момент {@code savedAt}
+     */
+    @Transactional
+    public void replace(LocalDateTime savedAt, List<Duration> halfLives, Map<AppUri, double[]> scores) {
+        int size = scores.size() * halfLives.size();
+        Long[] halfLifeColumn = new Long[size];
+        String[] apps = new String[size];
+        String[] uris = new String[size];
+        Double[] values = new Double[size];
+        int row = 0;
+        for (Map.Entry<AppUri, double[]> entry : scores.entrySet()) {
+            for (int i = 0; i < halfLives.size(); i++) {
+                halfLifeColumn[row] = halfLives.get(i).toSeconds();
+                apps[row] = entry.getKey().app();
+                uris[row] = entry.getKey().uri();
+                values[row] = entry.getValue()[i];
+                row++;
+            }
+        }
+        jdbcTemplate.update(DELETE_ALL);
+        jdbcTemplate.update(INSERT, ps -> {
+            ps.setTimestamp(1, Timestamp.valueOf(savedAt));
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", halfLifeColumn));
+            ps.setArray(3, ps.getConnection().createArrayOf("varchar", apps));
+            ps.setArray(4, ps.getConnection().createArrayOf("varchar", uris));
+            ps.setArray(5, ps.getConnection().createArrayOf("float8", values));
+        });
+    }
+
+    /**
+     * Сохранённые значения для указанных периодов полураспада; значения других периодов пропускаются.
+     */
+    public List<Saved> findAll(List<Duration> halfLives) {
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < halfLives.size(); i++) {
+            indexes.put(halfLives.get(i).toSeconds(), i);
+        }
+        Map<AppUri, Saved> saved = new HashMap<>();
+        jdbcTemplate.query(FIND_ALL, rs -> {
+            Integer index = indexes.get(rs.getLong("half_life"));
+            if (index == null) {
+                return;
+            }
+            AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+            LocalDateTime savedAt = rs.getTimestamp("saved_at").toLocalDateTime();
+            saved.computeIfAbsent(key, k -> new Saved(k, new double[halfLives.size()], savedAt))
+                    .scores()[index] = rs.getDouble("score");
+        });
+        return new ArrayList<>(saved.values());
+    }
+
+    public record Saved(AppUri key, double[] scores, LocalDateTime savedAt) {
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.storage.segment;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Группирует посещения по паре «сервис, uri»: считает посещения и, если нужно, различные ip.
+ * Идентификаторы в словарях плотные, поэтому группы лежат в массивах, а не в хеш-таблице.
+ * Адреса IPv4 собираются в RoaringBitmap, остальные — в множество.
+ */
+final class HitAggregator implements Segment.RecordVisitor {
+
+    private static final long IPV4_MAPPED_HIGH = 0L;
+    private static final long IPV4_MAPPED_PREFIX = 0xffffL;
+
+    private final boolean distinct;
+    private Group[][] groups = new Group[0][];
+
+    HitAggregator(boolean distinct) {
+        this.distinct = distinct;
+    }
+
+    @Override
+    public void visit(long timestamp, int appId, int uriId, long ipHigh, long ipLow) {
+        Group group = group(appId, uriId);
+        group.hits++;
+        if (distinct) {
+            group.add(ipHigh, ipLow);
+        }
+    }
+
+    void forEach(Consumer<Group> action) {
+        for (Group[] row : groups) {
+            if (row != null) {
+                for (Group group : row) {
+                    if (group != null) {
+                        action.accept(group);
+                    }
+                }
+            }
+        }
+    }
+
+    private Group group(int appId, int uriId) {
+        if (appId >= groups.length) {
+            groups = Arrays.copyOf(groups, Math.max(appId + 1, groups.length * 2));
+        }
+        Group[] row = groups[appId];
+        if (row == null || uriId >= row.length) {
+            int length = Math.max(uriId + 1, row == null ? 16 : row.length * 2);
+            row = row == null ? new Group[length] : Arrays.copyOf(row, length);
+            groups[appId] = row;
+        }
+        Group group = row[uriId];
+        if (group == null) {
+            group = new Group(appId, uriId);
+            row[uriId] = group;
+        }
+        return group;
+    }
+
+    static final class Group {
+
+        private final int appId;
+        private final int uriId;
+        private long hits;
+        private final RoaringBitmap ipv4 = new RoaringBitmap();
+        private Set<Ipv6> ipv6;
+
+        private Group(int appId, int uriId) {
+            this.appId = appId;
+            this.uriId = uriId;
+        }
+
+        int appId() {
+            return appId;
+        }
+
+        int uriId() {
+            return uriId;
+        }
+
+        long hits() {
+            return hits;
+        }
+
+        long distinctIps() {
+            return ipv4.getLongCardinality() + (ipv6 == null ? 0 : ipv6.size());
+        }
+
+        /**
+         * Различные ip группы в виде старших и младших 8 байт адреса.
+         */
+        void forEachIp(IpConsumer action) {
+            ipv4.forEach((int ip) -> action.accept(IPV4_MAPPED_HIGH, (IPV4_MAPPED_PREFIX << 32) | (ip & 0xffffffffL)));
+            if (ipv6 != null) {
+                ipv6.forEach(ip -> action.accept(ip.high(), ip.low()));
+            }
+        }
+
+        private void add(long high, long low) {
+            if (high == IPV4_MAPPED_HIGH && (low >>> 32) == IPV4_MAPPED_PREFIX) {
+                ipv4.add((int) low);
+            } else {
+                if (ipv6 == null) {
+                    ipv6 = new HashSet<>();
+                }
+                ipv6.add(new Ipv6(high, low));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface IpConsumer {
+        void accept(long high, long low);
+    }
+
+    private record Ipv6(long high, long low) {
+    }
+}
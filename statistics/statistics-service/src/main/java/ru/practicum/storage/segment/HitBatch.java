@@ -0,0 +1,12 @@
+package ru.practicum.storage.segment;
+
+/**
+ * Пакет посещений в виде записей сегмента: время в миллисекундах, идентификаторы сервиса и uri,
+ * ip — старшие и младшие 8 байт 16-байтового адреса.
+ */
+record HitBatch(long[] timestamps, int[] appIds, int[] uriIds, long[] ipHigh, long[] ipLow) {
+
+    int size() {
+        return timestamps.length;
+    }
+}
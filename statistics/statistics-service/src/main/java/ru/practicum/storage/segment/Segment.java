@@ -0,0 +1,290 @@
+package ru.practicum.storage.segment;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Сегмент — файл фиксированной ёмкости, в который посещения только дописываются.
+ * <p>
+ * Заголовок (64 байта): сигнатура, версия, ёмкость и количество записанных посещений. Дописанные посещения
+ * не видны, пока не вызван {@link #publish()}: хранилище вызывает его, когда весь пакет записан, в том числе
+ * в следующие сегменты, поэтому недописанный при сбое пакет не виден. Запись посещения занимает 32 байта
+ * (little-endian): время в миллисекундах, идентификаторы сервиса и uri, ip. Файл отображается в память целиком.
+ * <p>
+ * Индексы хранятся в памяти: минимальное и максимальное время по сегменту и по блокам из {@link #BLOCK_SIZE}
+ * записей, а для каждого uri — номера его записей. Когда сегмент заполнен, индексы сохраняются в файл
+ * {@code .idx}; индексы незаполненного сегмента при открытии строятся заново по записям.
+ */
+final class Segment implements Closeable {
+
+    static final int RECORD_SIZE = 32;
+    static final int BLOCK_SIZE = 4096;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC = 0x45574d53;
+    private static final int VERSION = 1;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private final Map<Integer, RoaringBitmap> uriIndex = new HashMap<>();
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    // Записывается после записей и индексов, поэтому читатель, прочитавший count, видит их целиком.
+    private volatile int count;
+    // Записанные, но ещё не опубликованные посещения; меняется только под блокировкой записи.
+    private int written;
+
+    private Segment(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        int blocks = (capacity + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+    }
+
+    static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+    }
+
+    static Segment create(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(CAPACITY_OFFSET, capacity).putInt(COUNT_OFFSET, 0);
+        return new Segment(path, channel, buffer, capacity);
+    }
+
+    static Segment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || channel.size() != fileSize(buffer.getInt(CAPACITY_OFFSET))) {
+            channel.close();
+            throw new IOException("Файл не является сегментом посещений: " + path);
+        }
+        Segment segment = new Segment(path, channel, buffer, buffer.getInt(CAPACITY_OFFSET));
+        segment.load(buffer.getInt(COUNT_OFFSET));
+        return segment;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Количество опубликованных посещений.
+     */
+    int getCount() {
+        return count;
+    }
+
+    boolean isFull() {
+        return written == capacity;
+    }
+
+    /**
+     * Дописывает посещения пакета начиная с {@code from}, сколько поместится. Читатели увидят их только
+     * после {@link #publish()}.
+     *
+     * @return количество записанных посещений
+     */
+    synchronized int append(HitBatch batch, int from) {
+        int appended = Math.min(batch.size() - from, capacity - written);
+        int position = written;
+        for (int i = from; i < from + appended; i++, position++) {
+            int offset = offset(position);
+            buffer.putLong(offset, batch.timestamps()[i]);
+            buffer.putInt(offset + 8, batch.appIds()[i]);
+            buffer.putInt(offset + 12, batch.uriIds()[i]);
+            buffer.putLong(offset + 16, batch.ipHigh()[i]);
+            buffer.putLong(offset + 24, batch.ipLow()[i]);
+            index(position, batch.timestamps()[i], batch.uriIds()[i]);
+        }
+        written = position;
+        return appended;
+    }
+
+    /**
+     * Делает дописанные посещения видимыми и сохраняет их количество в заголовке.
+     *
+     * @return количество опубликованных посещений
+     */
+    synchronized int publish() {
+        buffer.putInt(COUNT_OFFSET, written);
+        count = written;
+        return written;
+    }
+
+    /**
+     * Отбрасывает дописанные, но не опубликованные посещения: их места займёт следующий пакет.
+     */
+    synchronized void rollback() {
+        for (RoaringBitmap positions : uriIndex.values()) {
+            positions.remove((long) count, (long) written);
+        }
+        written = count;
+    }
+
+    /**
+     * Передаёт {@code visitor} посещения за [from, to) среди первых {@code limit} записей;
+     * {@code uriIds}, равный {@code null}, означает все uri.
+     */
+    void scan(long from, long to, int[] uriIds, int limit, RecordVisitor visitor) {
+        if (limit == 0 || maxTimestamp < from || minTimestamp >= to) {
+            return;
+        }
+        int blocks = (limit + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (uriIds == null) {
+            for (int block = 0; block < blocks; block++) {
+                if (blockMax[block] < from || blockMin[block] >= to) {
+                    continue;
+                }
+                int end = Math.min(limit, (block + 1) * BLOCK_SIZE);
+                for (int position = block * BLOCK_SIZE; position < end; position++) {
+                    visit(position, from, to, visitor);
+                }
+            }
+            return;
+        }
+        RoaringBitmap positions = new RoaringBitmap();
+        synchronized (this) {
+            for (int uriId : uriIds) {
+                RoaringBitmap uriPositions = uriIndex.get(uriId);
+                if (uriPositions != null) {
+                    positions.or(uriPositions);
+                }
+            }
+        }
+        positions.remove(limit, (long) capacity);
+        for (int block = 0; block < blocks; block++) {
+            if (blockMax[block] < from || blockMin[block] >= to) {
+                positions.remove((long) block * BLOCK_SIZE, (long) (block + 1) * BLOCK_SIZE);
+            }
+        }
+        positions.forEach((int position) -> visit(position, from, to, visitor));
+    }
+
+    /**
+     * Сбрасывает записи на диск и сохраняет индексы заполненного сегмента.
+     */
+    synchronized void seal() throws IOException {
+        buffer.force();
+        Path temporary = indexPath().resolveSibling(indexPath().getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(count);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            for (int block = 0; block < blocks; block++) {
+                out.writeLong(blockMin[block]);
+                out.writeLong(blockMax[block]);
+            }
+            out.writeInt(uriIndex.size());
+            for (Map.Entry<Integer, RoaringBitmap> entry : uriIndex.entrySet()) {
+                out.writeInt(entry.getKey());
+                entry.getValue().runOptimize();
+                entry.getValue().serialize(out);
+            }
+        }
+        Files.move(temporary, indexPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void load(int stored) throws IOException {
+        if (stored == capacity && Files.exists(indexPath())) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath())))) {
+                if (in.readInt() == stored) {
+                    minTimestamp = in.readLong();
+                    maxTimestamp = in.readLong();
+                    int blocks = (stored + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                    for (int block = 0; block < blocks; block++) {
+                        blockMin[block] = in.readLong();
+                        blockMax[block] = in.readLong();
+                    }
+                    int uris = in.readInt();
+                    for (int i = 0; i < uris; i++) {
+                        int uriId = in.readInt();
+                        RoaringBitmap positions = new RoaringBitmap();
+                        positions.deserialize(in);
+                        uriIndex.put(uriId, positions);
+                    }
+                    count = stored;
+                    written = stored;
+                    return;
+                }
+            }
+        }
+        for (int position = 0; position < stored; position++) {
+            int offset = offset(position);
+            index(position, buffer.getLong(offset), buffer.getInt(offset + 12));
+        }
+        count = stored;
+        written = stored;
+    }
+
+    private void index(int position, long timestamp, int uriId) {
+        int block = position / BLOCK_SIZE;
+        if (position % BLOCK_SIZE == 0) {
+            blockMin[block] = timestamp;
+            blockMax[block] = timestamp;
+        } else {
+            blockMin[block] = Math.min(blockMin[block], timestamp);
+            blockMax[block] = Math.max(blockMax[block], timestamp);
+        }
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        uriIndex.computeIfAbsent(uriId, id -> new RoaringBitmap()).add(position);
+    }
+
+    private void visit(int position, long from, long to, RecordVisitor visitor) {
+        int offset = offset(position);
+        long timestamp = buffer.getLong(offset);
+        if (timestamp >= from && timestamp < to) {
+            visitor.visit(timestamp, buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+                    buffer.getLong(offset + 16), buffer.getLong(offset + 24));
+        }
+    }
+
+    private static int offset(int position) {
+        return HEADER_SIZE + position * RECORD_SIZE;
+    }
+
+    private Path indexPath() {
+        String name = path.getFileName().toString();
+        return path.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".idx");
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(long timestamp, int appId, int uriId, long ipHigh, long ipLow);
+    }
+}
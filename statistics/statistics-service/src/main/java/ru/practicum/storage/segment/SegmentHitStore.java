@@ -0,0 +1,295 @@
+package ru.practicum.storage.segment;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.StoreProperties;
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.EpochMillisConverter;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.IpAddresses;
+import ru.practicum.model.TopStats;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.Visitor;
+import ru.practicum.storage.HitStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Встроенное хранилище посещений без базы данных: посещения дописываются в отображаемые в память
+ * файлы сегментов (см. {@link Segment}), а сервисы и uri заменяются идентификаторами из словарей.
+ * Запрос статистики читает подходящие блоки сегментов и группирует записи в памяти.
+ * <p>
+ * Записывает один поток за раз; чтение идёт параллельно с записью и видит только целиком записанные пакеты:
+ * количество видимых записей по всем сегментам публикуется одним массивом после записи всего пакета.
+ * Записи сбрасываются на диск при заполнении сегмента и при остановке; после падения процесса
+ * записанное остаётся в кеше страниц операционной системы.
+ */
+@Component
+@ConditionalOnProperty(prefix = "stats.store", name = "type", havingValue = "segment")
+@Slf4j
+public class SegmentHitStore implements HitStore {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentCapacity;
+    private final StringDictionary apps;
+    private final StringDictionary uris;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    // Количество видимых записей по сегментам; заменяется целиком после записи пакета.
+    private volatile int[] published;
+    private int nextSegmentNumber = 1;
+
+    public SegmentHitStore(StoreProperties storeProperties) throws IOException {
+        this.directory = storeProperties.getDirectory();
+        this.segmentCapacity = storeProperties.getSegmentCapacity();
+        if (segmentCapacity <= 0 || Segment.fileSize(segmentCapacity) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ёмкость сегмента должна быть от 1 до "
+                    + (Integer.MAX_VALUE - Segment.fileSize(0)) / Segment.RECORD_SIZE + ": " + segmentCapacity);
+        }
+        Files.createDirectories(directory);
+        this.apps = StringDictionary.open(directory.resolve("apps.dict"));
+        this.uris = StringDictionary.open(directory.resolve("uris.dict"));
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> segmentNumber(path) > 0)
+                    .sorted(Comparator.comparingInt(SegmentHitStore::segmentNumber))
+                    .toList();
+        }
+        for (Path file : files) {
+            segments.add(Segment.open(file));
+            nextSegmentNumber = segmentNumber(file) + 1;
+        }
+        this.published = segments.stream().mapToInt(Segment::getCount).toArray();
+        log.info("Открыто хранилище сегментов {}: сегментов {}, посещений {}", directory.toAbsolutePath(),
+                segments.size(), segments.stream().mapToLong(Segment::getCount).sum());
+    }
+
+    @Override
+    public synchronized void saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        try {
+            HitBatch batch = encode(hits);
+            List<Segment> filled = new ArrayList<>();
+            int written = 0;
+            try {
+                while (written < batch.size()) {
+                    Segment segment = activeSegment();
+                    written += segment.append(batch, written);
+                    if (segment.isFull()) {
+                        filled.add(segment);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                for (int i = Math.max(0, published.length - 1); i < segments.size(); i++) {
+                    segments.get(i).rollback();
+                }
+                throw e;
+            }
+            publish();
+            for (Segment segment : filled) {
+                apps.force();
+                uris.force();
+                segment.seal();
+                log.info("Сегмент {} заполнен", segment.getPath().getFileName());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Делает записанный пакет видимым сразу во всех сегментах, в которые он попал.
+     */
+    private void publish() {
+        int[] counts = Arrays.copyOf(published, segments.size());
+        for (int i = Math.max(0, published.length - 1); i < counts.length; i++) {
+            counts[i] = segments.get(i).publish();
+        }
+        published = counts;
+    }
+
+    @Override
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        // Время посещений хранится с точностью до миллисекунды, поэтому [start, end] = [start, end + 1 мс).
+        long to = EpochMillisConverter.toMillis(end) + 1;
+        List<ViewStats> stats = new ArrayList<>();
+        aggregate(EpochMillisConverter.toMillis(start), to, uris, unique).forEach(group -> stats.add(
+                new ViewStats(apps.get(group.appId()), this.uris.get(group.uriId()),
+                        unique ? group.distinctIps() : group.hits())));
+        stats.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+        return stats;
+    }
+
+    /**
+     * Группы собираются в памяти при чтении сегментов, поэтому строки передаются после сортировки.
+     */
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<ViewStats> consumer) {
+        findStats(start, end, uris, unique).forEach(consumer);
+    }
+
+    /**
+     * Группы по-прежнему собираются в памяти, но в результат отбираются кучей размера {@code limit}
+     * без сортировки всех групп.
+     */
+    @Override
+    public List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique,
+                                   String prefix) {
+        long to = EpochMillisConverter.toMillis(end) + 1;
+        int[] uriIds = prefix == null ? null : this.uris.findByPrefix(prefix);
+        HitAggregator aggregator = new HitAggregator(unique);
+        scan(EpochMillisConverter.toMillis(start), to, uriIds, aggregator);
+        TopStats top = new TopStats(limit, null);
+        aggregator.forEach(group -> top.add(new ViewStats(apps.get(group.appId()), this.uris.get(group.uriId()),
+                unique ? group.distinctIps() : group.hits())));
+        return top.toList();
+    }
+
+    /**
+     * Сегменты читаются один раз: посещения раскладываются по корзинам по времени записи.
+     */
+    @Override
+    public List<BucketCount> countBuckets(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                          Granularity bucket, boolean unique) {
+        long size = bucket.millis();
+        Map<Long, HitAggregator> buckets = new HashMap<>();
+        scan(EpochMillisConverter.toMillis(start), EpochMillisConverter.toMillis(end) + 1, uriIds(uris),
+                (timestamp, appId, uriId, ipHigh, ipLow) -> buckets
+                        .computeIfAbsent(Math.floorDiv(timestamp, size) * size, key -> new HitAggregator(unique))
+                        .visit(timestamp, appId, uriId, ipHigh, ipLow));
+        List<BucketCount> counts = new ArrayList<>();
+        buckets.forEach((bucketStart, aggregator) -> aggregator.forEach(group -> counts.add(new BucketCount(
+                apps.get(group.appId()), this.uris.get(group.uriId()), EpochMillisConverter.fromMillis(bucketStart),
+                unique ? group.distinctIps() : group.hits()))));
+        counts.sort(Comparator.comparing(BucketCount::uri)
+                .thenComparing(BucketCount::app)
+                .thenComparing(BucketCount::bucket));
+        return counts;
+    }
+
+    @Override
+    public List<ViewStats> countHits(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        List<ViewStats> stats = new ArrayList<>();
+        aggregate(EpochMillisConverter.toMillis(from), EpochMillisConverter.toMillis(to), uris, false)
+                .forEach(group -> stats.add(new ViewStats(apps.get(group.appId()), this.uris.get(group.uriId()),
+                        group.hits())));
+        return stats;
+    }
+
+    @Override
+    public List<Visitor> findVisitors(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        List<Visitor> visitors = new ArrayList<>();
+        aggregate(EpochMillisConverter.toMillis(from), EpochMillisConverter.toMillis(to), uris, true)
+                .forEach(group -> {
+                    String app = apps.get(group.appId());
+                    String uri = this.uris.get(group.uriId());
+                    group.forEachIp((high, low) -> visitors.add(new Visitor(app, uri, ip(high, low))));
+                });
+        return visitors;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        apps.close();
+        uris.close();
+    }
+
+    private HitAggregator aggregate(long from, long to, List<String> uriNames, boolean distinct) {
+        HitAggregator aggregator = new HitAggregator(distinct);
+        scan(from, to, uriIds(uriNames), aggregator);
+        return aggregator;
+    }
+
+    /**
+     * @param uriIds идентификаторы uri или {@code null} для всех uri
+     */
+    private void scan(long from, long to, int[] uriIds, Segment.RecordVisitor visitor) {
+        if (uriIds != null && uriIds.length == 0) {
+            return;
+        }
+        int[] counts = published;
+        for (int i = 0; i < counts.length; i++) {
+            segments.get(i).scan(from, to, uriIds, counts[i], visitor);
+        }
+    }
+
+    /**
+     * Идентификаторы известных uri из списка или {@code null}, если список пуст и нужны все uri.
+     */
+    private int[] uriIds(List<String> uriNames) {
+        if (uriNames == null || uriNames.isEmpty()) {
+            return null;
+        }
+        return uriNames.stream()
+                .mapToInt(uris::find)
+                .filter(id -> id >= 0)
+                .distinct()
+                .toArray();
+    }
+
+    private HitBatch encode(List<EndpointHit> hits) throws IOException {
+        int size = hits.size();
+        HitBatch batch = new HitBatch(new long[size], new int[size], new int[size], new long[size], new long[size]);
+        for (int i = 0; i < size; i++) {
+            EndpointHit hit = hits.get(i);
+            ByteBuffer ip = ByteBuffer.wrap(IpAddresses.toBytes(hit.getIp()));
+            batch.timestamps()[i] = EpochMillisConverter.toMillis(hit.getTimestamp());
+            batch.appIds()[i] = apps.getOrCreate(hit.getApp());
+            batch.uriIds()[i] = uris.getOrCreate(hit.getUri());
+            batch.ipHigh()[i] = ip.getLong(0);
+            batch.ipLow()[i] = ip.getLong(Long.BYTES);
+        }
+        return batch;
+    }
+
+    private Segment activeSegment() throws IOException {
+        if (!segments.isEmpty() && !segments.get(segments.size() - 1).isFull()) {
+            return segments.get(segments.size() - 1);
+        }
+        Path path = directory.resolve(SEGMENT_PREFIX + "%06d".formatted(nextSegmentNumber++) + SEGMENT_SUFFIX);
+        Segment segment = Segment.create(path, segmentCapacity);
+        segments.add(segment);
+        return segment;
+    }
+
+    private static String ip(long high, long low) {
+        return IpAddresses.toString(ByteBuffer.allocate(IpAddresses.LENGTH).putLong(high).putLong(low).array());
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.storage.segment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Словарь строк с плотными идентификаторами. Строки дописываются в конец файла
+ * (длина и байты UTF-8), идентификатор строки — её номер в файле.
+ * Недописанная после сбоя последняя строка отбрасывается при открытии.
+ */
+final class StringDictionary implements Closeable {
+
+    private final FileChannel channel;
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private StringDictionary(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static StringDictionary open(Path path) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.exists(path) ? Files.readAllBytes(path) : new byte[0]);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        StringDictionary dictionary = new StringDictionary(channel);
+        while (content.remaining() >= Integer.BYTES) {
+            int length = content.getInt(content.position());
+            if (length < 0 || content.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            content.getInt();
+            byte[] bytes = new byte[length];
+            content.get(bytes);
+            dictionary.remember(new String(bytes, StandardCharsets.UTF_8));
+        }
+        channel.truncate(content.position());
+        channel.position(content.position());
+        return dictionary;
+    }
+
+    synchronized int getOrCreate(String value) throws IOException {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        return remember(value);
+    }
+
+    /**
+     * Идентификатор строки или {@code -1}, если её нет в словаре.
+     */
+    synchronized int find(String value) {
+        return ids.getOrDefault(value, -1);
+    }
+
+    synchronized String get(int id) {
+        return values.get(id);
+    }
+
+    /**
+     * Идентификаторы строк, начинающихся с {@code prefix}.
+     */
+    synchronized int[] findByPrefix(String prefix) {
+        return IntStream.range(0, values.size())
+                .filter(id -> values.get(id).startsWith(prefix))
+                .toArray();
+    }
+
+    synchronized int size() {
+        return values.size();
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int remember(String value) {
+        int id = values.size();
+        values.add(value);
+        ids.put(value, id);
+        return id;
+    }
+}
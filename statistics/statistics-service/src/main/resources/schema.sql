@@ -1,11 +1,122 @@
-DROP TABLE IF EXISTS EndpointHit;
+DROP VIEW IF EXISTS endpoint_hit_view;
+DROP TABLE IF EXISTS endpoint_hit CASCADE;
+DROP TABLE IF EXISTS hit_app;
+DROP TABLE IF EXISTS hit_uri;
+DROP TABLE IF EXISTS hit_rollup;
+DROP TABLE IF EXISTS uri_counter;
+DROP TABLE IF EXISTS uri_visitor;
+DROP TABLE IF EXISTS hit_sketch;
+DROP TABLE IF EXISTS visitor_ip;
+DROP TABLE IF EXISTS visitor_bitmap;
 
-CREATE TABLE IF NOT EXISTS EndpointHit
+CREATE TABLE IF NOT EXISTS hit_app
 (
-    id        BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    app       VARCHAR(255)                            NOT NULL,
-    uri       VARCHAR(255)                            NOT NULL,
-    ip        VARCHAR(16)                             NOT NULL,
-    timestamp TIMESTAMP WITHOUT TIME ZONE,
-    CONSTRAINT pk_stats PRIMARY KEY (id)
-);
\ No newline at end of file
+    id   SMALLINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(255)                              NOT NULL,
+    CONSTRAINT pk_hit_app PRIMARY KEY (id),
+    CONSTRAINT uq_hit_app UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS hit_uri
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(255)                             NOT NULL,
+    CONSTRAINT pk_hit_uri PRIMARY KEY (id),
+    CONSTRAINT uq_hit_uri UNIQUE (name)
+);
+
+-- ts — миллисекунды от начала эпохи (UTC), ip — 16 байт (IPv4 как ::ffff:a.b.c.d).
+-- Столбцы упорядочены по выравниванию, чтобы в строке не было пустых байтов.
+CREATE TABLE IF NOT EXISTS endpoint_hit
+(
+    id     BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    ts     BIGINT                                  NOT NULL,
+    uri_id INTEGER                                 NOT NULL,
+    app_id SMALLINT                                NOT NULL,
+    ip     BYTEA                                   NOT NULL,
+    CONSTRAINT pk_stats PRIMARY KEY (id, ts)
+) PARTITION BY RANGE (ts);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_default PARTITION OF endpoint_hit DEFAULT;
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_hit_ts ON endpoint_hit (ts);
+
+CREATE VIEW endpoint_hit_view AS
+SELECT h.id, a.name AS app, u.name AS uri, h.ip, h.ts AS timestamp
+FROM endpoint_hit h
+JOIN hit_app a ON a.id = h.app_id
+JOIN hit_uri u ON u.id = h.uri_id;
+
+CREATE TABLE IF NOT EXISTS hit_rollup
+(
+    granularity VARCHAR(8)                  NOT NULL,
+    app         VARCHAR(255)                NOT NULL,
+    uri         VARCHAR(255)                NOT NULL,
+    bucket      TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits        BIGINT                      NOT NULL,
+    CONSTRAINT pk_hit_rollup PRIMARY KEY (granularity, bucket, uri, app)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hit_rollup_uri ON hit_rollup (granularity, uri, bucket);
+
+CREATE TABLE IF NOT EXISTS uri_counter
+(
+    app        VARCHAR(255)                NOT NULL,
+    uri        VARCHAR(255)                NOT NULL,
+    hits       BIGINT                      NOT NULL,
+    unique_ips BIGINT                      NOT NULL,
+    first_hit  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    last_hit   TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_uri_counter PRIMARY KEY (uri, app)
+);
+
+CREATE TABLE IF NOT EXISTS uri_visitor
+(
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(255) NOT NULL,
+    ip  VARCHAR(45)  NOT NULL,
+    CONSTRAINT pk_uri_visitor PRIMARY KEY (uri, app, ip)
+);
+
+CREATE TABLE IF NOT EXISTS hit_sketch
+(
+    granularity VARCHAR(8)                  NOT NULL,
+    app         VARCHAR(255)                NOT NULL,
+    uri         VARCHAR(255)                NOT NULL,
+    bucket      TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    registers   BYTEA                       NOT NULL,
+    CONSTRAINT pk_hit_sketch PRIMARY KEY (granularity, bucket, uri, app)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hit_sketch_uri ON hit_sketch (granularity, uri, bucket);
+
+CREATE TABLE IF NOT EXISTS visitor_ip
+(
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    ip VARCHAR(45)                              NOT NULL,
+    CONSTRAINT pk_visitor_ip PRIMARY KEY (id),
+    CONSTRAINT uq_visitor_ip UNIQUE (ip)
+);
+
+CREATE TABLE IF NOT EXISTS visitor_bitmap
+(
+    app    VARCHAR(255) NOT NULL,
+    uri    VARCHAR(255) NOT NULL,
+    day    DATE         NOT NULL,
+    bitmap BYTEA        NOT NULL,
+    CONSTRAINT pk_visitor_bitmap PRIMARY KEY (day, uri, app)
+);
+
+CREATE INDEX IF NOT EXISTS ix_visitor_bitmap_uri ON visitor_bitmap (uri, day);
+
+-- half_life — период полураспада в секундах, score — значение счётчика на момент saved_at.
+-- Таблица не удаляется при запуске: сохранённые счётчики восстанавливаются после перезапуска.
+CREATE TABLE IF NOT EXISTS trending_score
+(
+    half_life BIGINT                      NOT NULL,
+    app       VARCHAR(255)                NOT NULL,
+    uri       VARCHAR(255)                NOT NULL,
+    score     DOUBLE PRECISION            NOT NULL,
+    saved_at  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_trending_score PRIMARY KEY (half_life, uri, app)
+);
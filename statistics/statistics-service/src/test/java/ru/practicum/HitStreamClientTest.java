@@ -0,0 +1,121 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.ResourceAccessException;
+import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoHitStreamAck;
+import ru.practicum.model.DtoViewStats;
+import ru.practicum.service.StatisticsService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Клиентский {@link HitStream} против настоящего {@code HitStreamSession}: сервер подтверждает каждые
+ * {@code batch-size} записей, пока запрос ещё отправляется, поэтому окно меньше количества посещений
+ * не останавливает отправку. Нужна база данных из {@code application.properties}; без неё тест пропускается.
+ */
+class HitStreamClientTest {
+
+    private static final String URL = "jdbc:postgresql://localhost:5432/ewm_stats";
+    private static final String USER = "adminStats";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static ConfigurableApplicationContext context;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final String prefix = "/hit-stream/" + UUID.randomUUID() + "/";
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    @BeforeAll
+    static void start() {
+        try (Connection ignored = DriverManager.getConnection(URL, USER, USER)) {
+            context = new SpringApplicationBuilder(StatisticsServiceApplication.class)
+                    .run("--server.port=0", "--stats.store.type=jpa", "--stats.ingest.batch-size=10",
+                            "--stats.ingest.stream-ack-interval=100ms", "--app.statsUri=http://localhost:9090");
+        } catch (SQLException e) {
+            assumeTrue(false, "База данных недоступна: " + e.getMessage());
+        }
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void send_whenWindowIsSmallerThanStream_shouldProceedOnInterimAcks() throws IOException {
+        HitStream stream = open(25);
+
+        for (int i = 0; i < 200; i++) {
+            stream.send(hit(i % 4));
+        }
+
+        assertThat(stream.pending()).isLessThanOrEqualTo(25);
+        assertThat(stream.finish()).isEmpty();
+        assertThat(views()).isEqualTo(200);
+    }
+
+    @Test
+    void hitSender_throughStream_shouldDeliverAllHits() throws InterruptedException {
+        StatisticsClientProperties.Hits properties = new StatisticsClientProperties.Hits();
+        properties.setBatchSize(15);
+        properties.setFlushPeriod(Duration.ofMillis(20));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HitStreamSink sink = new HitStreamSink(() -> {
+            try {
+                return open(20);
+            } catch (IOException e) {
+                throw new ResourceAccessException(e.getMessage());
+            }
+        });
+        HitSender hitSender = new HitSender(sink, sink::close, properties, null, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            hitSender.offer(hit(i % 3));
+        }
+        hitSender.close(TIMEOUT);
+
+        assertThat(views()).isEqualTo(100);
+        assertThat(meterRegistry.get("stats.client.hits.dropped").counter().count()).isZero();
+    }
+
+    private HitStream open(int window) throws IOException {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        return new HitStream(URI.create("http://localhost:" + port + "/hits/stream"),
+                objectMapper.writerFor(DtoEndpointHit.class), objectMapper.readerFor(DtoHitStreamAck.class), 1024,
+                window, TIMEOUT);
+    }
+
+    private long views() {
+        List<String> uris = List.of(prefix + 0, prefix + 1, prefix + 2, prefix + 3);
+        return context.getBean(StatisticsService.class).getStats(now.minusMinutes(1), now.plusMinutes(1), uris, false)
+                .stream()
+                .mapToLong(DtoViewStats::getHits)
+                .sum();
+    }
+
+    private DtoEndpointHit hit(int uri) {
+        return new DtoEndpointHit("hit-stream-test", prefix + uri, "127.0.0.1", now);
+    }
+}
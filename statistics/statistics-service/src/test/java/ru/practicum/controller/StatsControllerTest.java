@@ -6,26 +6,48 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.codec.CborCodec;
+import ru.practicum.codec.LongArrayCodec;
+import ru.practicum.config.IngestProperties;
+import ru.practicum.error.exception.IngestOverloadException;
+import ru.practicum.error.exception.ValidationException;
 import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoHitStreamAck;
+import ru.practicum.model.DtoStatsQuery;
+import ru.practicum.model.DtoTimeBucket;
+import ru.practicum.model.DtoTimeSeries;
+import ru.practicum.model.DtoTrendingStats;
 import ru.practicum.model.DtoViewStats;
+import ru.practicum.model.Granularity;
 import ru.practicum.service.StatisticsService;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(StatsController.class)
+@Import(IngestProperties.class)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class StatsControllerTest {
 
     private final ObjectMapper mapper;
+    private final IngestProperties ingestProperties;
     @Autowired
     private MockMvc mockMvc;
 
@@ -51,6 +73,205 @@ class StatsControllerTest {
         verify(statisticsServiceImpl, times(1)).createHit(any(DtoEndpointHit.class));
     }
 
+    @Test
+    void createHits_shouldReturnStatusCreated() throws Exception {
+        List<DtoEndpointHit> hits = List.of(
+                DtoEndpointHit.builder().app("test-app").uri("/test-uri").ip("127.0.0.1")
+                        .timestamp(LocalDateTime.of(2023, 1, 1, 12, 0)).build(),
+                DtoEndpointHit.builder().app("test-app").uri("/test-uri").ip("127.0.0.2")
+                        .timestamp(LocalDateTime.of(2023, 1, 1, 12, 1)).build());
+
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(hits)))
+                .andExpect(status().isCreated());
+
+        verify(statisticsServiceImpl, times(1)).createHits(argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    void createHit_whenBodyIsCbor_shouldDecodeTimestampFromMillis() throws Exception {
+        DtoEndpointHit hit = DtoEndpointHit.builder()
+                .app("test-app")
+                .uri("/test-uri")
+                .ip("127.0.0.1")
+                .timestamp(LocalDateTime.of(2023, 1, 1, 12, 0, 5))
+                .build();
+
+        mockMvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .content(CborCodec.objectMapper().writeValueAsBytes(hit)))
+                .andExpect(status().isCreated());
+
+        verify(statisticsServiceImpl, times(1)).createHit(hit);
+    }
+
+    @Test
+    void createHit_whenCborTimestampHasMillis_shouldMatchJson() throws Exception {
+        DtoEndpointHit hit = DtoEndpointHit.builder()
+                .app("test-app")
+                .uri("/test-uri")
+                .ip("127.0.0.1")
+                .timestamp(LocalDateTime.of(2023, 1, 1, 12, 0, 5, 500_000_000))
+                .build();
+
+        mockMvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(hit)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .content(CborCodec.objectMapper().writeValueAsBytes(hit)))
+                .andExpect(status().isCreated());
+
+        DtoEndpointHit expected = DtoEndpointHit.builder()
+                .app("test-app")
+                .uri("/test-uri")
+                .ip("127.0.0.1")
+                .timestamp(LocalDateTime.of(2023, 1, 1, 12, 0, 5))
+                .build();
+        verify(statisticsServiceImpl, times(2)).createHit(expected);
+    }
+
+    @Test
+    void getStats_whenCborAccepted_shouldReturnCbor() throws Exception {
+        List<DtoViewStats> stats = List.of(new DtoViewStats("app", "/uri1", 3));
+        when(statisticsServiceImpl.getStats(any(), any(), any(), anyBoolean())).thenReturn(stats);
+
+        byte[] body = mockMvc.perform(get("/stats")
+                        .param("start", "2023-01-01 00:00:00")
+                        .param("end", "2023-01-02 00:00:00")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(CborCodec.objectMapper().readValue(body, DtoViewStats[].class)).containsExactly(stats.get(0));
+    }
+
+    @Test
+    void createHits_whenHitIsInvalid_shouldReturnBadRequest() throws Exception {
+        String body = "[{\"app\":\"test-app\",\"uri\":\"/test-uri\",\"timestamp\":\"2023-01-01 12:00:00\"}]";
+
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isBadRequest());
+
+        verify(statisticsServiceImpl, never()).createHits(anyList());
+    }
+
+    @Test
+    void createHits_whenIngestQueueIsFull_shouldReturnServiceUnavailable() throws Exception {
+        doThrow(new IngestOverloadException("Очередь приёма посещений переполнена, повторите запрос позже."))
+                .when(statisticsServiceImpl).createHits(anyList());
+        List<DtoEndpointHit> hits = List.of(DtoEndpointHit.builder().app("test-app").uri("/test-uri")
+                .ip("127.0.0.1").timestamp(LocalDateTime.of(2023, 1, 1, 12, 0)).build());
+
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(hits)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.reason").value("IngestOverloadException"));
+    }
+
+    @Test
+    void createHitsNdjson_shouldReadEveryLine() throws Exception {
+        String body = """
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.1","timestamp":"2023-01-01 12:00:00"}
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.2","timestamp":"2023-01-01 12:00:01"}
+                {"app":"test-app","uri":"/other-uri","ip":"127.0.0.3","timestamp":"2023-01-01 12:00:02"}
+                """;
+
+        mockMvc.perform(post("/hits")
+                        .contentType(StatsController.APPLICATION_NDJSON_VALUE)
+                        .content(body))
+                .andExpect(status().isCreated());
+
+        verify(statisticsServiceImpl, times(1)).createHits(argThat(list -> list.size() == 3));
+    }
+
+    @Test
+    void createHitsNdjson_whenLineIsInvalid_shouldReturnBadRequest() throws Exception {
+        String body = """
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.1","timestamp":"2023-01-01 12:00:00"}
+                {"app":"test-app","uri":"/test-uri","timestamp":"2023-01-01 12:00:01"}
+                """;
+
+        mockMvc.perform(post("/hits")
+                        .contentType(StatsController.APPLICATION_NDJSON_VALUE)
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.reason").value("ValidationException"))
+                .andExpect(jsonPath("$.saved").doesNotExist());
+        verify(statisticsServiceImpl, never()).createHits(anyList());
+    }
+
+    @Test
+    void createHitsNdjson_whenLineIsInvalidAfterSavedBatch_shouldReportSavedCount() throws Exception {
+        String body = """
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.1","timestamp":"2023-01-01 12:00:00"}
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.2","timestamp":"2023-01-01 12:00:01"}
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.3","timestamp":"2023-01-01 12:00:02"}
+                {"app":"test-app","uri":"/test-uri","timestamp":"2023-01-01 12:00:03"}
+                """;
+        int batchSize = ingestProperties.getBatchSize();
+        ingestProperties.setBatchSize(2);
+        try {
+            mockMvc.perform(post("/hits")
+                            .contentType(StatsController.APPLICATION_NDJSON_VALUE)
+                            .content(body))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.reason").value("ValidationException"))
+                    .andExpect(jsonPath("$.saved").value(2))
+                    .andExpect(jsonPath("$.message").value(containsString("№4")));
+        } finally {
+            ingestProperties.setBatchSize(batchSize);
+        }
+
+        verify(statisticsServiceImpl, times(1)).createHits(argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    void streamHits_shouldAckSavedCount() throws Exception {
+        String body = """
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.1","timestamp":"2023-01-01 12:00:00"}
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.2","timestamp":"2023-01-01 12:00:01"}
+                """;
+
+        String response = mockMvc.perform(post("/hits/stream")
+                        .contentType(StatsController.APPLICATION_NDJSON_VALUE)
+                        .accept(StatsController.APPLICATION_NDJSON_VALUE)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertThat(response.lines().toList()).last().isEqualTo("{\"acked\":2}");
+        verify(statisticsServiceImpl, times(1)).createHits(argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    void streamHits_whenLineIsInvalid_shouldAckSavedBeforeItAndReportError() throws Exception {
+        String body = """
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.1","timestamp":"2023-01-01 12:00:00"}
+                {"app":"test-app","uri":"/test-uri","timestamp":"2023-01-01 12:00:01"}
+                {"app":"test-app","uri":"/test-uri","ip":"127.0.0.3","timestamp":"2023-01-01 12:00:02"}
+                """;
+
+        String response = mockMvc.perform(post("/hits/stream")
+                        .contentType(StatsController.APPLICATION_NDJSON_VALUE)
+                        .accept(StatsController.APPLICATION_NDJSON_VALUE)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        DtoHitStreamAck ack = mapper.readValue(response.lines().reduce((a, b) -> b).orElseThrow(),
+                DtoHitStreamAck.class);
+        assertThat(ack.getAcked()).isEqualTo(1);
+        assertThat(ack.getError()).contains("№2");
+        verify(statisticsServiceImpl, times(1)).createHits(argThat(list -> list.size() == 1));
+    }
+
     @Test
     void getStats_shouldReturnStatsList() throws Exception {
         DtoViewStats viewStats = DtoViewStats.builder()
@@ -74,4 +295,181 @@ class StatsControllerTest {
         verify(statisticsServiceImpl, times(1))
                 .getStats(any(LocalDateTime.class), any(LocalDateTime.class), any(), anyBoolean());
     }
+
+    @Test
+    void getStats_whenUniqueIsApprox_shouldReturnApproximateStats() throws Exception {
+        when(statisticsServiceImpl.getApproxUniqueStats(any(), any(), any()))
+                .thenReturn(List.of(DtoViewStats.builder().app("test-app").uri("/test-uri").hits(7L).build()));
+
+        mockMvc.perform(get("/stats")
+                        .param("start", "2023-01-01 12:00:00")
+                        .param("end", "2023-01-02 12:00:00")
+                        .param("unique", "approx"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].hits").value(7));
+
+        verify(statisticsServiceImpl, never()).getStats(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getStats_whenUniqueIsUnknown_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/stats")
+                        .param("start", "2023-01-01 12:00:00")
+                        .param("end", "2023-01-02 12:00:00")
+                        .param("unique", "maybe"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(statisticsServiceImpl);
+    }
+
+    @Test
+    void getStatsBatch_shouldReturnResultsInQueryOrder() throws Exception {
+        List<DtoStatsQuery> queries = List.of(
+                new DtoStatsQuery(LocalDateTime.of(2023, 1, 1, 0, 0), LocalDateTime.of(2023, 1, 2, 0, 0),
+                        List.of("/uri1"), true),
+                new DtoStatsQuery(LocalDateTime.of(2023, 1, 1, 12, 0), LocalDateTime.of(2023, 1, 2, 0, 0),
+                        List.of("/uri1"), false));
+        when(statisticsServiceImpl.getStatsBatch(queries)).thenReturn(List.of(
+                List.of(new DtoViewStats("app", "/uri1", 2)),
+                List.of(new DtoViewStats("app", "/uri1", 5))));
+
+        mockMvc.perform(post("/stats/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(queries)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0][0].hits").value(2))
+                .andExpect(jsonPath("$[1][0].hits").value(5));
+    }
+
+    @Test
+    void getEventViews_shouldDecodeIdsAndEncodeViews() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 0, 0);
+        when(statisticsServiceImpl.getEventViews(start, end, new long[]{7, 8}, true)).thenReturn(new long[]{3, 0});
+
+        mockMvc.perform(post("/stats/events/views")
+                        .param("start", "2023-01-01 00:00:00")
+                        .param("end", "2023-01-02 00:00:00")
+                        .param("unique", "true")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(LongArrayCodec.encode(new long[]{7, 8})))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(LongArrayCodec.encode(new long[]{3, 0})));
+    }
+
+    @Test
+    void getEventViews_whenBodyIsNotLongArray_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/stats/events/views")
+                        .param("start", "2023-01-01 00:00:00")
+                        .param("end", "2023-01-02 00:00:00")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[]{1, 2, 3}))
+                .andExpect(status().isBadRequest());
+
+        verify(statisticsServiceImpl, never()).getEventViews(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getTopStats_shouldPassLimitAndPrefix() throws Exception {
+        when(statisticsServiceImpl.getTopStats(any(), any(), eq(3), eq(false), eq("/events/")))
+                .thenReturn(List.of(DtoViewStats.builder().app("test-app").uri("/events/1").hits(42L).build()));
+
+        mockMvc.perform(get("/stats/top")
+                        .param("start", "2023-01-01 12:00:00")
+                        .param("end", "2023-01-02 12:00:00")
+                        .param("n", "3")
+                        .param("prefix", "/events/"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].uri").value("/events/1"))
+                .andExpect(jsonPath("$[0].hits").value(42));
+    }
+
+    @Test
+    void getTimeSeries_shouldReturnBucketsPerUri() throws Exception {
+        LocalDateTime bucket = LocalDateTime.of(2023, 1, 1, 12, 0);
+        when(statisticsServiceImpl.getTimeSeries(any(), any(), eq(List.of("/a")), eq(Granularity.DAY), eq(false)))
+                .thenReturn(List.of(DtoTimeSeries.builder().app("test-app").uri("/a")
+                        .buckets(List.of(new DtoTimeBucket(bucket, 5L))).build()));
+
+        mockMvc.perform(get("/stats/timeseries")
+                        .param("start", "2023-01-01 12:00:00")
+                        .param("end", "2023-01-02 12:00:00")
+                        .param("uris", "/a")
+                        .param("bucket", "day"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].uri").value("/a"))
+                .andExpect(jsonPath("$[0].buckets[0].start").value("2023-01-01 12:00:00"))
+                .andExpect(jsonPath("$[0].buckets[0].hits").value(5));
+    }
+
+    @Test
+    void getTimeSeries_whenBucketIsUnknown_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/stats/timeseries")
+                        .param("start", "2023-01-01 12:00:00")
+                        .param("end", "2023-01-02 12:00:00")
+                        .param("bucket", "week"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(statisticsServiceImpl);
+    }
+
+    @Test
+    void getTrending_shouldParseHalfLife() throws Exception {
+        when(statisticsServiceImpl.getTrending(5, Duration.ofHours(1), null))
+                .thenReturn(List.of(new DtoTrendingStats("test-app", "/a", 12.5)));
+
+        mockMvc.perform(get("/stats/trending")
+                        .param("n", "5")
+                        .param("halfLife", "60m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].uri").value("/a"))
+                .andExpect(jsonPath("$[0].score").value(12.5));
+    }
+
+    @Test
+    void getTrending_whenHalfLifeIsInvalid_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/stats/trending").param("halfLife", "soon"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(statisticsServiceImpl);
+    }
+
+    @Test
+    void getStatsNdjson_shouldWriteOneLinePerRow() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<DtoViewStats> consumer = invocation.getArgument(4);
+            consumer.accept(DtoViewStats.builder().app("test-app").uri("/a").hits(10L).build());
+            consumer.accept(DtoViewStats.builder().app("test-app").uri("/b").hits(3L).build());
+            return null;
+        }).when(statisticsServiceImpl).streamStats(any(), any(), any(), eq(true), any());
+
+        mockMvc.perform(get("/stats")
+                        .accept(StatsController.APPLICATION_NDJSON_VALUE)
+                        .param("start", "2023-01-01 12:00:00")
+                        .param("end", "2023-01-02 12:00:00")
+                        .param("unique", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(StatsController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string("""
+                        {"app":"test-app","uri":"/a","hits":10}
+                        {"app":"test-app","uri":"/b","hits":3}
+                        """));
+
+        verify(statisticsServiceImpl, never()).getStats(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getStatsNdjson_whenRangeIsInvalid_shouldReturnBadRequest() throws Exception {
+        doThrow(new ValidationException("Время конца не может быть раньше времени начала."))
+                .when(statisticsServiceImpl).streamStats(any(), any(), any(), anyBoolean(), any());
+
+        mockMvc.perform(get("/stats")
+                        .accept(StatsController.APPLICATION_NDJSON_VALUE)
+                        .param("start", "2023-01-02 12:00:00")
+                        .param("end", "2023-01-01 12:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.reason").value("ValidationException"));
+    }
 }
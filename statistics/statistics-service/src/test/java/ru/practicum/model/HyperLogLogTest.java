@@ -0,0 +1,78 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    void murmur3_shouldMatchReferenceImplementation() {
+        byte[] data = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(HyperLogLog.murmur3(data)).isEqualTo(0xe34bbc7bbc071b6cL);
+    }
+
+    @Test
+    void precisionFor_shouldPickSmallestPrecisionWithinError() {
+        assertThat(HyperLogLog.precisionFor(0.02)).isEqualTo(12);
+        assertThat(HyperLogLog.precisionFor(0.01)).isEqualTo(14);
+        assertThat(HyperLogLog.relativeError(12)).isLessThanOrEqualTo(0.02);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 5_000, 200_000})
+    void estimate_shouldStayWithinThreeStandardErrors(int count) {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < count; i++) {
+            sketch.add("10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff));
+            sketch.add("10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff));
+        }
+
+        assertThat((double) sketch.estimate()).isCloseTo(count, within(3 * HyperLogLog.relativeError(12) * count + 1));
+    }
+
+    @Test
+    void merge_shouldEstimateUnionOfSketches() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 3_000; i++) {
+            first.add("ip" + i);
+            second.add("ip" + (i + 2_000));
+            union.add("ip" + i);
+            union.add("ip" + (i + 2_000));
+        }
+
+        first.merge(second.toBytes());
+
+        assertThat(first.estimate()).isEqualTo(union.estimate());
+    }
+
+    @Test
+    void toBytes_shouldBeSparseForSmallSketchesAndRoundTrip() {
+        HyperLogLog small = new HyperLogLog(12);
+        HyperLogLog large = new HyperLogLog(12);
+        for (int i = 0; i < 10; i++) {
+            small.add("ip" + i);
+        }
+        for (int i = 0; i < 50_000; i++) {
+            large.add("ip" + i);
+        }
+        HyperLogLog restoredSmall = new HyperLogLog(12);
+        HyperLogLog restoredLarge = new HyperLogLog(12);
+
+        restoredSmall.merge(small.toBytes());
+        restoredLarge.merge(large.toBytes());
+
+        assertThat(small.toBytes()).hasSizeLessThan(100);
+        assertThat(large.toBytes()).hasSize(2 + 4096);
+        assertThat(restoredSmall.estimate()).isEqualTo(small.estimate());
+        assertThat(restoredLarge.estimate()).isEqualTo(large.estimate());
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.practicum.error.exception.ValidationException;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IpAddressesTest {
+
+    @Test
+    void toBytes_shouldStoreIpv4AsMappedIpv6() {
+        byte[] bytes = IpAddresses.toBytes("192.168.0.1");
+
+        assertThat(bytes).hasSize(IpAddresses.LENGTH)
+                .containsExactly(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0xff, 0xff, 192, 168, 0, 1);
+        assertThat(IpAddresses.toString(bytes)).isEqualTo("192.168.0.1");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "192.168.000.001, 192.168.0.1",
+            "::ffff:10.0.0.1, 10.0.0.1",
+            "2001:0DB8:0000:0000:0000:0000:0000:0001, 2001:db8::1",
+            "2001:db8:0:0:1:0:0:1, 2001:db8::1:0:0:1",
+            "2001:db8:0:1:1:1:1:1, 2001:db8:0:1:1:1:1:1",
+            "0:0:0:0:0:0:0:0, ::",
+            "::1, ::1",
+            "fe80::, fe80::"
+    })
+    void normalize_shouldReturnCanonicalForm(String ip, String expected) {
+        assertThat(IpAddresses.normalize(ip)).isEqualTo(expected);
+        assertThat(IpAddresses.normalize(expected)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1.2.3.-4", "localhost", "1::2::3", "fe80::1%eth0"})
+    void toBytes_whenIpIsInvalid_shouldThrowValidationException(String ip) {
+        assertThatThrownBy(() -> IpAddresses.toBytes(ip)).isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void epochMillisConverter_shouldRoundTripInUtc() {
+        EpochMillisConverter converter = new EpochMillisConverter();
+        LocalDateTime dateTime = LocalDateTime.of(2024, 1, 1, 0, 0, 1);
+
+        assertThat(converter.convertToDatabaseColumn(dateTime)).isEqualTo(1_704_067_201_000L);
+        assertThat(converter.convertToEntityAttribute(1_704_067_201_000L)).isEqualTo(dateTime);
+    }
+}
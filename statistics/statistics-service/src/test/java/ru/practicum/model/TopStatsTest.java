@@ -0,0 +1,29 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopStatsTest {
+
+    @Test
+    void toList_shouldKeepOnlyLimitRowsWithMostHits() {
+        TopStats top = new TopStats(3, null);
+        IntStream.rangeClosed(1, 1000).forEach(i -> top.add(new ViewStats("app", "/events/" + i, i % 500)));
+
+        assertThat(top.toList()).containsExactly(new ViewStats("app", "/events/499", 499),
+                new ViewStats("app", "/events/999", 499), new ViewStats("app", "/events/498", 498));
+    }
+
+    @Test
+    void add_shouldSkipUrisWithoutPrefix() {
+        TopStats top = new TopStats(10, "/events/");
+        top.add(new ViewStats("app", "/events/1", 5));
+        top.add(new ViewStats("app", "/users/1", 50));
+        top.add(new ViewStats("app", "/events", 70));
+
+        assertThat(top.toList()).containsExactly(new ViewStats("app", "/events/1", 5));
+    }
+}
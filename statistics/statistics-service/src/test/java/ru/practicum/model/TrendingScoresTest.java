@@ -0,0 +1,60 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TrendingScoresTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+    private static final AppUri EVENT = new AppUri("app", "/events/1");
+
+    @Test
+    void snapshot_shouldHalveScoreEveryHalfLife() {
+        TrendingScores scores = new TrendingScores(List.of(Duration.ofHours(1), Duration.ofHours(2)), 0);
+        scores.add(EVENT, 0);
+        scores.add(EVENT, HOUR);
+
+        assertThat(scores.snapshot(HOUR).get(EVENT)).containsExactly(new double[]{1.5, 1 + Math.sqrt(0.5)},
+                within(1e-9));
+        assertThat(scores.snapshot(3 * HOUR).get(EVENT)[0]).isCloseTo(0.375, within(1e-9));
+    }
+
+    @Test
+    void rescale_shouldKeepScoresAndDropCountersBelowMinimum() {
+        TrendingScores scores = new TrendingScores(List.of(Duration.ofHours(1)), 0);
+        AppUri old = new AppUri("app", "/events/2");
+        scores.add(EVENT, 1000 * HOUR);
+        scores.add(old, 0);
+
+        scores.rescale(1000 * HOUR, 0.01);
+        scores.rescale(1000 * HOUR + 1, 0.01);
+
+        assertThat(scores.snapshot(1001 * HOUR).get(EVENT)).containsExactly(new double[]{0.5}, within(1e-9));
+        assertThat(scores.snapshot(1001 * HOUR)).doesNotContainKey(old);
+    }
+
+    @Test
+    void add_whenCalledConcurrently_shouldCountEveryHit() throws InterruptedException {
+        TrendingScores scores = new TrendingScores(List.of(Duration.ofHours(1)), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    scores.add(new AppUri("app", "/events/" + j % 10), 0);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(scores.snapshot(0).values()).allSatisfy(values -> assertThat(values[0]).isEqualTo(8_000));
+    }
+}
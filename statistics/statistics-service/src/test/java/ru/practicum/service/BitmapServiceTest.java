@@ -0,0 +1,141 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.RoaringBitmap;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.Visitor;
+import ru.practicum.storage.BitmapRepository;
+import ru.practicum.storage.DictionaryCache;
+import ru.practicum.storage.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BitmapServiceTest {
+
+    private static final BucketKey DAY = new BucketKey(LocalDateTime.of(2023, 1, 2, 0, 0), "/uri1", "app");
+
+    @Mock
+    private BitmapRepository bitmapRepository;
+
+    @Mock
+    private HitStore hitStore;
+
+    @Mock
+    private DictionaryCache dictionaryCache;
+
+    private BitmapService bitmapService;
+
+    @BeforeEach
+    void setUp() {
+        BitmapProperties properties = new BitmapProperties();
+        properties.setEnabled(true);
+        bitmapService = new BitmapService(bitmapRepository, hitStore, dictionaryCache, properties);
+    }
+
+    @Test
+    void getStats_shouldCountUnionOfDayBitmapsAndRawEdges() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 18, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 23, 59, 59);
+        stubDay(RoaringBitmap.bitmapOf(2, 3));
+        when(hitStore.findVisitors(any(), any(), isNull()))
+                .thenReturn(List.of(new Visitor("app", "/uri1", "10.0.0.1"), new Visitor("app", "/uri1", "10.0.0.2")))
+                .thenReturn(List.of());
+        when(dictionaryCache.find(eq(DictionaryType.VISITOR_IP), anyCollection()))
+                .thenReturn(Map.of("10.0.0.1", 1, "10.0.0.2", 2));
+
+        List<ViewStats> result = bitmapService.getStats(start, end, null);
+
+        assertThat(result).containsExactly(new ViewStats("app", "/uri1", 3));
+    }
+
+    @Test
+    void getStats_whenRawIpIsNotInDictionary_shouldCountItWithoutRegistering() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 18, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 3, 6, 0);
+        stubDay(RoaringBitmap.bitmapOf(2));
+        when(hitStore.findVisitors(any(), any(), isNull()))
+                .thenReturn(List.of(new Visitor("app", "/uri1", "10.0.0.2"), new Visitor("app", "/uri1", "10.0.0.8")))
+                .thenReturn(List.of(new Visitor("app", "/uri1", "10.0.0.8"), new Visitor("app", "/uri1", "10.0.0.9")));
+        when(dictionaryCache.find(eq(DictionaryType.VISITOR_IP), anyCollection()))
+                .thenReturn(Map.of("10.0.0.2", 2));
+
+        List<ViewStats> result = bitmapService.getStats(start, end, null);
+
+        assertThat(result).containsExactly(new ViewStats("app", "/uri1", 3));
+        verify(dictionaryCache, never()).getOrCreate(any(), anyCollection());
+    }
+
+    @Test
+    void getStats_shouldReadDayBitmapFromCacheUntilItChanges() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 2, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 23, 59, 59);
+        stubDay(RoaringBitmap.bitmapOf(1, 2));
+
+        bitmapService.getStats(start, end, null);
+        List<ViewStats> cached = bitmapService.getStats(start, end, null);
+
+        assertThat(cached).containsExactly(new ViewStats("app", "/uri1", 2));
+        verify(bitmapRepository, times(1)).find(eq(List.of(DAY)), any());
+
+        when(dictionaryCache.getOrCreate(eq(DictionaryType.VISITOR_IP), anyCollection()))
+                .thenReturn(Map.of("10.0.0.3", 3));
+        bitmapService.onHits(List.of(hit("10.0.0.3", LocalDateTime.of(2023, 1, 2, 10, 0))));
+        bitmapService.getStats(start, end, null);
+
+        verify(bitmapRepository, times(2)).find(eq(List.of(DAY)), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onHits_shouldCollectVisitorIdsPerDay() {
+        EndpointHit first = hit("10.0.0.1", LocalDateTime.of(2023, 1, 2, 10, 0));
+        EndpointHit second = hit("10.0.0.2", LocalDateTime.of(2023, 1, 2, 23, 0));
+        EndpointHit third = hit("10.0.0.1", LocalDateTime.of(2023, 1, 3, 1, 0));
+        when(dictionaryCache.getOrCreate(eq(DictionaryType.VISITOR_IP), anyCollection()))
+                .thenReturn(Map.of("10.0.0.1", 1, "10.0.0.2", 2));
+
+        bitmapService.onHits(List.of(first, second, third));
+
+        ArgumentCaptor<Map<BucketKey, RoaringBitmap>> bitmaps = ArgumentCaptor.forClass(Map.class);
+        verify(bitmapRepository).merge(bitmaps.capture());
+        assertThat(bitmaps.getValue()).containsExactly(
+                Map.entry(DAY, RoaringBitmap.bitmapOf(1, 2)),
+                Map.entry(new BucketKey(LocalDateTime.of(2023, 1, 3, 0, 0), "/uri1", "app"),
+                        RoaringBitmap.bitmapOf(1)));
+    }
+
+    private void stubDay(RoaringBitmap bitmap) {
+        when(bitmapRepository.findKeys(any(), any(), isNull())).thenReturn(List.of(DAY));
+        lenient().doAnswer(invocation -> {
+            List<BucketKey> keys = invocation.getArgument(0);
+            BitmapRepository.BitmapHandler handler = invocation.getArgument(1);
+            keys.forEach(key -> handler.handle(key, bitmap.clone()));
+            return null;
+        }).when(bitmapRepository).find(anyList(), any());
+    }
+
+    private EndpointHit hit(String ip, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("app");
+        hit.setUri("/uri1");
+        hit.setIp(ip);
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.config.CounterProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.UriCounter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.storage.CounterRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CounterServiceTest {
+
+    @Mock
+    private CounterRepository counterRepository;
+
+    private CounterService counterService;
+
+    @BeforeEach
+    void setUp() {
+        counterService = new CounterService(counterRepository, new CounterProperties());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onHits_shouldCountHitsAndNewIpsPerUri() {
+        LocalDateTime time = LocalDateTime.of(2023, 1, 1, 12, 0);
+        List<EndpointHit> hits = List.of(
+                hit("/uri2", "127.0.0.1", time.plusMinutes(5)),
+                hit("/uri1", "127.0.0.1", time),
+                hit("/uri1", "127.0.0.1", time.plusMinutes(1)),
+                hit("/uri1", "127.0.0.2", time.minusMinutes(1)));
+        when(counterRepository.addVisitors(anyList(), anyList())).thenReturn(new int[]{1, 0});
+
+        counterService.onHits(hits);
+
+        ArgumentCaptor<List<Collection<String>>> ips = ArgumentCaptor.forClass(List.class);
+        verify(counterRepository).addVisitors(anyList(), ips.capture());
+        assertThat(ips.getValue()).map(List::copyOf).containsExactly(List.of("127.0.0.1", "127.0.0.2"), List.of("127.0.0.1"));
+        verify(counterRepository).increment(List.of(
+                new UriCounter("app1", "/uri1", 3, 1, time.minusMinutes(1), time.plusMinutes(1)),
+                new UriCounter("app1", "/uri2", 1, 0, time.plusMinutes(5), time.plusMinutes(5))));
+    }
+
+    @Test
+    void lookup_shouldAnswerOnlyUrisWhoseHistoryIsInsideRange() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 31, 0, 0);
+        when(counterRepository.find(null)).thenReturn(List.of(
+                new UriCounter("app1", "/uri1", 10, 4, start, end),
+                new UriCounter("app1", "/uri2", 7, 2, start.minusDays(1), end)));
+
+        CounterService.Lookup lookup = counterService.lookup(start, end, List.of(), true);
+
+        assertThat(lookup.covered()).containsExactly(new ViewStats("app1", "/uri1", 4));
+        assertThat(lookup.remainingUris()).containsExactly("/uri2");
+    }
+
+    private EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("app1");
+        hit.setUri(uri);
+        hit.setIp(ip);
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
@@ -0,0 +1,301 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.practicum.config.IngestProperties;
+import ru.practicum.error.exception.IngestOverloadException;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class HitIngestionQueueTest {
+
+    private final HitWriter hitWriter = mock(HitWriter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService submitters = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private IngestProperties properties;
+    private HitIngestionQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (queue != null) {
+            queue.stop();
+        }
+        submitters.shutdownNow();
+    }
+
+    @Test
+    void submit_whenAckOnCommit_shouldReturnAfterBatchIsWritten() {
+        List<List<EndpointHit>> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> written.add(invocation.getArgument(0))).when(hitWriter).write(anyList());
+        queue = startQueue(IngestProperties.Durability.ACK_ON_COMMIT, 100, 3);
+
+        queue.submit(List.of(new EndpointHit(), new EndpointHit(), new EndpointHit(), new EndpointHit()));
+
+        assertThat(written.stream().mapToInt(List::size).sum()).isEqualTo(4);
+        assertThat(written.getFirst()).hasSize(3);
+        assertThat(meterRegistry.get("stats.ingest.flush.latency").timer().count()).isEqualTo(written.size());
+    }
+
+    @Test
+    void submit_whenWriteFails_shouldPropagateErrorToAckOnCommitCaller() {
+        doThrow(new IllegalStateException("db down")).when(hitWriter).write(anyList());
+        queue = startQueue(IngestProperties.Durability.ACK_ON_COMMIT, 100, 10);
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> queue.submit(List.of(new EndpointHit())));
+
+        assertThat(thrown.getMessage()).isEqualTo("db down");
+        assertThat(meterRegistry.get("stats.ingest.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_whenQueueIsFull_shouldRejectWholeRequest() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(hitWriter).write(anyList());
+        queue = startQueue(IngestProperties.Durability.ACK_ON_ENQUEUE, 2, 1);
+
+        queue.submit(List.of(new EndpointHit()));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.submit(List.of(new EndpointHit()));
+
+        assertThrows(IngestOverloadException.class, () -> queue.submit(List.of(new EndpointHit())));
+        assertThat(meterRegistry.get("stats.ingest.rejected").counter().count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    void submit_whenOneRequestInBatchIsInvalid_shouldFailOnlyThatRequest() throws Exception {
+        List<EndpointHit> written = Collections.synchronizedList(new ArrayList<>());
+        blockFirstWrite(invocation -> {
+            List<EndpointHit> hits = invocation.getArgument(0);
+            if (hits.stream().anyMatch(hit -> "bad".equals(hit.getUri()))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            written.addAll(hits);
+            return null;
+        });
+        queue = startQueue(IngestProperties.Durability.ACK_ON_COMMIT, 100, 100);
+        CompletableFuture<Void> first = submitAsync(hit("first"));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> good = submitAsync(hit("good"), hit("good"));
+        CompletableFuture<Void> bad = submitAsync(hit("bad"));
+        CompletableFuture<Void> other = submitAsync(hit("other"));
+        awaitQueued(4);
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        good.get(5, TimeUnit.SECONDS);
+        other.get(5, TimeUnit.SECONDS);
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertThat(thrown.getCause()).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(written).extracting(EndpointHit::getUri)
+                .containsExactlyInAnyOrder("first", "good", "good", "other");
+        assertThat(meterRegistry.get("stats.ingest.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_whenDatabaseUnavailable_shouldFailBatchWithoutSplitting() throws Exception {
+        blockFirstWrite(invocation -> {
+            throw new DataAccessResourceFailureException("connection refused");
+        });
+        queue = startQueue(IngestProperties.Durability.ACK_ON_COMMIT, 100, 100);
+        CompletableFuture<Void> first = submitAsync(hit("first"));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<CompletableFuture<Void>> requests = List.of(submitAsync(hit("a")), submitAsync(hit("b")),
+                submitAsync(hit("c")), submitAsync(hit("d")));
+        awaitQueued(4);
+        release.countDown();
+
+        for (CompletableFuture<Void> request : requests) {
+            ExecutionException thrown = assertThrows(ExecutionException.class,
+                    () -> request.get(5, TimeUnit.SECONDS));
+            assertThat(thrown.getCause()).isInstanceOf(DataAccessResourceFailureException.class);
+        }
+        verify(hitWriter, times(2)).write(anyList());
+        assertThat(meterRegistry.get("stats.ingest.failed").counter().count()).isEqualTo(5);
+        assertThat(first).isCompletedExceptionally();
+    }
+
+    @Test
+    void submit_whenWriteNotStartedBeforeAckTimeout_shouldRemoveHitsAndReject() throws Exception {
+        List<EndpointHit> written = Collections.synchronizedList(new ArrayList<>());
+        blockFirstWrite(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return null;
+        });
+        queue = startQueue(IngestProperties.Durability.ACK_ON_COMMIT, 100, 100, Duration.ofMillis(100));
+        CompletableFuture<Void> first = submitAsync(hit("first"));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThrows(IngestOverloadException.class, () -> queue.submit(List.of(hit("late"))));
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        queue.stop();
+        queue = null;
+
+        assertThat(written).extracting(EndpointHit::getUri).containsExactly("first");
+        assertThat(meterRegistry.get("stats.ingest.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_whenWriteStartedBeforeAckTimeout_shouldWaitForCommit() {
+        doAnswer(invocation -> {
+            Thread.sleep(300);
+            return null;
+        }).when(hitWriter).write(anyList());
+        queue = startQueue(IngestProperties.Durability.ACK_ON_COMMIT, 100, 100, Duration.ofMillis(100));
+
+        queue.submit(List.of(hit("slow")));
+
+        verify(hitWriter).write(anyList());
+        assertThat(meterRegistry.get("stats.ingest.rejected").counter().count()).isZero();
+    }
+
+    @Test
+    void stop_shouldWriteQueuedHitsBeforeReturning() throws Exception {
+        List<EndpointHit> written = Collections.synchronizedList(new ArrayList<>());
+        blockFirstWrite(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return null;
+        });
+        queue = startQueue(IngestProperties.Durability.ACK_ON_ENQUEUE, 100, 100);
+        queue.submit(List.of(hit("first")));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.submit(List.of(hit("a"), hit("b")));
+
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(() -> {
+            try {
+                queue.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, submitters);
+        release.countDown();
+        stopped.get(5, TimeUnit.SECONDS);
+        queue = null;
+
+        assertThat(written).extracting(EndpointHit::getUri).containsExactly("first", "a", "b");
+        assertThat(meterRegistry.get("stats.ingest.failed").counter().count()).isZero();
+    }
+
+    @Test
+    void stop_whenShutdownTimeoutExpires_shouldCountUnwrittenHitsAsFailed() throws InterruptedException {
+        blockFirstWrite(invocation -> null);
+        queue = startQueue(IngestProperties.Durability.ACK_ON_ENQUEUE, 100, 100);
+        properties.setShutdownTimeout(Duration.ofMillis(100));
+        queue.submit(List.of(hit("first")));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.submit(List.of(hit("a"), hit("b")));
+
+        queue.stop();
+        queue = null;
+
+        assertThat(meterRegistry.get("stats.ingest.failed").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("stats.ingest.queue.depth").gauge().value()).isZero();
+        release.countDown();
+        verify(hitWriter, after(200).times(1)).write(anyList());
+    }
+
+    @Test
+    void drainLoop_whenWriterIsInterrupted_shouldWriteQueuedHitsAndExit() throws InterruptedException {
+        List<EndpointHit> written = Collections.synchronizedList(new ArrayList<>());
+        blockFirstWrite(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            if (written.size() == 1) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        queue = startQueue(IngestProperties.Durability.ACK_ON_ENQUEUE, 100, 100);
+        queue.submit(List.of(hit("first")));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.submit(List.of(hit("a"), hit("b")));
+
+        release.countDown();
+
+        verify(hitWriter, timeout(5000).times(2)).write(anyList());
+        assertThat(written).extracting(EndpointHit::getUri).containsExactly("first", "a", "b");
+        assertThrows(IngestOverloadException.class, () -> queue.submit(List.of(hit("late"))));
+    }
+
+    /**
+     * Первая запись сообщает о начале через {@link #writing} и ждёт {@link #release}, все записи выполняются
+     * {@code answer}: следующие запросы успевают собраться в один пакет.
+     */
+    private void blockFirstWrite(Answer<Object> answer) {
+        AtomicInteger writes = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (writes.incrementAndGet() == 1) {
+                writing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return answer.answer(invocation);
+        }).when(hitWriter).write(anyList());
+    }
+
+    private CompletableFuture<Void> submitAsync(EndpointHit... hits) {
+        return CompletableFuture.runAsync(() -> queue.submit(List.of(hits)), submitters);
+    }
+
+    private void awaitQueued(int hits) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("stats.ingest.queue.depth").gauge().value() < hits) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static EndpointHit hit(String uri) {
+        EndpointHit hit = new EndpointHit();
+        hit.setUri(uri);
+        return hit;
+    }
+
+    private HitIngestionQueue startQueue(IngestProperties.Durability durability, int capacity, int flushSize) {
+        return startQueue(durability, capacity, flushSize, Duration.ofSeconds(5));
+    }
+
+    private HitIngestionQueue startQueue(IngestProperties.Durability durability, int capacity, int flushSize,
+                                         Duration ackTimeout) {
+        properties = new IngestProperties();
+        properties.setAckTimeout(ackTimeout);
+        properties.setMode(IngestProperties.Mode.ASYNC);
+        properties.setDurability(durability);
+        properties.setQueueCapacity(capacity);
+        properties.setFlushSize(flushSize);
+        properties.setFlushInterval(Duration.ofMillis(20));
+        HitIngestionQueue hitIngestionQueue = new HitIngestionQueue(hitWriter, properties, meterRegistry);
+        hitIngestionQueue.start();
+        return hitIngestionQueue;
+    }
+}
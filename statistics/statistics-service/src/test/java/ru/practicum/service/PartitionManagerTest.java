@@ -0,0 +1,85 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.config.PartitionProperties;
+import ru.practicum.model.Granularity;
+import ru.practicum.storage.PartitionRepository;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionManagerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 15, 10, 0);
+
+    @Mock
+    private PartitionRepository partitionRepository;
+
+    private PartitionProperties properties;
+    private PartitionManager partitionManager;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PartitionProperties();
+        properties.setPremake(2);
+        partitionManager = new PartitionManager(partitionRepository, properties);
+    }
+
+    @Test
+    void maintain_shouldCreateMissingFutureAndDefaultPartitions() {
+        when(partitionRepository.findPartitions()).thenReturn(List.of("endpoint_hit_p202403"));
+        when(partitionRepository.findDefaultPartitionTimes("month"))
+                .thenReturn(List.of(LocalDateTime.of(2023, 12, 1, 0, 0)));
+
+        partitionManager.maintain(NOW);
+
+        verify(partitionRepository).createPartition("endpoint_hit_p202312", LocalDateTime.of(2023, 12, 1, 0, 0),
+                LocalDateTime.of(2024, 1, 1, 0, 0));
+        verify(partitionRepository).createPartition("endpoint_hit_p202404", LocalDateTime.of(2024, 4, 1, 0, 0),
+                LocalDateTime.of(2024, 5, 1, 0, 0));
+        verify(partitionRepository).createPartition("endpoint_hit_p202405", LocalDateTime.of(2024, 5, 1, 0, 0),
+                LocalDateTime.of(2024, 6, 1, 0, 0));
+        verify(partitionRepository, never()).createPartition(eq("endpoint_hit_p202403"), any(), any());
+        verify(partitionRepository, never()).dropPartition(anyString());
+    }
+
+    @Test
+    void maintain_shouldDropOnlyPartitionsEntirelyOutsideRetention() {
+        properties.setGranularity(Granularity.DAY);
+        properties.setPremake(0);
+        properties.setRetention(Period.ofDays(7));
+        when(partitionRepository.findPartitions()).thenReturn(List.of("endpoint_hit_p20240307",
+                "endpoint_hit_p20240308", "endpoint_hit_p20240315", "endpoint_hit_archive"));
+
+        partitionManager.maintain(NOW);
+
+        verify(partitionRepository).dropPartition("endpoint_hit_p20240307");
+        verify(partitionRepository, times(1)).dropPartition(anyString());
+        verify(partitionRepository, never()).createPartition(anyString(), any(), any());
+    }
+
+    @Test
+    void maintain_whenDefaultPartitionHasHitsOutsideRetention_shouldDeleteThemInsteadOfCreatingPartition() {
+        properties.setPremake(0);
+        properties.setRetention(Period.ofMonths(6));
+        when(partitionRepository.findPartitions()).thenReturn(List.of("endpoint_hit_p202403"));
+        when(partitionRepository.findDefaultPartitionTimes("month")).thenReturn(List.of(
+                LocalDateTime.of(2023, 8, 1, 0, 0), LocalDateTime.of(2023, 9, 1, 0, 0)));
+
+        partitionManager.maintain(NOW);
+
+        verify(partitionRepository).deleteDefaultBefore(LocalDateTime.of(2023, 9, 1, 0, 0));
+        verify(partitionRepository).createPartition("endpoint_hit_p202309", LocalDateTime.of(2023, 9, 1, 0, 0),
+                LocalDateTime.of(2023, 10, 1, 0, 0));
+        verify(partitionRepository, never()).createPartition(eq("endpoint_hit_p202308"), any(), any());
+    }
+}
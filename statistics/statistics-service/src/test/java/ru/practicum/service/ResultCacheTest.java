@@ -0,0 +1,120 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.ResultCacheProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultCacheTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 2, 1, 0, 0);
+    private static final LocalDateTime ALIGNED_END = LocalDateTime.of(2024, 2, 1, 12, 0);
+
+    private final List<List<String>> loadedUris = new ArrayList<>();
+    private final List<LocalDateTime> loadedEnds = new ArrayList<>();
+    private final List<List<LocalDateTime>> liveLoads = new ArrayList<>();
+    private List<ViewStats> liveStats = List.of();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResultCache resultCache;
+
+    @BeforeEach
+    void setUp() {
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.setGranularity(Duration.ofMinutes(1));
+        resultCache = new ResultCache(properties, meterRegistry);
+    }
+
+    @Test
+    void get_shouldRoundEndDownAndLoadOnlyMissingUris() {
+        List<ViewStats> first = resultCache.get(START, ALIGNED_END.plusSeconds(10), List.of("/events/1"), false,
+                this::load);
+        List<ViewStats> second = resultCache.get(START, ALIGNED_END.plusSeconds(50),
+                List.of("/events/1", "/events/2"), false, this::load);
+
+        assertThat(first).containsExactly(new ViewStats("ewm", "/events/1", 1));
+        assertThat(second).containsExactly(new ViewStats("ewm", "/events/2", 2), new ViewStats("ewm", "/events/1", 1));
+        assertThat(loadedUris).containsExactly(List.of("/events/1"), List.of("/events/2"));
+        assertThat(loadedEnds).containsOnly(ALIGNED_END);
+        assertThat(meterRegistry.get("stats.result.cache.hit.ratio").gauge().value()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    void get_whenEndIsNotAligned_shouldAddHitsAfterAlignedEnd() {
+        LocalDateTime end = ALIGNED_END.plusSeconds(50);
+        liveStats = List.of(new ViewStats("ewm", "/events/2", 4), new ViewStats("ewm", "/events/3", 1));
+
+        List<ViewStats> stats = resultCache.get(START, end, List.of("/events/1", "/events/2", "/events/3"), false,
+                this::load);
+
+        assertThat(stats).containsExactly(new ViewStats("ewm", "/events/2", 6), new ViewStats("ewm", "/events/3", 3),
+                new ViewStats("ewm", "/events/1", 1));
+        assertThat(liveLoads).containsExactly(List.of(ALIGNED_END.plusNanos(1_000_000), end));
+    }
+
+    @Test
+    void get_whenUniqueAndEndIsNotAligned_shouldLoadWholeIntervalWithoutCache() {
+        LocalDateTime end = ALIGNED_END.plusSeconds(50);
+
+        resultCache.get(START, end, List.of("/events/1"), true, this::load);
+        resultCache.get(START, end, List.of("/events/1"), true, this::load);
+
+        assertThat(loadedUris).hasSize(2);
+        assertThat(loadedEnds).containsOnly(end);
+        assertThat(liveLoads).isEmpty();
+    }
+
+    @Test
+    void onHits_shouldInvalidateOnlyUrisWithHitsInsideCachedInterval() {
+        resultCache.get(START, ALIGNED_END, List.of("/events/1", "/events/2"), false, this::load);
+
+        resultCache.onHits(List.of(hit("/events/1", ALIGNED_END.plusSeconds(1))));
+        resultCache.get(START, ALIGNED_END, List.of("/events/1", "/events/2"), false, this::load);
+        resultCache.onHits(List.of(hit("/events/2", ALIGNED_END.minusHours(1))));
+        resultCache.get(START, ALIGNED_END, List.of("/events/1", "/events/2"), false, this::load);
+
+        assertThat(loadedUris).containsExactly(List.of("/events/1", "/events/2"), List.of("/events/2"));
+    }
+
+    @Test
+    void get_whenAllUris_shouldCacheWholeResultUntilAnyHitInsideInterval() {
+        resultCache.get(START, ALIGNED_END, null, true, this::load);
+        resultCache.get(START, ALIGNED_END, List.of(), true, this::load);
+        resultCache.onHits(List.of(hit("/users/1", ALIGNED_END)));
+        resultCache.get(START, ALIGNED_END, null, true, this::load);
+
+        assertThat(loadedUris).hasSize(2);
+    }
+
+    private List<ViewStats> load(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        if (start.isAfter(ALIGNED_END)) {
+            liveLoads.add(List.of(start, end));
+            return liveStats;
+        }
+        loadedUris.add(uris);
+        loadedEnds.add(end);
+        if (uris == null) {
+            return List.of(new ViewStats("ewm", "/events/1", 1));
+        }
+        return uris.stream()
+                .map(uri -> new ViewStats("ewm", uri, uri.equals("/events/1") ? 1 : 2))
+                .toList();
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("ewm");
+        hit.setUri(uri);
+        hit.setIp("127.0.0.1");
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
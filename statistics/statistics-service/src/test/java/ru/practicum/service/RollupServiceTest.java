@@ -0,0 +1,155 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.model.*;
+import ru.practicum.storage.HitStore;
+import ru.practicum.storage.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RollupServiceTest {
+
+    @Mock
+    private RollupRepository rollupRepository;
+
+    @Mock
+    private HitStore hitStore;
+
+    private RollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        rollupService = new RollupService(rollupRepository, hitStore, new RollupProperties());
+    }
+
+    @Test
+    void plan_shouldUseCoarsestBucketsAndRawRowsOnlyAtEdges() {
+        LocalDateTime from = LocalDateTime.of(2023, 1, 1, 22, 58, 30);
+        LocalDateTime to = LocalDateTime.of(2023, 1, 4, 1, 2, 15);
+
+        List<TimeSegment> plan = rollupService.plan(from, to);
+
+        assertThat(plan).containsExactly(
+                new TimeSegment(null, from, LocalDateTime.of(2023, 1, 1, 22, 59)),
+                new TimeSegment(Granularity.MINUTE, LocalDateTime.of(2023, 1, 1, 22, 59),
+                        LocalDateTime.of(2023, 1, 1, 23, 0)),
+                new TimeSegment(Granularity.HOUR, LocalDateTime.of(2023, 1, 1, 23, 0),
+                        LocalDateTime.of(2023, 1, 2, 0, 0)),
+                new TimeSegment(Granularity.DAY, LocalDateTime.of(2023, 1, 2, 0, 0),
+                        LocalDateTime.of(2023, 1, 4, 0, 0)),
+                new TimeSegment(Granularity.HOUR, LocalDateTime.of(2023, 1, 4, 0, 0),
+                        LocalDateTime.of(2023, 1, 4, 1, 0)),
+                new TimeSegment(Granularity.MINUTE, LocalDateTime.of(2023, 1, 4, 1, 0),
+                        LocalDateTime.of(2023, 1, 4, 1, 2)),
+                new TimeSegment(null, LocalDateTime.of(2023, 1, 4, 1, 2), to));
+    }
+
+    @Test
+    void plan_whenRangeIsShorterThanMinute_shouldReadRawRowsOnly() {
+        LocalDateTime from = LocalDateTime.of(2023, 1, 1, 12, 0, 10);
+        LocalDateTime to = LocalDateTime.of(2023, 1, 1, 12, 0, 50);
+
+        assertThat(rollupService.plan(from, to)).containsExactly(new TimeSegment(null, from, to));
+    }
+
+    @Test
+    void getStats_shouldMergeRollupsWithRawEdgesAndSortByHits() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 11, 59, 30);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 1, 13, 0, 0);
+        List<String> uris = List.of("/uri1", "/uri2");
+
+        when(hitStore.countHits(any(), any(), eq(uris)))
+                .thenReturn(List.of(new ViewStats("app", "/uri1", 1)));
+        when(rollupRepository.sumHits(eq(Granularity.HOUR), any(), any(), eq(uris)))
+                .thenReturn(List.of(new ViewStats("app", "/uri1", 2), new ViewStats("app", "/uri2", 5)));
+
+        List<ViewStats> result = rollupService.getStats(start, end, uris);
+
+        assertThat(result).containsExactly(new ViewStats("app", "/uri2", 5), new ViewStats("app", "/uri1", 4));
+        verify(hitStore, times(2)).countHits(any(), any(), eq(uris));
+        verify(rollupRepository).sumHits(Granularity.HOUR, LocalDateTime.of(2023, 1, 1, 12, 0),
+                LocalDateTime.of(2023, 1, 1, 13, 0), uris);
+    }
+
+    @Test
+    void getTopStats_shouldMergeAllUrisAndKeepOnlyLimitWithPrefix() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 1, 12, 59, 59);
+
+        when(rollupRepository.sumHits(eq(Granularity.HOUR), any(), any(), isNull())).thenReturn(List.of(
+                new ViewStats("app", "/events/1", 2), new ViewStats("app", "/events/2", 5),
+                new ViewStats("app", "/events/3", 3), new ViewStats("app", "/users/1", 9)));
+
+        List<ViewStats> result = rollupService.getTopStats(start, end, 2, "/events/");
+
+        assertThat(result).containsExactly(new ViewStats("app", "/events/2", 5),
+                new ViewStats("app", "/events/3", 3));
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void getTimeSeries_shouldReadBucketsAndAddPartialEdgesToTheirBuckets() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 11, 59, 30);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 1, 14, 10, 0);
+
+        when(rollupRepository.findBuckets(Granularity.HOUR, LocalDateTime.of(2023, 1, 1, 12, 0),
+                LocalDateTime.of(2023, 1, 1, 14, 0), null)).thenReturn(List.of(
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 12, 0), 4),
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 13, 0), 6)));
+        when(rollupRepository.sumHits(Granularity.MINUTE, LocalDateTime.of(2023, 1, 1, 14, 0),
+                LocalDateTime.of(2023, 1, 1, 14, 10), null)).thenReturn(List.of(new ViewStats("app", "/uri1", 2)));
+        when(hitStore.countHits(start, LocalDateTime.of(2023, 1, 1, 12, 0), null))
+                .thenReturn(List.of(new ViewStats("app", "/uri1", 1)));
+        when(hitStore.countHits(LocalDateTime.of(2023, 1, 1, 14, 10), LocalDateTime.of(2023, 1, 1, 14, 10, 1), null))
+                .thenReturn(List.of(new ViewStats("app", "/uri1", 5)));
+
+        List<BucketCount> result = rollupService.getTimeSeries(start, end, null, Granularity.HOUR);
+
+        assertThat(result).containsExactly(
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 11, 0), 1),
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 12, 0), 4),
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 13, 0), 6),
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 14, 0), 7));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onHits_shouldAggregateBatchPerBucket() {
+        EndpointHit first = hit("/uri1", LocalDateTime.of(2023, 1, 1, 12, 0, 1));
+        EndpointHit second = hit("/uri1", LocalDateTime.of(2023, 1, 1, 12, 0, 59));
+        EndpointHit third = hit("/uri1", LocalDateTime.of(2023, 1, 1, 12, 1, 0));
+
+        rollupService.onHits(List.of(first, second, third));
+
+        ArgumentCaptor<List<BucketCount>> minutes = ArgumentCaptor.forClass(List.class);
+        verify(rollupRepository).increment(eq(Granularity.MINUTE), minutes.capture());
+        assertThat(minutes.getValue()).containsExactly(
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 12, 0), 2),
+                new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 12, 1), 1));
+        verify(rollupRepository).increment(Granularity.HOUR,
+                List.of(new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 12, 0), 3)));
+        verify(rollupRepository).increment(Granularity.DAY,
+                List.of(new BucketCount("app", "/uri1", LocalDateTime.of(2023, 1, 1, 0, 0), 3)));
+    }
+
+    private EndpointHit hit(String uri, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("app");
+        hit.setUri(uri);
+        hit.setIp("127.0.0.1");
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
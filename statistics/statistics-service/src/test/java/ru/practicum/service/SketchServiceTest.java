@@ -0,0 +1,95 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.config.SketchProperties;
+import ru.practicum.model.*;
+import ru.practicum.storage.HitStore;
+import ru.practicum.storage.SketchRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SketchServiceTest {
+
+    @Mock
+    private SketchRepository sketchRepository;
+
+    @Mock
+    private HitStore hitStore;
+
+    private SketchService sketchService;
+
+    @BeforeEach
+    void setUp() {
+        SketchProperties properties = new SketchProperties();
+        properties.setEnabled(true);
+        sketchService = new SketchService(sketchRepository, hitStore, properties);
+    }
+
+    @Test
+    void getStats_shouldMergeSketchesWithRawEdges() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 11, 30);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 1, 13, 0);
+        List<String> uris = List.of("/uri1");
+        HyperLogLog stored = new HyperLogLog(new SketchProperties().getPrecision());
+        stored.add("127.0.0.2");
+        stored.add("127.0.0.3");
+
+        when(hitStore.findVisitors(any(), any(), eq(uris)))
+                .thenReturn(List.of(new Visitor("app", "/uri1", "127.0.0.1"), new Visitor("app", "/uri1", "127.0.0.2")))
+                .thenReturn(List.of());
+        doAnswer(invocation -> {
+            SketchRepository.SketchHandler handler = invocation.getArgument(4);
+            handler.handle("app", "/uri1", stored.toBytes());
+            return null;
+        }).when(sketchRepository).forEach(eq(Granularity.HOUR), eq(LocalDateTime.of(2023, 1, 1, 12, 0)),
+                eq(LocalDateTime.of(2023, 1, 1, 13, 0)), eq(uris), any());
+
+        List<ViewStats> result = sketchService.getStats(start, end, uris);
+
+        assertThat(result).containsExactly(new ViewStats("app", "/uri1", 3));
+        verify(hitStore, times(2)).findVisitors(any(), any(), eq(uris));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onHits_shouldBuildOneSketchPerBucket() {
+        EndpointHit first = hit("127.0.0.1", LocalDateTime.of(2023, 1, 15, 12, 10));
+        EndpointHit second = hit("127.0.0.2", LocalDateTime.of(2023, 1, 15, 12, 50));
+        EndpointHit third = hit("127.0.0.1", LocalDateTime.of(2023, 1, 16, 9, 0));
+
+        sketchService.onHits(List.of(first, second, third));
+
+        ArgumentCaptor<List<BucketSketch>> hours = ArgumentCaptor.forClass(List.class);
+        verify(sketchRepository).merge(eq(Granularity.HOUR), hours.capture());
+        assertThat(hours.getValue()).extracting(BucketSketch::key).containsExactly(
+                new BucketKey(LocalDateTime.of(2023, 1, 15, 12, 0), "/uri1", "app"),
+                new BucketKey(LocalDateTime.of(2023, 1, 16, 9, 0), "/uri1", "app"));
+        assertThat(hours.getValue()).extracting(sketch -> sketch.sketch().estimate()).containsExactly(2L, 1L);
+
+        ArgumentCaptor<List<BucketSketch>> months = ArgumentCaptor.forClass(List.class);
+        verify(sketchRepository).merge(eq(Granularity.MONTH), months.capture());
+        assertThat(months.getValue()).extracting(BucketSketch::key)
+                .containsExactly(new BucketKey(LocalDateTime.of(2023, 1, 1, 0, 0), "/uri1", "app"));
+        assertThat(months.getValue().get(0).sketch().estimate()).isEqualTo(2L);
+    }
+
+    private EndpointHit hit(String ip, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("app");
+        hit.setUri("/uri1");
+        hit.setIp(ip);
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
@@ -5,18 +5,33 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import ru.practicum.config.BatchProperties;
+import ru.practicum.config.EventViewsProperties;
+import ru.practicum.config.TimeSeriesProperties;
 import ru.practicum.error.exception.ValidationException;
+import ru.practicum.mapper.EndpointHitMapper;
 import ru.practicum.mapper.ViewStatsMapper;
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.DtoEndpointHit;
+import ru.practicum.model.DtoStatsQuery;
+import ru.practicum.model.DtoTimeBucket;
+import ru.practicum.model.DtoTimeSeries;
 import ru.practicum.model.DtoViewStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
 import ru.practicum.model.ViewStats;
-import ru.practicum.storage.JpaStatisticsRepository;
+import ru.practicum.storage.HitStore;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -27,11 +42,50 @@ import static org.mockito.Mockito.*;
 class StatisticsServiceImplTest {
 
     @Mock
-    private JpaStatisticsRepository jpaStatisticsRepository;
+    private HitStore hitStore;
+
+    @Mock
+    private HitWriter hitWriter;
+
+    @Mock
+    private HitIngestionQueue hitIngestionQueue;
+
+    @Mock
+    private RollupService rollupService;
+
+    @Mock
+    private CounterService counterService;
+
+    @Mock
+    private SketchService sketchService;
+
+    @Mock
+    private BitmapService bitmapService;
+
+    @Mock
+    private EndpointHitMapper endpointHitMapper;
 
     @Mock
     private ViewStatsMapper viewStatsMapper;
 
+    @Mock
+    private TrendingService trendingService;
+
+    @Mock
+    private ResultCache resultCache;
+
+    @Mock
+    private BatchQueryExecutor batchQueryExecutor;
+
+    @Spy
+    private BatchProperties batchProperties = new BatchProperties();
+
+    @Spy
+    private EventViewsProperties eventViewsProperties = new EventViewsProperties();
+
+    @Spy
+    private TimeSeriesProperties timeSeriesProperties = new TimeSeriesProperties();
+
     @InjectMocks
     private StatisticsServiceImpl statisticsService;
 
@@ -47,49 +101,167 @@ class StatisticsServiceImplTest {
     }
 
     @Test
-    void getStats_whenUrisIsEmptyAndUniqueTrue_shouldCallFindStatsAllUniqueIp() {
+    void getStats_whenAggregatesDisabled_shouldQueryHitStore() {
         LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
         LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+        List<String> uris = Arrays.asList("/uri1", "/uri2");
 
         List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
-        when(jpaStatisticsRepository.findStatsAllUniqueIp(start, end)).thenReturn(viewStatsList);
+        when(hitStore.findStats(start, end, uris, true)).thenReturn(viewStatsList);
         when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
             ViewStats viewStats = invocation.getArgument(0);
             return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
         });
 
-        List<DtoViewStats> result = statisticsService.getStats(start, end, Collections.emptyList(), true);
+        List<DtoViewStats> result = statisticsService.getStats(start, end, uris, true);
 
         assertThat(result).hasSize(1);
-        verify(jpaStatisticsRepository, times(1)).findStatsAllUniqueIp(start, end);
+        verify(hitStore, times(1)).findStats(start, end, uris, true);
     }
 
     @Test
-    void getStats_whenUrisIsEmptyAndUniqueFalse_shouldCallFindStatsAllNotUniqueIp() {
+    void getStats_withoutDatabaseAggregates_shouldQueryHitStore() {
+        StatisticsServiceImpl embedded = new StatisticsServiceImpl(hitStore, hitWriter, hitIngestionQueue,
+                null, null, null, null, endpointHitMapper, viewStatsMapper, timeSeriesProperties,
+                trendingService, resultCache, batchQueryExecutor, batchProperties,
+                eventViewsProperties);
         LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
         LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
 
-        List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
-        when(jpaStatisticsRepository.findStatsAllNotUniqueIp(start, end)).thenReturn(viewStatsList);
+        when(hitStore.findStats(start, end, null, false)).thenReturn(List.of(new ViewStats("app1", "/uri1", 10)));
+        when(hitStore.findStats(start, end, null, true)).thenReturn(List.of(new ViewStats("app1", "/uri1", 4)));
         when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
             ViewStats viewStats = invocation.getArgument(0);
             return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
         });
 
-        List<DtoViewStats> result = statisticsService.getStats(start, end, Collections.emptyList(), false);
+        assertThat(embedded.getStats(start, end, null, false)).containsExactly(new DtoViewStats("app1", "/uri1", 10));
+        assertThat(embedded.getApproxUniqueStats(start, end, null))
+                .containsExactly(new DtoViewStats("app1", "/uri1", 4));
+    }
 
-        assertThat(result).hasSize(1);
-        verify(jpaStatisticsRepository, times(1)).findStatsAllNotUniqueIp(start, end);
+    @Test
+    void getStats_whenRollupsEnabledAndUniqueFalse_shouldUseRollups() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+        List<String> uris = List.of("/uri1");
+
+        when(rollupService.isEnabled()).thenReturn(true);
+        when(rollupService.getStats(start, end, uris)).thenReturn(List.of(new ViewStats("app1", "/uri1", 10)));
+        when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
+            ViewStats viewStats = invocation.getArgument(0);
+            return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
+        });
+
+        List<DtoViewStats> result = statisticsService.getStats(start, end, uris, false);
+
+        assertThat(result).containsExactly(new DtoViewStats("app1", "/uri1", 10));
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void getStats_whenResultCacheEnabled_shouldQueryThroughCache() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0, 3);
+        LocalDateTime alignedEnd = LocalDateTime.of(2023, 1, 2, 12, 0);
+        List<String> uris = List.of("/uri1");
+
+        when(resultCache.isEnabled()).thenReturn(true);
+        when(resultCache.get(eq(start), eq(end), eq(uris), eq(false), any())).thenAnswer(invocation -> {
+            ResultCache.Loader loader = invocation.getArgument(4);
+            return loader.load(start, alignedEnd, uris);
+        });
+        when(hitStore.findStats(start, alignedEnd, uris, false)).thenReturn(List.of(new ViewStats("app1", "/uri1", 3)));
+        when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
+            ViewStats viewStats = invocation.getArgument(0);
+            return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
+        });
+
+        List<DtoViewStats> result = statisticsService.getStats(start, end, uris, false);
+
+        assertThat(result).containsExactly(new DtoViewStats("app1", "/uri1", 3));
+        verify(hitStore, never()).findStats(start, end, uris, false);
     }
 
     @Test
-    void getStats_whenUrisIsNotEmptyAndUniqueTrue_shouldCallFindUniqueIpByUris() {
+    void getStatsBatch_shouldMergeQueriesWithSameRangeAndSplitResults() throws Exception {
         LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
         LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
-        List<String> uris = Arrays.asList("/uri1", "/uri2");
+        List<DtoStatsQuery> queries = List.of(
+                new DtoStatsQuery(start, end, List.of("/uri1"), false),
+                new DtoStatsQuery(start, end, List.of("/uri2", "/uri1"), false),
+                new DtoStatsQuery(start, end, List.of("/uri2"), true));
 
-        List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
-        when(jpaStatisticsRepository.findUniqueIpByUris(start, end, uris)).thenReturn(viewStatsList);
+        when(batchQueryExecutor.invokeAll(anyList())).thenAnswer(invocation -> {
+            List<Callable<List<ViewStats>>> tasks = invocation.getArgument(0);
+            List<List<ViewStats>> results = new ArrayList<>();
+            for (Callable<List<ViewStats>> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        });
+        when(hitStore.findStats(start, end, List.of("/uri1", "/uri2"), false))
+                .thenReturn(List.of(new ViewStats("app1", "/uri2", 7), new ViewStats("app1", "/uri1", 5)));
+        when(hitStore.findStats(start, end, List.of("/uri2"), true))
+                .thenReturn(List.of(new ViewStats("app1", "/uri2", 3)));
+        when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
+            ViewStats viewStats = invocation.getArgument(0);
+            return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
+        });
+
+        List<List<DtoViewStats>> result = statisticsService.getStatsBatch(queries);
+
+        assertThat(result).containsExactly(
+                List.of(new DtoViewStats("app1", "/uri1", 5)),
+                List.of(new DtoViewStats("app1", "/uri2", 7), new DtoViewStats("app1", "/uri1", 5)),
+                List.of(new DtoViewStats("app1", "/uri2", 3)));
+        verify(hitStore, times(2)).findStats(any(), any(), anyList(), anyBoolean());
+    }
+
+    @Test
+    void getEventViews_shouldReturnViewsInIdOrderSummedOverApps() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+
+        when(hitStore.findStats(start, end, List.of("/events/3", "/events/1", "/events/2"), true))
+                .thenReturn(List.of(new ViewStats("app1", "/events/1", 4), new ViewStats("app2", "/events/1", 1),
+                        new ViewStats("app1", "/events/3", 2)));
+
+        long[] views = statisticsService.getEventViews(start, end, new long[]{3, 1, 2}, true);
+
+        assertThat(views).containsExactly(2, 5, 0);
+    }
+
+    @Test
+    void getEventViews_whenNoIds_shouldNotQueryHitStore() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+
+        assertThat(statisticsService.getEventViews(start, start, new long[0], false)).isEmpty();
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void getStatsBatch_whenTooManyQueries_shouldThrowValidationException() {
+        batchProperties.setMaxQueries(1);
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        List<DtoStatsQuery> queries = List.of(new DtoStatsQuery(start, start, null, false),
+                new DtoStatsQuery(start, start, null, true));
+
+        assertThrows(ValidationException.class, () -> statisticsService.getStatsBatch(queries));
+        verifyNoInteractions(batchQueryExecutor);
+    }
+
+    @Test
+    void getStats_whenCountersEnabled_shouldQueryOnlyUrisNotCoveredByCounters() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+        List<String> uris = List.of("/uri1", "/uri2");
+
+        when(counterService.isEnabled()).thenReturn(true);
+        when(counterService.lookup(start, end, uris, true)).thenReturn(new CounterService.Lookup(
+                List.of(new ViewStats("app1", "/uri1", 5), new ViewStats("app2", "/uri2", 1)), List.of("/uri2")));
+        when(hitStore.findStats(start, end, List.of("/uri2"), true))
+                .thenReturn(List.of(new ViewStats("app1", "/uri2", 7), new ViewStats("app2", "/uri2", 1)));
         when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
             ViewStats viewStats = invocation.getArgument(0);
             return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
@@ -97,26 +269,170 @@ class StatisticsServiceImplTest {
 
         List<DtoViewStats> result = statisticsService.getStats(start, end, uris, true);
 
-        assertThat(result).hasSize(1);
-        verify(jpaStatisticsRepository, times(1)).findUniqueIpByUris(start, end, uris);
+        assertThat(result).containsExactly(new DtoViewStats("app1", "/uri2", 7),
+                new DtoViewStats("app1", "/uri1", 5), new DtoViewStats("app2", "/uri2", 1));
     }
 
     @Test
-    void getStats_whenUrisIsNotEmptyAndUniqueFalse_shouldCallFindNotUniqueIpByUris() {
+    void getStats_whenBitmapsEnabledAndUniqueTrue_shouldUseBitmaps() {
         LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
         LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
-        List<String> uris = Arrays.asList("/uri1", "/uri2");
 
-        List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
-        when(jpaStatisticsRepository.findNotUniqueIpByUris(start, end, uris)).thenReturn(viewStatsList);
+        when(bitmapService.isEnabled()).thenReturn(true);
+        when(bitmapService.getStats(start, end, null)).thenReturn(List.of(new ViewStats("app1", "/uri1", 3)));
         when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
             ViewStats viewStats = invocation.getArgument(0);
             return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
         });
 
-        List<DtoViewStats> result = statisticsService.getStats(start, end, uris, false);
+        List<DtoViewStats> result = statisticsService.getStats(start, end, null, true);
 
-        assertThat(result).hasSize(1);
-        verify(jpaStatisticsRepository, times(1)).findNotUniqueIpByUris(start, end, uris);
+        assertThat(result).containsExactly(new DtoViewStats("app1", "/uri1", 3));
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void getApproxUniqueStats_whenSketchesEnabled_shouldUseSketches() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+        List<String> uris = List.of("/uri1");
+
+        when(sketchService.isEnabled()).thenReturn(true);
+        when(sketchService.getStats(start, end, uris)).thenReturn(List.of(new ViewStats("app1", "/uri1", 42)));
+        when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
+            ViewStats viewStats = invocation.getArgument(0);
+            return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
+        });
+
+        List<DtoViewStats> result = statisticsService.getApproxUniqueStats(start, end, uris);
+
+        assertThat(result).containsExactly(new DtoViewStats("app1", "/uri1", 42));
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void getTopStats_shouldUseRollupsWhenEnabledAndPushLimitToStoreOtherwise() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+
+        when(rollupService.isEnabled()).thenReturn(true);
+        when(rollupService.getTopStats(start, end, 5, "/events/"))
+                .thenReturn(List.of(new ViewStats("app1", "/events/1", 10)));
+        when(hitStore.findTop(start, end, 5, true, "/events/"))
+                .thenReturn(List.of(new ViewStats("app1", "/events/2", 4)));
+        when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
+            ViewStats viewStats = invocation.getArgument(0);
+            return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
+        });
+
+        assertThat(statisticsService.getTopStats(start, end, 5, false, "/events/"))
+                .containsExactly(new DtoViewStats("app1", "/events/1", 10));
+        assertThat(statisticsService.getTopStats(start, end, 5, true, "/events/"))
+                .containsExactly(new DtoViewStats("app1", "/events/2", 4));
+        verify(hitStore, never()).findTop(any(), any(), anyInt(), eq(false), any());
+    }
+
+    @Test
+    void getTopStats_whenLimitIsNotPositive_shouldThrowValidationException() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+
+        assertThrows(ValidationException.class, () -> statisticsService.getTopStats(start, end, 0, false, null));
+
+        verifyNoInteractions(hitStore, rollupService);
+    }
+
+    @Test
+    void getTimeSeries_whenRollupsEnabled_shouldGroupBucketsByUri() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 1, 23, 59, 59);
+        List<String> uris = List.of("/uri1", "/uri2");
+
+        when(rollupService.isEnabled()).thenReturn(true);
+        when(rollupService.getTimeSeries(start, end, uris, Granularity.HOUR)).thenReturn(List.of(
+                new BucketCount("app1", "/uri1", start, 3),
+                new BucketCount("app1", "/uri1", start.plusHours(5), 1),
+                new BucketCount("app1", "/uri2", start.plusHours(1), 7)));
+
+        List<DtoTimeSeries> result = statisticsService.getTimeSeries(start, end, uris, Granularity.HOUR, false);
+
+        assertThat(result).containsExactly(
+                new DtoTimeSeries("app1", "/uri1", List.of(new DtoTimeBucket(start, 3),
+                        new DtoTimeBucket(start.plusHours(5), 1))),
+                new DtoTimeSeries("app1", "/uri2", List.of(new DtoTimeBucket(start.plusHours(1), 7))));
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void getTimeSeries_whenTooManyBuckets_shouldThrowValidationException() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+        assertThrows(ValidationException.class, () -> statisticsService.getTimeSeries(start,
+                start.plusMinutes(timeSeriesProperties.getMaxBuckets()), null, Granularity.MINUTE, true));
+
+        statisticsService.getTimeSeries(start, start.plusMinutes(timeSeriesProperties.getMaxBuckets() - 1), null,
+                Granularity.MINUTE, true);
+        verify(hitStore).countBuckets(any(), any(), isNull(), eq(Granularity.MINUTE), eq(true));
+    }
+
+    @Test
+    void streamStats_shouldReadHitStoreDirectlyEvenWhenRollupsEnabled() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 2, 12, 0);
+
+        doAnswer(invocation -> {
+            Consumer<ViewStats> consumer = invocation.getArgument(4);
+            consumer.accept(new ViewStats("app1", "/uri1", 10));
+            consumer.accept(new ViewStats("app1", "/uri2", 3));
+            return null;
+        }).when(hitStore).streamStats(eq(start), eq(end), isNull(), eq(false), any());
+        when(viewStatsMapper.toDtoViewStats(any(ViewStats.class))).thenAnswer(invocation -> {
+            ViewStats viewStats = invocation.getArgument(0);
+            return new DtoViewStats(viewStats.getApp(), viewStats.getUri(), viewStats.getHits());
+        });
+        List<DtoViewStats> result = new ArrayList<>();
+
+        statisticsService.streamStats(start, end, null, false, result::add);
+
+        assertThat(result).containsExactly(new DtoViewStats("app1", "/uri1", 10),
+                new DtoViewStats("app1", "/uri2", 3));
+        verifyNoInteractions(rollupService, counterService);
+    }
+
+    @Test
+    void streamStats_whenEndBeforeStart_shouldThrowBeforeReading() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 2, 12, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 1, 1, 12, 0);
+
+        assertThrows(ValidationException.class, () ->
+                statisticsService.streamStats(start, end, null, false, stats -> {
+                }));
+
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void createHits_shouldSaveAllHitsInOneBatch() {
+        DtoEndpointHit first = new DtoEndpointHit("app1", "/uri1", "127.0.0.1", LocalDateTime.of(2023, 1, 1, 12, 0));
+        DtoEndpointHit second = new DtoEndpointHit("app1", "/uri2", "127.0.0.2", LocalDateTime.of(2023, 1, 1, 12, 1));
+        when(endpointHitMapper.toStats(any(DtoEndpointHit.class))).thenAnswer(invocation -> new EndpointHit());
+
+        statisticsService.createHits(List.of(first, second));
+
+        verify(hitWriter, times(1)).write(argThat(hits -> hits.size() == 2));
+        verify(hitIngestionQueue, never()).submit(anyList());
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void createHits_whenIngestIsAsync_shouldSubmitToQueue() {
+        DtoEndpointHit hit = new DtoEndpointHit("app1", "/uri1", "127.0.0.1", LocalDateTime.of(2023, 1, 1, 12, 0));
+        when(endpointHitMapper.toStats(any(DtoEndpointHit.class))).thenAnswer(invocation -> new EndpointHit());
+        when(hitIngestionQueue.isAsync()).thenReturn(true);
+
+        statisticsService.createHits(List.of(hit));
+
+        verify(hitIngestionQueue, times(1)).submit(argThat(hits -> hits.size() == 1));
+        verifyNoInteractions(hitWriter);
     }
-}
\ No newline at end of file
+}
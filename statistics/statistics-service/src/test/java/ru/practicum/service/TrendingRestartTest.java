@@ -0,0 +1,74 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.StatisticsServiceApplication;
+import ru.practicum.model.DtoTrendingStats;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Счётчики популярности переживают перезапуск сервиса: при остановке они сохраняются в {@code trending_score},
+ * а при запуске, после {@code schema.sql}, восстанавливаются. Нужна база данных из {@code application.properties};
+ * без неё тест пропускается.
+ */
+class TrendingRestartTest {
+
+    private static final String URL = "jdbc:postgresql://localhost:5432/ewm_stats";
+    private static final String USER = "adminStats";
+
+    @BeforeAll
+    static void clearSavedScores() {
+        try (Connection connection = DriverManager.getConnection(URL, USER, USER);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS trending_score");
+        } catch (SQLException e) {
+            assumeTrue(false, "База данных недоступна: " + e.getMessage());
+        }
+    }
+
+    @Test
+    void start_afterRestart_shouldRestoreSavedScores() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        try (ConfigurableApplicationContext context = start()) {
+            context.getBean(TrendingService.class).onHits(List.of(hit("/restart/1", now), hit("/restart/1", now),
+                    hit("/restart/1", now), hit("/restart/2", now)));
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            List<DtoTrendingStats> trending = context.getBean(TrendingService.class).getTrending(10, null,
+                    "/restart/");
+
+            assertThat(trending).extracting(DtoTrendingStats::getUri).containsExactly("/restart/1", "/restart/2");
+            assertThat(trending.get(0).getScore()).isCloseTo(3, within(0.01));
+            assertThat(trending.get(1).getScore()).isCloseTo(1, within(0.01));
+        }
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(StatisticsServiceApplication.class)
+                .run("--server.port=0", "--stats.store.type=jpa", "--stats.trending.enabled=true",
+                        "--stats.trending.half-lives=1d", "--app.statsUri=http://localhost:9090");
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("trending-restart-test");
+        hit.setUri(uri);
+        hit.setIp("127.0.0.1");
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import ru.practicum.config.TrendingProperties;
+import ru.practicum.error.exception.ValidationException;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.DtoTrendingStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.EpochMillisConverter;
+import ru.practicum.storage.TrendingRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TrendingServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    @Mock
+    private TrendingRepository trendingRepository;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private TrendingService trendingService;
+
+    @BeforeEach
+    void setUp() {
+        trendingService = new TrendingService(new TrendingProperties(), trendingRepository, taskScheduler);
+    }
+
+    @Test
+    void getTrending_shouldRankByDecayedHitsAndFilterByPrefix() {
+        trendingService.onHits(List.of(
+                hit("/events/1", NOW.minusHours(2)),
+                hit("/events/1", NOW.minusHours(2)),
+                hit("/events/1", NOW.minusHours(2)),
+                hit("/events/2", NOW),
+                hit("/users/1", NOW),
+                hit("/users/1", NOW)));
+        trendingService.refresh(millis(NOW));
+
+        List<DtoTrendingStats> hourly = trendingService.getTrending(2, null, "/events/", millis(NOW.plusHours(1)));
+
+        assertThat(hourly).extracting(DtoTrendingStats::getUri).containsExactly("/events/2", "/events/1");
+        assertThat(hourly.get(0).getScore()).isCloseTo(0.5, within(1e-9));
+        assertThat(hourly.get(1).getScore()).isCloseTo(3 / 8.0, within(1e-9));
+        assertThat(trendingService.getTrending(1, Duration.ofDays(1), null, millis(NOW)))
+                .extracting(DtoTrendingStats::getUri).containsExactly("/events/1");
+    }
+
+    @Test
+    void getTrending_whenHalfLifeIsNotConfigured_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () ->
+                trendingService.getTrending(10, Duration.ofMinutes(5), null, millis(NOW)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void start_shouldRestoreCheckpointAndCheckpointShouldSaveScores() {
+        AppUri key = new AppUri("app", "/events/1");
+        LocalDateTime savedAt = NOW.minusHours(1);
+        when(trendingRepository.findAll(anyList()))
+                .thenReturn(List.of(new TrendingRepository.Saved(key, new double[]{8, 8}, savedAt)));
+
+        trendingService.start();
+        trendingService.checkpoint(millis(savedAt.plusHours(1)));
+
+        verify(trendingRepository).replace(eq(savedAt.plusHours(1)), eq(List.of(Duration.ofHours(1),
+                Duration.ofDays(1))), argThat((Map<AppUri, double[]> scores) ->
+                Math.abs(scores.get(key)[0] - 4) < 1e-6));
+        verify(taskScheduler).scheduleWithFixedDelay(any(Runnable.class), eq(Duration.ofSeconds(5)));
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return EpochMillisConverter.toMillis(dateTime);
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("app");
+        hit.setUri(uri);
+        hit.setIp("127.0.0.1");
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
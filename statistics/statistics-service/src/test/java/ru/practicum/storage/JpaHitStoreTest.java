@@ -0,0 +1,106 @@
+package ru.practicum.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.config.PartitionProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JpaHitStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 12, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2023, 1, 2, 12, 0);
+
+    @Mock
+    private JdbcStatisticsRepository jdbcStatisticsRepository;
+
+    @Mock
+    private JpaStatisticsRepository jpaStatisticsRepository;
+
+    @Spy
+    private PartitionProperties partitionProperties = new PartitionProperties();
+
+    @InjectMocks
+    private JpaHitStore jpaHitStore;
+
+    @Test
+    void saveAll_whenHitIsOlderThanRetention_shouldNotInsertIt() {
+        partitionProperties.setRetention(Period.ofMonths(1));
+        EndpointHit recent = hit(LocalDateTime.now().minusDays(1));
+        EndpointHit expired = hit(LocalDateTime.now().minusMonths(3));
+
+        jpaHitStore.saveAll(List.of(recent, expired));
+
+        verify(jdbcStatisticsRepository).saveAll(List.of(recent));
+    }
+
+    @Test
+    void saveAll_whenRetentionIsNotSet_shouldInsertAllHits() {
+        List<EndpointHit> hits = List.of(hit(LocalDateTime.now()), hit(START));
+
+        jpaHitStore.saveAll(hits);
+
+        verify(jdbcStatisticsRepository).saveAll(hits);
+    }
+
+    @Test
+    void findStats_whenUrisIsEmptyAndUniqueTrue_shouldCallFindStatsAllUniqueIp() {
+        List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
+        when(jpaStatisticsRepository.findStatsAllUniqueIp(START, END)).thenReturn(viewStatsList);
+
+        assertThat(jpaHitStore.findStats(START, END, Collections.emptyList(), true)).isEqualTo(viewStatsList);
+        verify(jpaStatisticsRepository, times(1)).findStatsAllUniqueIp(START, END);
+    }
+
+    @Test
+    void findStats_whenUrisIsNullAndUniqueFalse_shouldCallFindStatsAllNotUniqueIp() {
+        List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
+        when(jpaStatisticsRepository.findStatsAllNotUniqueIp(START, END)).thenReturn(viewStatsList);
+
+        assertThat(jpaHitStore.findStats(START, END, null, false)).isEqualTo(viewStatsList);
+        verify(jpaStatisticsRepository, times(1)).findStatsAllNotUniqueIp(START, END);
+    }
+
+    @Test
+    void findStats_whenUrisIsNotEmptyAndUniqueTrue_shouldCallFindUniqueIpByUris() {
+        List<String> uris = Arrays.asList("/uri1", "/uri2");
+        List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
+        when(jpaStatisticsRepository.findUniqueIpByUris(START, END, uris)).thenReturn(viewStatsList);
+
+        assertThat(jpaHitStore.findStats(START, END, uris, true)).isEqualTo(viewStatsList);
+        verify(jpaStatisticsRepository, times(1)).findUniqueIpByUris(START, END, uris);
+    }
+
+    @Test
+    void findStats_whenUrisIsNotEmptyAndUniqueFalse_shouldCallFindNotUniqueIpByUris() {
+        List<String> uris = Arrays.asList("/uri1", "/uri2");
+        List<ViewStats> viewStatsList = Arrays.asList(new ViewStats("app1", "/uri1", 10));
+        when(jpaStatisticsRepository.findNotUniqueIpByUris(START, END, uris)).thenReturn(viewStatsList);
+
+        assertThat(jpaHitStore.findStats(START, END, uris, false)).isEqualTo(viewStatsList);
+        verify(jpaStatisticsRepository, times(1)).findNotUniqueIpByUris(START, END, uris);
+    }
+
+    private static EndpointHit hit(LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp("app1");
+        hit.setUri("/uri1");
+        hit.setIp("127.0.0.1");
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
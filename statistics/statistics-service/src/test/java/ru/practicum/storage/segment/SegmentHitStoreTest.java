@@ -0,0 +1,193 @@
+package ru.practicum.storage.segment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.config.StoreProperties;
+import ru.practicum.model.BucketCount;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.Visitor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentHitStoreTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    private Path directory;
+
+    private StoreProperties properties;
+    private SegmentHitStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new StoreProperties();
+        properties.setDirectory(directory);
+        properties.setSegmentCapacity(Segment.BLOCK_SIZE * 2);
+        store = new SegmentHitStore(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void findStats_shouldCountHitsAndUniqueIpsInsideInclusiveRange() {
+        store.saveAll(List.of(
+                hit("app", "/uri1", "10.0.0.1", DAY.plusHours(1)),
+                hit("app", "/uri1", "10.0.0.1", DAY.plusHours(2)),
+                hit("app", "/uri1", "2001:db8::1", DAY.plusHours(3)),
+                hit("app", "/uri2", "10.0.0.2", DAY.plusHours(4)),
+                hit("other", "/uri2", "10.0.0.2", DAY.plusDays(2))));
+
+        assertThat(store.findStats(DAY, DAY.plusHours(4), null, false)).containsExactly(
+                new ViewStats("app", "/uri1", 3), new ViewStats("app", "/uri2", 1));
+        assertThat(store.findStats(DAY, DAY.plusDays(2), List.of("/uri1", "/uri2", "/unknown"), true))
+                .containsExactly(new ViewStats("app", "/uri1", 2), new ViewStats("app", "/uri2", 1),
+                        new ViewStats("other", "/uri2", 1));
+        assertThat(store.countHits(DAY.plusHours(1), DAY.plusHours(3), List.of("/uri1")))
+                .containsExactly(new ViewStats("app", "/uri1", 2));
+        assertThat(store.findVisitors(DAY, DAY.plusDays(1), List.of("/uri1"))).containsExactlyInAnyOrder(
+                new Visitor("app", "/uri1", "10.0.0.1"), new Visitor("app", "/uri1", "2001:db8::1"));
+        assertThat(store.findStats(DAY, DAY.plusDays(2), List.of("/unknown"), false)).isEmpty();
+    }
+
+    @Test
+    void findTop_shouldReturnLimitUrisWithPrefixByHits() {
+        store.saveAll(List.of(
+                hit("app", "/events/1", "10.0.0.1", DAY),
+                hit("app", "/events/2", "10.0.0.1", DAY),
+                hit("app", "/events/2", "10.0.0.2", DAY),
+                hit("app", "/events/3", "10.0.0.1", DAY),
+                hit("app", "/events/3", "10.0.0.1", DAY),
+                hit("app", "/events/3", "10.0.0.1", DAY),
+                hit("app", "/users/1", "10.0.0.1", DAY),
+                hit("app", "/users/1", "10.0.0.2", DAY),
+                hit("app", "/users/1", "10.0.0.3", DAY),
+                hit("app", "/users/1", "10.0.0.4", DAY)));
+
+        assertThat(store.findTop(DAY, DAY, 2, false, "/events/")).containsExactly(
+                new ViewStats("app", "/events/3", 3), new ViewStats("app", "/events/2", 2));
+        assertThat(store.findTop(DAY, DAY, 2, true, null)).containsExactly(
+                new ViewStats("app", "/users/1", 4), new ViewStats("app", "/events/2", 2));
+        assertThat(store.findTop(DAY, DAY, 2, false, "/unknown/")).isEmpty();
+    }
+
+    @Test
+    void countBuckets_shouldSplitHitsByHourInOnePass() {
+        store.saveAll(List.of(
+                hit("app", "/uri1", "10.0.0.1", DAY.plusMinutes(5)),
+                hit("app", "/uri1", "10.0.0.1", DAY.plusMinutes(55)),
+                hit("app", "/uri1", "10.0.0.2", DAY.plusHours(2)),
+                hit("app", "/uri2", "10.0.0.1", DAY.plusMinutes(30)),
+                hit("app", "/uri1", "10.0.0.1", DAY.plusHours(5))));
+
+        assertThat(store.countBuckets(DAY, DAY.plusHours(3), null, Granularity.HOUR, false)).containsExactly(
+                new BucketCount("app", "/uri1", DAY, 2), new BucketCount("app", "/uri1", DAY.plusHours(2), 1),
+                new BucketCount("app", "/uri2", DAY, 1));
+        assertThat(store.countBuckets(DAY, DAY.plusHours(3), List.of("/uri1"), Granularity.HOUR, true))
+                .containsExactly(new BucketCount("app", "/uri1", DAY, 1),
+                        new BucketCount("app", "/uri1", DAY.plusHours(2), 1));
+    }
+
+    @Test
+    void saveAll_whenSegmentIsFull_shouldContinueInNewSegmentAndSurviveReopen() throws IOException {
+        int total = Segment.BLOCK_SIZE * 5 + 17;
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            hits.add(hit("app", "/uri" + i % 3, "10.0." + i % 7 + ".1", DAY.plusSeconds(i)));
+        }
+        store.saveAll(hits.subList(0, 1000));
+        store.saveAll(hits.subList(1000, total));
+        List<ViewStats> expected = store.findStats(DAY, DAY.plusDays(1), null, true);
+
+        store.close();
+        store = new SegmentHitStore(properties);
+
+        try (var files = Files.list(directory)) {
+            assertThat(files.filter(path -> path.toString().endsWith(".seg")).count()).isEqualTo(3);
+        }
+        assertThat(store.findStats(DAY, DAY.plusDays(1), null, false).stream().mapToLong(ViewStats::getHits).sum())
+                .isEqualTo(total);
+        assertThat(store.findStats(DAY, DAY.plusDays(1), null, true)).isEqualTo(expected);
+        assertThat(store.findStats(DAY.plusSeconds(Segment.BLOCK_SIZE * 3), DAY.plusSeconds(Segment.BLOCK_SIZE * 3),
+                List.of("/uri0", "/uri1", "/uri2"), false)).hasSize(1);
+
+        store.saveAll(List.of(hit("app", "/uri0", "10.0.0.1", DAY)));
+        assertThat(store.findStats(DAY, DAY, List.of("/uri0"), false))
+                .containsExactly(new ViewStats("app", "/uri0", 2));
+    }
+
+    @Test
+    void saveAll_whenNextSegmentCannotBeCreated_shouldHideWholeBatch() throws IOException {
+        store.saveAll(hits("/uri0", 1000));
+        Path blocked = Files.createDirectory(directory.resolve("segment-000002.seg"));
+
+        assertThatThrownBy(() -> store.saveAll(hits("/uri1", Segment.BLOCK_SIZE * 2)))
+                .isInstanceOf(UncheckedIOException.class);
+        store.saveAll(hits("/uri2", 5));
+        store.close();
+        Files.delete(blocked);
+        store = new SegmentHitStore(properties);
+
+        assertThat(store.findStats(DAY, DAY.plusDays(1), null, false)).containsExactly(
+                new ViewStats("app", "/uri0", 1000), new ViewStats("app", "/uri2", 5));
+        assertThat(store.findStats(DAY, DAY.plusDays(1), List.of("/uri1"), false)).isEmpty();
+    }
+
+    @Test
+    void findStats_whileBatchesSpanSegments_shouldSeeOnlyWholeBatches() throws InterruptedException {
+        int batchSize = 3000;
+        List<EndpointHit> batch = hits("/uri0", batchSize);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Long> seen = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                seen.add(store.findStats(DAY, DAY.plusDays(1), List.of("/uri0"), false).stream()
+                        .mapToLong(ViewStats::getHits).sum());
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 12; i++) {
+            store.saveAll(batch);
+        }
+        writing.set(false);
+        reader.join();
+
+        assertThat(seen).allMatch(total -> total % batchSize == 0);
+        assertThat(store.findStats(DAY, DAY.plusDays(1), null, false))
+                .containsExactly(new ViewStats("app", "/uri0", 12L * batchSize));
+    }
+
+    private List<EndpointHit> hits(String uri, int count) {
+        List<EndpointHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(hit("app", uri, "10.0.0." + i % 7, DAY.plusSeconds(i)));
+        }
+        return hits;
+    }
+
+    private EndpointHit hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        EndpointHit hit = new EndpointHit();
+        hit.setApp(app);
+        hit.setUri(uri);
+        hit.setIp(ip);
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}